@@ -233,6 +233,16 @@ public class ComponentDao implements Dao {
     return mapper(session).selectProjects();
   }
 
+  /**
+   * Returns the uuids of all projects (Scope {@link org.sonar.api.resources.Scopes#PROJECT} and qualifier
+   * {@link org.sonar.api.resources.Qualifiers#PROJECT}), including disabled ones.
+   *
+   * Used to partition the indexing of the issues and tests of all projects.
+   */
+  public List<String> selectAllProjectUuids(DbSession session) {
+    return mapper(session).selectAllProjectUuids();
+  }
+
   /**
    * Select all root components (projects and views), including disabled ones, for a given organization.
    */
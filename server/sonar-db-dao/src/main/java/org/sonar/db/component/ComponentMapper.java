@@ -78,6 +78,8 @@ public interface ComponentMapper {
    */
   List<ComponentDto> selectProjects();
 
+  List<String> selectAllProjectUuids();
+
   List<ComponentDto> selectAllRootsByOrganization(@Param("organizationUuid") String organizationUuid);
 
   /**
@@ -22,10 +22,12 @@ package org.sonar.db.duplication;
 import java.util.Collection;
 import java.util.List;
 import javax.annotation.Nullable;
+import org.apache.ibatis.session.ResultHandler;
 import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
 
 import static org.sonar.db.DatabaseUtils.executeLargeInputs;
+import static org.sonar.db.DatabaseUtils.executeLargeInputsWithoutOutput;
 
 public class DuplicationDao implements Dao {
 
@@ -38,6 +40,21 @@ public class DuplicationDao implements Dao {
       partition -> session.getMapper(DuplicationMapper.class).selectCandidates(analysisUuid, language, partition));
   }
 
+  /**
+   * Selects the hashes of the blocks of the last analyses, with the uuid of their analysis, on files of the specified
+   * language. The result is not returned (since it is usually too big), but handed over to the <code>handler</code>.
+   *
+   * @param analysisUuids restricts the blocks to these analyses, all last analyses if {@code null}
+   */
+  public void selectHashes(DbSession session, String language, @Nullable Collection<String> analysisUuids, ResultHandler handler) {
+    DuplicationMapper mapper = session.getMapper(DuplicationMapper.class);
+    if (analysisUuids == null) {
+      mapper.scrollHashes(language, null, handler);
+    } else {
+      executeLargeInputsWithoutOutput(analysisUuids, partition -> mapper.scrollHashes(language, partition, handler));
+    }
+  }
+
   /**
    * Insert rows in the table DUPLICATIONS_INDEX.
    * Note that generated ids are not returned.
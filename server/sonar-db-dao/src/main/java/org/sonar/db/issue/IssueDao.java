@@ -30,6 +30,7 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
+import org.sonar.db.KeyLongValue;
 import org.sonar.db.RowNotFoundException;
 
 import static com.google.common.collect.FluentIterable.from;
@@ -90,6 +91,21 @@ public class IssueDao implements Dao {
     return mapper(session).selectComponentUuidsOfOpenIssuesForProjectUuid(projectUuid);
   }
 
+  /**
+   * Number of issues, including closed ones, by project uuid. Projects without issues are not returned.
+   */
+  public Map<String, Long> countByProjectUuid(DbSession session) {
+    return KeyLongValue.toMap(mapper(session).countByProjectUuid());
+  }
+
+  /**
+   * Number of issues, including closed ones, by component uuid for the given project, sorted by component uuid
+   * in the order of the database. Components without issues are not returned.
+   */
+  public List<KeyLongValue> countByComponentUuidForProjectUuid(DbSession session, String projectUuid) {
+    return mapper(session).countByComponentUuidForProjectUuid(projectUuid);
+  }
+
   public void insert(DbSession session, IssueDto dto) {
     mapper(session).insert(dto);
   }
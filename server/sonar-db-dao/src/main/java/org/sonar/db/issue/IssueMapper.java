@@ -23,6 +23,7 @@ import java.util.List;
 import java.util.Set;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.session.ResultHandler;
+import org.sonar.db.KeyLongValue;
 
 public interface IssueMapper {
 
@@ -30,10 +31,16 @@ public interface IssueMapper {
 
   void selectNonClosedByComponentUuid(@Param("componentUuid") String componentUuid, ResultHandler resultHandler);
 
+  void selectNonClosedByComponentUuids(@Param("componentUuids") List<String> componentUuids, ResultHandler resultHandler);
+
   Set<String> selectComponentUuidsOfOpenIssuesForProjectUuid(String projectUuid);
 
   List<IssueDto> selectByKeys(List<String> keys);
 
+  List<KeyLongValue> countByProjectUuid();
+
+  List<KeyLongValue> countByComponentUuidForProjectUuid(@Param("projectUuid") String projectUuid);
+
   void insert(IssueDto issue);
 
   int update(IssueDto issue);
@@ -24,12 +24,15 @@ import com.google.common.collect.Lists;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import org.apache.ibatis.session.ResultHandler;
 import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
 import org.sonar.db.component.ComponentDto;
 
 import static java.util.Collections.emptyList;
+import static java.util.Objects.requireNonNull;
 import static org.sonar.db.DatabaseUtils.executeLargeInputs;
+import static org.sonar.db.DatabaseUtils.executeLargeInputsWithoutOutput;
 
 public class MeasureDao implements Dao {
 
@@ -119,6 +122,19 @@ public class MeasureDao implements Dao {
     return executeLargeInputs(componentUuids, partitionComponentUuids -> mapper(dbSession).selectByComponentsAndMetrics(partitionComponentUuids, metricIds));
   }
 
+  /**
+   * Selects the measures of the last analysis of a project, on the project and on all its components, for the given metrics.
+   * Measures of developers are excluded. The result is not returned (since it is usually too big), but handed over to the <code>handler</code>
+   * @param dbSession the database session
+   * @param projectUuid the uuid of the analysed project
+   * @param metricIds the ids of the metrics to load
+   * @param handler the action to be applied to every {@link MeasureDto}
+   */
+  public void selectLastMeasuresOfProject(DbSession dbSession, String projectUuid, Collection<Integer> metricIds, ResultHandler handler) {
+    requireNonNull(handler);
+    executeLargeInputsWithoutOutput(metricIds, ids -> mapper(dbSession).selectLastMeasuresOfProject(projectUuid, ids, handler));
+  }
+
   public void insert(DbSession session, MeasureDto measureDto) {
     mapper(session).insert(measureDto);
   }
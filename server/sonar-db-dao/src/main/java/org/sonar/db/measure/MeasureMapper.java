@@ -22,6 +22,7 @@ package org.sonar.db.measure;
 import java.util.Collection;
 import java.util.List;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
 
 public interface MeasureMapper {
 
@@ -42,5 +43,7 @@ public interface MeasureMapper {
 
   List<MeasureDto> selectByComponentsAndMetrics(@Param("componentUuids") List<String> componentUuids, @Param("metricIds") Collection<Integer> metricIds);
 
+  void selectLastMeasuresOfProject(@Param("projectUuid") String projectUuid, @Param("metricIds") Collection<Integer> metricIds, ResultHandler handler);
+
   void insert(MeasureDto measureDto);
 }
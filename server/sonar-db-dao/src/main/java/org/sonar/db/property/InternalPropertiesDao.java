@@ -61,6 +61,26 @@ public class InternalPropertiesDao implements Dao {
     }
   }
 
+  /**
+   * Update a property which already exists with a value which is not empty. Contrary to {@link #save(DbSession, String, String)},
+   * the row is not deleted, so that concurrent writers of the same property do not fail on its primary key.
+   * <p>Value can't be {@code null} but can have any size except 0.</p>
+   *
+   * @return {@code false} if the property does not exist, in which case nothing is saved
+   * @throws IllegalArgumentException if {@code key} or {@code value} is {@code null} or empty.
+   */
+  public boolean update(DbSession dbSession, String key, String value) {
+    checkKey(key);
+    checkArgument(value != null && !value.isEmpty(), "value can't be null nor empty");
+
+    InternalPropertiesMapper mapper = getMapper(dbSession);
+    long now = system2.now();
+    if (mustsBeStoredInClob(value)) {
+      return mapper.updateAsClob(key, value, now) > 0;
+    }
+    return mapper.updateAsText(key, value, now) > 0;
+  }
+
   private static boolean mustsBeStoredInClob(String value) {
     return value.length() > TEXT_VALUE_MAX_LENGTH;
   }
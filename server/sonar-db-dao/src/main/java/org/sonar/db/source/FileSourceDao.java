@@ -25,8 +25,11 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
 import javax.annotation.CheckForNull;
 import org.apache.commons.dbutils.DbUtils;
@@ -35,6 +38,9 @@ import org.sonar.db.Dao;
 import org.sonar.db.DbSession;
 import org.sonar.db.source.FileSourceDto.Type;
 
+import static org.sonar.db.DatabaseUtils.executeLargeInputsWithoutOutput;
+import static org.sonar.db.DatabaseUtils.repeatCondition;
+
 public class FileSourceDao implements Dao {
 
   private static final Splitter END_OF_LINE_SPLITTER = Splitter.on('\n');
@@ -74,6 +80,41 @@ public class FileSourceDao implements Dao {
     }
   }
 
+  /**
+   * Line hashes of the given files, by file uuid. Files without source are not part of the result.
+   * Files are loaded by partitions, so that the number of requests does not depend on the number of files.
+   */
+  public Map<String, List<String>> selectLineHashesByFileUuids(DbSession dbSession, Collection<String> fileUuids) {
+    Map<String, List<String>> result = new HashMap<>(fileUuids.size());
+    executeLargeInputsWithoutOutput(fileUuids, partition -> selectLineHashes(dbSession, partition, result));
+    return result;
+  }
+
+  private static void selectLineHashes(DbSession dbSession, List<String> fileUuids, Map<String, List<String>> result) {
+    // connection belongs to the session and is reused by the next partitions, so it must not be closed
+    Connection connection = dbSession.getConnection();
+    PreparedStatement pstmt = null;
+    ResultSet rs = null;
+    try {
+      pstmt = connection.prepareStatement("SELECT file_uuid, line_hashes FROM file_sources WHERE data_type=? AND file_uuid IN (" +
+        repeatCondition("?", fileUuids.size(), ",") + ")");
+      pstmt.setString(1, Type.SOURCE);
+      for (int i = 0; i < fileUuids.size(); i++) {
+        pstmt.setString(i + 2, fileUuids.get(i));
+      }
+      rs = pstmt.executeQuery();
+      while (rs.next()) {
+        String string = rs.getString(2);
+        result.put(rs.getString(1), string == null ? Collections.emptyList() : END_OF_LINE_SPLITTER.splitToList(string));
+      }
+    } catch (SQLException e) {
+      throw new IllegalStateException("Fail to read FILE_SOURCES.LINE_HASHES of " + fileUuids.size() + " files", e);
+    } finally {
+      DbUtils.closeQuietly(rs);
+      DbUtils.closeQuietly(pstmt);
+    }
+  }
+
   public <T> void readLineHashesStream(DbSession dbSession, String fileUuid, Function<Reader, T> function) {
     Connection connection = dbSession.getConnection();
     PreparedStatement pstmt = null;
@@ -545,6 +545,18 @@ public class ComponentDaoTest {
       .containsOnly(provisionedProject.uuid(), projectUuid);
   }
 
+  @Test
+  public void select_all_project_uuids() {
+    OrganizationDto organization = db.organizations().insert();
+    ComponentDto project = db.components().insertProject(organization);
+    ComponentDto disabledProject = db.components().insertComponent(ComponentTesting.newProjectDto(organization).setEnabled(false));
+    ComponentDto module = db.components().insertComponent(ComponentTesting.newModuleDto(project));
+    db.components().insertComponent(ComponentTesting.newFileDto(module));
+    db.components().insertView(organization);
+
+    assertThat(underTest.selectAllProjectUuids(dbSession)).containsOnly(project.uuid(), disabledProject.uuid());
+  }
+
   @Test
   public void select_provisioned() {
     OrganizationDto organization = db.organizations().insert();
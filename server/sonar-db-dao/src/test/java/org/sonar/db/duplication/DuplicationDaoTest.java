@@ -25,6 +25,7 @@ import org.sonar.api.utils.System2;
 import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static java.util.Collections.singletonList;
@@ -61,6 +62,26 @@ public class DuplicationDaoTest {
     assertThat(blocks).hasSize(2);
   }
 
+  @Test
+  public void select_hashes_of_last_analyses() {
+    db.prepareDbUnit(getClass(), "select_candidates.xml");
+    dbSession.commit();
+
+    List<String> hashes = new ArrayList<>();
+    dao.selectHashes(dbSession, "java", null, context -> {
+      DuplicationUnitDto dto = (DuplicationUnitDto) context.getResultObject();
+      hashes.add(dto.getAnalysisUuid() + ":" + dto.getHash());
+    });
+    assertThat(hashes).containsOnly("u3:aa", "u7:aa");
+
+    hashes.clear();
+    dao.selectHashes(dbSession, "java", singletonList("u3"), context -> {
+      DuplicationUnitDto dto = (DuplicationUnitDto) context.getResultObject();
+      hashes.add(dto.getAnalysisUuid() + ":" + dto.getHash());
+    });
+    assertThat(hashes).containsOnly("u3:aa");
+  }
+
   @Test
   public void insert() {
     db.prepareDbUnit(getClass(), "insert.xml");
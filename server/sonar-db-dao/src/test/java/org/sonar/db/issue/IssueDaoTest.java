@@ -26,6 +26,7 @@ import org.junit.rules.ExpectedException;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbTester;
+import org.sonar.db.KeyLongValue;
 import org.sonar.db.RowNotFoundException;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.ComponentTesting;
@@ -35,6 +36,8 @@ import org.sonar.db.rule.RuleTesting;
 
 import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.assertj.core.api.Assertions.tuple;
 
 public class IssueDaoTest {
 
@@ -122,6 +125,30 @@ public class IssueDaoTest {
     assertThat(issues).extracting("key").containsExactly("I2", "I1");
   }
 
+  @Test
+  public void countByProjectUuid() {
+    // contains I1 and I2
+    prepareTables();
+
+    assertThat(underTest.countByProjectUuid(dbTester.getSession())).containsOnly(entry(PROJECT_UUID, 2L));
+  }
+
+  @Test
+  public void countByComponentUuidForProjectUuid() {
+    // contains I1 and I2
+    prepareTables();
+    underTest.insert(dbTester.getSession(), newIssueDto("I3")
+      .setRuleId(RULE.getId())
+      .setComponentUuid(PROJECT_UUID)
+      .setProjectUuid(PROJECT_UUID));
+    dbTester.getSession().commit();
+
+    assertThat(underTest.countByComponentUuidForProjectUuid(dbTester.getSession(), PROJECT_UUID))
+      .extracting(KeyLongValue::getKey, KeyLongValue::getValue)
+      .containsExactly(tuple(FILE_UUID, 2L), tuple(PROJECT_UUID, 1L));
+    assertThat(underTest.countByComponentUuidForProjectUuid(dbTester.getSession(), "unknown")).isEmpty();
+  }
+
   private static IssueDto newIssueDto(String key) {
     IssueDto dto = new IssueDto();
     dto.setComponent(new ComponentDto().setKey("struts:Action").setId(123L).setUuid("component-uuid"));
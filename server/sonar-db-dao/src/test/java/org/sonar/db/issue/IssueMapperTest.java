@@ -19,6 +19,9 @@
  */
 package org.sonar.db.issue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -213,6 +216,21 @@ public class IssueMapperTest {
     assertThat(result.getUpdatedAt()).isEqualTo(1_500_000_000_000L);
   }
 
+  @Test
+  public void selectNonClosedByComponentUuids() {
+    underTest.insert(newIssue().setKee("OPEN_ON_FILE").setStatus("OPEN").setResolution(null));
+    underTest.insert(newIssue().setKee("CLOSED_ON_FILE").setStatus("CLOSED"));
+    underTest.insert(newIssue().setKee("OPEN_ON_FILE2").setComponentUuid(file2.uuid()).setStatus("OPEN").setResolution(null));
+    underTest.insert(newIssue().setKee("OPEN_ON_PROJECT").setComponentUuid(project.uuid()).setStatus("OPEN").setResolution(null));
+    dbSession.commit();
+
+    List<String> keys = new ArrayList<>();
+    underTest.selectNonClosedByComponentUuids(Arrays.asList(file.uuid(), file2.uuid()),
+      resultContext -> keys.add(((IssueDto) resultContext.getResultObject()).getKey()));
+
+    assertThat(keys).containsOnly("OPEN_ON_FILE", "OPEN_ON_FILE2");
+  }
+
   private IssueDto newIssue() {
     return new IssueDto()
       .setKee("ABCDE")
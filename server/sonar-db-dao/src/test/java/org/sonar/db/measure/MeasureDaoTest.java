@@ -19,6 +19,7 @@
  */
 package org.sonar.db.measure;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -421,6 +422,46 @@ public class MeasureDaoTest {
       .containsOnly("P1_M1", "P1_M2", "P2_M1", "P2_M2");
   }
 
+  @Test
+  public void selectLastMeasuresOfProject() {
+    ComponentDto project1 = db.components().insertProject(db.getDefaultOrganization(), "P1");
+    ComponentDto module = db.components().insertComponent(newModuleDto(project1));
+    db.components().insertComponent(newFileDto(module).setUuid("C1"));
+    db.components().insertComponent(newFileDto(module).setUuid("C2"));
+    insertAnalysis(LAST_ANALYSIS_UUID, project1.uuid(), true);
+    insertAnalysis(OTHER_ANALYSIS_UUID, project1.uuid(), false);
+    String project2LastAnalysisUuid = "P2_LAST_ANALYSIS";
+    ComponentDto project2 = db.components().insertProject(db.getDefaultOrganization(), "P2");
+    insertAnalysis(project2LastAnalysisUuid, project2.uuid(), true);
+
+    insertMeasure("P1_M1", LAST_ANALYSIS_UUID, project1.uuid(), NCLOC_METRIC_ID);
+    insertMeasure("P1_M2", LAST_ANALYSIS_UUID, project1.uuid(), COVERAGE_METRIC_ID);
+    insertMeasure("P1_M3", OTHER_ANALYSIS_UUID, project1.uuid(), NCLOC_METRIC_ID);
+    insertMeasure("M1", OTHER_ANALYSIS_UUID, "C1", NCLOC_METRIC_ID);
+    insertMeasure("M2", LAST_ANALYSIS_UUID, "C1", NCLOC_METRIC_ID);
+    insertMeasure("M3", LAST_ANALYSIS_UUID, "C1", COVERAGE_METRIC_ID);
+    insertMeasureOnPerson("M4", LAST_ANALYSIS_UUID, "C1", NCLOC_METRIC_ID, A_PERSON_ID);
+    insertMeasure("M5", LAST_ANALYSIS_UUID, "C2", NCLOC_METRIC_ID);
+    insertMeasure("M6", LAST_ANALYSIS_UUID, "C2", COMPLEXITY_METRIC_ID);
+    insertMeasure("P2_M1", project2LastAnalysisUuid, project2.uuid(), NCLOC_METRIC_ID);
+    db.commit();
+
+    assertThat(selectLastMeasuresOfProject(project1.uuid(), singletonList(NCLOC_METRIC_ID))).extracting(MeasureDto::getData)
+      .containsOnly("P1_M1", "M2", "M5");
+    assertThat(selectLastMeasuresOfProject(project1.uuid(), asList(NCLOC_METRIC_ID, COVERAGE_METRIC_ID))).extracting(MeasureDto::getData)
+      .containsOnly("P1_M1", "P1_M2", "M2", "M3", "M5");
+    assertThat(selectLastMeasuresOfProject(project2.uuid(), asList(NCLOC_METRIC_ID, COMPLEXITY_METRIC_ID))).extracting(MeasureDto::getData)
+      .containsOnly("P2_M1");
+    assertThat(selectLastMeasuresOfProject(project1.uuid(), emptyList())).isEmpty();
+    assertThat(selectLastMeasuresOfProject("unknown", singletonList(NCLOC_METRIC_ID))).isEmpty();
+  }
+
+  private List<MeasureDto> selectLastMeasuresOfProject(String projectUuid, List<Integer> metricIds) {
+    List<MeasureDto> measures = new ArrayList<>();
+    underTest.selectLastMeasuresOfProject(db.getSession(), projectUuid, metricIds, context -> measures.add((MeasureDto) context.getResultObject()));
+    return measures;
+  }
+
   private Optional<MeasureDto> selectSingle(MeasureQuery.Builder query) {
     return underTest.selectSingle(db.getSession(), query.build());
   }
@@ -180,6 +180,46 @@ public class InternalPropertiesDaoTest {
       .hasCreatedAt(DATE_2);
   }
 
+  @Test
+  public void update_returns_false_and_saves_nothing_if_property_does_not_exist() {
+    when(system2.now()).thenReturn(DATE_1);
+
+    assertThat(underTest.update(dbSession, A_KEY, VALUE_SMALL)).isFalse();
+
+    assertThat(underTest.selectByKey(dbSession, A_KEY)).isEmpty();
+  }
+
+  @Test
+  public void update_persists_new_value_in_varchar_when_old_one_was_in_clob() {
+    when(system2.now()).thenReturn(DATE_1, DATE_2);
+    underTest.save(dbSession, A_KEY, VALUE_SIZE_4001);
+
+    assertThat(underTest.update(dbSession, A_KEY, VALUE_SMALL)).isTrue();
+
+    assertThatInternalProperty(A_KEY)
+      .hasTextValue(VALUE_SMALL)
+      .hasCreatedAt(DATE_2);
+  }
+
+  @Test
+  public void update_persists_new_value_in_clob_when_old_one_was_empty() {
+    when(system2.now()).thenReturn(DATE_1, DATE_2);
+    underTest.saveAsEmpty(dbSession, A_KEY);
+
+    assertThat(underTest.update(dbSession, A_KEY, VALUE_SIZE_4001)).isTrue();
+
+    assertThatInternalProperty(A_KEY)
+      .hasClobValue(VALUE_SIZE_4001)
+      .hasCreatedAt(DATE_2);
+  }
+
+  @Test
+  public void update_throws_IAE_if_value_is_empty() {
+    expectValueNullOrEmptyIAE();
+
+    underTest.update(dbSession, A_KEY, EMPTY_STRING);
+  }
+
   @Test
   public void saveAsEmpty_throws_IAE_if_key_is_null() {
     expectKeyNullOrEmptyIAE();
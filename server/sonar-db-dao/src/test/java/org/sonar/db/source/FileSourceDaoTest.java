@@ -21,6 +21,9 @@ package org.sonar.db.source;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
 import javax.annotation.Nullable;
 import org.apache.commons.io.IOUtils;
@@ -31,6 +34,7 @@ import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
 import org.sonar.db.source.FileSourceDto.Type;
 
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
 
@@ -129,6 +133,65 @@ public class FileSourceDaoTest {
     assertThat(underTest.selectLineHashes(dbTester.getSession(), "FILE2_UUID")).isEmpty();
   }
 
+  @Test
+  public void selectLineHashesByFileUuids() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+
+    underTest.insert(session, new FileSourceDto()
+      .setProjectUuid("PRJ_UUID")
+      .setFileUuid("FILE2_UUID")
+      .setBinaryData("FILE2_BINARY_DATA".getBytes())
+      .setDataHash("FILE2_DATA_HASH")
+      .setLineHashes("LINE1_HASH\nLINE2_HASH")
+      .setSrcHash("FILE2_HASH")
+      .setDataType(Type.SOURCE)
+      .setCreatedAt(1500000000000L)
+      .setUpdatedAt(1500000000001L)
+      .setRevision("123456789"));
+    underTest.insert(session, new FileSourceDto()
+      .setProjectUuid("PRJ_UUID")
+      .setFileUuid("FILE3_UUID")
+      .setBinaryData("FILE3_BINARY_DATA".getBytes())
+      .setDataHash("FILE3_DATA_HASH")
+      .setSrcHash("FILE3_HASH")
+      .setDataType(Type.SOURCE)
+      .setCreatedAt(1500000000000L)
+      .setUpdatedAt(1500000000001L)
+      .setRevision("123456789"));
+    session.commit();
+
+    Map<String, List<String>> lineHashes = underTest.selectLineHashesByFileUuids(dbTester.getSession(), asList("FILE2_UUID", "FILE3_UUID", "unknown"));
+
+    assertThat(lineHashes).containsOnlyKeys("FILE2_UUID", "FILE3_UUID");
+    assertThat(lineHashes.get("FILE2_UUID")).containsExactly("LINE1_HASH", "LINE2_HASH");
+    assertThat(lineHashes.get("FILE3_UUID")).isEmpty();
+  }
+
+  @Test
+  public void selectLineHashesByFileUuids_reads_files_by_partitions() {
+    List<String> fileUuids = new ArrayList<>();
+    for (int i = 0; i < 1_500; i++) {
+      String fileUuid = "FILE_" + i;
+      fileUuids.add(fileUuid);
+      underTest.insert(session, new FileSourceDto()
+        .setProjectUuid("PRJ_UUID")
+        .setFileUuid(fileUuid)
+        .setBinaryData(new byte[0])
+        .setDataHash("DATA_HASH")
+        .setLineHashes("HASH_" + i)
+        .setSrcHash("HASH")
+        .setDataType(Type.SOURCE)
+        .setCreatedAt(1500000000000L)
+        .setUpdatedAt(1500000000001L));
+    }
+    session.commit();
+
+    Map<String, List<String>> lineHashes = underTest.selectLineHashesByFileUuids(dbTester.getSession(), fileUuids);
+
+    assertThat(lineHashes).hasSize(1_500);
+    assertThat(lineHashes.get("FILE_1234")).containsExactly("HASH_1234");
+  }
+
   @Test
   public void readLineHashesStream_does_not_fail_when_lineshashes_is_null() {
     dbTester.prepareDbUnit(getClass(), "shared.xml");
@@ -0,0 +1,120 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.authentication;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.sonar.api.server.ServerSide;
+import org.sonar.db.user.UserDto;
+import org.sonar.server.usertoken.TokenGenerator;
+
+/**
+ * Users authenticated recently by a user token or by a JWT session, so that the following requests
+ * of the same token or session do not load the user from database.
+ * <p/>
+ * Entries expire quickly, after {@link #TTL_SECONDS} seconds, as they are not shared with the other
+ * nodes of a cluster. They must be revoked by the components which delete tokens or deactivate users.
+ * <p/>
+ * A cache hit returns the instance loaded by a previous request of the same token or session, so the
+ * authenticators read the returned {@link UserDto} but never update it.
+ */
+@ServerSide
+public class AuthenticationCache {
+
+  static final long TTL_SECONDS = 30L;
+  static final int MAX_SIZE = 10_000;
+
+  private final TokenGenerator tokenGenerator;
+  private final Cache<String, UserDto> usersByTokenHash = newCache();
+  private final Cache<String, UserDto> usersBySessionId = newCache();
+  // incremented by each revocation: a user loaded meanwhile is still returned, but not cached, otherwise a revoked
+  // token or session would be accepted again until the entry expires
+  private final AtomicLong generation = new AtomicLong();
+
+  public AuthenticationCache(TokenGenerator tokenGenerator) {
+    this.tokenGenerator = tokenGenerator;
+  }
+
+  private static Cache<String, UserDto> newCache() {
+    return CacheBuilder.newBuilder()
+      .maximumSize(MAX_SIZE)
+      .expireAfterWrite(TTL_SECONDS, TimeUnit.SECONDS)
+      .recordStats()
+      .build();
+  }
+
+  /**
+   * Returns the user of a token. Token is hashed, so that it is not kept in memory. Failures
+   * raised by {@code loader} are not cached.
+   */
+  public UserDto getUserByToken(String token, Function<String, UserDto> loader) {
+    String tokenHash = tokenGenerator.hash(token);
+    UserDto user = usersByTokenHash.getIfPresent(tokenHash);
+    if (user == null) {
+      long generationBeforeLoad = generation.get();
+      user = loader.apply(token);
+      if (generationBeforeLoad == generation.get()) {
+        usersByTokenHash.put(tokenHash, user);
+      }
+    }
+    return user;
+  }
+
+  /**
+   * Returns the user of a JWT session, identified by the id of the token. Users which
+   * are not found are not cached.
+   */
+  public Optional<UserDto> getUserBySession(String sessionId, Supplier<Optional<UserDto>> loader) {
+    UserDto user = usersBySessionId.getIfPresent(sessionId);
+    if (user != null) {
+      return Optional.of(user);
+    }
+    long generationBeforeLoad = generation.get();
+    Optional<UserDto> loaded = loader.get();
+    if (loaded.isPresent() && generationBeforeLoad == generation.get()) {
+      usersBySessionId.put(sessionId, loaded.get());
+    }
+    return loaded;
+  }
+
+  /**
+   * Revokes all the tokens and sessions of a user. To be called when tokens are deleted, or when
+   * the user is deactivated or updated.
+   */
+  public void invalidateUser(String login) {
+    generation.incrementAndGet();
+    usersByTokenHash.asMap().values().removeIf(user -> login.equals(user.getLogin()));
+    usersBySessionId.asMap().values().removeIf(user -> login.equals(user.getLogin()));
+  }
+
+  public CacheStats getTokenStats() {
+    return usersByTokenHash.stats();
+  }
+
+  public CacheStats getSessionStats() {
+    return usersBySessionId.stats();
+  }
+}
@@ -48,6 +48,7 @@ public class AuthenticationModule extends Module {
       CredentialsAuthenticator.class,
       RealmAuthenticator.class,
       BasicAuthenticator.class,
+      AuthenticationCache.class,
       ValidateAction.class,
       SsoAuthenticator.class);
   }
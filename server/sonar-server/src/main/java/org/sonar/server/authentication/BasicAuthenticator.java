@@ -46,13 +46,15 @@ public class BasicAuthenticator {
   private final CredentialsAuthenticator credentialsAuthenticator;
   private final UserTokenAuthenticator userTokenAuthenticator;
   private final AuthenticationEvent authenticationEvent;
+  private final AuthenticationCache authenticationCache;
 
   public BasicAuthenticator(DbClient dbClient, CredentialsAuthenticator credentialsAuthenticator,
-    UserTokenAuthenticator userTokenAuthenticator, AuthenticationEvent authenticationEvent) {
+    UserTokenAuthenticator userTokenAuthenticator, AuthenticationEvent authenticationEvent, AuthenticationCache authenticationCache) {
     this.dbClient = dbClient;
     this.credentialsAuthenticator = credentialsAuthenticator;
     this.userTokenAuthenticator = userTokenAuthenticator;
     this.authenticationEvent = authenticationEvent;
+    this.authenticationCache = authenticationCache;
   }
 
   public Optional<UserDto> authenticate(HttpServletRequest request) {
@@ -106,6 +108,10 @@ public class BasicAuthenticator {
   }
 
   private UserDto authenticateFromUserToken(String token) {
+    return authenticationCache.getUserByToken(token, this::loadUserFromToken);
+  }
+
+  private UserDto loadUserFromToken(String token) {
     Optional<String> authenticatedLogin = userTokenAuthenticator.authenticate(token);
     if (!authenticatedLogin.isPresent()) {
       throw AuthenticationException.newBuilder()
@@ -69,13 +69,16 @@ public class JwtHttpHandler {
   // This timeout is used to disconnect the user we he has not browse any page for a while
   private final int sessionTimeoutInSeconds;
   private final JwtCsrfVerifier jwtCsrfVerifier;
+  private final AuthenticationCache authenticationCache;
 
-  public JwtHttpHandler(System2 system2, DbClient dbClient, Settings settings, JwtSerializer jwtSerializer, JwtCsrfVerifier jwtCsrfVerifier) {
+  public JwtHttpHandler(System2 system2, DbClient dbClient, Settings settings, JwtSerializer jwtSerializer, JwtCsrfVerifier jwtCsrfVerifier,
+    AuthenticationCache authenticationCache) {
     this.jwtSerializer = jwtSerializer;
     this.dbClient = dbClient;
     this.system2 = system2;
     this.sessionTimeoutInSeconds = getSessionTimeoutInSeconds(settings);
     this.jwtCsrfVerifier = jwtCsrfVerifier;
+    this.authenticationCache = authenticationCache;
   }
 
   public void generateToken(UserDto user, Map<String, Object> properties, HttpServletRequest request, HttpServletResponse response) {
@@ -142,7 +145,7 @@ public class JwtHttpHandler {
       refreshToken(token, request, response);
     }
 
-    Optional<UserDto> user = selectUserFromDb(token.getSubject());
+    Optional<UserDto> user = authenticationCache.getUserBySession(token.getId(), () -> selectUserFromDb(token.getSubject()));
     if (!user.isPresent()) {
       return Optional.empty();
     }
@@ -37,6 +37,7 @@ import org.sonar.db.user.UserDto;
 import org.sonar.db.user.UserGroupDto;
 import org.sonar.server.authentication.event.AuthenticationEvent;
 import org.sonar.server.authentication.event.AuthenticationException;
+import org.sonar.server.cache.PermissionCache;
 import org.sonar.server.organization.DefaultOrganization;
 import org.sonar.server.organization.DefaultOrganizationProvider;
 import org.sonar.server.user.ExternalIdentity;
@@ -55,11 +56,14 @@ public class UserIdentityAuthenticator {
   private final DbClient dbClient;
   private final UserUpdater userUpdater;
   private final DefaultOrganizationProvider defaultOrganizationProvider;
+  private final PermissionCache permissionCache;
 
-  public UserIdentityAuthenticator(DbClient dbClient, UserUpdater userUpdater, DefaultOrganizationProvider defaultOrganizationProvider) {
+  public UserIdentityAuthenticator(DbClient dbClient, UserUpdater userUpdater, DefaultOrganizationProvider defaultOrganizationProvider,
+    PermissionCache permissionCache) {
     this.dbClient = dbClient;
     this.userUpdater = userUpdater;
     this.defaultOrganizationProvider = defaultOrganizationProvider;
+    this.permissionCache = permissionCache;
   }
 
   public UserDto authenticate(UserIdentity user, IdentityProvider provider, AuthenticationEvent.Source source) {
@@ -141,6 +145,9 @@ public class UserIdentityAuthenticator {
       removeGroups(dbSession, userDto, groupsToRemove, groupsByName);
 
       dbSession.commit();
+      if (!groupsToAdd.isEmpty() || !groupsToRemove.isEmpty()) {
+        permissionCache.invalidateUser(userDto.getId());
+      }
     }
   }
 
@@ -0,0 +1,220 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.batch;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.sonar.api.rule.RuleStatus;
+import org.sonar.api.server.ws.Request;
+import org.sonar.api.server.ws.Response;
+import org.sonar.api.server.ws.WebService;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.qualityprofile.ActiveRuleDto;
+import org.sonar.db.qualityprofile.ActiveRuleParamDto;
+import org.sonar.db.qualityprofile.QualityProfileDto;
+import org.sonar.db.rule.RuleDefinitionDto;
+import org.sonar.db.rule.RuleParamDto;
+import org.sonar.server.cache.ReferenceDataCache;
+import org.sonarqube.ws.MediaTypes;
+import org.sonarqube.ws.WsBatch.WsActiveRulesResponse;
+
+import static com.google.common.base.Strings.nullToEmpty;
+import static java.net.HttpURLConnection.HTTP_NOT_MODIFIED;
+import static java.util.Comparator.comparing;
+import static org.sonar.core.util.Protobuf.setNullable;
+import static org.sonar.core.util.stream.Collectors.toList;
+import static org.sonar.core.util.stream.Collectors.uniqueIndex;
+import static org.sonar.server.ws.WsUtils.checkFound;
+
+/**
+ * Returns in a single protobuf message all the active rules of a quality profile, as needed by scanners.
+ * The response is identified by an ETag, so that scanners which already have the bundle in cache get
+ * a 304 response without body when the profile did not change.
+ * <p/>
+ * Bundles are kept in memory, by profile, as long as the date of the last change of the rules of the profile and the
+ * version of the rules in {@link ReferenceDataCache} are unchanged, so that requests do not load the profile from
+ * database. As this date is precise to the second only, bundles also expire after {@link #BUNDLE_TTL_MS} milliseconds.
+ */
+public class ActiveRulesAction implements BatchWsAction {
+
+  /**
+   * Version of the format of the bundle. It is part of the ETag, so it must be incremented on
+   * changes of the content of the bundle in order to invalidate the bundles cached by scanners.
+   */
+  static final int FORMAT_VERSION = 1;
+
+  static final String PARAM_QPROFILE = "qprofile";
+  static final long BUNDLE_TTL_MS = 60_000L;
+  static final long MAX_CACHED_BYTES = 64L * 1024 * 1024;
+
+  private final DbClient dbClient;
+  private final ReferenceDataCache referenceDataCache;
+  private final Cache<String, Bundle> bundlesByProfileKey = CacheBuilder.newBuilder()
+    .maximumWeight(MAX_CACHED_BYTES)
+    .weigher((String profileKey, Bundle bundle) -> bundle.content.length)
+    .expireAfterWrite(BUNDLE_TTL_MS, TimeUnit.MILLISECONDS)
+    .build();
+
+  public ActiveRulesAction(DbClient dbClient, ReferenceDataCache referenceDataCache) {
+    this.dbClient = dbClient;
+    this.referenceDataCache = referenceDataCache;
+  }
+
+  @Override
+  public void define(WebService.NewController controller) {
+    WebService.NewAction action = controller.createAction("active_rules")
+      .setDescription("Return all the active rules of a quality profile. " +
+        "The response has an ETag header. When the header If-None-Match of the request matches it, " +
+        "the response has the status 304 and no content.")
+      .setSince("6.4")
+      .setResponseExample(getClass().getResource("active_rules-example.proto"))
+      .setInternal(true)
+      .setHandler(this);
+
+    action
+      .createParam(PARAM_QPROFILE)
+      .setRequired(true)
+      .setDescription("Quality profile key")
+      .setExampleValue("sonar-way-java-12345");
+  }
+
+  @Override
+  public void handle(Request request, Response response) throws Exception {
+    String profileKey = request.mandatoryParam(PARAM_QPROFILE);
+    Bundle bundle;
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      QualityProfileDto profile = checkFound(dbClient.qualityProfileDao().selectByKey(dbSession, profileKey),
+        "Quality profile not found: %s", profileKey);
+      // read before the bundle is built, so that changes done meanwhile are not hidden
+      String validityKey = profile.getRulesUpdatedAt() + "/" + referenceDataCache.getRulesVersion();
+      bundle = bundlesByProfileKey.getIfPresent(profileKey);
+      if (bundle == null || !bundle.validityKey.equals(validityKey)) {
+        bundle = new Bundle(validityKey, buildResponse(dbSession, profile).toByteArray());
+        bundlesByProfileKey.put(profileKey, bundle);
+      }
+    }
+
+    String etag = bundle.etag;
+    response.setHeader("ETag", etag);
+    // scanners are allowed to store the response, but must check that it is still valid
+    response.setHeader("Cache-Control", "private, no-cache");
+    if (matches(request.header("If-None-Match").orElse(null), etag)) {
+      response.stream().setStatus(HTTP_NOT_MODIFIED);
+      return;
+    }
+
+    response.stream().setMediaType(MediaTypes.PROTOBUF);
+    try (OutputStream output = response.stream().output()) {
+      output.write(bundle.content);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to write active rules of quality profile " + profileKey, e);
+    }
+  }
+
+  private static boolean matches(String ifNoneMatch, String etag) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    for (String candidate : ifNoneMatch.split(",")) {
+      String trimmed = candidate.trim();
+      if ("*".equals(trimmed) || etag.equals(trimmed) || ("W/" + etag).equals(trimmed)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private WsActiveRulesResponse buildResponse(DbSession dbSession, QualityProfileDto profile) {
+    // rules are sorted so that the bundle, and consequently its ETag, does not depend on the order of db rows
+    List<ActiveRuleDto> activeRules = dbClient.activeRuleDao().selectByProfileKey(dbSession, profile.getKey()).stream()
+      .sorted(comparing(ActiveRuleDto::getRuleId))
+      .collect(toList());
+    List<Integer> ruleIds = activeRules.stream().map(ActiveRuleDto::getRuleId).collect(toList());
+    Map<Integer, RuleDefinitionDto> rulesById = dbClient.ruleDao().selectDefinitionByIds(dbSession, ruleIds).stream()
+      .collect(uniqueIndex(RuleDefinitionDto::getId));
+    List<Integer> templateIds = rulesById.values().stream()
+      .filter(rule -> rule.getTemplateId() != null)
+      .map(RuleDefinitionDto::getTemplateId)
+      .distinct()
+      .collect(toList());
+    Map<Integer, RuleDefinitionDto> templatesById = dbClient.ruleDao().selectDefinitionByIds(dbSession, templateIds).stream()
+      .collect(uniqueIndex(RuleDefinitionDto::getId));
+
+    Map<Integer, Map<String, String>> paramsByRuleId = new TreeMap<>();
+    for (RuleParamDto param : dbClient.ruleDao().selectRuleParamsByRuleIds(dbSession, ruleIds)) {
+      // as in api/rules/search, parameters without default value are empty
+      paramsByRuleId.computeIfAbsent(param.getRuleId(), id -> new TreeMap<>()).put(param.getName(), nullToEmpty(param.getDefaultValue()));
+    }
+    List<Integer> activeRuleIds = activeRules.stream().map(ActiveRuleDto::getId).collect(toList());
+    Map<Integer, Map<String, String>> paramsByActiveRuleId = new TreeMap<>();
+    for (ActiveRuleParamDto param : dbClient.activeRuleDao().selectParamsByActiveRuleIds(dbSession, activeRuleIds)) {
+      paramsByActiveRuleId.computeIfAbsent(param.getActiveRuleId(), id -> new TreeMap<>()).put(param.getKey(), nullToEmpty(param.getValue()));
+    }
+
+    WsActiveRulesResponse.Builder response = WsActiveRulesResponse.newBuilder()
+      .setVersion(FORMAT_VERSION)
+      .setQProfile(profile.getKey());
+    WsActiveRulesResponse.ActiveRule.Builder activeRuleBuilder = WsActiveRulesResponse.ActiveRule.newBuilder();
+    for (ActiveRuleDto activeRule : activeRules) {
+      RuleDefinitionDto rule = rulesById.get(activeRule.getRuleId());
+      if (rule == null || rule.getStatus() == RuleStatus.REMOVED) {
+        continue;
+      }
+      activeRuleBuilder.clear()
+        .setRepository(rule.getRepositoryKey())
+        .setKey(rule.getRuleKey())
+        .setSeverity(activeRule.getSeverityString())
+        .setCreatedAt(activeRule.getCreatedAt());
+      setNullable(rule.getName(), activeRuleBuilder::setName);
+      setNullable(rule.getLanguage(), activeRuleBuilder::setLanguage);
+      setNullable(rule.getConfigKey(), activeRuleBuilder::setInternalKey);
+      RuleDefinitionDto template = rule.getTemplateId() == null ? null : templatesById.get(rule.getTemplateId());
+      if (template != null) {
+        activeRuleBuilder.setTemplateKey(template.getRuleKey());
+      }
+      // parameters of the active rule override the default values of the rule
+      Map<String, String> params = new TreeMap<>(paramsByRuleId.getOrDefault(rule.getId(), new TreeMap<>()));
+      params.putAll(paramsByActiveRuleId.getOrDefault(activeRule.getId(), new TreeMap<>()));
+      activeRuleBuilder.putAllParams(params);
+      response.addActiveRules(activeRuleBuilder.build());
+    }
+    return response.build();
+  }
+
+  private static class Bundle {
+    private final String validityKey;
+    private final byte[] content;
+    private final String etag;
+
+    private Bundle(String validityKey, byte[] content) {
+      this.validityKey = validityKey;
+      this.content = content;
+      this.etag = '"' + DigestUtils.md5Hex(content) + '"';
+    }
+  }
+}
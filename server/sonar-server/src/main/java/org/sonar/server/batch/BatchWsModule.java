@@ -30,6 +30,7 @@ public class BatchWsModule extends Module {
       ProjectDataLoader.class,
       IssuesAction.class,
       UsersAction.class,
+      ActiveRulesAction.class,
       IndexAction.class,
       FileAction.class,
       BatchWs.class);
@@ -0,0 +1,146 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import org.sonar.api.ce.ComputeEngineSide;
+import org.sonar.api.server.ServerSide;
+import org.sonar.api.utils.System2;
+import org.sonar.core.util.UuidFactory;
+import org.sonar.db.permission.OrganizationPermission;
+import org.sonar.server.property.InternalProperties;
+
+/**
+ * Snapshots of the permissions of users, shared by the requests of a same user so that
+ * {@link org.sonar.server.user.ServerUserSession} does not load them from database on each request.
+ * <p/>
+ * Snapshots expire after {@link #TTL_MS} milliseconds. They must be invalidated by the components
+ * which change permissions, templates or group memberships. As the web server and the Compute Engine
+ * run in different processes, an invalidation is broadcast through an internal property which is checked
+ * at most every {@link #SYNC_INTERVAL_MS} milliseconds.
+ */
+@ServerSide
+@ComputeEngineSide
+public class PermissionCache {
+
+  static final long TTL_MS = 60_000L;
+  static final long SYNC_INTERVAL_MS = 5_000L;
+  static final int MAX_USERS = 10_000;
+  static final int MAX_COMPONENTS = 100_000;
+  static final String VERSION_PROPERTY = "permissionCache.version";
+  private static final int ANONYMOUS = -1;
+
+  private final SharedVersion version;
+  private final Cache<Integer, Snapshot> snapshotsByUserId = CacheBuilder.newBuilder()
+    .maximumSize(MAX_USERS)
+    .expireAfterWrite(TTL_MS, TimeUnit.MILLISECONDS)
+    .build();
+  private final Cache<String, String> projectUuidsByComponentUuid = CacheBuilder.newBuilder()
+    .maximumSize(MAX_COMPONENTS)
+    .expireAfterWrite(TTL_MS, TimeUnit.MILLISECONDS)
+    .build();
+
+  public PermissionCache(InternalProperties internalProperties, UuidFactory uuidFactory, System2 system2) {
+    this.version = new SharedVersion(internalProperties, uuidFactory, system2, VERSION_PROPERTY, SYNC_INTERVAL_MS);
+  }
+
+  /**
+   * Snapshot of the permissions of a user, or of anonymous if {@code userId} is {@code null}.
+   * Permissions are loaded lazily, by organization and by project.
+   */
+  public Snapshot getSnapshot(@Nullable Integer userId) {
+    version.sync(snapshotsByUserId::invalidateAll);
+    try {
+      return snapshotsByUserId.get(userId == null ? ANONYMOUS : userId, Snapshot::new);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Fail to get permissions of user " + userId, e);
+    }
+  }
+
+  public Optional<String> getProjectUuid(String componentUuid, Function<String, Optional<String>> loader) {
+    String projectUuid = projectUuidsByComponentUuid.getIfPresent(componentUuid);
+    if (projectUuid != null) {
+      return Optional.of(projectUuid);
+    }
+    Optional<String> loaded = loader.apply(componentUuid);
+    loaded.ifPresent(uuid -> projectUuidsByComponentUuid.put(componentUuid, uuid));
+    return loaded;
+  }
+
+  /**
+   * To be called after the commit of changes on the permissions or the groups of a single user
+   */
+  public void invalidateUser(int userId) {
+    snapshotsByUserId.invalidate(userId);
+    version.broadcast();
+  }
+
+  /**
+   * To be called after the commit of changes on the permissions of some projects only, for example when a
+   * permission template is applied, when the visibility of a project changes or when a project is deleted.
+   * Other processes can't know which projects changed, so they drop all their snapshots.
+   */
+  public void invalidateProjects(Collection<String> projectUuids) {
+    if (projectUuids.isEmpty()) {
+      return;
+    }
+    snapshotsByUserId.asMap().values().forEach(snapshot -> snapshot.invalidateProjects(projectUuids));
+    version.broadcast();
+  }
+
+  /**
+   * To be called after the commit of changes which may impact many users, for example permissions of groups
+   */
+  public void invalidateAll() {
+    snapshotsByUserId.invalidateAll();
+    version.broadcast();
+  }
+
+  /**
+   * Permissions of a user, by organization and by project. A snapshot which is invalidated
+   * is not updated anymore but can still be used by the requests which already got it.
+   */
+  public static class Snapshot {
+    private final Map<String, Set<OrganizationPermission>> permissionsByOrganizationUuid = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> permissionsByProjectUuid = new ConcurrentHashMap<>();
+
+    public Set<OrganizationPermission> getOrganizationPermissions(String organizationUuid, Function<String, Set<OrganizationPermission>> loader) {
+      return permissionsByOrganizationUuid.computeIfAbsent(organizationUuid, loader);
+    }
+
+    public Set<String> getProjectPermissions(String projectUuid, Function<String, Set<String>> loader) {
+      return permissionsByProjectUuid.computeIfAbsent(projectUuid, loader);
+    }
+
+    void invalidateProjects(Collection<String> projectUuids) {
+      permissionsByProjectUuid.keySet().removeAll(projectUuids);
+    }
+  }
+}
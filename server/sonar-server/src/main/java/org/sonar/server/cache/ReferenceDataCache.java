@@ -0,0 +1,209 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.System2;
+import org.sonar.core.util.UuidFactory;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.metric.MetricDto;
+import org.sonar.db.rule.RuleDefinitionDto;
+import org.sonar.db.user.UserDto;
+import org.sonar.server.platform.cluster.Cluster;
+import org.sonar.server.property.InternalProperties;
+
+/**
+ * Read-through cache of the reference data which are loaded by most of web services: rules, metrics
+ * and users. Each kind of data is kept in a size-bounded cache, which is invalidated by the components
+ * which update these data. Cached data also expire after {@link #TTL_MS} milliseconds, in case of a
+ * change which is not followed by an invalidation.
+ * <p/>
+ * When cluster is enabled, an invalidation is broadcast to other web nodes through an internal
+ * property, which is checked at most every {@link #CLUSTER_SYNC_INTERVAL_MS} milliseconds. Data loaded
+ * by other nodes can then be outdated during this interval.
+ * <p/>
+ * Cached objects are shared by all requests and must not be modified.
+ */
+public class ReferenceDataCache {
+
+  static final int MAX_RULES = 10_000;
+  static final int MAX_METRICS = 1_000;
+  static final int MAX_USERS = 10_000;
+  static final long CLUSTER_SYNC_INTERVAL_MS = 10_000L;
+  static final long TTL_MS = 5 * 60_000L;
+
+  private final DbClient dbClient;
+  private final Cluster cluster;
+  private final Region<RuleKey, RuleDefinitionDto> rules;
+  private final Region<String, MetricDto> metrics;
+  private final Region<String, UserDto> users;
+
+  public ReferenceDataCache(DbClient dbClient, Cluster cluster, InternalProperties internalProperties, UuidFactory uuidFactory, System2 system2) {
+    this.dbClient = dbClient;
+    this.cluster = cluster;
+    this.rules = new Region<>(newSharedVersion("rules", internalProperties, uuidFactory, system2), MAX_RULES, RuleDefinitionDto::getKey);
+    this.metrics = new Region<>(newSharedVersion("metrics", internalProperties, uuidFactory, system2), MAX_METRICS, MetricDto::getKey);
+    this.users = new Region<>(newSharedVersion("users", internalProperties, uuidFactory, system2), MAX_USERS, UserDto::getLogin);
+  }
+
+  private static SharedVersion newSharedVersion(String regionName, InternalProperties internalProperties, UuidFactory uuidFactory, System2 system2) {
+    return new SharedVersion(internalProperties, uuidFactory, system2, "referenceDataCache." + regionName + ".version", CLUSTER_SYNC_INTERVAL_MS);
+  }
+
+  /**
+   * Same as {@link org.sonar.db.rule.RuleDao#selectDefinitionByKeys(DbSession, Collection)}, ordered as the given keys
+   */
+  public List<RuleDefinitionDto> selectRuleDefinitionsByKeys(DbSession dbSession, Collection<RuleKey> keys) {
+    return rules.get(dbSession, keys, (session, missingKeys) -> dbClient.ruleDao().selectDefinitionByKeys(session, missingKeys));
+  }
+
+  /**
+   * Same as {@link org.sonar.db.metric.MetricDao#selectByKeys(DbSession, List)}, ordered as the given keys
+   */
+  public List<MetricDto> selectMetricsByKeys(DbSession dbSession, Collection<String> keys) {
+    return metrics.get(dbSession, keys, (session, missingKeys) -> dbClient.metricDao().selectByKeys(session, missingKeys));
+  }
+
+  /**
+   * Same as {@link org.sonar.db.user.UserDao#selectByLogins(DbSession, Collection)}, ordered as the given logins
+   */
+  public List<UserDto> selectUsersByLogins(DbSession dbSession, Collection<String> logins) {
+    return users.get(dbSession, logins, (session, missingLogins) -> dbClient.userDao().selectByLogins(session, missingLogins));
+  }
+
+  /**
+   * Version of the rules, which changes each time they are invalidated, by this process or by other nodes of the cluster.
+   * It allows to cache data derived from rules.
+   */
+  public long getRulesVersion() {
+    return rules.version();
+  }
+
+  public void invalidateRules() {
+    rules.invalidateAll();
+  }
+
+  public void invalidateMetrics() {
+    metrics.invalidateAll();
+  }
+
+  public void invalidateUser(String login) {
+    users.invalidate(login);
+  }
+
+  private class Region<K, V> {
+    private final SharedVersion clusterVersion;
+    private final Function<V, K> keyFunction;
+    private final Cache<K, V> cache;
+    private final AtomicLong generation = new AtomicLong();
+
+    Region(SharedVersion clusterVersion, int maxSize, Function<V, K> keyFunction) {
+      this.clusterVersion = clusterVersion;
+      this.keyFunction = keyFunction;
+      this.cache = CacheBuilder.newBuilder()
+        .maximumSize(maxSize)
+        .expireAfterWrite(TTL_MS, TimeUnit.MILLISECONDS)
+        .build();
+    }
+
+    List<V> get(DbSession dbSession, Collection<K> keys, BiFunction<DbSession, List<K>, List<V>> loader) {
+      syncWithCluster();
+      Set<K> uniqueKeys = new LinkedHashSet<>(keys);
+      Map<K, V> values = cache.getAllPresent(uniqueKeys);
+      List<K> missingKeys = new ArrayList<>();
+      for (K key : uniqueKeys) {
+        if (!values.containsKey(key)) {
+          missingKeys.add(key);
+        }
+      }
+      if (!missingKeys.isEmpty()) {
+        // values may be outdated if the region is invalidated while loading, so they are not cached
+        long generationBeforeLoad = generation.get();
+        Map<K, V> loaded = new HashMap<>();
+        for (V value : loader.apply(dbSession, missingKeys)) {
+          loaded.put(keyFunction.apply(value), value);
+        }
+        if (generationBeforeLoad == generation.get()) {
+          cache.putAll(loaded);
+          if (generationBeforeLoad != generation.get()) {
+            // invalidated between the check and the put
+            cache.invalidateAll(loaded.keySet());
+          }
+        }
+        values = new HashMap<>(values);
+        values.putAll(loaded);
+      }
+      List<V> result = new ArrayList<>(uniqueKeys.size());
+      for (K key : uniqueKeys) {
+        V value = values.get(key);
+        if (value != null) {
+          result.add(value);
+        }
+      }
+      return result;
+    }
+
+    long version() {
+      syncWithCluster();
+      return generation.get();
+    }
+
+    void invalidate(K key) {
+      generation.incrementAndGet();
+      cache.invalidate(key);
+      broadcastInvalidation();
+    }
+
+    void invalidateAll() {
+      generation.incrementAndGet();
+      cache.invalidateAll();
+      broadcastInvalidation();
+    }
+
+    private void broadcastInvalidation() {
+      if (cluster.isEnabled()) {
+        clusterVersion.broadcast();
+      }
+    }
+
+    private void syncWithCluster() {
+      if (cluster.isEnabled()) {
+        clusterVersion.sync(() -> {
+          generation.incrementAndGet();
+          cache.invalidateAll();
+        });
+      }
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.cache;
+
+import java.util.Objects;
+import org.sonar.api.utils.System2;
+import org.sonar.core.util.UuidFactory;
+import org.sonar.server.property.InternalProperties;
+
+/**
+ * Version of cached data which is shared with other processes through an internal property, so that an
+ * invalidation done by a process is seen by the others after at most {@code syncIntervalMs} milliseconds.
+ */
+class SharedVersion {
+
+  private final InternalProperties internalProperties;
+  private final UuidFactory uuidFactory;
+  private final System2 system2;
+  private final String property;
+  private final long syncIntervalMs;
+  private final Object syncLock = new Object();
+  private volatile String version = null;
+  private volatile long lastSync = 0L;
+
+  SharedVersion(InternalProperties internalProperties, UuidFactory uuidFactory, System2 system2, String property, long syncIntervalMs) {
+    this.internalProperties = internalProperties;
+    this.uuidFactory = uuidFactory;
+    this.system2 = system2;
+    this.property = property;
+    this.syncIntervalMs = syncIntervalMs;
+  }
+
+  /**
+   * To be called after a local invalidation, so that other processes drop their cached data at their next sync
+   */
+  void broadcast() {
+    String newVersion = uuidFactory.create();
+    version = newVersion;
+    internalProperties.write(property, newVersion);
+    lastSync = system2.now();
+  }
+
+  /**
+   * Runs {@code onChange} if another process broadcast a new version since the last sync. The version is read
+   * at most every {@code syncIntervalMs} milliseconds: only the thread which claims the check reads it from
+   * database, outside of the lock. The others go on with the cached data.
+   */
+  void sync(Runnable onChange) {
+    long now = system2.now();
+    if (now - lastSync < syncIntervalMs) {
+      return;
+    }
+    synchronized (syncLock) {
+      if (now - lastSync < syncIntervalMs) {
+        return;
+      }
+      lastSync = now;
+    }
+    String currentVersion = internalProperties.read(property).orElse(null);
+    synchronized (syncLock) {
+      if (!Objects.equals(currentVersion, version)) {
+        onChange.run();
+        version = currentVersion;
+      }
+    }
+  }
+}
@@ -29,9 +29,11 @@ import org.sonar.api.server.ServerSide;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.component.ComponentDto;
+import org.sonar.server.cache.PermissionCache;
 import org.sonar.server.es.ProjectIndexer;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 
 @ServerSide
 @ComputeEngineSide
@@ -39,11 +41,13 @@ public class ComponentCleanerService {
 
   private final DbClient dbClient;
   private final ResourceTypes resourceTypes;
+  private final PermissionCache permissionCache;
   private final Collection<ProjectIndexer> projectIndexers;
 
-  public ComponentCleanerService(DbClient dbClient, ResourceTypes resourceTypes, ProjectIndexer... projectIndexers) {
+  public ComponentCleanerService(DbClient dbClient, ResourceTypes resourceTypes, PermissionCache permissionCache, ProjectIndexer... projectIndexers) {
     this.dbClient = dbClient;
     this.resourceTypes = resourceTypes;
+    this.permissionCache = permissionCache;
     this.projectIndexers = asList(projectIndexers);
   }
 
@@ -59,6 +63,7 @@ public class ComponentCleanerService {
     }
     dbClient.purgeDao().deleteProject(dbSession, project.uuid());
     dbSession.commit();
+    permissionCache.invalidateProjects(singletonList(project.uuid()));
 
     deleteFromIndices(project.uuid());
   }
@@ -23,6 +23,7 @@ import java.util.ArrayDeque;
 import java.util.Deque;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.function.Function;
 
 final class DequeBasedPath<T> implements PathAwareVisitor.Path<T>, Iterable<PathAwareVisitor.PathElement<T>> {
   private final Deque<PathAwareVisitor.PathElement<T>> deque = new ArrayDeque<>();
@@ -71,4 +72,16 @@ final class DequeBasedPath<T> implements PathAwareVisitor.Path<T>, Iterable<Path
   public PathAwareVisitor.PathElement<T> pop() {
     return deque.pop();
   }
+
+  /**
+   * Path on the same components as this path, each of them with a new element created by the specified function.
+   */
+  public DequeBasedPath<T> copyWithNewElements(Function<Component, T> elementFactory) {
+    DequeBasedPath<T> res = new DequeBasedPath<>();
+    for (PathAwareVisitor.PathElement<T> pathElement : deque) {
+      Component component = pathElement.getComponent();
+      res.deque.addLast(new PathElementImpl<>(component, elementFactory.apply(component)));
+    }
+    return res;
+  }
 }
@@ -19,16 +19,23 @@
  */
 package org.sonar.server.computation.task.projectanalysis.component;
 
+import java.util.Iterator;
+
 import static java.lang.String.format;
 
 public class PathAwareVisitorWrapper<T> implements VisitorWrapper {
 
   private final PathAwareVisitor<T> delegate;
 
-  private final DequeBasedPath<T> stack = new DequeBasedPath<>();
+  private final DequeBasedPath<T> stack;
 
   public PathAwareVisitorWrapper(PathAwareVisitor<T> delegate) {
+    this(delegate, new DequeBasedPath<>());
+  }
+
+  private PathAwareVisitorWrapper(PathAwareVisitor<T> delegate, DequeBasedPath<T> stack) {
     this.delegate = delegate;
+    this.stack = stack;
   }
 
   @Override
@@ -46,6 +53,28 @@ public class PathAwareVisitorWrapper<T> implements VisitorWrapper {
     stack.pop();
   }
 
+  /**
+   * Creates a wrapper to visit a child of the current component concurrently. Its path is on the same components as
+   * the path of this wrapper, but each of them gets a new element, so that no element is shared between threads.
+   *
+   * @see SubtreeIndependentPathAwareVisitor
+   */
+  PathAwareVisitorWrapper<T> forkSubtree() {
+    return new PathAwareVisitorWrapper<>(delegate, stack.copyWithNewElements(this::createForComponent));
+  }
+
+  /**
+   * Merges the elements updated by a wrapper created by {@link #forkSubtree()} into the elements of the same components
+   * in the path of this wrapper, from the current component up to the root.
+   */
+  void joinSubtree(PathAwareVisitorWrapper<T> subtree) {
+    SubtreeIndependentPathAwareVisitor<T> visitor = (SubtreeIndependentPathAwareVisitor<T>) delegate;
+    Iterator<PathAwareVisitor.PathElement<T>> subtreeElements = subtree.stack.iterator();
+    for (PathAwareVisitor.PathElement<T> pathElement : stack) {
+      visitor.mergeSubtree(pathElement.getElement(), subtreeElements.next().getElement());
+    }
+  }
+
   @Override
   public void visitProject(Component tree) {
     delegate.visitProject(tree, stack);
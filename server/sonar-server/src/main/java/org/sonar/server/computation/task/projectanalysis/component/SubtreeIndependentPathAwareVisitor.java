@@ -0,0 +1,44 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.component;
+
+import javax.annotation.Nullable;
+
+/**
+ * A {@link PathAwareVisitor} which can visit several subtrees of the Component tree concurrently.
+ * <p>
+ * When the children of a component are visited concurrently, each of them is visited with a path of its own, on the
+ * same components, in which every element is replaced by a new one created by the {@link StackElementFactory}. Once the
+ * child is visited, each new element is merged into the element of the same component with
+ * {@link #mergeSubtree(Object, Object)}. The visit of a component must therefore only add data to the elements of its
+ * ancestors, and never read them.
+ * </p>
+ */
+public interface SubtreeIndependentPathAwareVisitor<T> extends PathAwareVisitor<T>, SubtreeIndependentVisitor {
+
+  /**
+   * Merges the element of a component, or of one of its ancestors, which has been updated by the visit of one of its
+   * children.
+   *
+   * @param element the element of the component in its own path
+   * @param subtreeElement the element of the same component in the path used to visit the child
+   */
+  void mergeSubtree(@Nullable T element, @Nullable T subtreeElement);
+}
@@ -0,0 +1,35 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.component;
+
+/**
+ * A {@link ComponentVisitor} which can visit several subtrees of the Component tree concurrently, see
+ * {@link VisitorsCrawler}.
+ * <p>
+ * Such a visitor must be thread-safe. The visit of a component may only depend on data of the component itself, of its
+ * descendants and of its ancestors, and on data computed by the visitors which are executed before it.
+ * </p>
+ * <p>
+ * A {@link PathAwareVisitor} must implement {@link SubtreeIndependentPathAwareVisitor} to merge the elements of the
+ * subtrees visited concurrently.
+ * </p>
+ */
+public interface SubtreeIndependentVisitor extends ComponentVisitor {
+}
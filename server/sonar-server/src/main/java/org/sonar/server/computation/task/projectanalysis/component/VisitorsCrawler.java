@@ -23,38 +23,59 @@ import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import org.slf4j.MDC;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.core.util.logs.Profiler;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.collect.FluentIterable.from;
 import static com.google.common.collect.Iterables.concat;
 import static java.util.Objects.requireNonNull;
 
 /**
  * This crawler make any number of {@link TypeAwareVisitor} or {@link PathAwareVisitor} defined in a list visit a component tree, component per component, in the order of the list
+ * <p>
+ * When a {@link ForkJoinPool} is provided and all the visitors are {@link SubtreeIndependentVisitor}, the children of a
+ * component which are not leaves (modules, directories, ...) are visited concurrently, while leaves are visited by the
+ * thread of their parent. Subtrees are visited with the logging context of the calling thread. Otherwise the tree is
+ * visited by the calling thread.
+ * </p>
  */
 public class VisitorsCrawler implements ComponentCrawler {
 
   private final boolean computeDuration;
   private final Map<ComponentVisitor, VisitorDuration> visitorCumulativeDurations;
-  private final List<VisitorWrapper> preOrderVisitorWrappers;
-  private final List<VisitorWrapper> postOrderVisitorWrappers;
+  private final VisitorWrappers visitorWrappers;
+  @CheckForNull
+  private final ForkJoinPool forkJoinPool;
 
   public VisitorsCrawler(Iterable<ComponentVisitor> visitors) {
     this(visitors, false);
   }
 
   public VisitorsCrawler(Iterable<ComponentVisitor> visitors, boolean computeDuration) {
-    List<VisitorWrapper> visitorWrappers = from(visitors).transform(ToVisitorWrapper.INSTANCE).toList();
-    this.preOrderVisitorWrappers = from(visitorWrappers).filter(MathPreOrderVisitor.INSTANCE).toList();
-    this.postOrderVisitorWrappers = from(visitorWrappers).filter(MatchPostOrderVisitor.INSTANCE).toList();
+    this(visitors, computeDuration, null);
+  }
+
+  /**
+   * @param forkJoinPool the pool used to visit subtrees concurrently, ignored unless all the visitors are {@link SubtreeIndependentVisitor}
+   * @throws IllegalArgumentException if a {@link PathAwareVisitor} is a {@link SubtreeIndependentVisitor} but not a {@link SubtreeIndependentPathAwareVisitor}
+   */
+  public VisitorsCrawler(Iterable<ComponentVisitor> visitors, boolean computeDuration, @Nullable ForkJoinPool forkJoinPool) {
+    this.visitorWrappers = new VisitorWrappers(from(visitors).transform(ToVisitorWrapper.INSTANCE).toList());
     this.computeDuration = computeDuration;
     this.visitorCumulativeDurations = computeDuration ? from(visitors).toMap(VisitorWrapperToInitialDuration.INSTANCE) : Collections.emptyMap();
+    this.forkJoinPool = forkJoinPool != null && from(visitors).allMatch(IsSubtreeIndependent.INSTANCE) ? forkJoinPool : null;
   }
 
   public Map<ComponentVisitor, Long> getCumulativeDurations() {
@@ -66,10 +87,25 @@ public class VisitorsCrawler implements ComponentCrawler {
     return Collections.emptyMap();
   }
 
+  /**
+   * Whether the tree is visited concurrently.
+   */
+  public boolean isConcurrent() {
+    return forkJoinPool != null;
+  }
+
   @Override
   public void visit(final Component component) {
+    if (forkJoinPool != null) {
+      forkJoinPool.invoke(new SubtreeVisit(component, visitorWrappers));
+    } else {
+      visit(component, visitorWrappers);
+    }
+  }
+
+  private void visit(Component component, VisitorWrappers wrappers) {
     try {
-      visitImpl(component);
+      visitImpl(component, wrappers);
     } catch (RuntimeException e) {
       VisitException.rethrowOrWrap(
         e,
@@ -78,15 +114,15 @@ public class VisitorsCrawler implements ComponentCrawler {
     }
   }
 
-  private void visitImpl(Component component) {
+  private void visitImpl(Component component, VisitorWrappers wrappers) {
     MatchVisitorMaxDepth visitorMaxDepth = MatchVisitorMaxDepth.forComponent(component);
-    List<VisitorWrapper> preOrderVisitorWrappersToExecute = from(preOrderVisitorWrappers).filter(visitorMaxDepth).toList();
-    List<VisitorWrapper> postOrderVisitorWrappersToExecute = from(postOrderVisitorWrappers).filter(visitorMaxDepth).toList();
+    List<VisitorWrapper> preOrderVisitorWrappersToExecute = from(wrappers.preOrder).filter(visitorMaxDepth).toList();
+    List<VisitorWrapper> postOrderVisitorWrappersToExecute = from(wrappers.postOrder).filter(visitorMaxDepth).toList();
     if (preOrderVisitorWrappersToExecute.isEmpty() && postOrderVisitorWrappersToExecute.isEmpty()) {
       return;
     }
 
-    for (VisitorWrapper visitorWrapper : concat(preOrderVisitorWrappers, postOrderVisitorWrappers)) {
+    for (VisitorWrapper visitorWrapper : concat(wrappers.preOrder, wrappers.postOrder)) {
       visitorWrapper.beforeComponent(component);
     }
 
@@ -94,7 +130,11 @@ public class VisitorsCrawler implements ComponentCrawler {
       visitNode(component, visitorWrapper);
     }
 
-    visitChildren(component);
+    if (forkJoinPool != null) {
+      visitChildrenConcurrently(component, wrappers);
+    } else {
+      visitChildren(component, wrappers);
+    }
 
     for (VisitorWrapper visitorWrapper : postOrderVisitorWrappersToExecute) {
       visitNode(component, visitorWrapper);
@@ -105,9 +145,30 @@ public class VisitorsCrawler implements ComponentCrawler {
     }
   }
 
-  private void visitChildren(Component component) {
+  private void visitChildren(Component component, VisitorWrappers wrappers) {
+    for (Component child : component.getChildren()) {
+      visit(child, wrappers);
+    }
+  }
+
+  private void visitChildrenConcurrently(Component component, VisitorWrappers wrappers) {
+    List<SubtreeVisit> subtreeVisits = new ArrayList<>();
+    for (Component child : component.getChildren()) {
+      if (!child.getChildren().isEmpty()) {
+        SubtreeVisit subtreeVisit = new SubtreeVisit(child, wrappers.forkSubtree());
+        subtreeVisit.fork();
+        subtreeVisits.add(subtreeVisit);
+      }
+    }
     for (Component child : component.getChildren()) {
-      visit(child);
+      if (child.getChildren().isEmpty()) {
+        visit(child, wrappers);
+      }
+    }
+    // subtrees are merged in the order of the children, whatever the order in which their visits complete
+    for (SubtreeVisit subtreeVisit : subtreeVisits) {
+      subtreeVisit.join();
+      wrappers.joinSubtree(subtreeVisit.wrappers);
     }
   }
 
@@ -210,15 +271,96 @@ public class VisitorsCrawler implements ComponentCrawler {
     }
   }
 
+  private enum IsSubtreeIndependent implements Predicate<ComponentVisitor> {
+    INSTANCE;
+
+    @Override
+    public boolean apply(@Nonnull ComponentVisitor visitor) {
+      checkArgument(!(visitor instanceof PathAwareVisitor) || !(visitor instanceof SubtreeIndependentVisitor) || visitor instanceof SubtreeIndependentPathAwareVisitor,
+        "PathAwareVisitor %s must implement %s to be visited concurrently", visitor, SubtreeIndependentPathAwareVisitor.class.getSimpleName());
+      return visitor instanceof SubtreeIndependentVisitor;
+    }
+  }
+
+  /**
+   * The wrappers of the visitors used to visit a subtree, {@link PathAwareVisitorWrapper} being specific to each subtree
+   * visited concurrently.
+   */
+  private static final class VisitorWrappers {
+    private final List<VisitorWrapper> all;
+    private final List<VisitorWrapper> preOrder;
+    private final List<VisitorWrapper> postOrder;
+
+    private VisitorWrappers(List<VisitorWrapper> all) {
+      this.all = all;
+      this.preOrder = from(all).filter(MathPreOrderVisitor.INSTANCE).toList();
+      this.postOrder = from(all).filter(MatchPostOrderVisitor.INSTANCE).toList();
+    }
+
+    private VisitorWrappers forkSubtree() {
+      List<VisitorWrapper> res = new ArrayList<>(all.size());
+      for (VisitorWrapper wrapper : all) {
+        res.add(wrapper instanceof PathAwareVisitorWrapper ? ((PathAwareVisitorWrapper<?>) wrapper).forkSubtree() : wrapper);
+      }
+      return new VisitorWrappers(res);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void joinSubtree(VisitorWrappers subtree) {
+      for (int i = 0; i < all.size(); i++) {
+        VisitorWrapper wrapper = all.get(i);
+        if (wrapper instanceof PathAwareVisitorWrapper) {
+          ((PathAwareVisitorWrapper<Object>) wrapper).joinSubtree((PathAwareVisitorWrapper<Object>) subtree.all.get(i));
+        }
+      }
+    }
+  }
+
+  /**
+   * Visit of a subtree, executed with the logging context of the thread which created it.
+   */
+  private final class SubtreeVisit extends RecursiveAction {
+    private final Component component;
+    private final VisitorWrappers wrappers;
+    @CheckForNull
+    private final Map<String, String> loggingContext;
+
+    private SubtreeVisit(Component component, VisitorWrappers wrappers) {
+      this.component = component;
+      this.wrappers = wrappers;
+      this.loggingContext = MDC.getCopyOfContextMap();
+    }
+
+    @Override
+    protected void compute() {
+      // a visit can be executed by the thread which joins it, so its own logging context is restored afterwards
+      Map<String, String> previousLoggingContext = MDC.getCopyOfContextMap();
+      setLoggingContext(loggingContext);
+      try {
+        visit(component, wrappers);
+      } finally {
+        setLoggingContext(previousLoggingContext);
+      }
+    }
+
+    private void setLoggingContext(@Nullable Map<String, String> context) {
+      if (context == null) {
+        MDC.clear();
+      } else {
+        MDC.setContextMap(context);
+      }
+    }
+  }
+
   private static final class VisitorDuration {
-    private long duration = 0;
+    private final AtomicLong duration = new AtomicLong();
 
     public void increment(long duration) {
-      this.duration += duration;
+      this.duration.addAndGet(duration);
     }
 
     public long getDuration() {
-      return duration;
+      return duration.get();
     }
   }
 
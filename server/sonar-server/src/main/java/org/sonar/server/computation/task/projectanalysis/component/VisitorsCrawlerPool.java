@@ -0,0 +1,92 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.component;
+
+import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.picocontainer.Startable;
+import org.sonar.api.config.Settings;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * The {@link ForkJoinPool} shared by the {@link VisitorsCrawler}s of an analysis to visit subtrees of the Component tree
+ * concurrently, with {@link #THREADS_PROPERTY} threads.
+ * <p>
+ * The pool is created on first use and shut down when the container of the analysis is stopped.
+ * </p>
+ */
+public class VisitorsCrawlerPool implements Startable {
+
+  /**
+   * Number of threads used to visit subtrees concurrently. Concurrent visits are disabled when set to 1.
+   */
+  public static final String THREADS_PROPERTY = "sonar.ce.visitors.threads";
+
+  private final int threads;
+  @CheckForNull
+  private ForkJoinPool forkJoinPool;
+
+  public VisitorsCrawlerPool(Settings settings) {
+    this(settings.getString(THREADS_PROPERTY) == null ? Runtime.getRuntime().availableProcessors() : settings.getInt(THREADS_PROPERTY));
+  }
+
+  VisitorsCrawlerPool(int threads) {
+    checkArgument(threads > 0, "Property %s must be strictly positive: %s", THREADS_PROPERTY, threads);
+    this.threads = threads;
+  }
+
+  /**
+   * @return the pool to provide to {@link VisitorsCrawler}, or {@code null} if concurrent visits are disabled
+   */
+  @CheckForNull
+  public synchronized ForkJoinPool get() {
+    if (threads < 2) {
+      return null;
+    }
+    if (forkJoinPool == null) {
+      forkJoinPool = new ForkJoinPool(threads);
+    }
+    return forkJoinPool;
+  }
+
+  /**
+   * Creates a crawler of a single {@link SubtreeIndependentVisitor}, which visits subtrees concurrently unless no pool
+   * is provided or concurrent visits are disabled.
+   */
+  public static ComponentCrawler newCrawler(@Nullable VisitorsCrawlerPool visitorsCrawlerPool, SubtreeIndependentVisitor visitor) {
+    return new VisitorsCrawler(Collections.<ComponentVisitor>singletonList(visitor), false, visitorsCrawlerPool == null ? null : visitorsCrawlerPool.get());
+  }
+
+  @Override
+  public void start() {
+    // the pool is created on first use
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (forkJoinPool != null) {
+      forkJoinPool.shutdownNow();
+      forkJoinPool = null;
+    }
+  }
+}
@@ -37,6 +37,7 @@ import org.sonar.server.computation.task.projectanalysis.component.DbIdsReposito
 import org.sonar.server.computation.task.projectanalysis.component.DisabledComponentsHolderImpl;
 import org.sonar.server.computation.task.projectanalysis.component.SettingsRepositoryImpl;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderImpl;
+import org.sonar.server.computation.task.projectanalysis.component.VisitorsCrawlerPool;
 import org.sonar.server.computation.task.projectanalysis.duplication.CrossProjectDuplicationStatusHolderImpl;
 import org.sonar.server.computation.task.projectanalysis.duplication.DuplicationRepositoryImpl;
 import org.sonar.server.computation.task.projectanalysis.duplication.IntegrateCrossProjectDuplications;
@@ -45,7 +46,9 @@ import org.sonar.server.computation.task.projectanalysis.filemove.FileSimilarity
 import org.sonar.server.computation.task.projectanalysis.filemove.MutableMovedFilesRepositoryImpl;
 import org.sonar.server.computation.task.projectanalysis.filemove.SourceSimilarityImpl;
 import org.sonar.server.computation.task.projectanalysis.filesystem.ComputationTempFolderProvider;
+import org.sonar.server.computation.task.projectanalysis.issue.BaseInputPrefetcher;
 import org.sonar.server.computation.task.projectanalysis.issue.BaseIssuesLoader;
+import org.sonar.server.computation.task.projectanalysis.issue.ChangedIssuesHolderImpl;
 import org.sonar.server.computation.task.projectanalysis.issue.CloseIssuesOnRemovedComponentsVisitor;
 import org.sonar.server.computation.task.projectanalysis.issue.ComponentIssuesRepositoryImpl;
 import org.sonar.server.computation.task.projectanalysis.issue.ComponentsWithUnprocessedIssues;
@@ -141,6 +144,7 @@ public final class ProjectAnalysisTaskContainerPopulator implements ContainerPop
     return Arrays.asList(
       PostProjectAnalysisTasksExecutor.class,
       ComputationStepExecutor.class,
+      VisitorsCrawlerPool.class,
 
       // File System
       new ComputationTempFolderProvider(),
@@ -186,6 +190,7 @@ public final class ProjectAnalysisTaskContainerPopulator implements ContainerPop
       IssueLifecycle.class,
       ComponentsWithUnprocessedIssues.class,
       ComponentIssuesRepositoryImpl.class,
+      ChangedIssuesHolderImpl.class,
       IssueFilter.class,
 
       // common rules
@@ -223,6 +228,7 @@ public final class ProjectAnalysisTaskContainerPopulator implements ContainerPop
 
       UpdateConflictResolver.class,
       TrackerBaseInputFactory.class,
+      BaseInputPrefetcher.class,
       TrackerRawInputFactory.class,
       Tracker.class,
       TrackerExecution.class,
@@ -0,0 +1,417 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.duplication;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.CheckForNull;
+import org.sonar.api.ce.ComputeEngineSide;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.component.SnapshotDto;
+import org.sonar.db.component.SnapshotQuery;
+import org.sonar.db.duplication.DuplicationUnitDto;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * In-memory index of the hashes of the blocks stored in table DUPLICATIONS_INDEX for the last analyses of all
+ * projects, by language. It tells whether a block may be duplicated in another project, so that the table is
+ * queried only for the blocks which are.
+ * <p/>
+ * The index of a language is built incrementally: each use loads the blocks of at most {@link #BUILD_BATCH_SIZE}
+ * analyses. Until the index is built, all blocks may be duplicated, so that they are all searched in database.
+ * Then, at each use, the blocks of the analyses which became the last ones of their project since the previous use
+ * are added. Blocks of the analyses which are no longer the last ones are kept, which only leads to useless queries,
+ * until the index is rebuilt, every 24 hours. The previous index is used while the new one is being built.
+ * <p/>
+ * A block is stored as a long: a 44 bits fingerprint of its hash and 20 bits to identify the project which contains
+ * it, so that blocks of the project being analysed are ignored. Blocks are sorted and preceded by a Bloom filter,
+ * so that a block takes about 10 bytes of memory. The indexes of all languages can't contain more than
+ * {@link #MAX_BLOCKS_PROPERTY} blocks. The index of a language which would exceed this limit is dropped until
+ * the next rebuild, so that all its blocks are searched in database.
+ */
+@ComputeEngineSide
+public class CrossProjectDuplicationIndex {
+
+  /**
+   * Maximum number of blocks in the indexes of all languages
+   */
+  public static final String MAX_BLOCKS_PROPERTY = "sonar.ce.crossProjectDuplications.maxIndexedBlocks";
+  static final int DEFAULT_MAX_BLOCKS = 10_000_000;
+  static final long REBUILD_INTERVAL_MS = 24L * 60 * 60 * 1000;
+  static final int BUILD_BATCH_SIZE = 1_000;
+
+  private static final Logger LOGGER = Loggers.get(CrossProjectDuplicationIndex.class);
+  private static final int PROJECT_BITS = 20;
+  private static final long PROJECT_MASK = (1L << PROJECT_BITS) - 1;
+  // hash is in blocks of several projects, or project can't be identified
+  private static final int SEVERAL_PROJECTS = (int) PROJECT_MASK;
+  private static final int UNKNOWN_PROJECT = -1;
+  private static final double BLOOM_FILTER_FPP = 0.01;
+  // recent blocks are merged into the main array when they exceed this ratio of it
+  private static final int MERGE_RATIO = 8;
+
+  private final DbClient dbClient;
+  private final System2 system2;
+  private final int maxBlocks;
+  private final int buildBatchSize;
+  private final Map<String, LanguageIndex> indexesByLanguage = new HashMap<>();
+  // ordinals are never changed, so that they can be read without lock
+  private final Map<String, Integer> projectOrdinals = new ConcurrentHashMap<>();
+  private final AtomicInteger nextProjectOrdinal = new AtomicInteger();
+  private final Hashes notIndexed = new Hashes();
+
+  public CrossProjectDuplicationIndex(DbClient dbClient, System2 system2, Settings settings) {
+    this(dbClient, system2, settings.getString(MAX_BLOCKS_PROPERTY) == null ? DEFAULT_MAX_BLOCKS : settings.getInt(MAX_BLOCKS_PROPERTY), BUILD_BATCH_SIZE);
+  }
+
+  CrossProjectDuplicationIndex(DbClient dbClient, System2 system2, int maxBlocks, int buildBatchSize) {
+    checkArgument(maxBlocks >= 0, "Property %s must be positive: %s", MAX_BLOCKS_PROPERTY, maxBlocks);
+    this.dbClient = dbClient;
+    this.system2 = system2;
+    this.maxBlocks = maxBlocks;
+    this.buildBatchSize = buildBatchSize;
+  }
+
+  /**
+   * Hashes of the blocks of the last analyses of all projects, on files of the specified language.
+   */
+  public Hashes getHashes(String language) {
+    LanguageIndex index;
+    synchronized (indexesByLanguage) {
+      index = indexesByLanguage.computeIfAbsent(language, LanguageIndex::new);
+    }
+    return index.refresh();
+  }
+
+  /**
+   * Number of blocks which can still be loaded in the index of the specified language
+   */
+  private int remainingBlocks(LanguageIndex index) {
+    long used = 0;
+    synchronized (indexesByLanguage) {
+      for (LanguageIndex other : indexesByLanguage.values()) {
+        used += other.indexedBlocks;
+      }
+    }
+    used -= index.indexedBlocks;
+    return (int) Math.max(0, maxBlocks - used);
+  }
+
+  private int projectOrdinal(String projectUuid) {
+    int ordinal = projectOrdinals.computeIfAbsent(projectUuid, uuid -> nextProjectOrdinal.getAndIncrement());
+    return ordinal < SEVERAL_PROJECTS ? ordinal : SEVERAL_PROJECTS;
+  }
+
+  /**
+   * 64-bit FNV-1a hash
+   */
+  private static long fingerprint(String hash) {
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < hash.length(); i++) {
+      h ^= hash.charAt(i);
+      h *= 0x100000001b3L;
+    }
+    return h >>> PROJECT_BITS;
+  }
+
+  private static long fingerprintOf(long block) {
+    return block >>> PROJECT_BITS;
+  }
+
+  private static int projectOf(long block) {
+    return (int) (block & PROJECT_MASK);
+  }
+
+  /**
+   * Sorts blocks and keeps a single block per fingerprint
+   */
+  private static long[] sortAndMerge(long[] blocks, int size) {
+    Arrays.sort(blocks, 0, size);
+    int merged = 0;
+    for (int i = 0; i < size; i++) {
+      long block = blocks[i];
+      if (merged > 0 && fingerprintOf(blocks[merged - 1]) == fingerprintOf(block)) {
+        if (projectOf(blocks[merged - 1]) != projectOf(block)) {
+          blocks[merged - 1] |= SEVERAL_PROJECTS;
+        }
+      } else {
+        blocks[merged] = block;
+        merged++;
+      }
+    }
+    return Arrays.copyOf(blocks, merged);
+  }
+
+  private static long[] concat(long[] blocks1, long[] blocks2) {
+    long[] res = Arrays.copyOf(blocks1, blocks1.length + blocks2.length);
+    System.arraycopy(blocks2, 0, res, blocks1.length, blocks2.length);
+    return res;
+  }
+
+  /**
+   * Immutable view of the index of a language
+   */
+  public final class Hashes {
+    private final long[] blocks;
+    @CheckForNull
+    private final BloomFilter<Long> bloomFilter;
+    private final long[] recentBlocks;
+
+    /**
+     * View of an index which is not built, in which all blocks may be duplicated
+     */
+    private Hashes() {
+      this.blocks = new long[0];
+      this.bloomFilter = null;
+      this.recentBlocks = new long[0];
+    }
+
+    private Hashes(long[] blocks, long[] recentBlocks) {
+      this.blocks = blocks;
+      this.recentBlocks = recentBlocks;
+      this.bloomFilter = BloomFilter.create(Funnels.longFunnel(), Math.max(blocks.length, 1000), BLOOM_FILTER_FPP);
+      for (long block : blocks) {
+        bloomFilter.put(fingerprintOf(block));
+      }
+    }
+
+    private Hashes(Hashes hashes, long[] recentBlocks) {
+      this.blocks = hashes.blocks;
+      this.bloomFilter = hashes.bloomFilter;
+      this.recentBlocks = recentBlocks;
+    }
+
+    /**
+     * @param projectUuid uuid of the project being analysed, whose blocks are ignored
+     * @return {@code false} if no project but the specified one has a block with this hash in its last analysis
+     */
+    public boolean mayBeDuplicated(String hash, String projectUuid) {
+      if (bloomFilter == null) {
+        return true;
+      }
+      long fingerprint = fingerprint(hash);
+      Integer ordinal = projectOrdinals.get(projectUuid);
+      int project = ordinal == null ? UNKNOWN_PROJECT : ordinal;
+      return (bloomFilter.mightContain(fingerprint) && contains(blocks, fingerprint, project)) || contains(recentBlocks, fingerprint, project);
+    }
+
+    private boolean contains(long[] sortedBlocks, long fingerprint, int excludedProject) {
+      int index = Arrays.binarySearch(sortedBlocks, fingerprint << PROJECT_BITS);
+      if (index < 0) {
+        index = -index - 1;
+      }
+      if (index == sortedBlocks.length || fingerprintOf(sortedBlocks[index]) != fingerprint) {
+        return false;
+      }
+      int project = projectOf(sortedBlocks[index]);
+      return project == SEVERAL_PROJECTS || project != excludedProject;
+    }
+
+    public int size() {
+      return blocks.length + recentBlocks.length;
+    }
+  }
+
+  private class LanguageIndex {
+    private final String language;
+    private Set<String> analysisUuids = new HashSet<>();
+    private long nextBuildAt = 0L;
+    // complete index, null until it is built or when it is dropped
+    @CheckForNull
+    private Hashes hashes;
+    @CheckForNull
+    private Build build;
+    // blocks of the index and of the build in progress
+    private volatile int indexedBlocks = 0;
+
+    private LanguageIndex(String language) {
+      this.language = language;
+    }
+
+    private synchronized Hashes refresh() {
+      try (DbSession dbSession = dbClient.openSession(false)) {
+        Map<String, String> projectUuidsByLastAnalysisUuid = new HashMap<>();
+        for (SnapshotDto analysis : dbClient.snapshotDao().selectAnalysesByQuery(dbSession, new SnapshotQuery().setIsLast(true))) {
+          projectUuidsByLastAnalysisUuid.put(analysis.getUuid(), analysis.getComponentUuid());
+        }
+        if (hashes != null) {
+          addNewAnalyses(dbSession, projectUuidsByLastAnalysisUuid);
+        }
+        long now = system2.now();
+        if (build == null && now >= nextBuildAt) {
+          build = new Build(projectUuidsByLastAnalysisUuid.keySet());
+          nextBuildAt = now + REBUILD_INTERVAL_MS;
+        }
+        if (build != null) {
+          continueBuild(dbSession, build, projectUuidsByLastAnalysisUuid);
+        }
+        updateIndexedBlocks();
+        return hashes == null ? notIndexed : hashes;
+      }
+    }
+
+    private void addNewAnalyses(DbSession dbSession, Map<String, String> projectUuidsByLastAnalysisUuid) {
+      Hashes current = hashes;
+      Set<String> newAnalysisUuids = new HashSet<>(projectUuidsByLastAnalysisUuid.keySet());
+      newAnalysisUuids.removeAll(analysisUuids);
+      analysisUuids = new HashSet<>(projectUuidsByLastAnalysisUuid.keySet());
+      if (current == null || newAnalysisUuids.isEmpty()) {
+        return;
+      }
+      BlockCollector collector = new BlockCollector(remainingBlocks(this) - indexedBlocks);
+      if (collector.load(dbSession, projectUuidsByLastAnalysisUuid, newAnalysisUuids)) {
+        hashes = add(current, sortAndMerge(collector.blocks, collector.size));
+      } else {
+        drop();
+      }
+    }
+
+    private Hashes add(Hashes current, long[] newBlocks) {
+      long[] recentBlocks = concat(current.recentBlocks, newBlocks);
+      recentBlocks = sortAndMerge(recentBlocks, recentBlocks.length);
+      if (recentBlocks.length > current.blocks.length / MERGE_RATIO) {
+        long[] blocks = concat(current.blocks, recentBlocks);
+        return new Hashes(sortAndMerge(blocks, blocks.length), new long[0]);
+      }
+      return new Hashes(current, recentBlocks);
+    }
+
+    private void continueBuild(DbSession dbSession, Build currentBuild, Map<String, String> projectUuidsByLastAnalysisUuid) {
+      List<String> batch = new ArrayList<>();
+      while (batch.size() < buildBatchSize && !currentBuild.pendingAnalysisUuids.isEmpty()) {
+        String analysisUuid = currentBuild.pendingAnalysisUuids.poll();
+        // analyses which are no longer the last ones are ignored
+        if (projectUuidsByLastAnalysisUuid.containsKey(analysisUuid)) {
+          batch.add(analysisUuid);
+        }
+      }
+      if (currentBuild.pendingAnalysisUuids.isEmpty()) {
+        // analyses which became the last ones during the build
+        Set<String> newAnalysisUuids = new HashSet<>(projectUuidsByLastAnalysisUuid.keySet());
+        newAnalysisUuids.removeAll(currentBuild.analysisUuids);
+        newAnalysisUuids.removeAll(batch);
+        batch.addAll(newAnalysisUuids);
+      }
+      currentBuild.collector.setMaxSize(remainingBlocks(this) - (hashes == null ? 0 : hashes.size()));
+      if (!currentBuild.collector.load(dbSession, projectUuidsByLastAnalysisUuid, batch)) {
+        drop();
+        return;
+      }
+      currentBuild.analysisUuids.addAll(batch);
+      if (currentBuild.pendingAnalysisUuids.isEmpty()) {
+        long[] blocks = sortAndMerge(currentBuild.collector.blocks, currentBuild.collector.size);
+        hashes = new Hashes(blocks, new long[0]);
+        analysisUuids = new HashSet<>(projectUuidsByLastAnalysisUuid.keySet());
+        build = null;
+        LOGGER.debug("Index of {} duplication blocks built for language {}", blocks.length, language);
+      } else {
+        LOGGER.debug("Duplication blocks of {} analyses loaded in index of language {}", currentBuild.analysisUuids.size(), language);
+      }
+    }
+
+    /**
+     * Drops the index and the build in progress, so that all blocks are searched in database until next build
+     */
+    private void drop() {
+      hashes = null;
+      build = null;
+      analysisUuids = new HashSet<>();
+      LOGGER.info("Index of duplication blocks of language {} is dropped as it would exceed {} blocks. It will be rebuilt in {} hours.",
+        language, maxBlocks, (nextBuildAt - system2.now()) / (60 * 60 * 1000));
+    }
+
+    private void updateIndexedBlocks() {
+      Build currentBuild = build;
+      indexedBlocks = (hashes == null ? 0 : hashes.size()) + (currentBuild == null ? 0 : currentBuild.collector.size);
+    }
+
+    private class Build {
+      private final Deque<String> pendingAnalysisUuids;
+      private final Set<String> analysisUuids = new HashSet<>();
+      private final BlockCollector collector = new BlockCollector(0);
+
+      private Build(Collection<String> analysisUuids) {
+        this.pendingAnalysisUuids = new ArrayDeque<>(analysisUuids);
+      }
+    }
+
+    private class BlockCollector {
+      private long[] blocks = new long[0];
+      private int size = 0;
+      private int maxSize;
+      private boolean overflow = false;
+
+      private BlockCollector(int maxSize) {
+        this.maxSize = maxSize;
+      }
+
+      private void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+      }
+
+      /**
+       * @return {@code false} if the blocks of these analyses exceed the maximum size
+       */
+      private boolean load(DbSession dbSession, Map<String, String> projectUuidsByAnalysisUuid, Collection<String> analysisUuids) {
+        if (!analysisUuids.isEmpty()) {
+          dbClient.duplicationDao().selectHashes(dbSession, language, analysisUuids, context -> {
+            if (!add((DuplicationUnitDto) context.getResultObject(), projectUuidsByAnalysisUuid)) {
+              context.stop();
+            }
+          });
+        }
+        return !overflow;
+      }
+
+      private boolean add(DuplicationUnitDto dto, Map<String, String> projectUuidsByAnalysisUuid) {
+        if (overflow || size >= maxSize) {
+          overflow = true;
+          return false;
+        }
+        String projectUuid = projectUuidsByAnalysisUuid.get(dto.getAnalysisUuid());
+        int project = projectUuid == null ? SEVERAL_PROJECTS : projectOrdinal(projectUuid);
+        if (size == blocks.length) {
+          blocks = Arrays.copyOf(blocks, (int) Math.min(Math.max(1024L, size * 2L), maxSize));
+        }
+        blocks[size] = (fingerprint(dto.getHash()) << PROJECT_BITS) | project;
+        size++;
+        return true;
+      }
+    }
+  }
+}
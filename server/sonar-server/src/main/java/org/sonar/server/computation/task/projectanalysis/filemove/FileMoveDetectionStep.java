@@ -31,6 +31,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
@@ -59,6 +61,7 @@ import org.sonar.server.computation.task.step.ComputationStep;
 import static com.google.common.base.MoreObjects.firstNonNull;
 import static com.google.common.base.Splitter.on;
 import static com.google.common.collect.FluentIterable.from;
+import static java.lang.Math.max;
 import static java.util.Arrays.asList;
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.POST_ORDER;
 
@@ -197,30 +200,34 @@ public class FileMoveDetectionStep implements ComputationStep {
   }
 
   private ScoreMatrix computeScoreMatrix(Map<String, DbComponent> dtosByKey, Set<String> dbFileKeys, Map<String, File> reportFileSourcesByKey) {
-    int[][] scoreMatrix = new int[dbFileKeys.size()][reportFileSourcesByKey.size()];
-    int maxScore = 0;
-
+    List<File> dbFiles = new ArrayList<>(dbFileKeys.size());
     try (DbSession dbSession = dbClient.openSession(false)) {
-      int dbFileIndex = 0;
       for (String removedFileKey : dbFileKeys) {
-        File fileInDb = getFile(dbSession, dtosByKey.get(removedFileKey));
-        if (fileInDb == null) {
-          continue;
-        }
-
-        int reportFileIndex = 0;
-        for (Map.Entry<String, File> reportFileSourceAndKey : reportFileSourcesByKey.entrySet()) {
-          File unmatchedFile = reportFileSourceAndKey.getValue();
-          int score = fileSimilarity.score(fileInDb, unmatchedFile);
-          scoreMatrix[dbFileIndex][reportFileIndex] = score;
-          if (score > maxScore) {
-            maxScore = score;
-          }
-          reportFileIndex++;
-        }
-        dbFileIndex++;
+        dbFiles.add(getFile(dbSession, dtosByKey.get(removedFileKey)));
       }
     }
+    List<File> reportFiles = new ArrayList<>(reportFileSourcesByKey.values());
+    MatchCandidates candidates = MatchCandidates.create(dbFiles, reportFiles);
+
+    // only candidates are scored, other pairs can't match and keep a score of 0. Rows are computed in parallel.
+    int[][] scoreMatrix = new int[dbFiles.size()][reportFiles.size()];
+    AtomicLong scoredPairs = new AtomicLong();
+    int maxScore = IntStream.range(0, dbFiles.size())
+      .parallel()
+      .map(dbFileIndex -> {
+        int[] candidateIndexes = candidates.of(dbFileIndex);
+        scoredPairs.addAndGet(candidateIndexes.length);
+        int maxRowScore = 0;
+        for (int reportFileIndex : candidateIndexes) {
+          int score = fileSimilarity.score(dbFiles.get(dbFileIndex), reportFiles.get(reportFileIndex));
+          scoreMatrix[dbFileIndex][reportFileIndex] = score;
+          maxRowScore = max(maxRowScore, score);
+        }
+        return maxRowScore;
+      })
+      .max()
+      .orElse(0);
+    LOG.debug("{} pairs of files scored out of {}", scoredPairs.get(), (long) dbFiles.size() * reportFiles.size());
 
     return new ScoreMatrix(dbFileKeys, reportFileSourcesByKey, scoreMatrix, maxScore);
   }
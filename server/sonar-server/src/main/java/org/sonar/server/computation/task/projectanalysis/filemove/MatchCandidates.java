@@ -0,0 +1,230 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.filemove;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.max;
+import static org.sonar.server.computation.task.projectanalysis.filemove.FileMoveDetectionStep.MIN_REQUIRED_SCORE;
+
+/**
+ * Selects the pairs of removed and added files which may have a score of at least {@link FileMoveDetectionStep#MIN_REQUIRED_SCORE},
+ * so that only these pairs are scored by {@link FileSimilarity}.
+ * <p/>
+ * Selection relies on the score being computed from the edit distance between line hashes: a score of 85 requires the
+ * files to have at least 85% of their lines in common. Each line is a token (line hash, occurrence of this hash in the
+ * file), tokens being ordered from the rarest to the most frequent. Two files which have more than {@code p} lines
+ * in common share a token among the first {@code size - p + 1} tokens of each file (prefix filtering), so candidates
+ * are looked up in an inverted index of these prefixes. Candidates are then checked against the bounds of the
+ * score which are given by the difference of number of lines and by the number of lines in common.
+ * <p/>
+ * Selection is exact: no pair with a score of at least {@link FileMoveDetectionStep#MIN_REQUIRED_SCORE} is missed.
+ */
+final class MatchCandidates {
+
+  private static final int[] NO_CANDIDATES = new int[0];
+
+  // tokens of each file, sorted from the rarest
+  private final int[][] removedTokens;
+  private final int[][] addedTokens;
+  // added files by token of their prefix
+  private final int[][] addedFilesByPrefixToken;
+
+  private MatchCandidates(int[][] removedTokens, int[][] addedTokens, int tokenCount) {
+    this.removedTokens = removedTokens;
+    this.addedTokens = addedTokens;
+    this.addedFilesByPrefixToken = indexPrefixes(addedTokens, tokenCount);
+  }
+
+  /**
+   * @param removedFiles files which may have been moved, {@code null} when source is unknown
+   * @param addedFiles   files which may be the result of a move
+   */
+  static MatchCandidates create(List<FileSimilarity.File> removedFiles, List<FileSimilarity.File> addedFiles) {
+    Tokenizer tokenizer = new Tokenizer();
+    List<int[]> removed = new ArrayList<>(removedFiles.size());
+    for (FileSimilarity.File file : removedFiles) {
+      removed.add(tokenizer.tokenize(file));
+    }
+    List<int[]> added = new ArrayList<>(addedFiles.size());
+    for (FileSimilarity.File file : addedFiles) {
+      added.add(tokenizer.tokenize(file));
+    }
+    int[] rankByToken = tokenizer.rankByFrequency();
+    return new MatchCandidates(sortByRank(removed, rankByToken), sortByRank(added, rankByToken), rankByToken.length);
+  }
+
+  /**
+   * Indexes of the added files which may match the removed file at the specified index, in ascending order.
+   */
+  int[] of(int removedFileIndex) {
+    int[] tokens = removedTokens[removedFileIndex];
+    if (tokens.length == 0) {
+      return NO_CANDIDATES;
+    }
+    boolean[] seen = new boolean[addedTokens.length];
+    int[] candidates = new int[addedTokens.length];
+    int count = 0;
+    int prefixLength = prefixLength(tokens.length);
+    for (int i = 0; i < prefixLength; i++) {
+      for (int addedFileIndex : addedFilesByPrefixToken[tokens[i]]) {
+        if (!seen[addedFileIndex]) {
+          seen[addedFileIndex] = true;
+          if (mayMatch(tokens, addedTokens[addedFileIndex])) {
+            candidates[count] = addedFileIndex;
+            count++;
+          }
+        }
+      }
+    }
+    int[] res = Arrays.copyOf(candidates, count);
+    Arrays.sort(res);
+    return res;
+  }
+
+  private static boolean mayMatch(int[] tokens1, int[] tokens2) {
+    int maxSize = max(tokens1.length, tokens2.length);
+    // edit distance is at least the difference of sizes...
+    if (SourceSimilarityImpl.toScore(abs(tokens1.length - tokens2.length), maxSize) < MIN_REQUIRED_SCORE) {
+      return false;
+    }
+    // ... and at least the number of lines which are not in common
+    return SourceSimilarityImpl.toScore(maxSize - countCommonTokens(tokens1, tokens2), maxSize) >= MIN_REQUIRED_SCORE;
+  }
+
+  private static int countCommonTokens(int[] sortedTokens1, int[] sortedTokens2) {
+    int i = 0;
+    int j = 0;
+    int count = 0;
+    while (i < sortedTokens1.length && j < sortedTokens2.length) {
+      int diff = Integer.compare(sortedTokens1[i], sortedTokens2[j]);
+      if (diff == 0) {
+        count++;
+        i++;
+        j++;
+      } else if (diff < 0) {
+        i++;
+      } else {
+        j++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Files with a score of at least {@link FileMoveDetectionStep#MIN_REQUIRED_SCORE} have at least 85% of lines in
+   * common. 84% is used so that rounding of the score can't exclude a match.
+   */
+  private static int prefixLength(int size) {
+    int minCommonTokens = max(1, size * (MIN_REQUIRED_SCORE - 1) / 100);
+    return size - minCommonTokens + 1;
+  }
+
+  private static int[][] indexPrefixes(int[][] tokensOfFiles, int tokenCount) {
+    int[] fileCountByToken = new int[tokenCount];
+    for (int[] tokens : tokensOfFiles) {
+      int prefixLength = prefixLength(tokens.length);
+      for (int i = 0; i < prefixLength; i++) {
+        fileCountByToken[tokens[i]]++;
+      }
+    }
+    int[][] res = new int[tokenCount][];
+    for (int token = 0; token < tokenCount; token++) {
+      res[token] = new int[fileCountByToken[token]];
+    }
+    int[] next = new int[tokenCount];
+    for (int fileIndex = 0; fileIndex < tokensOfFiles.length; fileIndex++) {
+      int[] tokens = tokensOfFiles[fileIndex];
+      int prefixLength = prefixLength(tokens.length);
+      for (int i = 0; i < prefixLength; i++) {
+        int token = tokens[i];
+        res[token][next[token]] = fileIndex;
+        next[token]++;
+      }
+    }
+    return res;
+  }
+
+  private static int[][] sortByRank(List<int[]> tokensOfFiles, int[] rankByToken) {
+    int[][] res = new int[tokensOfFiles.size()][];
+    for (int i = 0; i < res.length; i++) {
+      int[] tokens = tokensOfFiles.get(i);
+      int[] ranks = new int[tokens.length];
+      for (int j = 0; j < tokens.length; j++) {
+        ranks[j] = rankByToken[tokens[j]];
+      }
+      Arrays.sort(ranks);
+      res[i] = ranks;
+    }
+    return res;
+  }
+
+  private static final class Tokenizer {
+    private final Map<String, Integer> idsByLineHash = new HashMap<>();
+    private final Map<Long, Integer> tokensByLineHashAndOccurrence = new HashMap<>();
+    private int[] fileCountByToken = new int[1024];
+
+    int[] tokenize(@Nullable FileSimilarity.File file) {
+      if (file == null) {
+        return NO_CANDIDATES;
+      }
+      List<String> lineHashes = file.getLineHashes();
+      Map<Integer, Integer> occurrencesByLineHash = new HashMap<>();
+      int[] tokens = new int[lineHashes.size()];
+      int i = 0;
+      for (String lineHash : lineHashes) {
+        Integer lineHashId = idsByLineHash.computeIfAbsent(lineHash, h -> idsByLineHash.size());
+        int occurrence = occurrencesByLineHash.merge(lineHashId, 1, Integer::sum);
+        long key = ((long) lineHashId << 32) | occurrence;
+        int token = tokensByLineHashAndOccurrence.computeIfAbsent(key, k -> tokensByLineHashAndOccurrence.size());
+        if (token == fileCountByToken.length) {
+          fileCountByToken = Arrays.copyOf(fileCountByToken, token * 2);
+        }
+        fileCountByToken[token]++;
+        tokens[i] = token;
+        i++;
+      }
+      return tokens;
+    }
+
+    /**
+     * Ranks of tokens, from the one which is in the fewest files
+     */
+    int[] rankByFrequency() {
+      int tokenCount = tokensByLineHashAndOccurrence.size();
+      Integer[] tokens = new Integer[tokenCount];
+      for (int token = 0; token < tokenCount; token++) {
+        tokens[token] = token;
+      }
+      Arrays.sort(tokens, (t1, t2) -> Integer.compare(fileCountByToken[t1], fileCountByToken[t2]));
+      int[] res = new int[tokenCount];
+      for (int rank = 0; rank < tokenCount; rank++) {
+        res[tokens[rank]] = rank;
+      }
+      return res;
+    }
+  }
+}
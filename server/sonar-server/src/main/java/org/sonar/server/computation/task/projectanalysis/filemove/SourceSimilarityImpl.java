@@ -19,63 +19,153 @@
  */
 package org.sonar.server.computation.task.projectanalysis.filemove;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static java.lang.Math.max;
-import static java.lang.Math.min;
 
+/**
+ * Score based on the Levenshtein distance between the two lists, computed by the bit-parallel algorithm of Myers
+ * (as extended to global edit distance by Hyyrö), over 64 elements at once.
+ * Implementation is thread-safe.
+ */
 public class SourceSimilarityImpl implements SourceSimilarity {
 
+  private static final int WORD_SIZE = 64;
+
   @Override
   public <T> int score(List<T> left, List<T> right) {
     if (left.isEmpty() && right.isEmpty()) {
       return 0;
     }
-    int distance = levenshteinDistance(left, right);
-    return (int) (100 * (1.0 - ((double) distance) / (max(left.size(), right.size()))));
+    // the shortest list is the pattern, so that it fits in less words
+    List<T> pattern = left.size() <= right.size() ? left : right;
+    List<T> text = pattern == left ? right : left;
+    Map<T, Integer> ids = new HashMap<>();
+    int[] internedPattern = intern(pattern, ids);
+    int patternAlphabetSize = ids.size();
+    int[] internedText = intern(text, ids);
+    int distance = levenshteinDistance(internedPattern, patternAlphabetSize, internedText);
+    return toScore(distance, max(left.size(), right.size()));
   }
 
-  private static <T> int levenshteinDistance(List<T> left, List<T> right) {
-    int len0 = left.size() + 1;
-    int len1 = right.size() + 1;
-
-    // the array of distances
-    int[] cost = new int[len0];
-    int[] newcost = new int[len0];
+  static int toScore(int distance, int maxSize) {
+    return (int) (100 * (1.0 - ((double) distance) / maxSize));
+  }
 
-    // initial cost of skipping prefix in String s0
-    for (int i = 0; i < len0; i++) {
-      cost[i] = i;
+  private static <T> int[] intern(List<T> list, Map<T, Integer> ids) {
+    int[] res = new int[list.size()];
+    int i = 0;
+    for (T t : list) {
+      Integer id = ids.get(t);
+      if (id == null) {
+        id = ids.size();
+        ids.put(t, id);
+      }
+      res[i] = id;
+      i++;
     }
+    return res;
+  }
 
-    // dynamically computing the array of distances
-
-    // transformation cost for each letter in s1
-    for (int j = 1; j < len1; j++) {
-      // initial cost of skipping prefix in String s1
-      newcost[0] = j;
+  /**
+   * @param pattern elements, from 0 to {@code patternAlphabetSize} excluded
+   * @param text elements, greater than or equal to {@code patternAlphabetSize} when not in pattern
+   */
+  static int levenshteinDistance(int[] pattern, int patternAlphabetSize, int[] text) {
+    int m = pattern.length;
+    if (m == 0) {
+      return text.length;
+    }
+    int blocks = (m + WORD_SIZE - 1) / WORD_SIZE;
+    PatternBits peq = new PatternBits(pattern, patternAlphabetSize);
+    // vertical deltas of current column, +1 (pv) or -1 (mv). First column is 0, 1, ..., m
+    long[] pv = new long[blocks];
+    long[] mv = new long[blocks];
+    Arrays.fill(pv, -1L);
+    int lastRowBit = (m - 1) % WORD_SIZE;
+    int distance = m;
 
-      // transformation cost for each letter in s0
-      for (int i = 1; i < len0; i++) {
-        // matching current letters in both strings
-        int match = left.get(i - 1).equals(right.get(j - 1)) ? 0 : 1;
+    for (int element : text) {
+      int entry = element < patternAlphabetSize ? peq.firstEntries[element] : 0;
+      int lastEntry = element < patternAlphabetSize ? peq.firstEntries[element + 1] : 0;
+      // horizontal delta in the first row is always +1 (0, 1, ..., n)
+      int hin = 1;
+      for (int b = 0; b < blocks; b++) {
+        long eq = 0L;
+        if (entry < lastEntry && peq.blocks[entry] == b) {
+          eq = peq.bits[entry];
+          entry++;
+        }
+        long pvb = pv[b];
+        long mvb = mv[b];
+        long hinIsNeg = hin < 0 ? 1L : 0L;
+        long xv = eq | mvb;
+        eq |= hinIsNeg;
+        long xh = (((eq & pvb) + pvb) ^ pvb) | eq;
+        long ph = mvb | ~(xh | pvb);
+        long mh = pvb & xh;
+        int hout;
+        if (b == blocks - 1) {
+          distance += (int) ((ph >>> lastRowBit) & 1L) - (int) ((mh >>> lastRowBit) & 1L);
+          hout = 0;
+        } else {
+          hout = (int) (ph >>> (WORD_SIZE - 1)) - (int) (mh >>> (WORD_SIZE - 1));
+        }
+        ph = (ph << 1) | (hin > 0 ? 1L : 0L);
+        mh = (mh << 1) | hinIsNeg;
+        pv[b] = mh | ~(xv | ph);
+        mv[b] = ph & xv;
+        hin = hout;
+      }
+    }
+    return distance;
+  }
 
-        // computing cost for each transformation
-        int costReplace = cost[i - 1] + match;
-        int costInsert = cost[i] + 1;
-        int costDelete = newcost[i - 1] + 1;
+  /**
+   * Bits of the pattern rows which are equal to each element, by block of {@link #WORD_SIZE} rows. Only the
+   * non-empty blocks are stored, sorted by element then by block, so that memory is linear in the size of the
+   * pattern even when its elements are mostly distinct.
+   */
+  private static class PatternBits {
+    // entries of element e are from firstEntries[e] included to firstEntries[e + 1] excluded
+    private final int[] firstEntries;
+    private final int[] blocks;
+    private final long[] bits;
 
-        // keep minimum cost
-        newcost[i] = min(min(costInsert, costDelete), costReplace);
+    PatternBits(int[] pattern, int alphabetSize) {
+      firstEntries = new int[alphabetSize + 1];
+      int[] lastBlocks = new int[alphabetSize];
+      Arrays.fill(lastBlocks, -1);
+      for (int i = 0; i < pattern.length; i++) {
+        int block = i / WORD_SIZE;
+        if (lastBlocks[pattern[i]] != block) {
+          lastBlocks[pattern[i]] = block;
+          firstEntries[pattern[i] + 1]++;
+        }
+      }
+      for (int e = 0; e < alphabetSize; e++) {
+        firstEntries[e + 1] += firstEntries[e];
+      }
+      int entries = firstEntries[alphabetSize];
+      blocks = new int[entries];
+      bits = new long[entries];
+      // index of the last entry of each element
+      int[] lastEntries = new int[alphabetSize];
+      for (int e = 0; e < alphabetSize; e++) {
+        lastEntries[e] = firstEntries[e] - 1;
+      }
+      for (int i = 0; i < pattern.length; i++) {
+        int block = i / WORD_SIZE;
+        int e = pattern[i];
+        if (lastEntries[e] < firstEntries[e] || blocks[lastEntries[e]] != block) {
+          lastEntries[e]++;
+          blocks[lastEntries[e]] = block;
+        }
+        bits[lastEntries[e]] |= 1L << (i % WORD_SIZE);
       }
-
-      // swap cost/newcost arrays
-      int[] swap = cost;
-      cost = newcost;
-      newcost = swap;
     }
-
-    // the distance is the cost for transforming all letters in both strings
-    return cost[len0 - 1];
   }
 }
@@ -25,10 +25,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor;
 import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthLimit;
 import org.sonar.server.computation.task.projectanalysis.component.PathAwareVisitorAdapter;
+import org.sonar.server.computation.task.projectanalysis.component.SubtreeIndependentPathAwareVisitor;
 import org.sonar.server.computation.task.projectanalysis.measure.Measure;
 import org.sonar.server.computation.task.projectanalysis.measure.MeasureRepository;
 import org.sonar.server.computation.task.projectanalysis.metric.Metric;
@@ -38,7 +40,15 @@ import org.sonar.server.computation.task.projectanalysis.period.PeriodHolder;
 
 import static java.util.Objects.requireNonNull;
 
-public class FormulaExecutorComponentVisitor extends PathAwareVisitorAdapter<FormulaExecutorComponentVisitor.Counters> {
+/**
+ * Computes the measures of {@link Formula}s by aggregating the counters of leaves up to the root.
+ * <p>
+ * Subtrees can be visited concurrently as long as the {@link Formula}s and the {@link Counter}s they create only depend
+ * on the measures of the component being visited.
+ * </p>
+ */
+public class FormulaExecutorComponentVisitor extends PathAwareVisitorAdapter<FormulaExecutorComponentVisitor.Counters>
+  implements SubtreeIndependentPathAwareVisitor<FormulaExecutorComponentVisitor.Counters> {
   private static final SimpleStackElementFactory<Counters> COUNTERS_FACTORY = new SimpleStackElementFactory<Counters>() {
 
     @Override
@@ -137,6 +147,13 @@ public class FormulaExecutorComponentVisitor extends PathAwareVisitorAdapter<For
     process(projectView, path);
   }
 
+  @Override
+  public void mergeSubtree(@Nullable Counters element, @Nullable Counters subtreeElement) {
+    if (element != null && subtreeElement != null) {
+      element.aggregate(subtreeElement);
+    }
+  }
+
   private void process(Component component, Path<FormulaExecutorComponentVisitor.Counters> path) {
     if (component.getChildren().isEmpty()) {
       processLeaf(component, path);
@@ -228,6 +245,15 @@ public class FormulaExecutorComponentVisitor extends PathAwareVisitorAdapter<For
       }
     }
 
+    /**
+     * Aggregates the counters of the same component computed by the visit of another subtree.
+     */
+    public void aggregate(Counters counters) {
+      for (Map.Entry<Formula, Counter> entry : counters.countersByFormula.entrySet()) {
+        aggregate(entry.getKey(), entry.getValue());
+      }
+    }
+
     /**
      * Counter can be null on a level when it has not been fed by children levels
      */
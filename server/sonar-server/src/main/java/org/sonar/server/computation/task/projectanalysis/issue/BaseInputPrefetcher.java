@@ -0,0 +1,169 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthLimit;
+import org.sonar.server.computation.task.projectanalysis.component.DepthTraversalTypeAwareCrawler;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
+import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
+import org.sonar.server.computation.task.projectanalysis.filemove.MovedFilesRepository;
+
+import static org.sonar.db.DatabaseUtils.PARTITION_SIZE_FOR_ORACLE;
+import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.POST_ORDER;
+
+/**
+ * Loads the base data of issue tracking (open issues and line hashes) by windows of components, instead of
+ * one component at a time. Components are taken in the same order as {@link IntegrateIssuesVisitor} visits them,
+ * so that each window is loaded with a few requests just before its components are tracked.
+ * Only the data of the current window is kept in memory.
+ */
+public class BaseInputPrefetcher {
+
+  static final int DEFAULT_WINDOW_SIZE = PARTITION_SIZE_FOR_ORACLE;
+
+  private final TreeRootHolder treeRootHolder;
+  private final MovedFilesRepository movedFilesRepository;
+  private final BaseIssuesLoader baseIssuesLoader;
+  private final DbClient dbClient;
+  private final int windowSize;
+
+  // uuids of the base components (original file if moved), in the order of the crawl. Lazy-loaded as files moves
+  // are known only after the step FileMoveDetectionStep.
+  private List<String> crawledUuids;
+  private Map<String, Integer> crawlIndexByUuid;
+  private Set<String> fileUuids;
+
+  // data of the current window
+  private final Map<String, List<DefaultIssue>> issuesByUuid = new HashMap<>();
+  private final Map<String, List<String>> lineHashesByUuid = new HashMap<>();
+
+  public BaseInputPrefetcher(TreeRootHolder treeRootHolder, MovedFilesRepository movedFilesRepository, BaseIssuesLoader baseIssuesLoader, DbClient dbClient) {
+    this(treeRootHolder, movedFilesRepository, baseIssuesLoader, dbClient, DEFAULT_WINDOW_SIZE);
+  }
+
+  BaseInputPrefetcher(TreeRootHolder treeRootHolder, MovedFilesRepository movedFilesRepository, BaseIssuesLoader baseIssuesLoader, DbClient dbClient,
+    int windowSize) {
+    this.treeRootHolder = treeRootHolder;
+    this.movedFilesRepository = movedFilesRepository;
+    this.baseIssuesLoader = baseIssuesLoader;
+    this.dbClient = dbClient;
+    this.windowSize = windowSize;
+  }
+
+  /**
+   * Open issues of the base component with the specified uuid.
+   */
+  public List<DefaultIssue> loadIssues(String baseUuid) {
+    if (!issuesByUuid.containsKey(baseUuid)) {
+      prefetchWindowStartingAt(baseUuid);
+    }
+    List<DefaultIssue> issues = issuesByUuid.remove(baseUuid);
+    if (issues == null) {
+      // component is not part of the tree
+      return baseIssuesLoader.loadForComponentUuid(baseUuid);
+    }
+    return issues;
+  }
+
+  /**
+   * Line hashes of the base file with the specified uuid, {@code null} if the file has no source.
+   * Line hashes are prefetched only for the files which have open issues, as they are useless to
+   * issue tracking otherwise.
+   */
+  @CheckForNull
+  public List<String> loadLineHashes(String baseFileUuid) {
+    if (lineHashesByUuid.containsKey(baseFileUuid)) {
+      return lineHashesByUuid.remove(baseFileUuid);
+    }
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      return dbClient.fileSourceDao().selectLineHashes(dbSession, baseFileUuid);
+    }
+  }
+
+  private void prefetchWindowStartingAt(String baseUuid) {
+    ensureCrawlOrderLoaded();
+    Integer start = crawlIndexByUuid.get(baseUuid);
+    if (start == null) {
+      return;
+    }
+
+    issuesByUuid.clear();
+    lineHashesByUuid.clear();
+    List<String> window = crawledUuids.subList(start, Math.min(start + windowSize, crawledUuids.size()));
+    Map<String, List<DefaultIssue>> issues = baseIssuesLoader.loadForComponentUuids(window);
+    List<String> filesWithIssues = new ArrayList<>();
+    for (String uuid : window) {
+      List<DefaultIssue> componentIssues = issues.get(uuid);
+      if (componentIssues == null) {
+        issuesByUuid.put(uuid, Collections.emptyList());
+      } else {
+        issuesByUuid.put(uuid, componentIssues);
+        if (fileUuids.contains(uuid)) {
+          filesWithIssues.add(uuid);
+        }
+      }
+    }
+
+    if (!filesWithIssues.isEmpty()) {
+      try (DbSession dbSession = dbClient.openSession(false)) {
+        Map<String, List<String>> lineHashes = dbClient.fileSourceDao().selectLineHashesByFileUuids(dbSession, filesWithIssues);
+        for (String fileUuid : filesWithIssues) {
+          // null means that the file has no source, as returned by FileSourceDao#selectLineHashes
+          lineHashesByUuid.put(fileUuid, lineHashes.get(fileUuid));
+        }
+      }
+    }
+  }
+
+  private void ensureCrawlOrderLoaded() {
+    if (crawledUuids != null) {
+      return;
+    }
+    List<String> uuids = new ArrayList<>();
+    Map<String, Integer> indexByUuid = new HashMap<>();
+    Set<String> files = new HashSet<>();
+    new DepthTraversalTypeAwareCrawler(new TypeAwareVisitorAdapter(CrawlerDepthLimit.FILE, POST_ORDER) {
+      @Override
+      public void visitAny(Component component) {
+        String uuid = movedFilesRepository.getOriginalFile(component).transform(MovedFilesRepository.OriginalFile::getUuid).or(component.getUuid());
+        indexByUuid.putIfAbsent(uuid, uuids.size());
+        uuids.add(uuid);
+        if (component.getType() == Component.Type.FILE) {
+          files.add(uuid);
+        }
+      }
+    }).visit(treeRootHolder.getRoot());
+    this.crawledUuids = uuids;
+    this.crawlIndexByUuid = indexByUuid;
+    this.fileUuids = files;
+  }
+}
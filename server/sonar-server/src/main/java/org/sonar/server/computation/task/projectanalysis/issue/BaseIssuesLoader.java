@@ -20,7 +20,10 @@
 package org.sonar.server.computation.task.projectanalysis.issue;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.rule.RuleStatus;
@@ -32,6 +35,8 @@ import org.sonar.db.issue.IssueMapper;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
 import org.sonar.server.computation.task.projectanalysis.qualityprofile.ActiveRulesHolder;
 
+import static org.sonar.db.DatabaseUtils.executeLargeInputsWithoutOutput;
+
 /**
  * Loads all the project open issues from database, including manual issues.
  *
@@ -54,23 +59,43 @@ public class BaseIssuesLoader {
   public List<DefaultIssue> loadForComponentUuid(String componentUuid) {
     try (DbSession dbSession = dbClient.openSession(false)) {
       List<DefaultIssue> result = new ArrayList<>();
-      dbSession.getMapper(IssueMapper.class).selectNonClosedByComponentUuid(componentUuid, resultContext -> {
-        DefaultIssue issue = ((IssueDto) resultContext.getResultObject()).toDefaultIssue();
+      dbSession.getMapper(IssueMapper.class).selectNonClosedByComponentUuid(componentUuid,
+        resultContext -> result.add(toDefaultIssue((IssueDto) resultContext.getResultObject())));
+      return result;
+    }
+  }
 
-        // TODO this field should be set outside this class
-        if (!isActive(issue.ruleKey()) || ruleRepository.getByKey(issue.ruleKey()).getStatus() == RuleStatus.REMOVED) {
-          issue.setOnDisabledRule(true);
-          // TODO to be improved, why setOnDisabledRule(true) is not enough ?
-          issue.setBeingClosed(true);
-        }
-        // FIXME
-        issue.setSelectedAt(System.currentTimeMillis());
-        result.add(issue);
-      });
+  /**
+   * Same as {@link #loadForComponentUuid(String)} for several components at once. Components are loaded by partitions,
+   * so that the number of requests does not depend on the number of components. Components without open issues
+   * are not part of the result.
+   */
+  public Map<String, List<DefaultIssue>> loadForComponentUuids(Collection<String> componentUuids) {
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      Map<String, List<DefaultIssue>> result = new HashMap<>();
+      IssueMapper mapper = dbSession.getMapper(IssueMapper.class);
+      executeLargeInputsWithoutOutput(componentUuids, partition -> mapper.selectNonClosedByComponentUuids(partition, resultContext -> {
+        DefaultIssue issue = toDefaultIssue((IssueDto) resultContext.getResultObject());
+        result.computeIfAbsent(issue.componentUuid(), uuid -> new ArrayList<>()).add(issue);
+      }));
       return result;
     }
   }
 
+  private DefaultIssue toDefaultIssue(IssueDto dto) {
+    DefaultIssue issue = dto.toDefaultIssue();
+
+    // TODO this field should be set outside this class
+    if (!isActive(issue.ruleKey()) || ruleRepository.getByKey(issue.ruleKey()).getStatus() == RuleStatus.REMOVED) {
+      issue.setOnDisabledRule(true);
+      // TODO to be improved, why setOnDisabledRule(true) is not enough ?
+      issue.setBeingClosed(true);
+    }
+    // FIXME
+    issue.setSelectedAt(System.currentTimeMillis());
+    return issue;
+  }
+
   private boolean isActive(RuleKey ruleKey) {
     return activeRulesHolder.get(ruleKey).isPresent();
   }
@@ -0,0 +1,41 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import java.util.Set;
+
+/**
+ * Issues whose documents in the issue index are outdated after the persistence of the analysis.
+ */
+public interface ChangedIssuesHolder {
+
+  /**
+   * Keys of the issues inserted or updated in database, including the issues closed by the analysis.
+   */
+  Set<String> getIssueKeys();
+
+  /**
+   * Whether the documents of all the issues of the project are outdated, for example because some components were moved
+   * and the paths of their issues changed. In this case the issues of the project must be fully re-indexed, whatever
+   * {@link #getIssueKeys()}.
+   */
+  boolean areAllIssuesChanged();
+
+}
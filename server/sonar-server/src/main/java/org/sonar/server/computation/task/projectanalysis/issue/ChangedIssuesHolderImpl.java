@@ -0,0 +1,52 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static java.util.Collections.unmodifiableSet;
+import static java.util.Objects.requireNonNull;
+
+public class ChangedIssuesHolderImpl implements MutableChangedIssuesHolder {
+
+  private final Set<String> issueKeys = new HashSet<>();
+  private boolean allIssuesChanged = false;
+
+  @Override
+  public Set<String> getIssueKeys() {
+    return unmodifiableSet(issueKeys);
+  }
+
+  @Override
+  public boolean areAllIssuesChanged() {
+    return allIssuesChanged;
+  }
+
+  @Override
+  public void addIssueKey(String issueKey) {
+    issueKeys.add(requireNonNull(issueKey, "Issue key can't be null"));
+  }
+
+  @Override
+  public void setAllIssuesChanged() {
+    this.allIssuesChanged = true;
+  }
+}
@@ -0,0 +1,405 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.issue.IssueComment;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.utils.Duration;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.DefaultIssueComment;
+import org.sonar.core.issue.FieldDiffs;
+import org.sonar.db.protobuf.DbIssues;
+import org.sonar.server.util.cache.DiskCacheCodec;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Binary format of {@link DefaultIssue} in {@link IssueCache}. All the fields are written, including
+ * the changes of the current analysis. The current change is written as a reference to one of the
+ * changes, as it's the same instance in {@link DefaultIssue}.
+ */
+class DefaultIssueCodec implements DiskCacheCodec<DefaultIssue> {
+
+  private static final int NULL_VALUE = 0;
+  private static final int STRING_VALUE = 1;
+  private static final int LONG_VALUE = 2;
+  private static final int INTEGER_VALUE = 3;
+  private static final int DOUBLE_VALUE = 4;
+  private static final int LOCATIONS_VALUE = 5;
+  private static final int SERIALIZED_VALUE = 6;
+
+  @Override
+  public void write(DefaultIssue issue, DataOutput output) throws IOException {
+    writeString(output, issue.key());
+    writeString(output, issue.type() == null ? null : issue.type().name());
+    writeString(output, issue.componentUuid());
+    writeString(output, issue.componentKey());
+    writeString(output, issue.moduleUuid());
+    writeString(output, issue.moduleUuidPath());
+    writeString(output, issue.projectUuid());
+    writeString(output, issue.projectKey());
+    RuleKey ruleKey = issue.ruleKey();
+    output.writeBoolean(ruleKey != null);
+    if (ruleKey != null) {
+      writeString(output, ruleKey.repository());
+      writeString(output, ruleKey.rule());
+    }
+    writeString(output, issue.language());
+    writeString(output, issue.severity());
+    output.writeBoolean(issue.manualSeverity());
+    writeString(output, issue.message());
+    writeValue(output, issue.line());
+    writeValue(output, issue.gap());
+    writeValue(output, issue.effortInMinutes());
+    writeString(output, issue.status());
+    writeString(output, issue.resolution());
+    writeString(output, issue.assignee());
+    writeString(output, issue.checksum());
+    writeAttributes(output, issue);
+    writeString(output, issue.authorLogin());
+    writeComments(output, issue.comments());
+    writeTags(output, issue);
+    writeValue(output, issue.getLocations());
+    writeDate(output, issue.creationDate());
+    writeDate(output, issue.updateDate());
+    writeDate(output, issue.closeDate());
+    writeChanges(output, issue);
+    output.writeBoolean(issue.isNew());
+    output.writeBoolean(issue.isBeingClosed());
+    output.writeBoolean(issue.isOnDisabledRule());
+    output.writeBoolean(issue.isChanged());
+    output.writeBoolean(issue.mustSendNotifications());
+    writeValue(output, issue.selectedAt());
+  }
+
+  @Override
+  public DefaultIssue read(DataInput input) throws IOException {
+    DefaultIssue issue = new DefaultIssue();
+    issue.setKey(readString(input));
+    String type = readString(input);
+    issue.setType(type == null ? null : RuleType.valueOf(type));
+    issue.setComponentUuid(readString(input));
+    issue.setComponentKey(readString(input));
+    issue.setModuleUuid(readString(input));
+    issue.setModuleUuidPath(readString(input));
+    issue.setProjectUuid(readString(input));
+    issue.setProjectKey(readString(input));
+    if (input.readBoolean()) {
+      issue.setRuleKey(RuleKey.of(readString(input), readString(input)));
+    }
+    issue.setLanguage(readString(input));
+    issue.setSeverity(readString(input));
+    issue.setManualSeverity(input.readBoolean());
+    issue.setMessage(readString(input));
+    issue.setLine((Integer) readValue(input));
+    issue.setGap((Double) readValue(input));
+    Long effort = (Long) readValue(input);
+    issue.setEffort(effort == null ? null : Duration.create(effort));
+    String status = readString(input);
+    if (status != null) {
+      // status is mandatory, but it's not set yet on some issues
+      issue.setStatus(status);
+    }
+    issue.setResolution(readString(input));
+    issue.setAssignee(readString(input));
+    issue.setChecksum(readString(input));
+    readAttributes(input, issue);
+    issue.setAuthorLogin(readString(input));
+    readComments(input, issue);
+    readTags(input, issue);
+    issue.setLocations(readValue(input));
+    issue.setCreationDate(readDate(input));
+    issue.setUpdateDate(readDate(input));
+    issue.setCloseDate(readDate(input));
+    readChanges(input, issue);
+    issue.setNew(input.readBoolean());
+    issue.setBeingClosed(input.readBoolean());
+    issue.setOnDisabledRule(input.readBoolean());
+    issue.setChanged(input.readBoolean());
+    issue.setSendNotifications(input.readBoolean());
+    issue.setSelectedAt((Long) readValue(input));
+    return issue;
+  }
+
+  private static void writeAttributes(DataOutput output, DefaultIssue issue) throws IOException {
+    Map<String, String> attributes = issue.attributes();
+    output.writeInt(attributes.size());
+    for (Map.Entry<String, String> entry : attributes.entrySet()) {
+      writeString(output, entry.getKey());
+      writeString(output, entry.getValue());
+    }
+  }
+
+  private static void readAttributes(DataInput input, DefaultIssue issue) throws IOException {
+    int size = input.readInt();
+    if (size > 0) {
+      Map<String, String> attributes = new HashMap<>(size);
+      for (int i = 0; i < size; i++) {
+        attributes.put(readString(input), readString(input));
+      }
+      issue.setAttributes(attributes);
+    }
+  }
+
+  private static void writeComments(DataOutput output, List<IssueComment> comments) throws IOException {
+    output.writeInt(comments.size());
+    for (IssueComment comment : comments) {
+      DefaultIssueComment defaultComment = (DefaultIssueComment) comment;
+      writeString(output, defaultComment.key());
+      writeString(output, defaultComment.issueKey());
+      writeString(output, defaultComment.userLogin());
+      writeString(output, defaultComment.markdownText());
+      writeDate(output, defaultComment.createdAt());
+      writeDate(output, defaultComment.updatedAt());
+      output.writeBoolean(defaultComment.isNew());
+    }
+  }
+
+  private static void readComments(DataInput input, DefaultIssue issue) throws IOException {
+    int size = input.readInt();
+    for (int i = 0; i < size; i++) {
+      issue.addComment(new DefaultIssueComment()
+        .setKey(readString(input))
+        .setIssueKey(readString(input))
+        .setUserLogin(readString(input))
+        .setMarkdownText(readString(input))
+        .setCreatedAt(readDate(input))
+        .setUpdatedAt(readDate(input))
+        .setNew(input.readBoolean()));
+    }
+  }
+
+  private static void writeTags(DataOutput output, DefaultIssue issue) throws IOException {
+    Set<String> tags = issue.tags();
+    output.writeInt(tags.size());
+    for (String tag : tags) {
+      writeString(output, tag);
+    }
+  }
+
+  private static void readTags(DataInput input, DefaultIssue issue) throws IOException {
+    int size = input.readInt();
+    if (size > 0) {
+      Set<String> tags = new LinkedHashSet<>(size);
+      for (int i = 0; i < size; i++) {
+        tags.add(readString(input));
+      }
+      issue.setTags(tags);
+    }
+  }
+
+  /**
+   * The same {@link FieldDiffs} can be referenced several times (in the list of changes and as current change),
+   * so each instance is written once and then referenced by its index.
+   */
+  private static void writeChanges(DataOutput output, DefaultIssue issue) throws IOException {
+    List<FieldDiffs> changes = issue.changes();
+    Map<FieldDiffs, Integer> indexes = new IdentityHashMap<>();
+    List<FieldDiffs> distinctChanges = new ArrayList<>();
+    for (FieldDiffs change : changes) {
+      indexOf(change, indexes, distinctChanges);
+    }
+    FieldDiffs currentChange = issue.currentChange();
+    int currentChangeIndex = currentChange == null ? -1 : indexOf(currentChange, indexes, distinctChanges);
+
+    output.writeInt(distinctChanges.size());
+    for (FieldDiffs change : distinctChanges) {
+      writeFieldDiffs(output, change);
+    }
+    output.writeInt(changes.size());
+    for (FieldDiffs change : changes) {
+      output.writeInt(indexes.get(change));
+    }
+    output.writeInt(currentChangeIndex);
+  }
+
+  private static int indexOf(FieldDiffs change, Map<FieldDiffs, Integer> indexes, List<FieldDiffs> distinctChanges) {
+    Integer index = indexes.get(change);
+    if (index == null) {
+      index = distinctChanges.size();
+      indexes.put(change, index);
+      distinctChanges.add(change);
+    }
+    return index;
+  }
+
+  private static void readChanges(DataInput input, DefaultIssue issue) throws IOException {
+    int distinctSize = input.readInt();
+    List<FieldDiffs> distinctChanges = new ArrayList<>(distinctSize);
+    for (int i = 0; i < distinctSize; i++) {
+      distinctChanges.add(readFieldDiffs(input));
+    }
+    int size = input.readInt();
+    List<FieldDiffs> changes = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      changes.add(distinctChanges.get(input.readInt()));
+    }
+    int currentChangeIndex = input.readInt();
+    if (currentChangeIndex >= 0) {
+      // also adds the current change to the changes, which are replaced just after
+      issue.setCurrentChange(distinctChanges.get(currentChangeIndex));
+    }
+    if (!changes.isEmpty()) {
+      issue.setChanges(changes);
+    } else if (currentChangeIndex >= 0) {
+      issue.setChanges(null);
+    }
+  }
+
+  private static void writeFieldDiffs(DataOutput output, FieldDiffs fieldDiffs) throws IOException {
+    writeString(output, fieldDiffs.issueKey());
+    writeString(output, fieldDiffs.userLogin());
+    writeDate(output, fieldDiffs.creationDate());
+    Map<String, FieldDiffs.Diff> diffs = fieldDiffs.diffs();
+    output.writeInt(diffs.size());
+    for (Map.Entry<String, FieldDiffs.Diff> entry : diffs.entrySet()) {
+      writeString(output, entry.getKey());
+      writeValue(output, entry.getValue().oldValue());
+      writeValue(output, entry.getValue().newValue());
+    }
+  }
+
+  private static FieldDiffs readFieldDiffs(DataInput input) throws IOException {
+    FieldDiffs fieldDiffs = new FieldDiffs()
+      .setIssueKey(readString(input))
+      .setUserLogin(readString(input))
+      .setCreationDate(readDate(input));
+    int size = input.readInt();
+    for (int i = 0; i < size; i++) {
+      fieldDiffs.setDiff(readString(input), (Serializable) readValue(input), (Serializable) readValue(input));
+    }
+    return fieldDiffs;
+  }
+
+  private static void writeDate(DataOutput output, @Nullable Date date) throws IOException {
+    writeValue(output, date == null ? null : date.getTime());
+  }
+
+  @CheckForNull
+  private static Date readDate(DataInput input) throws IOException {
+    Long time = (Long) readValue(input);
+    return time == null ? null : new Date(time);
+  }
+
+  private static void writeValue(DataOutput output, @Nullable Object value) throws IOException {
+    if (value == null) {
+      output.writeByte(NULL_VALUE);
+    } else if (value instanceof String) {
+      output.writeByte(STRING_VALUE);
+      writeString(output, (String) value);
+    } else if (value instanceof Long) {
+      output.writeByte(LONG_VALUE);
+      output.writeLong((Long) value);
+    } else if (value instanceof Integer) {
+      output.writeByte(INTEGER_VALUE);
+      output.writeInt((Integer) value);
+    } else if (value instanceof Double) {
+      output.writeByte(DOUBLE_VALUE);
+      output.writeDouble((Double) value);
+    } else if (value instanceof DbIssues.Locations) {
+      output.writeByte(LOCATIONS_VALUE);
+      writeBytes(output, ((DbIssues.Locations) value).toByteArray());
+    } else {
+      // not expected in issues, but supported for safety
+      output.writeByte(SERIALIZED_VALUE);
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (ObjectOutputStream objectOutput = new ObjectOutputStream(bytes)) {
+        objectOutput.writeObject(value);
+      }
+      writeBytes(output, bytes.toByteArray());
+    }
+  }
+
+  @CheckForNull
+  private static Object readValue(DataInput input) throws IOException {
+    int type = input.readByte();
+    switch (type) {
+      case NULL_VALUE:
+        return null;
+      case STRING_VALUE:
+        return readString(input);
+      case LONG_VALUE:
+        return input.readLong();
+      case INTEGER_VALUE:
+        return input.readInt();
+      case DOUBLE_VALUE:
+        return input.readDouble();
+      case LOCATIONS_VALUE:
+        return DbIssues.Locations.parseFrom(readBytes(input));
+      case SERIALIZED_VALUE:
+        try (ObjectInputStream objectInput = new ObjectInputStream(new ByteArrayInputStream(readBytes(input)))) {
+          return objectInput.readObject();
+        } catch (ClassNotFoundException e) {
+          throw new IllegalStateException("Fail to read value", e);
+        }
+      default:
+        throw new IllegalStateException("Unsupported type of value: " + type);
+    }
+  }
+
+  private static void writeString(DataOutput output, @Nullable String s) throws IOException {
+    if (s == null) {
+      output.writeInt(-1);
+    } else {
+      writeBytes(output, s.getBytes(UTF_8));
+    }
+  }
+
+  @CheckForNull
+  private static String readString(DataInput input) throws IOException {
+    int length = input.readInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    input.readFully(bytes);
+    return new String(bytes, UTF_8);
+  }
+
+  private static void writeBytes(DataOutput output, byte[] bytes) throws IOException {
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  private static byte[] readBytes(DataInput input) throws IOException {
+    byte[] bytes = new byte[input.readInt()];
+    input.readFully(bytes);
+    return bytes;
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.measure;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import javax.annotation.CheckForNull;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.measure.MeasureDto;
+import org.sonar.db.measure.MeasureQuery;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthLimit;
+import org.sonar.server.computation.task.projectanalysis.component.DepthTraversalTypeAwareCrawler;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
+import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
+import org.sonar.server.computation.task.projectanalysis.metric.Metric;
+
+import static java.util.Collections.singletonList;
+import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.PRE_ORDER;
+
+/**
+ * Measures of the last analysis of the project, loaded from DB metric by metric: the first request of a metric loads
+ * its measures on the whole component tree with a single streamed query, instead of one query per component.
+ * <p>
+ * Measures of a metric are stored in arrays sorted by the report ref of their components. The cache is bounded by
+ * the total number of measures it keeps: the least recently used metrics are dropped, and loaded again if requested.
+ * </p>
+ */
+class BaseMeasureCache {
+  static final int MAX_CACHED_MEASURES = 500_000;
+
+  private final DbClient dbClient;
+  private final TreeRootHolder treeRootHolder;
+  private final Cache<Integer, MetricMeasures> measuresByMetricId = CacheBuilder.newBuilder()
+    .maximumWeight(MAX_CACHED_MEASURES)
+    .weigher((Integer metricId, MetricMeasures measures) -> measures.size())
+    .build();
+
+  private volatile ComponentRefs componentRefs;
+
+  BaseMeasureCache(DbClient dbClient, TreeRootHolder treeRootHolder) {
+    this.dbClient = dbClient;
+    this.treeRootHolder = treeRootHolder;
+  }
+
+  Optional<MeasureDto> get(Component component, Metric metric) {
+    ComponentRefs refs = getComponentRefs();
+    Integer ref = refs.refsByUuid.get(component.getUuid());
+    if (ref == null) {
+      // component is not part of the tree of the analysis
+      return selectSingle(component, metric);
+    }
+    MetricMeasures measures = measuresByMetricId.getIfPresent(metric.getId());
+    if (measures == null) {
+      // loaded outside of the cache so that a query does not block other metrics, the first loaded instance is kept
+      MetricMeasures loaded = load(refs, metric.getId());
+      measures = measuresByMetricId.asMap().putIfAbsent(metric.getId(), loaded);
+      if (measures == null) {
+        measures = loaded;
+      }
+    }
+    return Optional.ofNullable(measures.get(ref));
+  }
+
+  private MetricMeasures load(ComponentRefs refs, int metricId) {
+    MeasureDto[] measuresByRef = new MeasureDto[refs.maxRef + 1];
+    int[] count = {0};
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      dbClient.measureDao().selectLastMeasuresOfProject(dbSession, treeRootHolder.getRoot().getUuid(), singletonList(metricId), context -> {
+        MeasureDto dto = (MeasureDto) context.getResultObject();
+        Integer ref = refs.refsByUuid.get(dto.getComponentUuid());
+        if (ref != null) {
+          if (measuresByRef[ref] == null) {
+            count[0]++;
+          }
+          measuresByRef[ref] = dto;
+        }
+      });
+    }
+    return new MetricMeasures(measuresByRef, count[0]);
+  }
+
+  private Optional<MeasureDto> selectSingle(Component component, Metric metric) {
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      MeasureQuery query = MeasureQuery.builder().setComponentUuid(component.getUuid()).setMetricKey(metric.getKey()).build();
+      return dbClient.measureDao().selectSingle(dbSession, query);
+    }
+  }
+
+  private ComponentRefs getComponentRefs() {
+    ComponentRefs res = this.componentRefs;
+    if (res == null) {
+      synchronized (this) {
+        res = this.componentRefs;
+        if (res == null) {
+          res = new ComponentRefs(treeRootHolder.getRoot());
+          this.componentRefs = res;
+        }
+      }
+    }
+    return res;
+  }
+
+  /**
+   * Measures of a metric, without the slots of the components which have none
+   */
+  private static final class MetricMeasures {
+    private final int[] refs;
+    private final MeasureDto[] measures;
+
+    private MetricMeasures(MeasureDto[] measuresByRef, int count) {
+      this.refs = new int[count];
+      this.measures = new MeasureDto[count];
+      int i = 0;
+      for (int ref = 0; ref < measuresByRef.length; ref++) {
+        if (measuresByRef[ref] != null) {
+          refs[i] = ref;
+          measures[i] = measuresByRef[ref];
+          i++;
+        }
+      }
+    }
+
+    int size() {
+      return refs.length;
+    }
+
+    @CheckForNull
+    MeasureDto get(int ref) {
+      int i = Arrays.binarySearch(refs, ref);
+      return i < 0 ? null : measures[i];
+    }
+  }
+
+  private static final class ComponentRefs {
+    private final Map<String, Integer> refsByUuid = new HashMap<>();
+    private int maxRef = 0;
+
+    private ComponentRefs(Component root) {
+      new DepthTraversalTypeAwareCrawler(
+        new TypeAwareVisitorAdapter(CrawlerDepthLimit.FILE, PRE_ORDER) {
+          @Override
+          public void visitAny(Component component) {
+            int ref = component.getReportAttributes().getRef();
+            refsByUuid.put(component.getUuid(), ref);
+            maxRef = Math.max(maxRef, ref);
+          }
+        }).visit(root);
+    }
+  }
+}
@@ -0,0 +1,327 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.measure;
+
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.SetMultimap;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.Developer;
+import org.sonar.server.computation.task.projectanalysis.measure.MapBasedRawMeasureRepository.OverridePolicy;
+import org.sonar.server.computation.task.projectanalysis.metric.Metric;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+import static org.sonar.server.computation.task.projectanalysis.measure.MapBasedRawMeasureRepository.checkValueTypeConsistency;
+
+/**
+ * Implementation of MeasureRepository which supports only raw measures, for components identified by a positive
+ * int (usually their report ref).
+ * <p>
+ * Measures are stored by metric in columns indexed by the int of the component: the value type, value and variation
+ * of numeric measures are kept in primitive arrays and the {@link Measure} objects are rebuilt when requested.
+ * Measures which can not be rebuilt from these columns (string and level measures, measures with data, description
+ * or quality gate status) are kept in a side column, and measures of developers in a side table.
+ * </p>
+ * <p>
+ * Columns are split in pages of {@link MetricColumns#PAGE_SIZE} consecutive components, each page being guarded by its
+ * own lock, so that measures of different subtrees (which have mostly distinct ranges of report refs) can be read and
+ * written concurrently without contending on a single monitor.
+ * </p>
+ * <p>
+ * Behaves as {@link MapBasedRawMeasureRepository}, except that numeric measures returned by this repository are
+ * equal to, but not the same instances as, the added ones.
+ * </p>
+ *
+ * Intended to be used as a delegate of other MeasureRepository implementations (hence the final keyword).
+ */
+public final class IntIndexedRawMeasureRepository implements MeasureRepository {
+  private final Function<Component, Integer> componentToIndex;
+  private final ConcurrentMap<String, MetricColumns> columns = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Integer, Map<MeasureKey, Measure>> developerMeasures = new ConcurrentHashMap<>();
+
+  public IntIndexedRawMeasureRepository(Function<Component, Integer> componentToIndex) {
+    this.componentToIndex = requireNonNull(componentToIndex);
+  }
+
+  /**
+   * @throws UnsupportedOperationException all the time, not supported
+   */
+  @Override
+  public Optional<Measure> getBaseMeasure(Component component, Metric metric) {
+    throw new UnsupportedOperationException("This implementation of MeasureRepository supports only raw measures");
+  }
+
+  @Override
+  public Optional<Measure> getRawMeasure(Component component, Metric metric) {
+    // fail fast
+    requireNonNull(component);
+    requireNonNull(metric);
+
+    return Optional.fromNullable(find(toIndex(component), metric.getKey(), null));
+  }
+
+  @Override
+  public void add(Component component, Metric metric, Measure measure) {
+    requireNonNull(component);
+    checkValueTypeConsistency(metric, measure);
+
+    if (find(toIndex(component), metric.getKey(), measure.getDeveloper()) != null) {
+      throw new UnsupportedOperationException(
+        format(
+          "a measure can be set only once for a specific Component (key=%s), Metric (key=%s). Use update method",
+          component.getKey(),
+          metric.getKey()));
+    }
+    add(component, metric, measure, OverridePolicy.OVERRIDE);
+  }
+
+  @Override
+  public void update(Component component, Metric metric, Measure measure) {
+    requireNonNull(component);
+    checkValueTypeConsistency(metric, measure);
+
+    if (find(toIndex(component), metric.getKey(), measure.getDeveloper()) == null) {
+      throw new UnsupportedOperationException(
+        format(
+          "a measure can be updated only if one already exists for a specific Component (key=%s), Metric (key=%s). Use add method",
+          component.getKey(),
+          metric.getKey()));
+    }
+    add(component, metric, measure, OverridePolicy.OVERRIDE);
+  }
+
+  @Override
+  public Set<Measure> getRawMeasures(Component component, Metric metric) {
+    requireNonNull(metric);
+    requireNonNull(component);
+    int index = toIndex(component);
+    ImmutableSet.Builder<Measure> builder = ImmutableSet.builder();
+    Measure measure = find(index, metric.getKey(), null);
+    if (measure != null) {
+      builder.add(measure);
+    }
+    Map<MeasureKey, Measure> measuresOfDevelopers = developerMeasures.get(index);
+    if (measuresOfDevelopers != null) {
+      for (Map.Entry<MeasureKey, Measure> entry : measuresOfDevelopers.entrySet()) {
+        if (entry.getKey().getMetricKey().equals(metric.getKey())) {
+          builder.add(entry.getValue());
+        }
+      }
+    }
+    return builder.build();
+  }
+
+  @Override
+  public SetMultimap<String, Measure> getRawMeasures(Component component) {
+    int index = toIndex(component);
+    ImmutableSetMultimap.Builder<String, Measure> builder = ImmutableSetMultimap.builder();
+    for (MetricColumns metricColumns : columns.values()) {
+      Measure measure = metricColumns.get(index);
+      if (measure != null) {
+        builder.put(metricColumns.metricKey, measure);
+      }
+    }
+    Map<MeasureKey, Measure> measuresOfDevelopers = developerMeasures.get(index);
+    if (measuresOfDevelopers != null) {
+      for (Map.Entry<MeasureKey, Measure> entry : measuresOfDevelopers.entrySet()) {
+        builder.put(entry.getKey().getMetricKey(), entry.getValue());
+      }
+    }
+    return builder.build();
+  }
+
+  public void add(Component component, Metric metric, Measure measure, OverridePolicy overridePolicy) {
+    requireNonNull(component);
+    requireNonNull(measure);
+    requireNonNull(overridePolicy);
+
+    int index = toIndex(component);
+    if (measure.getDeveloper() != null) {
+      Map<MeasureKey, Measure> measuresOfDevelopers = developerMeasures.computeIfAbsent(index, k -> new ConcurrentHashMap<>());
+      MeasureKey key = new MeasureKey(metric.getKey(), measure.getDeveloper());
+      if (overridePolicy == OverridePolicy.OVERRIDE) {
+        measuresOfDevelopers.put(key, measure);
+      } else {
+        measuresOfDevelopers.putIfAbsent(key, measure);
+      }
+      return;
+    }
+
+    columns.computeIfAbsent(metric.getKey(), MetricColumns::new).put(index, measure, overridePolicy);
+  }
+
+  @CheckForNull
+  private Measure find(int index, String metricKey, @Nullable Developer developer) {
+    if (developer != null) {
+      Map<MeasureKey, Measure> measuresOfDevelopers = developerMeasures.get(index);
+      return measuresOfDevelopers == null ? null : measuresOfDevelopers.get(new MeasureKey(metricKey, developer));
+    }
+    MetricColumns metricColumns = columns.get(metricKey);
+    return metricColumns == null ? null : metricColumns.get(index);
+  }
+
+  private int toIndex(Component component) {
+    int index = componentToIndex.apply(component);
+    checkArgument(index >= 0, "Index of component %s must be positive or zero: %s", component.getKey(), index);
+    return index;
+  }
+
+  private static final class MetricColumns {
+    private static final int PAGE_SHIFT = 8;
+    static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final byte ABSENT = 0;
+    // numeric measures are stored with state 1 + ordinal of their value type
+    private static final byte VALUE_TYPE_MASK = 0x0F;
+    private static final byte OBJECT = 0x10;
+    private static final byte HAS_VARIATION = 0x20;
+    private static final Measure.ValueType[] VALUE_TYPES = Measure.ValueType.values();
+
+    private final String metricKey;
+    // pages are allocated on first use, the array is replaced (never modified in place) when it grows
+    private volatile Page[] pages = new Page[0];
+
+    private MetricColumns(String metricKey) {
+      this.metricKey = metricKey;
+    }
+
+    @CheckForNull
+    Measure get(int index) {
+      Page page = page(index >>> PAGE_SHIFT);
+      return page == null ? null : page.get(index & PAGE_MASK);
+    }
+
+    void put(int index, Measure measure, OverridePolicy overridePolicy) {
+      getOrCreatePage(index >>> PAGE_SHIFT).put(index & PAGE_MASK, measure, overridePolicy);
+    }
+
+    @CheckForNull
+    private Page page(int pageIndex) {
+      Page[] currentPages = pages;
+      return pageIndex < currentPages.length ? currentPages[pageIndex] : null;
+    }
+
+    private Page getOrCreatePage(int pageIndex) {
+      Page page = page(pageIndex);
+      if (page != null) {
+        return page;
+      }
+      synchronized (this) {
+        Page[] currentPages = pages;
+        if (pageIndex < currentPages.length && currentPages[pageIndex] != null) {
+          return currentPages[pageIndex];
+        }
+        Page[] newPages = Arrays.copyOf(currentPages, Math.max(pageIndex + 1, currentPages.length));
+        page = new Page();
+        newPages[pageIndex] = page;
+        pages = newPages;
+        return page;
+      }
+    }
+
+    private static final class Page {
+      private final byte[] states = new byte[PAGE_SIZE];
+      // columns are allocated on first use, as most metrics have either only numeric measures or none
+      @CheckForNull
+      private double[] values;
+      @CheckForNull
+      private double[] variations;
+      @CheckForNull
+      private Measure[] objects;
+
+      @CheckForNull
+      synchronized Measure get(int offset) {
+        byte state = states[offset];
+        if (state == ABSENT) {
+          return null;
+        }
+        if (state == OBJECT) {
+          return objects[offset];
+        }
+        Measure.ValueType valueType = VALUE_TYPES[(state & VALUE_TYPE_MASK) - 1];
+        Double variation = (state & HAS_VARIATION) == 0 ? null : variations[offset];
+        return Measure.restoreNumericMeasure(valueType, values[offset], variation);
+      }
+
+      synchronized void put(int offset, Measure measure, OverridePolicy overridePolicy) {
+        if (states[offset] != ABSENT && overridePolicy != OverridePolicy.OVERRIDE) {
+          return;
+        }
+        if (!isNumeric(measure)) {
+          if (objects == null) {
+            objects = new Measure[PAGE_SIZE];
+          }
+          objects[offset] = measure;
+          states[offset] = OBJECT;
+          return;
+        }
+
+        if (values == null) {
+          values = new double[PAGE_SIZE];
+        }
+        values[offset] = numericValue(measure);
+        byte state = (byte) (measure.getValueType().ordinal() + 1);
+        if (measure.hasVariation()) {
+          if (variations == null) {
+            variations = new double[PAGE_SIZE];
+          }
+          variations[offset] = measure.getVariation();
+          state |= HAS_VARIATION;
+        }
+        states[offset] = state;
+        if (objects != null) {
+          objects[offset] = null;
+        }
+      }
+    }
+
+    private static boolean isNumeric(Measure measure) {
+      Measure.ValueType valueType = measure.getValueType();
+      return valueType != Measure.ValueType.STRING && valueType != Measure.ValueType.LEVEL
+        && measure.getData() == null && measure.getDescription() == null && !measure.hasQualityGateStatus();
+    }
+
+    private static double numericValue(Measure measure) {
+      switch (measure.getValueType()) {
+        case INT:
+          return measure.getIntValue();
+        case LONG:
+          return measure.getLongValue();
+        case DOUBLE:
+          return measure.getDoubleValue();
+        case BOOLEAN:
+          return measure.getBooleanValue() ? 1.0d : 0.0d;
+        default:
+          return 0.0d;
+      }
+    }
+  }
+}
@@ -100,7 +100,7 @@ public final class MapBasedRawMeasureRepository<T> implements MeasureRepository
     add(component, metric, measure, OverridePolicy.OVERRIDE);
   }
 
-  private static void checkValueTypeConsistency(Metric metric, Measure measure) {
+  static void checkValueTypeConsistency(Metric metric, Measure measure) {
     checkArgument(
       measure.getValueType() == Measure.ValueType.NO_VALUE || measure.getValueType() == metric.getType().getValueType(),
       format(
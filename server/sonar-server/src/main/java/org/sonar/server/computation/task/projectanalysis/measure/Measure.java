@@ -103,6 +103,15 @@ public final class Measure {
     return new UpdateMeasureBuilder(measure);
   }
 
+  /**
+   * Restores a measure without description, developer nor data, with a value which is already scaled.
+   * Used by {@link IntIndexedRawMeasureRepository} to rebuild measures stored in primitive columns.
+   */
+  static Measure restoreNumericMeasure(ValueType valueType, double value, @Nullable Double variation) {
+    checkArgument(valueType != ValueType.STRING && valueType != ValueType.LEVEL, "Measure of type %s has no numeric value", valueType);
+    return new Measure(valueType, null, valueType == ValueType.NO_VALUE ? null : value, null, null, null, null, variation);
+  }
+
   public static final class NewMeasureBuilder {
     private Developer developer;
     private String description;
@@ -22,6 +22,7 @@ package org.sonar.server.computation.task.projectanalysis.measure;
 import org.sonar.api.ce.measure.MeasureComputer;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
+import org.sonar.server.computation.task.projectanalysis.component.CrawlBoundVisitor;
 import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthLimit;
 import org.sonar.server.computation.task.projectanalysis.component.SettingsRepository;
 import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
@@ -34,7 +35,7 @@ import static org.sonar.server.computation.task.projectanalysis.component.Compon
 import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.SUBVIEW;
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.POST_ORDER;
 
-public class MeasureComputersVisitor extends TypeAwareVisitorAdapter {
+public class MeasureComputersVisitor extends TypeAwareVisitorAdapter implements CrawlBoundVisitor {
 
   private static final Logger LOGGER = Loggers.get(MeasureComputersVisitor.class);
 
@@ -21,16 +21,15 @@ package org.sonar.server.computation.task.projectanalysis.measure;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.SetMultimap;
-import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.db.DbClient;
-import org.sonar.db.DbSession;
 import org.sonar.db.measure.MeasureDto;
-import org.sonar.db.measure.MeasureQuery;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
 import org.sonar.server.computation.task.projectanalysis.measure.MapBasedRawMeasureRepository.OverridePolicy;
 import org.sonar.server.computation.task.projectanalysis.metric.Metric;
 import org.sonar.server.computation.task.projectanalysis.metric.MetricRepository;
@@ -39,23 +38,36 @@ import org.sonar.server.computation.task.projectanalysis.metric.ReportMetricVali
 import static java.util.Objects.requireNonNull;
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentFunctions.toReportRef;
 
+/**
+ * Raw measures are read from the report and stored in memory, base measures are loaded from DB. The repository can be
+ * used by visitors which visit subtrees concurrently: raw measures are stored in {@link IntIndexedRawMeasureRepository},
+ * which locks only the page of components being accessed, and measures of a component are read from the report under
+ * a lock striped by component.
+ */
 public class MeasureRepositoryImpl implements MeasureRepository {
-  private final MapBasedRawMeasureRepository<Integer> delegate = new MapBasedRawMeasureRepository<>(toReportRef());
-  private final DbClient dbClient;
+  private static final int LOAD_LOCKS = 64;
+
+  private final IntIndexedRawMeasureRepository delegate = new IntIndexedRawMeasureRepository(toReportRef());
+  private final BaseMeasureCache baseMeasureCache;
   private final BatchReportReader reportReader;
   private final BatchMeasureToMeasure batchMeasureToMeasure;
   private final MetricRepository metricRepository;
   private final ReportMetricValidator reportMetricValidator;
 
   private MeasureDtoToMeasure underTest = new MeasureDtoToMeasure();
-  private final Set<Integer> loadedComponents = new HashSet<>();
+  private final Set<Integer> loadedComponents = ConcurrentHashMap.newKeySet();
+  private final Object[] loadLocks = new Object[LOAD_LOCKS];
 
-  public MeasureRepositoryImpl(DbClient dbClient, BatchReportReader reportReader, MetricRepository metricRepository, ReportMetricValidator reportMetricValidator) {
-    this.dbClient = dbClient;
+  public MeasureRepositoryImpl(DbClient dbClient, TreeRootHolder treeRootHolder, BatchReportReader reportReader, MetricRepository metricRepository,
+    ReportMetricValidator reportMetricValidator) {
+    this.baseMeasureCache = new BaseMeasureCache(dbClient, treeRootHolder);
     this.reportReader = reportReader;
     this.reportMetricValidator = reportMetricValidator;
     this.batchMeasureToMeasure = new BatchMeasureToMeasure();
     this.metricRepository = metricRepository;
+    for (int i = 0; i < LOAD_LOCKS; i++) {
+      loadLocks[i] = new Object();
+    }
   }
 
   @Override
@@ -64,14 +76,11 @@ public class MeasureRepositoryImpl implements MeasureRepository {
     requireNonNull(component);
     requireNonNull(metric);
 
-    try (DbSession dbSession = dbClient.openSession(false)) {
-      MeasureQuery query = MeasureQuery.builder().setComponentUuid(component.getUuid()).setMetricKey(metric.getKey()).build();
-      java.util.Optional<MeasureDto> measureDto = dbClient.measureDao().selectSingle(dbSession, query);
-      if (measureDto.isPresent()) {
-        return underTest.toMeasure(measureDto.get(), metric);
-      }
-      return Optional.absent();
+    java.util.Optional<MeasureDto> measureDto = baseMeasureCache.get(component, metric);
+    if (measureDto.isPresent()) {
+      return underTest.toMeasure(measureDto.get(), metric);
     }
+    return Optional.absent();
   }
 
   @Override
@@ -109,21 +118,27 @@ public class MeasureRepositoryImpl implements MeasureRepository {
   }
 
   private void loadBatchMeasuresForComponent(Component component) {
-    if (loadedComponents.contains(component.getReportAttributes().getRef())) {
+    int ref = component.getReportAttributes().getRef();
+    if (loadedComponents.contains(ref)) {
       return;
     }
 
-    try (CloseableIterator<ScannerReport.Measure> readIt = reportReader.readComponentMeasures(component.getReportAttributes().getRef())) {
-      while (readIt.hasNext()) {
-        ScannerReport.Measure batchMeasure = readIt.next();
-        String metricKey = batchMeasure.getMetricKey();
-        if (reportMetricValidator.validate(metricKey)) {
-          Metric metric = metricRepository.getByKey(metricKey);
-          delegate.add(component, metric, batchMeasureToMeasure.toMeasure(batchMeasure, metric).get(), OverridePolicy.DO_NOT_OVERRIDE);
+    synchronized (loadLocks[Math.floorMod(ref, LOAD_LOCKS)]) {
+      if (loadedComponents.contains(ref)) {
+        return;
+      }
+      try (CloseableIterator<ScannerReport.Measure> readIt = reportReader.readComponentMeasures(ref)) {
+        while (readIt.hasNext()) {
+          ScannerReport.Measure batchMeasure = readIt.next();
+          String metricKey = batchMeasure.getMetricKey();
+          if (reportMetricValidator.validate(metricKey)) {
+            Metric metric = metricRepository.getByKey(metricKey);
+            delegate.add(component, metric, batchMeasureToMeasure.toMeasure(batchMeasure, metric).get(), OverridePolicy.DO_NOT_OVERRIDE);
+          }
         }
       }
+      loadedComponents.add(ref);
     }
-    loadedComponents.add(component.getReportAttributes().getRef());
   }
 
 }
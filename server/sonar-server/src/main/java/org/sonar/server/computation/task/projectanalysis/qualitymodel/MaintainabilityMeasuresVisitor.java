@@ -24,6 +24,7 @@ import org.sonar.api.measures.CoreMetrics;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthLimit;
 import org.sonar.server.computation.task.projectanalysis.component.PathAwareVisitorAdapter;
+import org.sonar.server.computation.task.projectanalysis.component.SubtreeIndependentPathAwareVisitor;
 import org.sonar.server.computation.task.projectanalysis.formula.counter.RatingValue;
 import org.sonar.server.computation.task.projectanalysis.measure.Measure;
 import org.sonar.server.computation.task.projectanalysis.measure.MeasureRepository;
@@ -47,7 +48,8 @@ import static org.sonar.server.computation.task.projectanalysis.measure.Measure.
  * {@link CoreMetrics#SQALE_RATING_KEY}
  * {@link CoreMetrics#EFFORT_TO_REACH_MAINTAINABILITY_RATING_A_KEY}
  */
-public class MaintainabilityMeasuresVisitor extends PathAwareVisitorAdapter<MaintainabilityMeasuresVisitor.Counter> {
+public class MaintainabilityMeasuresVisitor extends PathAwareVisitorAdapter<MaintainabilityMeasuresVisitor.Counter>
+  implements SubtreeIndependentPathAwareVisitor<MaintainabilityMeasuresVisitor.Counter> {
   private final MeasureRepository measureRepository;
   private final RatingSettings ratingSettings;
   private final RatingGrid ratingGrid;
@@ -98,6 +100,11 @@ public class MaintainabilityMeasuresVisitor extends PathAwareVisitorAdapter<Main
     computeAndSaveMeasures(file, path);
   }
 
+  @Override
+  public void mergeSubtree(Counter element, Counter subtreeElement) {
+    element.add(subtreeElement);
+  }
+
   private long computeDevelopmentCost(Component file) {
     Optional<Measure> measure = measureRepository.getRawMeasure(file, nclocMetric);
     long ncloc = measure.isPresent() ? measure.get().getIntValue() : 0;
@@ -25,6 +25,7 @@ import org.sonar.api.ce.measure.Issue;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.core.issue.DefaultIssue;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.CrawlBoundVisitor;
 import org.sonar.server.computation.task.projectanalysis.component.PathAwareVisitorAdapter;
 import org.sonar.server.computation.task.projectanalysis.formula.counter.RatingValue;
 import org.sonar.server.computation.task.projectanalysis.issue.ComponentIssuesRepository;
@@ -58,7 +59,8 @@ import static org.sonar.server.computation.task.projectanalysis.qualitymodel.Rat
  * {@link CoreMetrics#NEW_RELIABILITY_RATING_KEY}
  * {@link CoreMetrics#NEW_SECURITY_RATING_KEY}
  */
-public class NewReliabilityAndSecurityRatingMeasuresVisitor extends PathAwareVisitorAdapter<NewReliabilityAndSecurityRatingMeasuresVisitor.Counter> {
+public class NewReliabilityAndSecurityRatingMeasuresVisitor extends PathAwareVisitorAdapter<NewReliabilityAndSecurityRatingMeasuresVisitor.Counter>
+  implements CrawlBoundVisitor {
 
   private static final Map<String, Rating> RATING_BY_SEVERITY = ImmutableMap.of(
     BLOCKER, E,
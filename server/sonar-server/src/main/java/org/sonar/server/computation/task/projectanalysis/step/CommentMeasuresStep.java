@@ -21,9 +21,11 @@ package org.sonar.server.computation.task.projectanalysis.step;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthLimit;
-import org.sonar.server.computation.task.projectanalysis.component.PathAwareCrawler;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
+import org.sonar.server.computation.task.projectanalysis.component.VisitorsCrawlerPool;
 import org.sonar.server.computation.task.projectanalysis.formula.Counter;
 import org.sonar.server.computation.task.projectanalysis.formula.CounterInitializationContext;
 import org.sonar.server.computation.task.projectanalysis.formula.CreateMeasureContext;
@@ -54,12 +56,20 @@ public class CommentMeasuresStep implements ComputationStep {
   private final TreeRootHolder treeRootHolder;
   private final MetricRepository metricRepository;
   private final MeasureRepository measureRepository;
+  @CheckForNull
+  private final VisitorsCrawlerPool visitorsCrawlerPool;
   private final ImmutableList<Formula> formulas;
 
   public CommentMeasuresStep(TreeRootHolder treeRootHolder, MetricRepository metricRepository, MeasureRepository measureRepository) {
+    this(treeRootHolder, metricRepository, measureRepository, null);
+  }
+
+  public CommentMeasuresStep(TreeRootHolder treeRootHolder, MetricRepository metricRepository, MeasureRepository measureRepository,
+    @Nullable VisitorsCrawlerPool visitorsCrawlerPool) {
     this.treeRootHolder = treeRootHolder;
     this.metricRepository = metricRepository;
     this.measureRepository = measureRepository;
+    this.visitorsCrawlerPool = visitorsCrawlerPool;
     this.formulas = ImmutableList.<Formula>of(
       createIntSumFormula(COMMENTED_OUT_CODE_LINES_KEY),
       new DocumentationFormula(),
@@ -68,9 +78,8 @@ public class CommentMeasuresStep implements ComputationStep {
 
   @Override
   public void execute() {
-    new PathAwareCrawler<>(
-      FormulaExecutorComponentVisitor.newBuilder(metricRepository, measureRepository).buildFor(formulas))
-        .visit(treeRootHolder.getRoot());
+    VisitorsCrawlerPool.newCrawler(visitorsCrawlerPool, FormulaExecutorComponentVisitor.newBuilder(metricRepository, measureRepository).buildFor(formulas))
+      .visit(treeRootHolder.getRoot());
   }
 
   private class CommentDensityFormula implements Formula<IntSumCounter> {
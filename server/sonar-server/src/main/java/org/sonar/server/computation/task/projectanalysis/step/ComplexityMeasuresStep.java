@@ -20,8 +20,10 @@
 package org.sonar.server.computation.task.projectanalysis.step;
 
 import com.google.common.collect.ImmutableList;
-import org.sonar.server.computation.task.projectanalysis.component.PathAwareCrawler;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
+import org.sonar.server.computation.task.projectanalysis.component.VisitorsCrawlerPool;
 import org.sonar.server.computation.task.projectanalysis.formula.AverageFormula;
 import org.sonar.server.computation.task.projectanalysis.formula.DistributionFormula;
 import org.sonar.server.computation.task.projectanalysis.formula.Formula;
@@ -74,17 +76,24 @@ public class ComplexityMeasuresStep implements ComputationStep {
   private final TreeRootHolder treeRootHolder;
   private final MetricRepository metricRepository;
   private final MeasureRepository measureRepository;
+  @CheckForNull
+  private final VisitorsCrawlerPool visitorsCrawlerPool;
 
   public ComplexityMeasuresStep(TreeRootHolder treeRootHolder, MetricRepository metricRepository, MeasureRepository measureRepository) {
+    this(treeRootHolder, metricRepository, measureRepository, null);
+  }
+
+  public ComplexityMeasuresStep(TreeRootHolder treeRootHolder, MetricRepository metricRepository, MeasureRepository measureRepository,
+    @Nullable VisitorsCrawlerPool visitorsCrawlerPool) {
     this.treeRootHolder = treeRootHolder;
     this.metricRepository = metricRepository;
     this.measureRepository = measureRepository;
+    this.visitorsCrawlerPool = visitorsCrawlerPool;
   }
 
   @Override
   public void execute() {
-    new PathAwareCrawler<>(
-      FormulaExecutorComponentVisitor.newBuilder(metricRepository, measureRepository).buildFor(FORMULAS))
+    VisitorsCrawlerPool.newCrawler(visitorsCrawlerPool, FormulaExecutorComponentVisitor.newBuilder(metricRepository, measureRepository).buildFor(FORMULAS))
       .visit(treeRootHolder.getRoot());
   }
 
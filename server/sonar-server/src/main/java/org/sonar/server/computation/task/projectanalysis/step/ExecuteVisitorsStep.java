@@ -19,25 +19,49 @@
  */
 package org.sonar.server.computation.task.projectanalysis.step;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor;
+import org.sonar.server.computation.task.projectanalysis.component.CrawlBoundVisitor;
+import org.sonar.server.computation.task.projectanalysis.component.SubtreeIndependentVisitor;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
 import org.sonar.server.computation.task.projectanalysis.component.VisitorsCrawler;
+import org.sonar.server.computation.task.projectanalysis.component.VisitorsCrawlerPool;
 import org.sonar.server.computation.task.step.ComputationStep;
 
+/**
+ * Executes the {@link ComponentVisitor}s on the component tree.
+ * <p>
+ * Each run of consecutive {@link SubtreeIndependentVisitor}s of the list is executed by its own crawl, which visits
+ * subtrees concurrently with the pool of {@link VisitorsCrawlerPool}. The other visitors are executed by sequential
+ * crawls, in the order of the list. A run is kept in the sequential crawl when it is preceded by a visitor which is not
+ * a {@link SubtreeIndependentVisitor} and followed by a {@link CrawlBoundVisitor}, as the latter may read data which is
+ * only kept during the crawl of the former.
+ * </p>
+ */
 public class ExecuteVisitorsStep implements ComputationStep {
 
   private static final Logger LOGGER = Loggers.get(ExecuteVisitorsStep.class);
 
   private final TreeRootHolder treeRootHolder;
   private final List<ComponentVisitor> visitors;
+  @CheckForNull
+  private final VisitorsCrawlerPool visitorsCrawlerPool;
 
   public ExecuteVisitorsStep(TreeRootHolder treeRootHolder, List<ComponentVisitor> visitors) {
+    this(treeRootHolder, visitors, null);
+  }
+
+  public ExecuteVisitorsStep(TreeRootHolder treeRootHolder, List<ComponentVisitor> visitors, @Nullable VisitorsCrawlerPool visitorsCrawlerPool) {
     this.treeRootHolder = treeRootHolder;
     this.visitors = visitors;
+    this.visitorsCrawlerPool = visitorsCrawlerPool;
   }
 
   @Override
@@ -47,14 +71,62 @@ public class ExecuteVisitorsStep implements ComputationStep {
 
   @Override
   public void execute() {
-    VisitorsCrawler visitorsCrawler = new VisitorsCrawler(visitors, LOGGER.isDebugEnabled());
+    ForkJoinPool forkJoinPool = visitorsCrawlerPool == null ? null : visitorsCrawlerPool.get();
+    if (forkJoinPool == null) {
+      execute(visitors, null);
+      return;
+    }
+
+    int lastCrawlBoundIndex = lastIndexOfCrawlBoundVisitor();
+    List<ComponentVisitor> sequentialVisitors = new ArrayList<>();
+    boolean afterSequentialVisitor = false;
+    int index = 0;
+    while (index < visitors.size()) {
+      int runEnd = endOfSubtreeIndependentRun(index);
+      if (runEnd > index && (!afterSequentialVisitor || lastCrawlBoundIndex < index)) {
+        execute(sequentialVisitors, null);
+        sequentialVisitors = new ArrayList<>();
+        execute(visitors.subList(index, runEnd), forkJoinPool);
+        index = runEnd;
+      } else {
+        ComponentVisitor visitor = visitors.get(index);
+        sequentialVisitors.add(visitor);
+        afterSequentialVisitor |= !(visitor instanceof SubtreeIndependentVisitor);
+        index++;
+      }
+    }
+    execute(sequentialVisitors, null);
+  }
+
+  private int lastIndexOfCrawlBoundVisitor() {
+    for (int i = visitors.size() - 1; i >= 0; i--) {
+      if (visitors.get(i) instanceof CrawlBoundVisitor) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private int endOfSubtreeIndependentRun(int start) {
+    int end = start;
+    while (end < visitors.size() && visitors.get(end) instanceof SubtreeIndependentVisitor) {
+      end++;
+    }
+    return end;
+  }
+
+  private void execute(List<ComponentVisitor> visitorsToExecute, @Nullable ForkJoinPool forkJoinPool) {
+    if (visitorsToExecute.isEmpty()) {
+      return;
+    }
+    VisitorsCrawler visitorsCrawler = new VisitorsCrawler(visitorsToExecute, LOGGER.isDebugEnabled(), forkJoinPool);
     visitorsCrawler.visit(treeRootHolder.getRoot());
-    logVisitorExecutionDurations(visitors, visitorsCrawler);
+    logVisitorExecutionDurations(visitorsToExecute, visitorsCrawler);
   }
 
   private static void logVisitorExecutionDurations(List<ComponentVisitor> visitors, VisitorsCrawler visitorsCrawler) {
     if (LOGGER.isDebugEnabled()) {
-      LOGGER.debug("  Execution time for each component visitor:");
+      LOGGER.debug("  Execution time for each component visitor{}:", visitorsCrawler.isConcurrent() ? " (cumulated over threads)" : "");
       Map<ComponentVisitor, Long> cumulativeDurations = visitorsCrawler.getCumulativeDurations();
       for (ComponentVisitor visitor : visitors) {
         LOGGER.debug("  - {} | time={}ms", visitor.getClass().getSimpleName(), cumulativeDurations.get(visitor));
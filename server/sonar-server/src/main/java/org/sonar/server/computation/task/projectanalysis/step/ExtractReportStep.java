@@ -24,19 +24,26 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Optional;
+import org.apache.commons.io.FileUtils;
 import org.sonar.api.utils.MessageException;
 import org.sonar.api.utils.TempFolder;
-import org.sonar.api.utils.ZipUtils;
 import org.sonar.ce.queue.CeTask;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.ce.CeTaskInputDao;
+import org.sonar.scanner.protocol.output.IndexedReportArchive;
+import org.sonar.scanner.protocol.output.ZipReportContainer;
 import org.sonar.server.computation.task.projectanalysis.batch.MutableBatchReportDirectoryHolder;
 import org.sonar.server.computation.task.step.ComputationStep;
 
 /**
- * Extracts the content zip file of the {@link CeTask} to a temp directory and adds a {@link File}
- * representing that temp directory to the {@link MutableBatchReportDirectoryHolder}.
+ * Copies the report of the {@link CeTask}, either an {@link IndexedReportArchive} or a zip file, to a temp directory
+ * and adds a {@link File} representing that temp directory to the {@link MutableBatchReportDirectoryHolder}.
+ * <p>
+ * The report is not extracted. Its entries are read lazily by
+ * {@link org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader}, so that steps only pay for
+ * the entries they actually read.
+ * </p>
  */
 public class ExtractReportStep implements ComputationStep {
 
@@ -58,14 +65,16 @@ public class ExtractReportStep implements ComputationStep {
     try (DbSession dbSession = dbClient.openSession(false)) {
       Optional<CeTaskInputDao.DataStream> opt = dbClient.ceTaskInputDao().selectData(dbSession, task.getUuid());
       if (opt.isPresent()) {
-        File unzippedDir = tempFolder.newDir();
+        File reportDir = tempFolder.newDir();
         try (CeTaskInputDao.DataStream reportStream = opt.get();
-             InputStream zipStream = new BufferedInputStream(reportStream.getInputStream())) {
-          ZipUtils.unzip(zipStream, unzippedDir);
+             InputStream input = new BufferedInputStream(reportStream.getInputStream())) {
+          // entries are read directly from the stored file by BatchReportReader, no need to extract them
+          String filename = IndexedReportArchive.isIndexedArchive(input) ? IndexedReportArchive.FILENAME : ZipReportContainer.FILENAME;
+          FileUtils.copyInputStreamToFile(input, new File(reportDir, filename));
         } catch (IOException e) {
           throw new IllegalStateException("Fail to extract report " + task.getUuid() + " from database", e);
         }
-        reportDirectoryHolder.setDirectory(unzippedDir);
+        reportDirectoryHolder.setDirectory(reportDir);
       } else {
         throw MessageException.of("Analysis report " + task.getUuid() + " is missing in database");
       }
@@ -19,11 +19,15 @@
  */
 package org.sonar.server.computation.task.projectanalysis.step;
 
+import com.google.common.collect.ImmutableSet;
+import java.util.Set;
 import org.sonar.core.util.UuidFactory;
 import org.sonar.server.computation.task.projectanalysis.analysis.MutableAnalysisMetadataHolder;
-import org.sonar.server.computation.task.step.ComputationStep;
+import org.sonar.server.computation.task.step.DependencyAwareComputationStep;
 
-public class GenerateAnalysisUuid implements ComputationStep {
+import static java.util.Collections.emptySet;
+
+public class GenerateAnalysisUuid implements DependencyAwareComputationStep {
 
   private final UuidFactory uuidFactory;
   private final MutableAnalysisMetadataHolder analysisMetadataHolder;
@@ -38,6 +42,16 @@ public class GenerateAnalysisUuid implements ComputationStep {
     analysisMetadataHolder.setUuid(uuidFactory.create());
   }
 
+  @Override
+  public Set<Class<?>> readHolders() {
+    return emptySet();
+  }
+
+  @Override
+  public Set<Class<?>> writtenHolders() {
+    return ImmutableSet.of(MutableAnalysisMetadataHolder.class);
+  }
+
   @Override
   public String getDescription() {
     return "Generate analysis UUID";
@@ -22,18 +22,22 @@ package org.sonar.server.computation.task.projectanalysis.step;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
+import org.sonar.server.computation.task.projectanalysis.issue.ChangedIssuesHolder;
 import org.sonar.server.computation.task.step.ComputationStep;
 import org.sonar.server.es.ProjectIndexer;
+import org.sonar.server.issue.index.IssueIndexer;
 
 public class IndexAnalysisStep implements ComputationStep {
 
   private static final Logger LOGGER = Loggers.get(IndexAnalysisStep.class);
 
   private final TreeRootHolder treeRootHolder;
+  private final ChangedIssuesHolder changedIssuesHolder;
   private final ProjectIndexer[] indexers;
 
-  public IndexAnalysisStep(TreeRootHolder treeRootHolder, ProjectIndexer... indexers) {
+  public IndexAnalysisStep(TreeRootHolder treeRootHolder, ChangedIssuesHolder changedIssuesHolder, ProjectIndexer... indexers) {
     this.treeRootHolder = treeRootHolder;
+    this.changedIssuesHolder = changedIssuesHolder;
     this.indexers = indexers;
   }
 
@@ -42,7 +46,13 @@ public class IndexAnalysisStep implements ComputationStep {
     String projectUuid = treeRootHolder.getRoot().getUuid();
     for (ProjectIndexer indexer : indexers) {
       LOGGER.debug("Call {}", indexer);
-      indexer.indexProject(projectUuid, ProjectIndexer.Cause.NEW_ANALYSIS);
+      if (indexer instanceof IssueIndexer && !changedIssuesHolder.areAllIssuesChanged()) {
+        // only the issues persisted by this analysis are re-indexed. Issues purged from db
+        // are removed from index by IndexPurgeListener.
+        ((IssueIndexer) indexer).index(changedIssuesHolder.getIssueKeys());
+      } else {
+        indexer.indexProject(projectUuid, ProjectIndexer.Cause.NEW_ANALYSIS);
+      }
     }
   }
 
@@ -20,8 +20,13 @@
 package org.sonar.server.computation.task.projectanalysis.step;
 
 import com.google.common.base.Function;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javax.annotation.Nonnull;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
@@ -38,6 +43,7 @@ import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthL
 import org.sonar.server.computation.task.projectanalysis.component.DepthTraversalTypeAwareCrawler;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
 import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
+import org.sonar.server.computation.task.projectanalysis.duplication.CrossProjectDuplicationIndex;
 import org.sonar.server.computation.task.projectanalysis.duplication.CrossProjectDuplicationStatusHolder;
 import org.sonar.server.computation.task.projectanalysis.duplication.IntegrateCrossProjectDuplications;
 import org.sonar.server.computation.task.projectanalysis.analysis.Analysis;
@@ -45,6 +51,7 @@ import org.sonar.server.computation.task.step.ComputationStep;
 
 import static com.google.common.collect.FluentIterable.from;
 import static com.google.common.collect.Lists.newArrayList;
+import static java.util.Collections.emptyList;
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.PRE_ORDER;
 
 /**
@@ -56,6 +63,11 @@ import static org.sonar.server.computation.task.projectanalysis.component.Compon
  */
 public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationStep {
 
+  /**
+   * Number of distinct hashes from which the pending files of a language are searched in database
+   */
+  static final int BATCH_SIZE = 1_000;
+
   private static final Logger LOGGER = Loggers.get(LoadCrossProjectDuplicationsRepositoryStep.class);
 
   private final TreeRootHolder treeRootHolder;
@@ -63,23 +75,28 @@ public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationSt
   private final AnalysisMetadataHolder analysisMetadataHolder;
   private final IntegrateCrossProjectDuplications integrateCrossProjectDuplications;
   private final CrossProjectDuplicationStatusHolder crossProjectDuplicationStatusHolder;
+  private final CrossProjectDuplicationIndex crossProjectDuplicationIndex;
   private final DbClient dbClient;
 
   public LoadCrossProjectDuplicationsRepositoryStep(TreeRootHolder treeRootHolder, BatchReportReader reportReader,
     AnalysisMetadataHolder analysisMetadataHolder, CrossProjectDuplicationStatusHolder crossProjectDuplicationStatusHolder,
-    IntegrateCrossProjectDuplications integrateCrossProjectDuplications, DbClient dbClient) {
+    IntegrateCrossProjectDuplications integrateCrossProjectDuplications, CrossProjectDuplicationIndex crossProjectDuplicationIndex,
+    DbClient dbClient) {
     this.treeRootHolder = treeRootHolder;
     this.reportReader = reportReader;
     this.analysisMetadataHolder = analysisMetadataHolder;
     this.integrateCrossProjectDuplications = integrateCrossProjectDuplications;
     this.crossProjectDuplicationStatusHolder = crossProjectDuplicationStatusHolder;
+    this.crossProjectDuplicationIndex = crossProjectDuplicationIndex;
     this.dbClient = dbClient;
   }
 
   @Override
   public void execute() {
     if (crossProjectDuplicationStatusHolder.isEnabled()) {
-      new DepthTraversalTypeAwareCrawler(new CrossProjectDuplicationVisitor()).visit(treeRootHolder.getRoot());
+      CrossProjectDuplicationVisitor visitor = new CrossProjectDuplicationVisitor();
+      new DepthTraversalTypeAwareCrawler(visitor).visit(treeRootHolder.getRoot());
+      visitor.searchPendingFiles();
     }
   }
 
@@ -88,12 +105,24 @@ public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationSt
     return "Compute cross project duplications";
   }
 
+  /**
+   * Files are not searched one by one: their hashes are searched in database by batches of about
+   * {@link #BATCH_SIZE} distinct hashes of a same language.
+   */
   private class CrossProjectDuplicationVisitor extends TypeAwareVisitorAdapter {
+    private final Map<String, CrossProjectDuplicationIndex.Hashes> hashesByLanguage = new HashMap<>();
+    private final Map<String, Batch> batchesByLanguage = new HashMap<>();
+    private String projectUuid;
 
     private CrossProjectDuplicationVisitor() {
       super(CrawlerDepthLimit.FILE, PRE_ORDER);
     }
 
+    @Override
+    public void visitProject(Component project) {
+      this.projectUuid = project.getUuid();
+    }
+
     @Override
     public void visitFile(Component file) {
       List<CpdTextBlock> cpdTextBlocks = newArrayList(reportReader.readCpdTextBlocks(file.getReportAttributes().getRef()));
@@ -102,28 +131,93 @@ public class LoadCrossProjectDuplicationsRepositoryStep implements ComputationSt
         return;
       }
 
-      Collection<String> hashes = from(cpdTextBlocks).transform(CpdTextBlockToHash.INSTANCE).toList();
-      List<DuplicationUnitDto> dtos = selectDuplicates(file, hashes);
-      if (dtos.isEmpty()) {
+      String language = file.getFileAttributes().getLanguageKey();
+      if (language == null) {
+        return;
+      }
+      // only blocks which may be duplicated in other projects are searched in db
+      CrossProjectDuplicationIndex.Hashes indexedHashes = hashesByLanguage.computeIfAbsent(language, crossProjectDuplicationIndex::getHashes);
+      Set<String> hashes = from(cpdTextBlocks).transform(CpdTextBlockToHash.INSTANCE)
+        .filter(hash -> indexedHashes.mayBeDuplicated(hash, projectUuid))
+        .toSet();
+      if (hashes.isEmpty()) {
+        return;
+      }
+      Batch batch = batchesByLanguage.computeIfAbsent(language, Batch::new);
+      batch.add(new PendingFile(file, cpdTextBlocks, hashes));
+      if (batch.hashes.size() >= BATCH_SIZE) {
+        search(batch);
+        batchesByLanguage.remove(language);
+      }
+    }
+
+    private void searchPendingFiles() {
+      batchesByLanguage.values().forEach(this::search);
+      batchesByLanguage.clear();
+    }
+
+    private void search(Batch batch) {
+      Map<String, List<DuplicationUnitDto>> dtosByHash = new HashMap<>();
+      for (DuplicationUnitDto dto : selectDuplicates(batch.language, batch.hashes)) {
+        dtosByHash.computeIfAbsent(dto.getHash(), hash -> new ArrayList<>()).add(dto);
+      }
+      if (dtosByHash.isEmpty()) {
         return;
       }
+      for (PendingFile pendingFile : batch.files) {
+        List<DuplicationUnitDto> dtos = new ArrayList<>();
+        pendingFile.hashes.forEach(hash -> dtos.addAll(dtosByHash.getOrDefault(hash, emptyList())));
+        if (!dtos.isEmpty()) {
+          computeCpd(pendingFile, dtos);
+        }
+      }
+    }
 
+    private void computeCpd(PendingFile pendingFile, List<DuplicationUnitDto> dtos) {
+      Component file = pendingFile.file;
       Collection<Block> duplicatedBlocks = from(dtos).transform(DtoToBlock.INSTANCE).toList();
-      Collection<Block> originBlocks = from(cpdTextBlocks).transform(new CpdTextBlockToBlock(file.getKey())).toList();
+      Collection<Block> originBlocks = from(pendingFile.cpdTextBlocks).transform(new CpdTextBlockToBlock(file.getKey())).toList();
       LOGGER.trace("Found {} duplicated cpd blocks on file {}", duplicatedBlocks.size(), file.getKey());
 
       integrateCrossProjectDuplications.computeCpd(file, originBlocks, duplicatedBlocks);
     }
 
-    private List<DuplicationUnitDto> selectDuplicates(Component file, Collection<String> hashes) {
+    private List<DuplicationUnitDto> selectDuplicates(String language, Collection<String> hashes) {
       try (DbSession dbSession = dbClient.openSession(false)) {
         Analysis projectAnalysis = analysisMetadataHolder.getBaseAnalysis();
         String analysisUuid = projectAnalysis == null ? null : projectAnalysis.getUuid();
-        return dbClient.duplicationDao().selectCandidates(dbSession, analysisUuid, file.getFileAttributes().getLanguageKey(), hashes);
+        return dbClient.duplicationDao().selectCandidates(dbSession, analysisUuid, language, hashes);
       }
     }
   }
 
+  private static class Batch {
+    private final String language;
+    private final List<PendingFile> files = new ArrayList<>();
+    private final Set<String> hashes = new HashSet<>();
+
+    private Batch(String language) {
+      this.language = language;
+    }
+
+    private void add(PendingFile file) {
+      files.add(file);
+      hashes.addAll(file.hashes);
+    }
+  }
+
+  private static class PendingFile {
+    private final Component file;
+    private final List<CpdTextBlock> cpdTextBlocks;
+    private final Set<String> hashes;
+
+    private PendingFile(Component file, List<CpdTextBlock> cpdTextBlocks, Set<String> hashes) {
+      this.file = file;
+      this.cpdTextBlocks = cpdTextBlocks;
+      this.hashes = hashes;
+    }
+  }
+
   private enum CpdTextBlockToHash implements Function<CpdTextBlock, String> {
     INSTANCE;
 
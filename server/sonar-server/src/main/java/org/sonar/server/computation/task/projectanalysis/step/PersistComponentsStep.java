@@ -47,6 +47,7 @@ import org.sonar.server.computation.task.projectanalysis.component.PathAwareCraw
 import org.sonar.server.computation.task.projectanalysis.component.PathAwareVisitor;
 import org.sonar.server.computation.task.projectanalysis.component.PathAwareVisitorAdapter;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolder;
+import org.sonar.server.computation.task.projectanalysis.issue.MutableChangedIssuesHolder;
 import org.sonar.server.computation.task.step.ComputationStep;
 
 import static com.google.common.collect.FluentIterable.from;
@@ -66,16 +67,19 @@ public class PersistComponentsStep implements ComputationStep {
   private final System2 system2;
   private final MutableDisabledComponentsHolder disabledComponentsHolder;
   private final AnalysisMetadataHolder analysisMetadataHolder;
+  private final MutableChangedIssuesHolder changedIssuesHolder;
 
   public PersistComponentsStep(DbClient dbClient, TreeRootHolder treeRootHolder,
     MutableDbIdsRepository dbIdsRepository, System2 system2,
-    MutableDisabledComponentsHolder disabledComponentsHolder, AnalysisMetadataHolder analysisMetadataHolder) {
+    MutableDisabledComponentsHolder disabledComponentsHolder, AnalysisMetadataHolder analysisMetadataHolder,
+    MutableChangedIssuesHolder changedIssuesHolder) {
     this.dbClient = dbClient;
     this.treeRootHolder = treeRootHolder;
     this.dbIdsRepository = dbIdsRepository;
     this.system2 = system2;
     this.disabledComponentsHolder = disabledComponentsHolder;
     this.analysisMetadataHolder = analysisMetadataHolder;
+    this.changedIssuesHolder = changedIssuesHolder;
   }
 
   @Override
@@ -211,6 +215,11 @@ public class PersistComponentsStep implements ComputationStep {
       if (update.isPresent()) {
         ComponentUpdateDto updateDto = update.get();
         dbClient.componentDao().update(dbSession, updateDto);
+        if (!StringUtils.equals(existingComponent.path(), updateDto.getBPath())
+          || !StringUtils.equals(existingComponent.moduleUuidPath(), updateDto.getBModuleUuidPath())) {
+          // path and module path of the component are copied into the documents of its issues
+          changedIssuesHolder.setAllIssuesChanged();
+        }
 
         // update the fields in memory in order the PathAwareVisitor.Path
         // to be up-to-date
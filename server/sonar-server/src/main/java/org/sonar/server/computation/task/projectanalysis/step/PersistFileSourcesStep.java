@@ -21,19 +21,31 @@ package org.sonar.server.computation.task.projectanalysis.step;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.ObjectUtils;
+import org.slf4j.MDC;
+import org.sonar.api.config.Settings;
 import org.sonar.api.utils.System2;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
-import org.sonar.db.protobuf.DbFileSources;
 import org.sonar.db.source.FileSourceDto;
 import org.sonar.db.source.FileSourceDto.Type;
 import org.sonar.scanner.protocol.output.ScannerReport;
@@ -56,11 +68,31 @@ import org.sonar.server.computation.task.projectanalysis.source.RangeOffsetConve
 import org.sonar.server.computation.task.projectanalysis.source.ScmLineReader;
 import org.sonar.server.computation.task.projectanalysis.source.SourceLinesRepository;
 import org.sonar.server.computation.task.projectanalysis.source.SymbolsLineReader;
-import org.sonar.server.computation.task.step.ComputationStep;
+import org.sonar.server.computation.task.step.DependencyAwareComputationStep;
 
+import static java.util.Collections.emptySet;
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.PRE_ORDER;
 
-public class PersistFileSourcesStep implements ComputationStep {
+/**
+ * Persists the sources of files in table FILE_SOURCES.
+ * <p>
+ * Data of files are computed and encoded concurrently, on {@link #THREADS_PROPERTY} threads, while the calling thread
+ * writes them in the order of the component tree. Rows are written with JDBC batches, committed every
+ * {@link #MAX_BATCH_ROWS} rows or {@link #MAX_BATCH_BYTES} bytes of binary data. Files are not computed further
+ * while the files waiting to be written exceed {@link #MAX_PENDING_BYTES} bytes, so that memory stays bounded
+ * whatever the size of the files. At most two files per thread are submitted in advance.
+ * </p>
+ */
+public class PersistFileSourcesStep implements DependencyAwareComputationStep {
+
+  /**
+   * Number of threads used to compute the data of files. Data are computed by the thread which writes them when lower than 2.
+   */
+  public static final String THREADS_PROPERTY = "sonar.ce.fileSources.threads";
+
+  static final int MAX_BATCH_ROWS = 100;
+  static final long MAX_BATCH_BYTES = 16L * 1024 * 1024;
+  static final long MAX_PENDING_BYTES = 64L * 1024 * 1024;
 
   private final DbClient dbClient;
   private final System2 system2;
@@ -69,9 +101,27 @@ public class PersistFileSourcesStep implements ComputationStep {
   private final SourceLinesRepository sourceLinesRepository;
   private final ScmInfoRepository scmInfoRepository;
   private final DuplicationRepository duplicationRepository;
+  private final int threads;
+  private final long maxPendingBytes;
 
   public PersistFileSourcesStep(DbClient dbClient, System2 system2, TreeRootHolder treeRootHolder, BatchReportReader reportReader, SourceLinesRepository sourceLinesRepository,
     ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository) {
+    this(dbClient, system2, treeRootHolder, reportReader, sourceLinesRepository, scmInfoRepository, duplicationRepository, 1);
+  }
+
+  public PersistFileSourcesStep(DbClient dbClient, System2 system2, TreeRootHolder treeRootHolder, BatchReportReader reportReader, SourceLinesRepository sourceLinesRepository,
+    ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository, Settings settings) {
+    this(dbClient, system2, treeRootHolder, reportReader, sourceLinesRepository, scmInfoRepository, duplicationRepository,
+      settings.getString(THREADS_PROPERTY) == null ? Runtime.getRuntime().availableProcessors() : settings.getInt(THREADS_PROPERTY));
+  }
+
+  PersistFileSourcesStep(DbClient dbClient, System2 system2, TreeRootHolder treeRootHolder, BatchReportReader reportReader, SourceLinesRepository sourceLinesRepository,
+    ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository, int threads) {
+    this(dbClient, system2, treeRootHolder, reportReader, sourceLinesRepository, scmInfoRepository, duplicationRepository, threads, MAX_PENDING_BYTES);
+  }
+
+  PersistFileSourcesStep(DbClient dbClient, System2 system2, TreeRootHolder treeRootHolder, BatchReportReader reportReader, SourceLinesRepository sourceLinesRepository,
+    ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository, int threads, long maxPendingBytes) {
     this.dbClient = dbClient;
     this.system2 = system2;
     this.treeRootHolder = treeRootHolder;
@@ -79,27 +129,49 @@ public class PersistFileSourcesStep implements ComputationStep {
     this.sourceLinesRepository = sourceLinesRepository;
     this.scmInfoRepository = scmInfoRepository;
     this.duplicationRepository = duplicationRepository;
+    this.threads = threads;
+    this.maxPendingBytes = maxPendingBytes;
   }
 
   @Override
   public void execute() {
-    // Don't use batch insert for file_sources since keeping all data in memory can produce OOM for big files
-    try (DbSession dbSession = dbClient.openSession(false)) {
-      new DepthTraversalTypeAwareCrawler(new FileSourceVisitor(dbSession))
+    ExecutorService executorService = threads < 2 ? MoreExecutors.newDirectExecutorService()
+      : Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("CE_file_sources-%d").setDaemon(true).build());
+    try (DbSession dbSession = dbClient.openSession(true)) {
+      FileSourceVisitor visitor = new FileSourceVisitor(dbSession, executorService, Math.max(threads, 1) * 2, maxPendingBytes);
+      new DepthTraversalTypeAwareCrawler(visitor)
         .visit(treeRootHolder.getRoot());
+      visitor.writePending(0);
+      dbSession.commit();
+    } finally {
+      executorService.shutdownNow();
     }
   }
 
   private class FileSourceVisitor extends TypeAwareVisitorAdapter {
 
     private final DbSession session;
+    private final ExecutorService executorService;
+    private final int maxPendingFiles;
+    private final long maxPendingBytes;
+    // files being computed, in the order of the tree
+    private final Deque<Future<FileSource>> pendingFiles = new ArrayDeque<>();
+    // size of the files which are computed but not written yet
+    private final AtomicLong pendingBytes = new AtomicLong();
+    @CheckForNull
+    private final Map<String, String> loggingContext = MDC.getCopyOfContextMap();
 
     private Map<String, FileSourceDto> previousFileSourcesByUuid = new HashMap<>();
     private String projectUuid;
+    private int batchRows = 0;
+    private long batchBytes = 0;
 
-    private FileSourceVisitor(DbSession session) {
+    private FileSourceVisitor(DbSession session, ExecutorService executorService, int maxPendingFiles, long maxPendingBytes) {
       super(CrawlerDepthLimit.FILE, PRE_ORDER);
       this.session = session;
+      this.executorService = executorService;
+      this.maxPendingFiles = maxPendingFiles;
+      this.maxPendingBytes = maxPendingBytes;
     }
 
     @Override
@@ -114,12 +186,40 @@ public class PersistFileSourcesStep implements ComputationStep {
 
     @Override
     public void visitFile(Component file) {
+      // ScmInfoRepository is not thread safe
+      Optional<ScmInfo> scmInfo = scmInfoRepository.getScmInfo(file);
+      pendingFiles.add(executorService.submit(() -> computeInLoggingContext(file, scmInfo)));
+      writePending(maxPendingFiles);
+    }
+
+    private FileSource computeInLoggingContext(Component file, Optional<ScmInfo> scmInfo) {
+      // the task can be executed by the calling thread, so its own logging context is restored afterwards
+      Map<String, String> previousLoggingContext = MDC.getCopyOfContextMap();
+      setLoggingContext(loggingContext);
+      try {
+        FileSource fileSource = computeFileSource(file, scmInfo);
+        pendingBytes.addAndGet(fileSource.size());
+        return fileSource;
+      } finally {
+        setLoggingContext(previousLoggingContext);
+      }
+    }
+
+    private void setLoggingContext(@Nullable Map<String, String> context) {
+      if (context == null) {
+        MDC.clear();
+      } else {
+        MDC.setContextMap(context);
+      }
+    }
+
+    private FileSource computeFileSource(Component file, Optional<ScmInfo> scmInfo) {
       CloseableIterator<String> linesIterator = sourceLinesRepository.readLines(file);
-      LineReaders lineReaders = new LineReaders(reportReader, scmInfoRepository, duplicationRepository, file);
+      LineReaders lineReaders = new LineReaders(reportReader, scmInfo, duplicationRepository, file);
       try {
         ComputeFileSourceData computeFileSourceData = new ComputeFileSourceData(linesIterator, lineReaders.readers(), file.getFileAttributes().getLines());
         ComputeFileSourceData.Data fileSourceData = computeFileSourceData.compute();
-        persistSource(fileSourceData, file.getUuid(), lineReaders.getLatestChange());
+        return new FileSource(file.getUuid(), fileSourceData, lineReaders.getLatestChange());
       } catch (Exception e) {
         throw new IllegalStateException(String.format("Cannot persist sources of %s", file.getKey()), e);
       } finally {
@@ -128,14 +228,45 @@ public class PersistFileSourcesStep implements ComputationStep {
       }
     }
 
-    private void persistSource(ComputeFileSourceData.Data fileSourceData, String componentUuid, @Nullable Changeset latestChange) {
-      DbFileSources.Data fileData = fileSourceData.getFileSourceData();
+    /**
+     * Writes the computed files, in order, until at most {@code maxPending} files are being computed and the computed
+     * files waiting to be written don't exceed the maximum number of bytes
+     */
+    private void writePending(int maxPending) {
+      while (pendingFiles.size() > maxPending
+        || (!pendingFiles.isEmpty() && (pendingFiles.peek().isDone() || pendingBytes.get() > maxPendingBytes))) {
+        FileSource fileSource = await(pendingFiles.poll());
+        pendingBytes.addAndGet(-fileSource.size());
+        persistSource(fileSource);
+      }
+    }
 
-      byte[] data = FileSourceDto.encodeSourceData(fileData);
-      String dataHash = DigestUtils.md5Hex(data);
-      String srcHash = fileSourceData.getSrcHash();
-      String lineHashes = fileSourceData.getLineHashes();
-      FileSourceDto previousDto = previousFileSourcesByUuid.get(componentUuid);
+    private FileSource await(Future<FileSource> future) {
+      try {
+        return future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while persisting sources", e);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new IllegalStateException(cause);
+      }
+    }
+
+    private void persistSource(FileSource fileSource) {
+      String componentUuid = fileSource.fileUuid;
+      byte[] data = fileSource.data;
+      String dataHash = fileSource.dataHash;
+      String srcHash = fileSource.srcHash;
+      String lineHashes = fileSource.lineHashes;
+      // removed so that binary data is not kept in memory once written
+      FileSourceDto previousDto = previousFileSourcesByUuid.remove(componentUuid);
 
       if (previousDto == null) {
         FileSourceDto dto = new FileSourceDto()
@@ -148,14 +279,14 @@ public class PersistFileSourcesStep implements ComputationStep {
           .setLineHashes(lineHashes)
           .setCreatedAt(system2.now())
           .setUpdatedAt(system2.now())
-          .setRevision(computeRevision(latestChange));
+          .setRevision(fileSource.revision);
         dbClient.fileSourceDao().insert(session, dto);
-        session.commit();
+        addToBatch(data);
       } else {
         // Update only if data_hash has changed or if src_hash is missing or revision is missing (progressive migration)
         boolean binaryDataUpdated = !dataHash.equals(previousDto.getDataHash());
         boolean srcHashUpdated = !srcHash.equals(previousDto.getSrcHash());
-        String revision = computeRevision(latestChange);
+        String revision = fileSource.revision;
         boolean revisionUpdated = !ObjectUtils.equals(revision, previousDto.getRevision());
         if (binaryDataUpdated || srcHashUpdated || revisionUpdated) {
           previousDto
@@ -166,17 +297,48 @@ public class PersistFileSourcesStep implements ComputationStep {
             .setRevision(revision)
             .setUpdatedAt(system2.now());
           dbClient.fileSourceDao().update(session, previousDto);
-          session.commit();
+          addToBatch(data);
         }
       }
     }
 
-    @CheckForNull
-    private String computeRevision(@Nullable Changeset latestChange) {
-      if (latestChange == null) {
-        return null;
+    private void addToBatch(byte[] data) {
+      batchRows++;
+      batchBytes += data.length;
+      if (batchRows >= MAX_BATCH_ROWS || batchBytes >= MAX_BATCH_BYTES) {
+        session.commit();
+        batchRows = 0;
+        batchBytes = 0;
       }
-      return latestChange.getRevision();
+    }
+  }
+
+  /**
+   * Data of a file, encoded and ready to be persisted
+   */
+  private static class FileSource {
+    private final String fileUuid;
+    private final byte[] data;
+    private final String dataHash;
+    private final String srcHash;
+    private final String lineHashes;
+    @CheckForNull
+    private final String revision;
+
+    private FileSource(String fileUuid, ComputeFileSourceData.Data fileSourceData, @Nullable Changeset latestChange) {
+      this.fileUuid = fileUuid;
+      this.data = FileSourceDto.encodeSourceData(fileSourceData.getFileSourceData());
+      this.dataHash = DigestUtils.md5Hex(data);
+      this.srcHash = fileSourceData.getSrcHash();
+      this.lineHashes = fileSourceData.getLineHashes();
+      this.revision = latestChange == null ? null : latestChange.getRevision();
+    }
+
+    /**
+     * Approximate size in memory, in bytes
+     */
+    private long size() {
+      return data.length + 2L * lineHashes.length();
     }
   }
 
@@ -186,13 +348,12 @@ public class PersistFileSourcesStep implements ComputationStep {
     @CheckForNull
     private final ScmLineReader scmLineReader;
 
-    LineReaders(BatchReportReader reportReader, ScmInfoRepository scmInfoRepository, DuplicationRepository duplicationRepository, Component component) {
+    LineReaders(BatchReportReader reportReader, Optional<ScmInfo> scmInfoOptional, DuplicationRepository duplicationRepository, Component component) {
       int componentRef = component.getReportAttributes().getRef();
       CloseableIterator<ScannerReport.LineCoverage> coverageIt = reportReader.readComponentCoverage(componentRef);
       closeables.add(coverageIt);
       readers.add(new CoverageLineReader(coverageIt));
 
-      Optional<ScmInfo> scmInfoOptional = scmInfoRepository.getScmInfo(component);
       if (scmInfoOptional.isPresent()) {
         this.scmLineReader = new ScmLineReader(scmInfoOptional.get());
         readers.add(scmLineReader);
@@ -231,6 +392,16 @@ public class PersistFileSourcesStep implements ComputationStep {
     }
   }
 
+  @Override
+  public Set<Class<?>> readHolders() {
+    return ImmutableSet.of(TreeRootHolder.class, BatchReportReader.class, SourceLinesRepository.class, ScmInfoRepository.class, DuplicationRepository.class);
+  }
+
+  @Override
+  public Set<Class<?>> writtenHolders() {
+    return emptySet();
+  }
+
   @Override
   public String getDescription() {
     return "Persist sources";
@@ -32,6 +32,7 @@ import org.sonar.db.issue.IssueChangeMapper;
 import org.sonar.db.issue.IssueDto;
 import org.sonar.db.issue.IssueMapper;
 import org.sonar.server.computation.task.projectanalysis.issue.IssueCache;
+import org.sonar.server.computation.task.projectanalysis.issue.MutableChangedIssuesHolder;
 import org.sonar.server.computation.task.projectanalysis.issue.RuleRepository;
 import org.sonar.server.computation.task.projectanalysis.issue.UpdateConflictResolver;
 import org.sonar.server.computation.task.step.ComputationStep;
@@ -43,14 +44,16 @@ public class PersistIssuesStep implements ComputationStep {
   private final UpdateConflictResolver conflictResolver;
   private final RuleRepository ruleRepository;
   private final IssueCache issueCache;
+  private final MutableChangedIssuesHolder changedIssuesHolder;
 
   public PersistIssuesStep(DbClient dbClient, System2 system2, UpdateConflictResolver conflictResolver,
-    RuleRepository ruleRepository, IssueCache issueCache) {
+    RuleRepository ruleRepository, IssueCache issueCache, MutableChangedIssuesHolder changedIssuesHolder) {
     this.dbClient = dbClient;
     this.system2 = system2;
     this.conflictResolver = conflictResolver;
     this.ruleRepository = ruleRepository;
     this.issueCache = issueCache;
+    this.changedIssuesHolder = changedIssuesHolder;
   }
 
   @Override
@@ -65,6 +68,7 @@ public class PersistIssuesStep implements ComputationStep {
         boolean saved = persistIssueIfRequired(mapper, issue);
         if (saved) {
           insertChanges(changeMapper, issue);
+          changedIssuesHolder.addIssueKey(issue.key());
         }
       }
       dbSession.flushStatements();
@@ -19,37 +19,86 @@
  */
 package org.sonar.server.computation.task.step;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
+import org.slf4j.MDC;
+import org.sonar.api.config.Settings;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.core.util.logs.Profiler;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Executes the {@link ComputationStep}s in the order of {@link ComputationSteps#instances()}.
+ * <p>
+ * When {@link #THREADS_PROPERTY} is greater than 1, consecutive {@link DependencyAwareComputationStep}s which do not
+ * depend on each other are executed concurrently by a pool of {@link #THREADS_PROPERTY} threads. Other steps are
+ * still executed one at a time, in the calling thread, once all the previous steps are finished. Setting the property
+ * to 1 executes all the steps sequentially.
+ * </p>
+ */
 public final class ComputationStepExecutor {
+  public static final String THREADS_PROPERTY = "sonar.ce.steps.threads";
+
   private static final Logger LOGGER = Loggers.get(ComputationStepExecutor.class);
 
   private final ComputationSteps steps;
   @CheckForNull
   private final Listener listener;
+  private final int threads;
 
   /**
    * Used when no {@link ComputationStepExecutor.Listener} is available in pico
    * container.
    */
   public ComputationStepExecutor(ComputationSteps steps) {
-    this(steps, null);
+    this(steps, (Listener) null);
   }
 
   public ComputationStepExecutor(ComputationSteps steps, @Nullable Listener listener) {
+    this(steps, listener, 1);
+  }
+
+  /**
+   * Used when no {@link ComputationStepExecutor.Listener} is available in pico
+   * container.
+   */
+  public ComputationStepExecutor(ComputationSteps steps, Settings settings) {
+    this(steps, null, settings);
+  }
+
+  public ComputationStepExecutor(ComputationSteps steps, @Nullable Listener listener, Settings settings) {
+    this(steps, listener, settings.getString(THREADS_PROPERTY) == null ? Runtime.getRuntime().availableProcessors() : settings.getInt(THREADS_PROPERTY));
+  }
+
+  private ComputationStepExecutor(ComputationSteps steps, @Nullable Listener listener, int threads) {
+    checkArgument(threads > 0, "Property %s must be strictly positive: %s", THREADS_PROPERTY, threads);
     this.steps = steps;
     this.listener = listener;
+    this.threads = threads;
   }
 
   public void execute() {
     Profiler stepProfiler = Profiler.create(LOGGER);
     boolean allStepsExecuted = false;
     try {
-      executeSteps(stepProfiler);
+      if (threads == 1) {
+        executeSteps(stepProfiler);
+      } else {
+        executeStepsConcurrently(stepProfiler);
+      }
       allStepsExecuted = true;
     } finally {
       if (listener != null) {
@@ -60,10 +109,146 @@ public final class ComputationStepExecutor {
 
   private void executeSteps(Profiler stepProfiler) {
     for (ComputationStep step : steps.instances()) {
-      stepProfiler.start();
-      step.execute();
-      stepProfiler.stopDebug(step.getDescription());
+      executeStep(step, stepProfiler);
+    }
+  }
+
+  private static void executeStep(ComputationStep step, Profiler stepProfiler) {
+    stepProfiler.start();
+    step.execute();
+    stepProfiler.stopDebug(step.getDescription());
+  }
+
+  private void executeStepsConcurrently(Profiler stepProfiler) {
+    ExecutorService executorService = Executors.newFixedThreadPool(threads,
+      new ThreadFactoryBuilder().setNameFormat("CE_step-%d").setDaemon(true).build());
+    try {
+      List<DependencyAwareComputationStep> dependencyAwareSteps = new ArrayList<>();
+      for (ComputationStep step : steps.instances()) {
+        if (step instanceof DependencyAwareComputationStep) {
+          dependencyAwareSteps.add((DependencyAwareComputationStep) step);
+        } else {
+          executeDependencyAwareSteps(dependencyAwareSteps, executorService, stepProfiler);
+          dependencyAwareSteps.clear();
+          executeStep(step, stepProfiler);
+        }
+      }
+      executeDependencyAwareSteps(dependencyAwareSteps, executorService, stepProfiler);
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  /**
+   * Executes the specified steps as soon as the steps they depend on are finished. Once a step failed, no other step
+   * is started but the running ones are waited for before the failure is rethrown.
+   */
+  private static void executeDependencyAwareSteps(List<DependencyAwareComputationStep> stepList, ExecutorService executorService, Profiler stepProfiler) {
+    if (stepList.size() <= 1) {
+      stepList.forEach(step -> executeStep(step, stepProfiler));
+      return;
+    }
+
+    int size = stepList.size();
+    int[] remainingDependencies = new int[size];
+    List<List<Integer>> dependents = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      dependents.add(new ArrayList<>());
+      for (int j = 0; j < i; j++) {
+        if (dependsOn(stepList.get(i), stepList.get(j))) {
+          remainingDependencies[i]++;
+          dependents.get(j).add(i);
+        }
+      }
+    }
+
+    Map<String, String> loggingContext = MDC.getCopyOfContextMap();
+    CompletionService<Integer> completionService = new ExecutorCompletionService<>(executorService);
+    int running = 0;
+    for (int i = 0; i < size; i++) {
+      if (remainingDependencies[i] == 0) {
+        submit(completionService, stepList, i, loggingContext);
+        running++;
+      }
+    }
+    Throwable failure = null;
+    while (running > 0) {
+      Future<Integer> executed = take(completionService);
+      running--;
+      try {
+        int index = executed.get();
+        if (failure == null) {
+          for (int dependent : dependents.get(index)) {
+            remainingDependencies[dependent]--;
+            if (remainingDependencies[dependent] == 0) {
+              submit(completionService, stepList, dependent, loggingContext);
+              running++;
+            }
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while executing computation steps", e);
+      } catch (ExecutionException e) {
+        if (failure == null) {
+          failure = e.getCause();
+        }
+      }
+    }
+    if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    }
+    if (failure instanceof Error) {
+      throw (Error) failure;
+    }
+    if (failure != null) {
+      throw new IllegalStateException(failure);
+    }
+  }
+
+  private static void submit(CompletionService<Integer> completionService, List<DependencyAwareComputationStep> stepList, int index,
+    @Nullable Map<String, String> loggingContext) {
+    completionService.submit(() -> {
+      if (loggingContext != null) {
+        MDC.setContextMap(loggingContext);
+      }
+      try {
+        executeStep(stepList.get(index), Profiler.create(LOGGER));
+        return index;
+      } finally {
+        MDC.clear();
+      }
+    });
+  }
+
+  private static Future<Integer> take(CompletionService<Integer> completionService) {
+    try {
+      return completionService.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while executing computation steps", e);
+    }
+  }
+
+  /**
+   * A step depends on a previous step when it writes a holder the previous step reads or writes, or when it reads a
+   * holder the previous step writes.
+   */
+  private static boolean dependsOn(DependencyAwareComputationStep step, DependencyAwareComputationStep previousStep) {
+    return intersects(step.writtenHolders(), previousStep.readHolders())
+      || intersects(step.writtenHolders(), previousStep.writtenHolders())
+      || intersects(step.readHolders(), previousStep.writtenHolders());
+  }
+
+  private static boolean intersects(Set<Class<?>> holders, Set<Class<?>> otherHolders) {
+    for (Class<?> holder : holders) {
+      for (Class<?> otherHolder : otherHolders) {
+        if (holder.isAssignableFrom(otherHolder) || otherHolder.isAssignableFrom(holder)) {
+          return true;
+        }
+      }
     }
+    return false;
   }
 
   private void executeListener(boolean allStepsExecuted) {
@@ -0,0 +1,45 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.step;
+
+import java.util.Set;
+
+/**
+ * A {@link ComputationStep} which declares the holders and repositories it reads and writes, so that
+ * {@link ComputationStepExecutor} can execute it concurrently with the other steps it does not depend on.
+ * <p>
+ * Holders are identified by their type. Two types conflict when one is assignable from the other, so that
+ * a step writing a {@code MutableTreeRootHolder} conflicts with a step reading a {@code TreeRootHolder}.
+ * </p>
+ * A step which does not implement this interface reads and writes everything: it is executed only once
+ * all the previous steps are finished, and the next steps wait for it.
+ */
+public interface DependencyAwareComputationStep extends ComputationStep {
+
+  /**
+   * Types of the holders read by this step. Holders written by the step don't need to be repeated here.
+   */
+  Set<Class<?>> readHolders();
+
+  /**
+   * Types of the holders written by this step.
+   */
+  Set<Class<?>> writtenHolders();
+}
@@ -21,10 +21,14 @@ package org.sonar.server.es;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Maps;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Semaphore;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
@@ -39,6 +43,8 @@ import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.common.unit.ByteSizeUnit;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHitField;
 import org.elasticsearch.search.sort.SortOrder;
@@ -48,6 +54,7 @@ import org.sonar.api.utils.log.Loggers;
 import org.sonar.core.util.ProgressLogger;
 
 import static java.lang.String.format;
+import static java.util.Collections.emptyList;
 
 /**
  * Helper to bulk requests in an efficient way :
@@ -55,6 +62,11 @@ import static java.lang.String.format;
  *   <li>bulk request is sent on the wire when its size is higher than 5Mb</li>
  *   <li>on large table indexing, replicas and automatic refresh can be temporarily disabled</li>
  *   <li>index refresh is optional (enabled by default)</li>
+ *   <li>requests can be added concurrently by several threads, see {@link PartitionedIndexing}</li>
+ *   <li>requests rejected by Elasticsearch because its bulk queue is full are retried with an exponential backoff</li>
+ *   <li>on large indexing, size and concurrency of bulk requests adapt to the latency and rejections of Elasticsearch,
+ *   see {@link BulkThrottle}</li>
+ *   <li>throughput is recorded in {@link EsClient#getBulkIndexingStats()}</li>
  * </ul>
  */
 public class BulkIndexer implements Startable {
@@ -63,6 +75,9 @@ public class BulkIndexer implements Startable {
   private static final long FLUSH_BYTE_SIZE = new ByteSizeValue(1, ByteSizeUnit.MB).bytes();
   private static final String REFRESH_INTERVAL_SETTING = "index.refresh_interval";
   private static final String ALREADY_STARTED_MESSAGE = "Bulk indexing is already started";
+  private static final int MAX_RETRIES = 8;
+  private static final long RETRY_INITIAL_BACKOFF_MS = 50L;
+  private static final long RETRY_MAX_BACKOFF_MS = 5_000L;
 
   private final EsClient client;
   private final String indexName;
@@ -71,9 +86,13 @@ public class BulkIndexer implements Startable {
   private BulkRequestBuilder bulkRequest = null;
   private Map<String, Object> largeInitialSettings = null;
   private final AtomicLong counter = new AtomicLong(0L);
+  private final AtomicLong sentBytes = new AtomicLong(0L);
+  private final Queue<RetryBatch> retries = new ConcurrentLinkedQueue<>();
   private final int concurrentRequests;
-  private final Semaphore semaphore;
+  private final BulkIndexingStats.IndexStats stats;
   private final ProgressLogger progress;
+  private BulkThrottle throttle;
+  private long startedAt;
 
   public BulkIndexer(EsClient client, String indexName) {
     this.client = client;
@@ -83,14 +102,17 @@ public class BulkIndexer implements Startable {
 
     // see https://jira.sonarsource.com/browse/SONAR-8075
     this.concurrentRequests = Math.max(1, Runtime.getRuntime().availableProcessors() / 5);
-    this.semaphore = new Semaphore(concurrentRequests);
+    this.stats = client.getBulkIndexingStats().forIndex(indexName);
   }
 
   public enum Size {
     /** Use this size for a limited number of documents. */
     REGULAR,
 
-    /** Use this size for initial indexing and if you expect unusual huge numbers of documents. */
+    /**
+     * Use this size for initial indexing and if you expect unusual huge numbers of documents.
+     * Size and concurrency of bulk requests adapt to the speed of Elasticsearch.
+     */
     LARGE;
   }
 
@@ -104,6 +126,9 @@ public class BulkIndexer implements Startable {
     return this;
   }
 
+  /**
+   * Size of the bulk requests sent to Elasticsearch, or initial size if indexing is {@link Size#LARGE}.
+   */
   public BulkIndexer setFlushByteSize(long flushByteSize) {
     this.flushByteSize = flushByteSize;
     return this;
@@ -130,17 +155,26 @@ public class BulkIndexer implements Startable {
       bulkSettings.put(REFRESH_INTERVAL_SETTING, "-1");
 
       updateSettings(bulkSettings);
+      throttle = BulkThrottle.adaptive(concurrentRequests, Runtime.getRuntime().availableProcessors(), flushByteSize);
+    } else {
+      throttle = BulkThrottle.fixed(concurrentRequests, flushByteSize);
     }
     bulkRequest = client.prepareBulk().setRefresh(false);
     counter.set(0L);
+    sentBytes.set(0L);
+    retries.clear();
+    startedAt = System.currentTimeMillis();
     progress.start();
   }
 
-  public void add(ActionRequest<?> request) {
+  public synchronized void add(ActionRequest<?> request) {
     bulkRequest.request().add(request);
-    if (bulkRequest.request().estimatedSizeInBytes() >= flushByteSize) {
+    if (bulkRequest.request().estimatedSizeInBytes() >= throttle.getFlushByteSize()) {
       executeBulk();
     }
+    if (!retries.isEmpty()) {
+      executeDueRetries();
+    }
   }
 
   public void addDeletion(SearchRequestBuilder searchRequest) {
@@ -200,16 +234,18 @@ public class BulkIndexer implements Startable {
 
   @Override
   public void stop() {
-    if (bulkRequest.numberOfActions() > 0) {
-      executeBulk();
+    synchronized (this) {
+      if (bulkRequest.numberOfActions() > 0) {
+        executeBulk();
+      }
     }
     try {
-      if (semaphore.tryAcquire(concurrentRequests, 10, TimeUnit.MINUTES)) {
-        semaphore.release(concurrentRequests);
-      }
+      awaitCompletion();
     } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
       throw new IllegalStateException("Elasticsearch bulk requests still being executed after 10 minutes", e);
     }
+    stats.setThroughput(counter.get(), sentBytes.get(), System.currentTimeMillis() - startedAt);
     progress.stop();
     client.prepareRefresh(indexName).get();
     if (size == Size.LARGE) {
@@ -229,36 +265,120 @@ public class BulkIndexer implements Startable {
     req.get();
   }
 
+  /**
+   * Waits for the in-flight requests, including the retries of the rejected ones.
+   */
+  private void awaitCompletion() throws InterruptedException {
+    while (true) {
+      if (!throttle.awaitIdle(10, TimeUnit.MINUTES)) {
+        throw new IllegalStateException("Elasticsearch bulk requests still being executed after 10 minutes");
+      }
+      RetryBatch retry = retries.poll();
+      if (retry == null) {
+        return;
+      }
+      long delay = retry.notBefore - System.currentTimeMillis();
+      if (delay > 0L) {
+        Thread.sleep(delay);
+      }
+      execute(retry.toBulkRequest(client), retry.attempt);
+    }
+  }
+
   private void executeBulk() {
     final BulkRequestBuilder req = this.bulkRequest;
     this.bulkRequest = client.prepareBulk().setRefresh(false);
-    semaphore.acquireUninterruptibly();
-    req.execute(new BulkResponseActionListener(req));
+    execute(req, 0);
+  }
+
+  private void executeDueRetries() {
+    long now = System.currentTimeMillis();
+    RetryBatch retry = retries.peek();
+    while (retry != null && retry.notBefore <= now && retries.remove(retry)) {
+      execute(retry.toBulkRequest(client), retry.attempt);
+      retry = retries.peek();
+    }
+  }
+
+  private void execute(BulkRequestBuilder req, int attempt) {
+    throttle.acquire();
+    long bytes = req.request().estimatedSizeInBytes();
+    sentBytes.addAndGet(bytes);
+    stats.onRequestSent();
+    req.execute(new BulkResponseActionListener(req, attempt, bytes));
+  }
+
+  private static boolean isRejection(Throwable e) {
+    return ExceptionsHelper.unwrap(e, EsRejectedExecutionException.class) != null;
   }
 
   private class BulkResponseActionListener implements ActionListener<BulkResponse> {
     private final BulkRequestBuilder req;
+    private final int attempt;
+    private final long bytes;
+    private final long startedAt = System.currentTimeMillis();
 
-    BulkResponseActionListener(BulkRequestBuilder req) {
+    BulkResponseActionListener(BulkRequestBuilder req, int attempt, long bytes) {
       this.req = req;
+      this.attempt = attempt;
+      this.bytes = bytes;
     }
 
     @Override
     public void onResponse(BulkResponse response) {
-      semaphore.release();
-      counter.addAndGet(response.getItems().length);
-
+      List<ActionRequest> rejected = new ArrayList<>();
       for (BulkItemResponse item : response.getItems()) {
         if (item.isFailed()) {
-          LOGGER.error("index [{}], type [{}], id [{}], message [{}]", item.getIndex(), item.getType(), item.getId(), item.getFailureMessage());
+          if (item.getFailure().getStatus() == RestStatus.TOO_MANY_REQUESTS && attempt < MAX_RETRIES) {
+            rejected.add(req.request().requests().get(item.getItemId()));
+          } else {
+            LOGGER.error("index [{}], type [{}], id [{}], message [{}]", item.getIndex(), item.getType(), item.getId(), item.getFailureMessage());
+          }
         }
       }
+      long done = (long) response.getItems().length - rejected.size();
+      counter.addAndGet(done);
+      done(done, rejected);
     }
 
     @Override
     public void onFailure(Throwable e) {
-      semaphore.release();
-      LOGGER.error("Fail to execute bulk index request: " + req, e);
+      if (isRejection(e) && attempt < MAX_RETRIES) {
+        done(0L, req.request().requests());
+      } else {
+        LOGGER.error("Fail to execute bulk index request: " + req, e);
+        done(0L, emptyList());
+      }
+    }
+
+    private void done(long doneRequests, List<ActionRequest> rejected) {
+      if (!rejected.isEmpty()) {
+        long backoff = Math.min(RETRY_MAX_BACKOFF_MS, RETRY_INITIAL_BACKOFF_MS << attempt);
+        LOGGER.debug("{} requests rejected by Elasticsearch, retry #{} in {} ms", rejected.size(), attempt + 1, backoff);
+        retries.add(new RetryBatch(rejected, attempt + 1, System.currentTimeMillis() + backoff));
+      }
+      stats.onRequestDone(doneRequests, bytes, rejected.size());
+      stats.setThroughput(counter.get(), sentBytes.get(), System.currentTimeMillis() - BulkIndexer.this.startedAt);
+      // retries must be queued before releasing, so that they are not missed by stop()
+      throttle.release(System.currentTimeMillis() - startedAt, !rejected.isEmpty());
+    }
+  }
+
+  private static class RetryBatch {
+    private final List<ActionRequest> requests;
+    private final int attempt;
+    private final long notBefore;
+
+    RetryBatch(List<ActionRequest> requests, int attempt, long notBefore) {
+      this.requests = requests;
+      this.attempt = attempt;
+      this.notBefore = notBefore;
+    }
+
+    BulkRequestBuilder toBulkRequest(EsClient client) {
+      BulkRequestBuilder bulk = client.prepareBulk().setRefresh(false);
+      requests.forEach(bulk.request()::add);
+      return bulk;
     }
   }
 }
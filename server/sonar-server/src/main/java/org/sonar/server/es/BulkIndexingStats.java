@@ -0,0 +1,113 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput of the bulk requests executed by {@link BulkIndexer}, by index. Statistics are
+ * shared by all the bulk indexers of a {@link EsClient}.
+ */
+public class BulkIndexingStats {
+
+  private final ConcurrentMap<String, IndexStats> statsByIndex = new ConcurrentHashMap<>();
+
+  public IndexStats forIndex(String index) {
+    return statsByIndex.computeIfAbsent(index, i -> new IndexStats());
+  }
+
+  /**
+   * Statistics of the indices which have been bulk indexed at least once, sorted by index name.
+   */
+  public SortedMap<String, IndexStats> getAll() {
+    return new TreeMap<>(statsByIndex);
+  }
+
+  public static class IndexStats {
+    private final AtomicLong docs = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong rejectedDocs = new AtomicLong();
+    private final AtomicInteger inFlightRequests = new AtomicInteger();
+    private volatile long docsPerSecond = 0L;
+    private volatile long bytesPerSecond = 0L;
+
+    void onRequestSent() {
+      inFlightRequests.incrementAndGet();
+    }
+
+    void onRequestDone(long indexedDocs, long requestBytes, long rejected) {
+      inFlightRequests.decrementAndGet();
+      docs.addAndGet(indexedDocs);
+      bytes.addAndGet(requestBytes);
+      rejectedDocs.addAndGet(rejected);
+    }
+
+    void setThroughput(long docs, long bytes, long elapsedMs) {
+      long ms = Math.max(1L, elapsedMs);
+      this.docsPerSecond = docs * 1000L / ms;
+      this.bytesPerSecond = bytes * 1000L / ms;
+    }
+
+    /**
+     * Total number of documents indexed or deleted
+     */
+    public long getDocs() {
+      return docs.get();
+    }
+
+    /**
+     * Total size of the bulk requests sent to Elasticsearch
+     */
+    public long getBytes() {
+      return bytes.get();
+    }
+
+    /**
+     * Total number of documents rejected by Elasticsearch because its bulk queue is full. Rejected
+     * documents are retried, so this is not a number of lost documents.
+     */
+    public long getRejectedDocs() {
+      return rejectedDocs.get();
+    }
+
+    public int getInFlightRequests() {
+      return inFlightRequests.get();
+    }
+
+    /**
+     * Throughput of the current bulk indexing, or of the last one if none is in progress
+     */
+    public long getDocsPerSecond() {
+      return docsPerSecond;
+    }
+
+    /**
+     * @see #getDocsPerSecond()
+     */
+    public long getBytesPerSecond() {
+      return bytesPerSecond;
+    }
+  }
+}
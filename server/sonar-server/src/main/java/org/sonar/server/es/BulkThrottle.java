@@ -0,0 +1,165 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Limits the number of concurrent bulk requests of a {@link BulkIndexer} and the size of
+ * these requests.
+ * <p/>
+ * When adaptive, limits are adjusted after each response (additive increase, multiplicative decrease):
+ * <ul>
+ *   <li>requests rejected by Elasticsearch halve both the concurrency and the size of requests</li>
+ *   <li>slow responses decrease the concurrency</li>
+ *   <li>fast responses increase the size of requests and, after a few consecutive ones, the concurrency</li>
+ * </ul>
+ */
+class BulkThrottle {
+
+  static final long MIN_FLUSH_BYTE_SIZE = 256 * 1024L;
+  static final long MAX_FLUSH_BYTE_SIZE = 16 * 1024 * 1024L;
+  static final long FAST_RESPONSE_MS = 250L;
+  static final long SLOW_RESPONSE_MS = 2_000L;
+  static final int FAST_RESPONSES_BEFORE_INCREASE = 5;
+
+  private final boolean adaptive;
+  private final int minConcurrency;
+  private final int maxConcurrency;
+  private final long minFlushByteSize;
+  private final long maxFlushByteSize;
+  private final Lock lock = new ReentrantLock();
+  private final Condition permitReleased = lock.newCondition();
+
+  private int concurrency;
+  private long flushByteSize;
+  private int inFlight = 0;
+  private int consecutiveFastResponses = 0;
+
+  private BulkThrottle(boolean adaptive, int concurrency, int maxConcurrency, long flushByteSize) {
+    checkArgument(concurrency > 0, "Concurrency must be strictly positive: %s", concurrency);
+    checkArgument(flushByteSize > 0, "Flush byte size must be strictly positive: %s", flushByteSize);
+    this.adaptive = adaptive;
+    this.concurrency = concurrency;
+    this.minConcurrency = 1;
+    this.maxConcurrency = Math.max(concurrency, maxConcurrency);
+    this.flushByteSize = flushByteSize;
+    this.minFlushByteSize = Math.min(flushByteSize, MIN_FLUSH_BYTE_SIZE);
+    this.maxFlushByteSize = Math.max(flushByteSize, MAX_FLUSH_BYTE_SIZE);
+  }
+
+  static BulkThrottle fixed(int concurrency, long flushByteSize) {
+    return new BulkThrottle(false, concurrency, concurrency, flushByteSize);
+  }
+
+  static BulkThrottle adaptive(int initialConcurrency, int maxConcurrency, long initialFlushByteSize) {
+    return new BulkThrottle(true, initialConcurrency, maxConcurrency, initialFlushByteSize);
+  }
+
+  int getConcurrency() {
+    lock.lock();
+    try {
+      return concurrency;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  long getFlushByteSize() {
+    lock.lock();
+    try {
+      return flushByteSize;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Blocks until the number of in-flight requests is lower than the concurrency.
+   */
+  void acquire() {
+    lock.lock();
+    try {
+      while (inFlight >= concurrency) {
+        permitReleased.awaitUninterruptibly();
+      }
+      inFlight++;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  void release(long latencyMs, boolean rejected) {
+    lock.lock();
+    try {
+      inFlight--;
+      if (adaptive) {
+        adjust(latencyMs, rejected);
+      }
+      permitReleased.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void adjust(long latencyMs, boolean rejected) {
+    if (rejected) {
+      consecutiveFastResponses = 0;
+      concurrency = Math.max(minConcurrency, concurrency / 2);
+      flushByteSize = Math.max(minFlushByteSize, flushByteSize / 2);
+    } else if (latencyMs >= SLOW_RESPONSE_MS) {
+      consecutiveFastResponses = 0;
+      concurrency = Math.max(minConcurrency, concurrency - 1);
+    } else if (latencyMs <= FAST_RESPONSE_MS) {
+      flushByteSize = Math.min(maxFlushByteSize, flushByteSize + flushByteSize / 4);
+      consecutiveFastResponses++;
+      if (consecutiveFastResponses >= FAST_RESPONSES_BEFORE_INCREASE) {
+        consecutiveFastResponses = 0;
+        concurrency = Math.min(maxConcurrency, concurrency + 1);
+      }
+    }
+  }
+
+  /**
+   * Waits for the completion of all in-flight requests.
+   *
+   * @return false if requests are still in-flight after the timeout
+   */
+  boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+    long remainingNanos = unit.toNanos(timeout);
+    lock.lock();
+    try {
+      while (inFlight > 0) {
+        if (remainingNanos <= 0L) {
+          return false;
+        }
+        remainingNanos = permitReleased.awaitNanos(remainingNanos);
+      }
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+}
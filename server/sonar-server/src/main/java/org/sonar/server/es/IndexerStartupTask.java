@@ -19,7 +19,19 @@
  */
 package org.sonar.server.es;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import org.elasticsearch.action.admin.cluster.health.ClusterHealthAction;
 import org.elasticsearch.action.admin.indices.close.CloseIndexAction;
@@ -32,9 +44,13 @@ import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.api.utils.log.Profiler;
 
-import static java.util.Arrays.stream;
+import static java.util.stream.Collectors.toCollection;
+import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
 
+/**
+ * Indexes the types which are not initialized yet. Indexers which don't share any index are executed concurrently.
+ */
 public class IndexerStartupTask {
 
   private static final Logger LOG = Loggers.get(IndexerStartupTask.class);
@@ -51,18 +67,69 @@ public class IndexerStartupTask {
   }
 
   public void execute() {
-    if (indexesAreEnabled()) {
-      stream(indexers)
-        .forEach(this::indexEmptyTypes);
+    if (!indexesAreEnabled()) {
+      return;
+    }
+    Map<StartupIndexer, Set<IndexType>> indexTypesByIndexer = new LinkedHashMap<>();
+    Arrays.stream(indexers).forEach(indexer -> indexTypesByIndexer.put(indexer, indexer.getIndexTypes()));
+    List<List<StartupIndexer>> groups = groupBySharedIndex(indexTypesByIndexer);
+    if (groups.size() <= 1) {
+      groups.forEach(group -> indexEmptyTypes(group, indexTypesByIndexer));
+      return;
+    }
+    ExecutorService executorService = Executors.newFixedThreadPool(groups.size(),
+      new ThreadFactoryBuilder().setNameFormat("IndexerStartupTask-%d").setDaemon(true).build());
+    try {
+      List<Future<?>> futures = groups.stream()
+        .map(group -> executorService.submit(() -> indexEmptyTypes(group, indexTypesByIndexer)))
+        .collect(toList());
+      PartitionedIndexing.waitFor(futures);
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  /**
+   * Indexers sharing an index must be executed sequentially, in their declaration order, because large bulk
+   * indexing temporarily changes the settings of the index and the index is closed once types are initialized.
+   */
+  static List<List<StartupIndexer>> groupBySharedIndex(Map<StartupIndexer, Set<IndexType>> indexTypesByIndexer) {
+    List<StartupIndexer> indexers = new ArrayList<>(indexTypesByIndexer.keySet());
+    List<Set<String>> groupIndices = new ArrayList<>();
+    List<List<StartupIndexer>> groups = new ArrayList<>();
+    for (StartupIndexer indexer : indexers) {
+      Set<String> indices = indexTypesByIndexer.get(indexer).stream().map(IndexType::getIndex).collect(toCollection(HashSet::new));
+      List<StartupIndexer> group = new ArrayList<>();
+      group.add(indexer);
+      Iterator<Set<String>> groupIndicesIt = groupIndices.iterator();
+      Iterator<List<StartupIndexer>> groupsIt = groups.iterator();
+      while (groupIndicesIt.hasNext()) {
+        Set<String> otherIndices = groupIndicesIt.next();
+        List<StartupIndexer> otherGroup = groupsIt.next();
+        if (otherIndices.stream().anyMatch(indices::contains)) {
+          indices.addAll(otherIndices);
+          group.addAll(otherGroup);
+          groupIndicesIt.remove();
+          groupsIt.remove();
+        }
+      }
+      group.sort(Comparator.comparingInt(indexers::indexOf));
+      groupIndices.add(indices);
+      groups.add(group);
     }
+    return groups;
+  }
+
+  private void indexEmptyTypes(List<StartupIndexer> group, Map<StartupIndexer, Set<IndexType>> indexTypesByIndexer) {
+    group.forEach(indexer -> indexEmptyTypes(indexer, indexTypesByIndexer.get(indexer)));
   }
 
   private boolean indexesAreEnabled() {
     return !settings.getBoolean("sonar.internal.es.disableIndexes");
   }
 
-  private void indexEmptyTypes(StartupIndexer indexer) {
-    Set<IndexType> uninizializedTypes = getUninitializedTypes(indexer);
+  private void indexEmptyTypes(StartupIndexer indexer, Set<IndexType> indexTypes) {
+    Set<IndexType> uninizializedTypes = getUninitializedTypes(indexTypes);
     if (!uninizializedTypes.isEmpty()) {
       Profiler profiler = Profiler.create(LOG);
       profiler.startInfo(getLogMessage(uninizializedTypes, "..."));
@@ -72,8 +139,8 @@ public class IndexerStartupTask {
     }
   }
 
-  private Set<IndexType> getUninitializedTypes(StartupIndexer indexer) {
-    return indexer.getIndexTypes().stream().filter(this::getUninitialized).collect(toSet());
+  private Set<IndexType> getUninitializedTypes(Set<IndexType> indexTypes) {
+    return indexTypes.stream().filter(this::getUninitialized).collect(toSet());
   }
 
   private boolean getUninitialized(IndexType indexType) {
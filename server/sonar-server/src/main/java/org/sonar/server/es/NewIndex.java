@@ -149,6 +149,13 @@ public class NewIndex {
       return new NestedFieldBuilder(this, fieldName);
     }
 
+    /**
+     * Base64 encoded binary value, which is stored but not searchable
+     */
+    public NewIndexType createBinaryField(String fieldName) {
+      return setProperty(fieldName, ImmutableMap.of("type", "binary"));
+    }
+
     public NewIndexType createBooleanField(String fieldName) {
       return setProperty(fieldName, ImmutableMap.of("type", "boolean"));
     }
@@ -0,0 +1,151 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.core.util.ProgressLogger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+
+/**
+ * Indexes the documents of a large db table partition by partition. Partitions, usually the projects or ranges of
+ * components of large projects, are read concurrently by several workers which all feed the same {@link BulkIndexer}.
+ * Number of indexed documents and throughput are logged for each partition (DEBUG level) and for the whole indexing
+ * (INFO level).
+ */
+public class PartitionedIndexing {
+
+  private static final Logger LOGGER = Loggers.get(PartitionedIndexing.class);
+
+  // each worker holds a db connection, so the number of workers is bounded to
+  // not exhaust the connection pool when several indexers run at the same time
+  private static final int DEFAULT_WORKERS = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors() / 2));
+
+  private final String pluralLabel;
+  private final int workers;
+
+  public PartitionedIndexing(String pluralLabel) {
+    this(pluralLabel, DEFAULT_WORKERS);
+  }
+
+  public PartitionedIndexing(String pluralLabel, int workers) {
+    checkArgument(workers > 0, "Number of workers must be strictly positive: %s", workers);
+    this.pluralLabel = pluralLabel;
+    this.workers = workers;
+  }
+
+  /**
+   * Starts the bulk, indexes all the partitions and stops the bulk.
+   *
+   * @param partitions the partitions, which are logged with {@link Object#toString()}
+   * @param partitionIndexer adds the documents of the given partition to the bulk and returns the number of
+   *                         documents. It is called concurrently by the workers.
+   * @return the total number of indexed documents
+   */
+  public <P> long index(BulkIndexer bulk, Collection<P> partitions, ToLongFunction<P> partitionIndexer) {
+    Queue<P> remainingPartitions = new ConcurrentLinkedQueue<>(partitions);
+    AtomicLong documents = new AtomicLong(0L);
+    AtomicBoolean failed = new AtomicBoolean(false);
+    int threads = Math.max(1, Math.min(workers, partitions.size()));
+    ExecutorService executorService = Executors.newFixedThreadPool(threads,
+      new ThreadFactoryBuilder().setNameFormat("PartitionedIndexing[" + pluralLabel + "]-%d").setDaemon(true).build());
+    ProgressLogger progress = new ProgressLogger(format("Progress[PartitionedIndexing[%s]]", pluralLabel), documents, LOGGER)
+      .setPluralLabel(pluralLabel);
+
+    long start = System.currentTimeMillis();
+    bulk.start();
+    progress.start();
+    try {
+      List<Future<?>> futures = new ArrayList<>(threads);
+      for (int i = 0; i < threads; i++) {
+        futures.add(executorService.submit(() -> indexPartitions(remainingPartitions, partitionIndexer, documents, failed)));
+      }
+      waitFor(futures);
+    } finally {
+      progress.stop();
+      executorService.shutdownNow();
+    }
+    bulk.stop();
+
+    long duration = Math.max(1L, System.currentTimeMillis() - start);
+    LOGGER.info("{} {} indexed from {} partitions by {} workers in {} ms ({} {}/sec)",
+      documents.get(), pluralLabel, partitions.size(), threads, duration, 1000 * documents.get() / duration, pluralLabel);
+    return documents.get();
+  }
+
+  private <P> void indexPartitions(Queue<P> remainingPartitions, ToLongFunction<P> partitionIndexer, AtomicLong documents, AtomicBoolean failed) {
+    P partition = remainingPartitions.poll();
+    while (partition != null && !failed.get()) {
+      long start = System.currentTimeMillis();
+      long count;
+      try {
+        count = partitionIndexer.applyAsLong(partition);
+      } catch (RuntimeException | Error e) {
+        // other workers stop after their current partition
+        failed.set(true);
+        throw e;
+      }
+      documents.addAndGet(count);
+      long duration = Math.max(1L, System.currentTimeMillis() - start);
+      LOGGER.debug("{} {} of partition {} indexed in {} ms ({} {}/sec)", count, pluralLabel, partition, duration, 1000 * count / duration, pluralLabel);
+      partition = remainingPartitions.poll();
+    }
+  }
+
+  static void waitFor(List<Future<?>> futures) {
+    Throwable failure = null;
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while indexing partitions", e);
+      } catch (ExecutionException e) {
+        if (failure == null) {
+          failure = e.getCause();
+        }
+      }
+    }
+    if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    }
+    if (failure instanceof Error) {
+      throw (Error) failure;
+    }
+    if (failure != null) {
+      throw new IllegalStateException("Fail to index partitions", failure);
+    }
+  }
+}
@@ -20,6 +20,7 @@
 package org.sonar.server.issue.index;
 
 import com.google.common.collect.Maps;
+import java.util.Base64;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -418,6 +419,20 @@ public class IssueDoc extends BaseDoc implements Issue {
     return this;
   }
 
+  /**
+   * Serialized protobuf {@link org.sonar.db.protobuf.DbIssues.Locations}, as stored in db
+   */
+  @CheckForNull
+  public byte[] locations() {
+    String locations = getNullableField(IssueIndexDefinition.FIELD_ISSUE_LOCATIONS);
+    return locations == null ? null : Base64.getDecoder().decode(locations);
+  }
+
+  public IssueDoc setLocations(@Nullable byte[] locations) {
+    setField(IssueIndexDefinition.FIELD_ISSUE_LOCATIONS, locations == null ? null : Base64.getEncoder().encodeToString(locations));
+    return this;
+  }
+
   public IssueDoc setType(RuleType type) {
     setField(IssueIndexDefinition.FIELD_ISSUE_TYPE, type.toString());
     return this;
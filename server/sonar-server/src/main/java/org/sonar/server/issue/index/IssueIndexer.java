@@ -24,7 +24,6 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
-import javax.annotation.Nullable;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.search.SearchRequestBuilder;
@@ -34,6 +33,7 @@ import org.sonar.server.es.BulkIndexer.Size;
 import org.sonar.server.es.EsClient;
 import org.sonar.server.es.EsUtils;
 import org.sonar.server.es.IndexType;
+import org.sonar.server.es.PartitionedIndexing;
 import org.sonar.server.es.ProjectIndexer;
 import org.sonar.server.es.StartupIndexer;
 import org.sonar.server.permission.index.AuthorizationScope;
@@ -48,6 +48,8 @@ public class IssueIndexer implements ProjectIndexer, NeedAuthorizationIndexer, S
 
   private static final String DELETE_ERROR_MESSAGE = "Fail to delete some issues of project [%s]";
   private static final int MAX_BATCH_SIZE = 1000;
+  // projects with more issues are split, so that they are indexed on startup by several workers
+  private static final long MAX_ISSUES_PER_PARTITION = 50_000L;
   private static final AuthorizationScope AUTHORIZATION_SCOPE = new AuthorizationScope(INDEX_TYPE_ISSUE, project -> Qualifiers.PROJECT.equals(project.getQualifier()));
 
   private final EsClient esClient;
@@ -70,7 +72,12 @@ public class IssueIndexer implements ProjectIndexer, NeedAuthorizationIndexer, S
 
   @Override
   public void indexOnStartup(Set<IndexType> emptyIndexTypes) {
-    doIndex(createBulkIndexer(Size.LARGE), (String) null);
+    BulkIndexer bulk = createBulkIndexer(Size.LARGE);
+    new PartitionedIndexing("issues").index(bulk, issueIteratorFactory.selectPartitions(MAX_ISSUES_PER_PARTITION), partition -> {
+      try (IssueIterator issues = issueIteratorFactory.createForPartition(partition)) {
+        return addAll(bulk, issues);
+      }
+    });
   }
 
   @Override
@@ -108,7 +115,7 @@ public class IssueIndexer implements ProjectIndexer, NeedAuthorizationIndexer, S
     }
   }
 
-  private void doIndex(BulkIndexer bulk, @Nullable String projectUuid) {
+  private void doIndex(BulkIndexer bulk, String projectUuid) {
     try (IssueIterator issues = issueIteratorFactory.createForProject(projectUuid)) {
       doIndex(bulk, issues);
     }
@@ -116,11 +123,18 @@ public class IssueIndexer implements ProjectIndexer, NeedAuthorizationIndexer, S
 
   private static void doIndex(BulkIndexer bulk, Iterator<IssueDoc> issues) {
     bulk.start();
+    addAll(bulk, issues);
+    bulk.stop();
+  }
+
+  private static long addAll(BulkIndexer bulk, Iterator<IssueDoc> issues) {
+    long count = 0L;
     while (issues.hasNext()) {
       IssueDoc issue = issues.next();
       bulk.add(newIndexRequest(issue));
+      count++;
     }
-    bulk.stop();
+    return count;
   }
 
   @Override
@@ -19,9 +19,15 @@
  */
 package org.sonar.server.issue.index;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.KeyLongValue;
 
 public class IssueIteratorFactory {
 
@@ -42,4 +48,92 @@ public class IssueIteratorFactory {
   public IssueIterator createForIssueKeys(Collection<String> issueKeys) {
     return new IssueIteratorForMultipleChunks(dbClient, issueKeys);
   }
+
+  public IssueIterator createForPartition(Partition partition) {
+    return new IssueIteratorForSingleChunk(dbClient, partition.getProjectUuid(), partition.getFromComponentUuid(), partition.getToComponentUuid(), null);
+  }
+
+  /**
+   * Partitions which can be passed to {@link #createForPartition(Partition)} in order to iterate over all the
+   * issues. The issues of a project are in a single partition, except if they are more than
+   * {@code maxIssuesPerPartition}. They are then split into ranges of components, so that a large project
+   * can be read by several workers.
+   */
+  public List<Partition> selectPartitions(long maxIssuesPerPartition) {
+    List<Partition> partitions = new ArrayList<>();
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      for (Map.Entry<String, Long> issuesOfProject : dbClient.issueDao().countByProjectUuid(dbSession).entrySet()) {
+        String projectUuid = issuesOfProject.getKey();
+        if (issuesOfProject.getValue() <= maxIssuesPerPartition) {
+          partitions.add(new Partition(projectUuid, null, null));
+        } else {
+          splitByComponents(dbSession, projectUuid, maxIssuesPerPartition, partitions);
+        }
+      }
+    }
+    return partitions;
+  }
+
+  /**
+   * Ranges are bounded by component uuids in the order of the database. The first range has no lower bound and
+   * the last one has no upper bound, so that the issues of the components created in the meantime are not missed.
+   */
+  private void splitByComponents(DbSession dbSession, String projectUuid, long maxIssuesPerPartition, List<Partition> partitions) {
+    String fromComponentUuid = null;
+    long issues = 0L;
+    for (KeyLongValue issuesOfComponent : dbClient.issueDao().countByComponentUuidForProjectUuid(dbSession, projectUuid)) {
+      if (issues > 0L && issues + issuesOfComponent.getValue() > maxIssuesPerPartition) {
+        partitions.add(new Partition(projectUuid, fromComponentUuid, issuesOfComponent.getKey()));
+        fromComponentUuid = issuesOfComponent.getKey();
+        issues = 0L;
+      }
+      issues += issuesOfComponent.getValue();
+    }
+    partitions.add(new Partition(projectUuid, fromComponentUuid, null));
+  }
+
+  /**
+   * Issues of a project, optionally restricted to a range of components
+   */
+  public static class Partition {
+    private final String projectUuid;
+    @CheckForNull
+    private final String fromComponentUuid;
+    @CheckForNull
+    private final String toComponentUuid;
+
+    Partition(String projectUuid, @Nullable String fromComponentUuid, @Nullable String toComponentUuid) {
+      this.projectUuid = projectUuid;
+      this.fromComponentUuid = fromComponentUuid;
+      this.toComponentUuid = toComponentUuid;
+    }
+
+    public String getProjectUuid() {
+      return projectUuid;
+    }
+
+    /**
+     * Inclusive lower bound, or null if the partition starts with the first component of the project
+     */
+    @CheckForNull
+    public String getFromComponentUuid() {
+      return fromComponentUuid;
+    }
+
+    /**
+     * Exclusive upper bound, or null if the partition ends with the last component of the project
+     */
+    @CheckForNull
+    public String getToComponentUuid() {
+      return toComponentUuid;
+    }
+
+    @Override
+    public String toString() {
+      if (fromComponentUuid == null && toComponentUuid == null) {
+        return projectUuid;
+      }
+      return projectUuid + "[" + (fromComponentUuid == null ? "" : fromComponentUuid) + ".." + (toComponentUuid == null ? "" : toComponentUuid) + ")";
+    }
+  }
 }
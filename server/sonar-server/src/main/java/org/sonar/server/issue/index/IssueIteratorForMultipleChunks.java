@@ -55,6 +55,8 @@ public class IssueIteratorForMultipleChunks implements IssueIterator {
   }
 
   private IssueIteratorForSingleChunk nextChunk() {
+    // the db session of the previous chunk is released before opening the next one
+    ofNullable(currentChunk).ifPresent(IssueIterator::close);
     List<String> nextInput = iteratorOverChunks.next();
     return new IssueIteratorForSingleChunk(dbClient, null, nextInput);
   }
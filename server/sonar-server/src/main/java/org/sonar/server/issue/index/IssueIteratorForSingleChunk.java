@@ -85,7 +85,8 @@ class IssueIteratorForSingleChunk implements IssueIterator {
     "p.scope",
     "p.organization_uuid",
     "i.tags",
-    "i.issue_type"
+    "i.issue_type",
+    "i.locations"
   };
 
   private static final String SQL_ALL = "select " + StringUtils.join(FIELDS, ",") + " from issues i " +
@@ -94,6 +95,8 @@ class IssueIteratorForSingleChunk implements IssueIterator {
     "inner join projects root on root.uuid=i.project_uuid";
 
   private static final String PROJECT_FILTER = " AND root.uuid=?";
+  private static final String FROM_COMPONENT_FILTER = " AND i.component_uuid>=?";
+  private static final String TO_COMPONENT_FILTER = " AND i.component_uuid<?";
   private static final String ISSUE_KEY_FILTER_PREFIX = " AND i.kee IN (";
   private static final String ISSUE_KEY_FILTER_SUFFIX = ")";
 
@@ -105,6 +108,12 @@ class IssueIteratorForSingleChunk implements IssueIterator {
   @CheckForNull
   private final String projectUuid;
 
+  @CheckForNull
+  private final String fromComponentUuid;
+
+  @CheckForNull
+  private final String toComponentUuid;
+
   @CheckForNull
   private final Collection<String> issueKeys;
 
@@ -112,9 +121,20 @@ class IssueIteratorForSingleChunk implements IssueIterator {
   private final ResultSetIterator<IssueDoc> iterator;
 
   IssueIteratorForSingleChunk(DbClient dbClient, @Nullable String projectUuid, @Nullable Collection<String> issueKeys) {
+    this(dbClient, projectUuid, null, null, issueKeys);
+  }
+
+  /**
+   * @param fromComponentUuid if not null, only the issues of the components with greater or equal uuids are selected
+   * @param toComponentUuid if not null, only the issues of the components with lower uuids are selected
+   */
+  IssueIteratorForSingleChunk(DbClient dbClient, @Nullable String projectUuid, @Nullable String fromComponentUuid, @Nullable String toComponentUuid,
+    @Nullable Collection<String> issueKeys) {
     checkArgument(issueKeys == null || issueKeys.size() <= DatabaseUtils.PARTITION_SIZE_FOR_ORACLE,
       "Cannot search for more than " + DatabaseUtils.PARTITION_SIZE_FOR_ORACLE + " issue keys at once. Please provide the keys in smaller chunks.");
     this.projectUuid = projectUuid;
+    this.fromComponentUuid = fromComponentUuid;
+    this.toComponentUuid = toComponentUuid;
     this.issueKeys = issueKeys;
     this.session = dbClient.openSession(false);
 
@@ -151,6 +171,8 @@ class IssueIteratorForSingleChunk implements IssueIterator {
   private String createSql() {
     String sql = SQL_ALL;
     sql += projectUuid == null ? "" : PROJECT_FILTER;
+    sql += fromComponentUuid == null ? "" : FROM_COMPONENT_FILTER;
+    sql += toComponentUuid == null ? "" : TO_COMPONENT_FILTER;
     if (issueKeys != null && !issueKeys.isEmpty()) {
       sql += ISSUE_KEY_FILTER_PREFIX;
       sql += IntStream.range(0, issueKeys.size()).mapToObj(i -> "?").collect(Collectors.joining(","));
@@ -165,6 +187,14 @@ class IssueIteratorForSingleChunk implements IssueIterator {
       stmt.setString(index, projectUuid);
       index++;
     }
+    if (fromComponentUuid != null) {
+      stmt.setString(index, fromComponentUuid);
+      index++;
+    }
+    if (toComponentUuid != null) {
+      stmt.setString(index, toComponentUuid);
+      index++;
+    }
     if (issueKeys != null) {
       for (String key : issueKeys) {
         stmt.setString(index, key);
@@ -231,6 +261,7 @@ class IssueIteratorForSingleChunk implements IssueIterator {
       String tags = rs.getString(27);
       doc.setTags(ImmutableList.copyOf(IssueIteratorForSingleChunk.TAGS_SPLITTER.split(tags == null ? "" : tags)));
       doc.setType(RuleType.valueOf(rs.getInt(28)));
+      doc.setLocations(rs.getBytes(29));
       return doc;
     }
 
@@ -323,7 +323,7 @@ public class SearchAction implements IssuesWsAction {
       completeFacets(facets, request, wsRequest);
       collectFacets(collector, facets);
     }
-    SearchResponseData data = searchResponseLoader.load(collector, facets);
+    SearchResponseData data = searchResponseLoader.load(collector, result.getDocs(), facets);
 
     // format response
 
@@ -28,6 +28,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import javax.annotation.Nullable;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.utils.Duration;
 import org.sonar.core.issue.DefaultIssue;
 import org.sonar.core.util.stream.Collectors;
 import org.sonar.db.DbClient;
@@ -36,9 +39,12 @@ import org.sonar.db.component.ComponentDto;
 import org.sonar.db.issue.IssueChangeDto;
 import org.sonar.db.issue.IssueDto;
 import org.sonar.db.protobuf.DbIssues;
+import org.sonar.server.cache.ReferenceDataCache;
 import org.sonar.server.es.Facets;
 import org.sonar.server.issue.ActionFinder;
 import org.sonar.server.issue.TransitionService;
+import org.sonar.server.issue.index.IssueDoc;
+import org.sonar.server.issue.index.IssueIndexDefinition;
 import org.sonar.server.user.UserSession;
 import org.sonarqube.ws.client.issue.IssuesWsParameters;
 
@@ -58,12 +64,15 @@ public class SearchResponseLoader {
   private final DbClient dbClient;
   private final ActionFinder actionService;
   private final TransitionService transitionService;
+  private final ReferenceDataCache referenceDataCache;
 
-  public SearchResponseLoader(UserSession userSession, DbClient dbClient, ActionFinder actionService, TransitionService transitionService) {
+  public SearchResponseLoader(UserSession userSession, DbClient dbClient, ActionFinder actionService, TransitionService transitionService,
+    ReferenceDataCache referenceDataCache) {
     this.userSession = userSession;
     this.dbClient = dbClient;
     this.actionService = actionService;
     this.transitionService = transitionService;
+    this.referenceDataCache = referenceDataCache;
   }
 
   /**
@@ -72,24 +81,75 @@ public class SearchResponseLoader {
   public SearchResponseData load(Collector collector, @Nullable Facets facets) {
     try (DbSession dbSession = dbClient.openSession(false)) {
       SearchResponseData result = new SearchResponseData(dbClient.issueDao().selectByOrderedKeys(dbSession, collector.getIssueKeys()));
-      collector.collect(result.getIssues());
-
-      loadRules(collector, dbSession, result);
-      // order is important - loading of comments complete the list of users: loadComments() is
-      // before loadUsers()
-      loadComments(collector, dbSession, result);
-      loadUsers(collector, dbSession, result);
-      loadComponents(collector, dbSession, result);
-      loadOrganizations(dbSession, result);
-      loadActionsAndTransitions(collector, result);
-      completeTotalEffortFromFacet(facets, result);
-      return result;
+      return load(collector, dbSession, result, facets);
     }
   }
 
+  /**
+   * Same as {@link #load(Collector, Facets)}, except that issues are built from the documents returned by
+   * the search in Elasticsearch index instead of being reloaded from db. Only the data which are not
+   * indexed, for example comments, are loaded from db.
+   */
+  public SearchResponseData load(Collector collector, List<IssueDoc> issueDocs, @Nullable Facets facets) {
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      List<IssueDto> issues = issueDocs.stream().map(SearchResponseLoader::toIssueDto).collect(Collectors.toList(issueDocs.size()));
+      return load(collector, dbSession, new SearchResponseData(issues), facets);
+    }
+  }
+
+  private SearchResponseData load(Collector collector, DbSession dbSession, SearchResponseData result, @Nullable Facets facets) {
+    collector.collect(result.getIssues());
+
+    loadRules(collector, dbSession, result);
+    // order is important - loading of comments complete the list of users: loadComments() is
+    // before loadUsers()
+    loadComments(collector, dbSession, result);
+    loadUsers(collector, dbSession, result);
+    loadComponents(collector, dbSession, result);
+    loadOrganizations(dbSession, result);
+    loadActionsAndTransitions(collector, result);
+    completeTotalEffortFromFacet(facets, result);
+    return result;
+  }
+
+  private static IssueDto toIssueDto(IssueDoc doc) {
+    RuleKey ruleKey = doc.ruleKey();
+    IssueDto dto = new IssueDto()
+      .setKee(doc.key())
+      .setComponentUuid(doc.componentUuid())
+      .setModuleUuid(doc.moduleUuid())
+      .setModuleUuidPath(doc.modulePath())
+      .setProjectUuid(doc.projectUuid())
+      .setRuleKey(ruleKey.repository(), ruleKey.rule())
+      .setLanguage(doc.language())
+      .setSeverity(doc.severity())
+      .setManualSeverity(doc.isManualSeverity())
+      .setMessage(doc.message())
+      .setLine(doc.line())
+      .setGap(doc.gap())
+      .setStatus(doc.status())
+      .setResolution(doc.resolution())
+      .setChecksum(doc.checksum())
+      .setAssignee(doc.assignee())
+      .setAuthorLogin(doc.authorLogin())
+      .setIssueAttributes(doc.getNullableField(IssueIndexDefinition.FIELD_ISSUE_ATTRIBUTES))
+      .setTags(doc.tags())
+      .setLocations(doc.locations())
+      .setIssueCreationDate(doc.getNullableFieldAsDate(IssueIndexDefinition.FIELD_ISSUE_FUNC_CREATED_AT))
+      .setIssueUpdateDate(doc.getNullableFieldAsDate(IssueIndexDefinition.FIELD_ISSUE_FUNC_UPDATED_AT))
+      .setIssueCloseDate(doc.closeDate());
+    Duration effort = doc.effort();
+    dto.setEffort(effort == null ? null : effort.toMinutes());
+    RuleType type = doc.type();
+    if (type != null) {
+      dto.setType(type);
+    }
+    return dto;
+  }
+
   private void loadUsers(Collector collector, DbSession dbSession, SearchResponseData result) {
     if (collector.contains(USERS)) {
-      result.setUsers(dbClient.userDao().selectByLogins(dbSession, collector.<String>get(USERS)));
+      result.setUsers(referenceDataCache.selectUsersByLogins(dbSession, collector.<String>get(USERS)));
     }
   }
 
@@ -112,7 +172,7 @@ public class SearchResponseLoader {
 
   private void loadRules(Collector collector, DbSession dbSession, SearchResponseData result) {
     if (collector.contains(RULES)) {
-      result.setRules(dbClient.ruleDao().selectDefinitionByKeys(dbSession, collector.get(RULES)));
+      result.setRules(referenceDataCache.selectRuleDefinitionsByKeys(dbSession, collector.get(RULES)));
     }
   }
 
@@ -22,8 +22,8 @@ package org.sonar.server.measure.index;
 import com.google.common.collect.ImmutableSet;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
-import javax.annotation.Nullable;
 import org.elasticsearch.action.index.IndexRequest;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.db.DbClient;
@@ -34,6 +34,7 @@ import org.sonar.server.es.BulkIndexer;
 import org.sonar.server.es.BulkIndexer.Size;
 import org.sonar.server.es.EsClient;
 import org.sonar.server.es.IndexType;
+import org.sonar.server.es.PartitionedIndexing;
 import org.sonar.server.es.ProjectIndexer;
 import org.sonar.server.es.StartupIndexer;
 import org.sonar.server.permission.index.AuthorizationScope;
@@ -60,7 +61,17 @@ public class ProjectMeasuresIndexer implements ProjectIndexer, NeedAuthorization
 
   @Override
   public void indexOnStartup(Set<IndexType> emptyIndexTypes) {
-    doIndex(createBulkIndexer(Size.LARGE), (String) null);
+    BulkIndexer bulk = createBulkIndexer(Size.LARGE);
+    List<String> projectUuids;
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      projectUuids = dbClient.componentDao().selectAllProjectUuids(dbSession);
+    }
+    new PartitionedIndexing("projects").index(bulk, projectUuids, projectUuid -> {
+      try (DbSession dbSession = dbClient.openSession(false);
+        ProjectMeasuresIndexerIterator rowIt = ProjectMeasuresIndexerIterator.create(dbSession, projectUuid)) {
+        return addAll(bulk, rowIt);
+      }
+    });
   }
 
   @Override
@@ -94,7 +105,7 @@ public class ProjectMeasuresIndexer implements ProjectIndexer, NeedAuthorization
       .get();
   }
 
-  private void doIndex(BulkIndexer bulk, @Nullable String projectUuid) {
+  private void doIndex(BulkIndexer bulk, String projectUuid) {
     try (DbSession dbSession = dbClient.openSession(false);
       ProjectMeasuresIndexerIterator rowIt = ProjectMeasuresIndexerIterator.create(dbSession, projectUuid)) {
       doIndex(bulk, rowIt);
@@ -103,11 +114,18 @@ public class ProjectMeasuresIndexer implements ProjectIndexer, NeedAuthorization
 
   private static void doIndex(BulkIndexer bulk, Iterator<ProjectMeasures> docs) {
     bulk.start();
+    addAll(bulk, docs);
+    bulk.stop();
+  }
+
+  private static long addAll(BulkIndexer bulk, Iterator<ProjectMeasures> docs) {
+    long count = 0L;
     while (docs.hasNext()) {
       ProjectMeasures doc = docs.next();
       bulk.add(newIndexRequest(toProjectMeasuresDoc(doc)));
+      count++;
     }
-    bulk.stop();
+    return count;
   }
 
   private BulkIndexer createBulkIndexer(Size bulkSize) {
@@ -55,6 +55,7 @@ import org.sonar.db.measure.MeasureDto;
 import org.sonar.db.measure.MeasureTreeQuery;
 import org.sonar.db.metric.MetricDto;
 import org.sonar.db.metric.MetricDtoFunctions;
+import org.sonar.server.cache.ReferenceDataCache;
 import org.sonar.server.component.ComponentFinder;
 import org.sonar.server.exceptions.NotFoundException;
 import org.sonar.server.user.UserSession;
@@ -80,12 +81,15 @@ public class ComponentTreeDataLoader {
   private final ComponentFinder componentFinder;
   private final UserSession userSession;
   private final ResourceTypes resourceTypes;
+  private final ReferenceDataCache referenceDataCache;
 
-  public ComponentTreeDataLoader(DbClient dbClient, ComponentFinder componentFinder, UserSession userSession, ResourceTypes resourceTypes) {
+  public ComponentTreeDataLoader(DbClient dbClient, ComponentFinder componentFinder, UserSession userSession, ResourceTypes resourceTypes,
+    ReferenceDataCache referenceDataCache) {
     this.dbClient = dbClient;
     this.componentFinder = componentFinder;
     this.userSession = userSession;
     this.resourceTypes = resourceTypes;
+    this.referenceDataCache = referenceDataCache;
   }
 
   ComponentTreeData load(ComponentTreeWsRequest wsRequest) {
@@ -156,7 +160,7 @@ public class ComponentTreeDataLoader {
 
   private List<MetricDto> searchMetrics(DbSession dbSession, ComponentTreeWsRequest request) {
     List<String> metricKeys = requireNonNull(request.getMetricKeys());
-    List<MetricDto> metrics = dbClient.metricDao().selectByKeys(dbSession, metricKeys);
+    List<MetricDto> metrics = referenceDataCache.selectMetricsByKeys(dbSession, metricKeys);
     if (metrics.size() < metricKeys.size()) {
       List<String> foundMetricKeys = Lists.transform(metrics, MetricDto::getKey);
       Set<String> missingMetricKeys = Sets.difference(
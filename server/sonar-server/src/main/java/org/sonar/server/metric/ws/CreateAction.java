@@ -30,6 +30,7 @@ import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.measure.custom.CustomMeasureDto;
 import org.sonar.db.metric.MetricDto;
+import org.sonar.server.cache.ReferenceDataCache;
 import org.sonar.server.user.UserSession;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -53,10 +54,12 @@ public class CreateAction implements MetricsWsAction {
 
   private final DbClient dbClient;
   private final UserSession userSession;
+  private final ReferenceDataCache referenceDataCache;
 
-  public CreateAction(DbClient dbClient, UserSession userSession) {
+  public CreateAction(DbClient dbClient, UserSession userSession, ReferenceDataCache referenceDataCache) {
     this.dbClient = dbClient;
     this.userSession = userSession;
+    this.referenceDataCache = referenceDataCache;
   }
 
   @Override
@@ -143,6 +146,7 @@ public class CreateAction implements MetricsWsAction {
       .setEnabled(true);
     dbClient.metricDao().update(dbSession, metricInDb);
     dbSession.commit();
+    referenceDataCache.invalidateMetrics();
   }
 
   private MetricDto insertNewMetric(DbSession dbSession, MetricDto metricTemplate) {
@@ -162,6 +166,7 @@ public class CreateAction implements MetricsWsAction {
 
     dbClient.metricDao().insert(dbSession, metric);
     dbSession.commit();
+    referenceDataCache.invalidateMetrics();
     return metric;
   }
 
@@ -27,6 +27,7 @@ import org.sonar.api.server.ws.WebService;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.metric.MetricDto;
+import org.sonar.server.cache.ReferenceDataCache;
 import org.sonar.server.user.UserSession;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -37,10 +38,12 @@ public class DeleteAction implements MetricsWsAction {
 
   private final DbClient dbClient;
   private final UserSession userSession;
+  private final ReferenceDataCache referenceDataCache;
 
-  public DeleteAction(DbClient dbClient, UserSession userSession) {
+  public DeleteAction(DbClient dbClient, UserSession userSession, ReferenceDataCache referenceDataCache) {
     this.dbClient = dbClient;
     this.userSession = userSession;
+    this.referenceDataCache = referenceDataCache;
   }
 
   @Override
@@ -69,6 +72,7 @@ public class DeleteAction implements MetricsWsAction {
       dbClient.metricDao().disableCustomByIds(dbSession, ids);
       dbClient.customMeasureDao().deleteByMetricIds(dbSession, ids);
       dbSession.commit();
+      referenceDataCache.invalidateMetrics();
     }
 
     response.noContent();
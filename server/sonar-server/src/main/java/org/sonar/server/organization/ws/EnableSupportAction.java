@@ -24,6 +24,7 @@ import org.sonar.api.server.ws.Response;
 import org.sonar.api.server.ws.WebService;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
+import org.sonar.server.authentication.AuthenticationCache;
 import org.sonar.server.organization.DefaultOrganizationProvider;
 import org.sonar.server.organization.OrganizationFlags;
 import org.sonar.db.permission.OrganizationPermission;
@@ -38,13 +39,15 @@ public class EnableSupportAction implements OrganizationsWsAction {
   private final DbClient dbClient;
   private final DefaultOrganizationProvider defaultOrganizationProvider;
   private final OrganizationFlags organizationFlags;
+  private final AuthenticationCache authenticationCache;
 
   public EnableSupportAction(UserSession userSession, DbClient dbClient, DefaultOrganizationProvider defaultOrganizationProvider,
-    OrganizationFlags organizationFlags) {
+    OrganizationFlags organizationFlags, AuthenticationCache authenticationCache) {
     this.userSession = userSession;
     this.dbClient = dbClient;
     this.defaultOrganizationProvider = defaultOrganizationProvider;
     this.organizationFlags = organizationFlags;
+    this.authenticationCache = authenticationCache;
   }
 
   @Override
@@ -64,9 +67,11 @@ public class EnableSupportAction implements OrganizationsWsAction {
     try (DbSession dbSession = dbClient.openSession(false)) {
       verifySystemAdministrator();
       if (isSupportDisabled(dbSession)) {
-        flagCurrentUserAsRoot(dbSession);
+        String login = requireNonNull(userSession.getLogin());
+        flagCurrentUserAsRoot(dbSession, login);
         enableFeature(dbSession);
         dbSession.commit();
+        authenticationCache.invalidateUser(login);
       }
     }
     response.noContent();
@@ -80,8 +85,8 @@ public class EnableSupportAction implements OrganizationsWsAction {
     return !organizationFlags.isEnabled(dbSession);
   }
 
-  private void flagCurrentUserAsRoot(DbSession dbSession) {
-    dbClient.userDao().setRoot(dbSession, requireNonNull(userSession.getLogin()), true);
+  private void flagCurrentUserAsRoot(DbSession dbSession, String login) {
+    dbClient.userDao().setRoot(dbSession, login, true);
   }
 
   private void enableFeature(DbSession dbSession) {
@@ -27,6 +27,7 @@ import java.util.Optional;
 import java.util.Set;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
+import org.sonar.server.cache.PermissionCache;
 import org.sonar.server.permission.index.PermissionIndexer;
 
 /**
@@ -40,20 +41,29 @@ public class PermissionUpdater {
   private final PermissionIndexer permissionIndexer;
   private final UserPermissionChanger userPermissionChanger;
   private final GroupPermissionChanger groupPermissionChanger;
+  private final PermissionCache permissionCache;
 
   public PermissionUpdater(DbClient dbClient, PermissionIndexer permissionIndexer,
-                           UserPermissionChanger userPermissionChanger, GroupPermissionChanger groupPermissionChanger) {
+                           UserPermissionChanger userPermissionChanger, GroupPermissionChanger groupPermissionChanger, PermissionCache permissionCache) {
     this.dbClient = dbClient;
     this.permissionIndexer = permissionIndexer;
     this.userPermissionChanger = userPermissionChanger;
     this.groupPermissionChanger = groupPermissionChanger;
+    this.permissionCache = permissionCache;
   }
 
   public void apply(DbSession dbSession, Collection<PermissionChange> changes) {
     Set<Long> projectIds = new HashSet<>();
     List<String> projectOrViewUuids = new ArrayList<>();
+    Set<Integer> changedUserIds = new HashSet<>();
+    boolean changedGroups = false;
     for (PermissionChange change : changes) {
       boolean changed = doApply(dbSession, change);
+      if (changed && change instanceof UserPermissionChange) {
+        changedUserIds.add(((UserPermissionChange) change).getUserId().getId());
+      } else if (changed) {
+        changedGroups = true;
+      }
       Optional<ProjectId> projectId = change.getProjectId();
       if (changed && projectId.isPresent()) {
         projectIds.add(projectId.get().getId());
@@ -64,12 +74,21 @@ public class PermissionUpdater {
       dbClient.resourceDao().updateAuthorizationDate(projectId, dbSession);
     }
     dbSession.commit();
+    invalidatePermissionCache(changedUserIds, changedGroups);
 
     if (!projectIds.isEmpty()) {
       permissionIndexer.indexProjectsByUuids(dbSession, projectOrViewUuids);
     }
   }
 
+  private void invalidatePermissionCache(Set<Integer> changedUserIds, boolean changedGroups) {
+    if (changedGroups) {
+      permissionCache.invalidateAll();
+    } else {
+      changedUserIds.forEach(permissionCache::invalidateUser);
+    }
+  }
+
   private boolean doApply(DbSession dbSession, PermissionChange change) {
     if (change instanceof UserPermissionChange) {
       return userPermissionChanger.apply(dbSession, (UserPermissionChange) change);
@@ -31,6 +31,7 @@ import org.elasticsearch.cluster.health.ClusterHealthStatus;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.sonar.api.utils.log.Loggers;
+import org.sonar.server.es.BulkIndexingStats;
 import org.sonar.server.es.EsClient;
 
 import static org.apache.commons.io.FileUtils.byteCountToDisplaySize;
@@ -93,6 +94,14 @@ public class EsMonitor extends BaseMonitorMBean implements EsMonitorMBean {
       attributes.put("Docs", indexStats.getValue().getPrimaries().getDocs().getCount());
       attributes.put("Shards", indexStats.getValue().getShards().length);
       attributes.put("Store Size", byteCountToDisplaySize(indexStats.getValue().getPrimaries().getStore().getSizeInBytes()));
+      BulkIndexingStats.IndexStats bulkStats = esClient.getBulkIndexingStats().getAll().get(indexStats.getKey());
+      if (bulkStats != null) {
+        attributes.put("Bulk Indexed Docs", bulkStats.getDocs());
+        attributes.put("Bulk Rejected Docs", bulkStats.getRejectedDocs());
+        attributes.put("Bulk In-flight Requests", bulkStats.getInFlightRequests());
+        attributes.put("Bulk Docs/s", bulkStats.getDocsPerSecond());
+        attributes.put("Bulk Throughput/s", byteCountToDisplaySize(bulkStats.getBytesPerSecond()));
+      }
     }
     return indices;
   }
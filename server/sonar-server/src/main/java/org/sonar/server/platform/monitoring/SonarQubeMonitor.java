@@ -21,6 +21,7 @@ package org.sonar.server.platform.monitoring;
 
 import com.google.common.base.Joiner;
 import com.google.common.base.Optional;
+import com.google.common.cache.CacheStats;
 import java.io.File;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -34,6 +35,7 @@ import org.sonar.api.security.SecurityRealm;
 import org.sonar.api.server.authentication.IdentityProvider;
 import org.sonar.core.util.stream.Collectors;
 import org.sonar.process.ProcessProperties;
+import org.sonar.server.authentication.AuthenticationCache;
 import org.sonar.server.authentication.IdentityProviderRepository;
 import org.sonar.server.platform.ServerId;
 import org.sonar.server.platform.ServerIdLoader;
@@ -52,16 +54,18 @@ public class SonarQubeMonitor extends BaseMonitorMBean implements SonarQubeMonit
   private final Server server;
   private final ServerLogging serverLogging;
   private final ServerIdLoader serverIdLoader;
+  private final AuthenticationCache authenticationCache;
 
   public SonarQubeMonitor(Settings settings, SecurityRealmFactory securityRealmFactory,
     IdentityProviderRepository identityProviderRepository, Server server, ServerLogging serverLogging,
-    ServerIdLoader serverIdLoader) {
+    ServerIdLoader serverIdLoader, AuthenticationCache authenticationCache) {
     this.settings = settings;
     this.securityRealmFactory = securityRealmFactory;
     this.identityProviderRepository = identityProviderRepository;
     this.server = server;
     this.serverLogging = serverLogging;
     this.serverIdLoader = serverIdLoader;
+    this.authenticationCache = authenticationCache;
   }
 
   @Override
@@ -134,6 +138,7 @@ public class SonarQubeMonitor extends BaseMonitorMBean implements SonarQubeMonit
     attributes.put("Temp Dir", settings.getString(ProcessProperties.PATH_TEMP));
     attributes.put("Logs Dir", settings.getString(ProcessProperties.PATH_LOGS));
     attributes.put("Logs Level", getLogLevel());
+    completeWithAuthenticationCacheAttributes(attributes);
     return attributes;
   }
 
@@ -145,6 +150,15 @@ public class SonarQubeMonitor extends BaseMonitorMBean implements SonarQubeMonit
     }
   }
 
+  private void completeWithAuthenticationCacheAttributes(Map<String, Object> attributes) {
+    CacheStats tokenStats = authenticationCache.getTokenStats();
+    attributes.put("Token Authentication Cache Hits", tokenStats.hitCount());
+    attributes.put("Token Authentication Cache Misses", tokenStats.missCount());
+    CacheStats sessionStats = authenticationCache.getSessionStats();
+    attributes.put("Session Authentication Cache Hits", sessionStats.hitCount());
+    attributes.put("Session Authentication Cache Misses", sessionStats.missCount());
+  }
+
   private static void addIfNotNull(String key, @Nullable String value, Map<String, Object> attributes) {
     if (value != null) {
       attributes.put(key, value);
@@ -35,6 +35,8 @@ import org.sonar.core.component.DefaultResourceTypes;
 import org.sonar.core.timemachine.Periods;
 import org.sonar.server.authentication.AuthenticationModule;
 import org.sonar.server.batch.BatchWsModule;
+import org.sonar.server.cache.PermissionCache;
+import org.sonar.server.cache.ReferenceDataCache;
 import org.sonar.server.ce.ws.CeWsModule;
 import org.sonar.server.component.ComponentCleanerService;
 import org.sonar.server.component.ComponentFinder;
@@ -511,6 +513,8 @@ public class PlatformLevel4 extends PlatformLevel {
 
       InternalPropertiesImpl.class,
       ProjectSettingsFactory.class,
+      ReferenceDataCache.class,
+      PermissionCache.class,
 
       // UI
       NavigationWsModule.class,
@@ -21,6 +21,7 @@ package org.sonar.server.property;
 
 import java.util.Optional;
 import javax.annotation.Nullable;
+import org.apache.ibatis.exceptions.PersistenceException;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 
@@ -45,17 +46,38 @@ public class InternalPropertiesImpl implements InternalProperties {
     }
   }
 
+  /**
+   * A value which is not empty updates the existing row, if any, so that the web server and the Compute Engine can write
+   * the same property concurrently. When the property is inserted concurrently by another process, the insert fails and
+   * the value is written again as an update.
+   */
   @Override
   public void write(String propertyKey, @Nullable String value) {
     checkPropertyKey(propertyKey);
 
-    try (DbSession dbSession = dbClient.openSession(false)) {
-      if (value == null || value.isEmpty()) {
+    if (value == null || value.isEmpty()) {
+      try (DbSession dbSession = dbClient.openSession(false)) {
         dbClient.internalPropertiesDao().saveAsEmpty(dbSession, propertyKey);
-      } else {
+        dbSession.commit();
+      }
+      return;
+    }
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      if (!dbClient.internalPropertiesDao().update(dbSession, propertyKey, value)) {
         dbClient.internalPropertiesDao().save(dbSession, propertyKey, value);
       }
       dbSession.commit();
+    } catch (PersistenceException e) {
+      updateInsertedConcurrently(propertyKey, value, e);
+    }
+  }
+
+  private void updateInsertedConcurrently(String propertyKey, String value, PersistenceException insertFailure) {
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      if (!dbClient.internalPropertiesDao().update(dbSession, propertyKey, value)) {
+        throw insertFailure;
+      }
+      dbSession.commit();
     }
   }
 
@@ -25,6 +25,7 @@ import org.sonar.api.server.ws.WebService;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.user.UserDto;
+import org.sonar.server.authentication.AuthenticationCache;
 import org.sonar.server.exceptions.NotFoundException;
 import org.sonar.server.user.UserSession;
 
@@ -36,10 +37,12 @@ public class SetRootAction implements RootsWsAction {
 
   private final UserSession userSession;
   private final DbClient dbClient;
+  private final AuthenticationCache authenticationCache;
 
-  public SetRootAction(UserSession userSession, DbClient dbClient) {
+  public SetRootAction(UserSession userSession, DbClient dbClient, AuthenticationCache authenticationCache) {
     this.userSession = userSession;
     this.dbClient = dbClient;
+    this.authenticationCache = authenticationCache;
   }
 
   @Override
@@ -73,6 +76,7 @@ public class SetRootAction implements RootsWsAction {
       if (!userDto.isRoot()) {
         dbClient.userDao().setRoot(dbSession, login, true);
         dbSession.commit();
+        authenticationCache.invalidateUser(login);
       }
     }
     response.noContent();
@@ -52,6 +52,7 @@ import org.sonar.db.rule.RuleDefinitionDto;
 import org.sonar.db.rule.RuleDto.Format;
 import org.sonar.db.rule.RuleParamDto;
 import org.sonar.db.rule.RuleRepositoryDto;
+import org.sonar.server.cache.ReferenceDataCache;
 import org.sonar.server.organization.DefaultOrganizationProvider;
 import org.sonar.server.qualityprofile.ActiveRuleChange;
 import org.sonar.server.qualityprofile.RuleActivator;
@@ -76,9 +77,11 @@ public class RegisterRules implements Startable {
   private final Languages languages;
   private final System2 system2;
   private final DefaultOrganizationProvider defaultOrganizationProvider;
+  private final ReferenceDataCache referenceDataCache;
 
   public RegisterRules(RuleDefinitionsLoader defLoader, RuleActivator ruleActivator, DbClient dbClient, RuleIndexer ruleIndexer,
-    ActiveRuleIndexer activeRuleIndexer, Languages languages, System2 system2, DefaultOrganizationProvider defaultOrganizationProvider) {
+    ActiveRuleIndexer activeRuleIndexer, Languages languages, System2 system2, DefaultOrganizationProvider defaultOrganizationProvider,
+    ReferenceDataCache referenceDataCache) {
     this.defLoader = defLoader;
     this.ruleActivator = ruleActivator;
     this.dbClient = dbClient;
@@ -87,6 +90,7 @@ public class RegisterRules implements Startable {
     this.languages = languages;
     this.system2 = system2;
     this.defaultOrganizationProvider = defaultOrganizationProvider;
+    this.referenceDataCache = referenceDataCache;
   }
 
   @Override
@@ -113,6 +117,8 @@ public class RegisterRules implements Startable {
       session.commit();
 
       persistRepositories(session, context.repositories());
+      // rules cached by other nodes of the cluster are outdated
+      referenceDataCache.invalidateRules();
       ruleIndexer.delete(removedRules.stream().map(RuleDefinitionDto::getKey).collect(Collectors.toList(removedRules.size())));
       ruleIndexer.index(getDefaultOrganization(), keysToIndex);
       activeRuleIndexer.index(changes);
@@ -41,6 +41,7 @@ import org.sonar.db.rule.RuleDto;
 import org.sonar.db.rule.RuleDto.Format;
 import org.sonar.db.rule.RuleMetadataDto;
 import org.sonar.db.rule.RuleParamDto;
+import org.sonar.server.cache.ReferenceDataCache;
 import org.sonar.server.exceptions.BadRequestException;
 import org.sonar.server.organization.DefaultOrganizationProvider;
 import org.sonar.server.rule.index.RuleIndexer;
@@ -58,13 +59,16 @@ public class RuleCreator {
   private final DbClient dbClient;
   private final TypeValidations typeValidations;
   private final DefaultOrganizationProvider defaultOrganizationProvider;
+  private final ReferenceDataCache referenceDataCache;
 
-  public RuleCreator(System2 system2, RuleIndexer ruleIndexer, DbClient dbClient, TypeValidations typeValidations, DefaultOrganizationProvider defaultOrganizationProvider) {
+  public RuleCreator(System2 system2, RuleIndexer ruleIndexer, DbClient dbClient, TypeValidations typeValidations, DefaultOrganizationProvider defaultOrganizationProvider,
+    ReferenceDataCache referenceDataCache) {
     this.system2 = system2;
     this.ruleIndexer = ruleIndexer;
     this.dbClient = dbClient;
     this.typeValidations = typeValidations;
     this.defaultOrganizationProvider = defaultOrganizationProvider;
+    this.referenceDataCache = referenceDataCache;
   }
 
   public RuleKey create(DbSession dbSession, NewCustomRule newRule) {
@@ -88,6 +92,7 @@ public class RuleCreator {
       .orElseGet(() -> createCustomRule(customRuleKey, newRule, templateRule, dbSession));
 
     dbSession.commit();
+    referenceDataCache.invalidateRules();
     ruleIndexer.index(defaultOrganization, customRuleKey);
     return customRuleKey;
   }
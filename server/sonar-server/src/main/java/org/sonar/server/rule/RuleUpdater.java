@@ -45,6 +45,7 @@ import org.sonar.db.qualityprofile.ActiveRuleParamDto;
 import org.sonar.db.rule.RuleDefinitionDto;
 import org.sonar.db.rule.RuleDto;
 import org.sonar.db.rule.RuleParamDto;
+import org.sonar.server.cache.ReferenceDataCache;
 import org.sonar.server.organization.DefaultOrganizationProvider;
 import org.sonar.server.rule.index.RuleIndexer;
 import org.sonar.server.user.UserSession;
@@ -62,12 +63,15 @@ public class RuleUpdater {
   private final RuleIndexer ruleIndexer;
   private final System2 system;
   private final DefaultOrganizationProvider defaultOrganizationProvider;
+  private final ReferenceDataCache referenceDataCache;
 
-  public RuleUpdater(DbClient dbClient, RuleIndexer ruleIndexer, System2 system, DefaultOrganizationProvider defaultOrganizationProvider) {
+  public RuleUpdater(DbClient dbClient, RuleIndexer ruleIndexer, System2 system, DefaultOrganizationProvider defaultOrganizationProvider,
+    ReferenceDataCache referenceDataCache) {
     this.dbClient = dbClient;
     this.ruleIndexer = ruleIndexer;
     this.system = system;
     this.defaultOrganizationProvider = defaultOrganizationProvider;
+    this.referenceDataCache = referenceDataCache;
   }
 
   /**
@@ -101,6 +105,7 @@ public class RuleUpdater {
     update(dbSession, rule);
     updateParameters(dbSession, update, rule);
     dbSession.commit();
+    referenceDataCache.invalidateRules();
     ruleIndexer.index(organization, rule.getKey());
     return true;
   }
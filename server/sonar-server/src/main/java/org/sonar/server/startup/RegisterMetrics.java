@@ -35,6 +35,7 @@ import org.sonar.api.utils.log.Profiler;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.metric.MetricDto;
+import org.sonar.server.cache.ReferenceDataCache;
 
 import static com.google.common.collect.FluentIterable.from;
 import static com.google.common.collect.Iterables.concat;
@@ -45,18 +46,20 @@ public class RegisterMetrics {
   private static final Logger LOG = Loggers.get(RegisterMetrics.class);
 
   private final DbClient dbClient;
+  private final ReferenceDataCache referenceDataCache;
   private final Metrics[] metricsRepositories;
 
-  public RegisterMetrics(DbClient dbClient, Metrics[] metricsRepositories) {
+  public RegisterMetrics(DbClient dbClient, ReferenceDataCache referenceDataCache, Metrics[] metricsRepositories) {
     this.dbClient = dbClient;
+    this.referenceDataCache = referenceDataCache;
     this.metricsRepositories = metricsRepositories;
   }
 
   /**
    * Used when no plugin is defining Metrics
    */
-  public RegisterMetrics(DbClient dbClient) {
-    this(dbClient, new Metrics[] {});
+  public RegisterMetrics(DbClient dbClient, ReferenceDataCache referenceDataCache) {
+    this(dbClient, referenceDataCache, new Metrics[] {});
   }
 
   public void start() {
@@ -70,6 +73,8 @@ public class RegisterMetrics {
       sanitizeQualityGates(session);
       session.commit();
     }
+    // metrics cached by other nodes of the cluster are outdated
+    referenceDataCache.invalidateMetrics();
     profiler.stopDebug();
   }
 
@@ -21,8 +21,8 @@ package org.sonar.server.test.index;
 
 import com.google.common.collect.ImmutableSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
-import javax.annotation.Nullable;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.sonar.db.DbClient;
@@ -31,6 +31,7 @@ import org.sonar.server.es.BulkIndexer;
 import org.sonar.server.es.BulkIndexer.Size;
 import org.sonar.server.es.EsClient;
 import org.sonar.server.es.IndexType;
+import org.sonar.server.es.PartitionedIndexing;
 import org.sonar.server.es.ProjectIndexer;
 import org.sonar.server.es.StartupIndexer;
 import org.sonar.server.source.index.FileSourcesUpdaterHelper;
@@ -78,7 +79,23 @@ public class TestIndexer implements ProjectIndexer, StartupIndexer {
 
   @Override
   public void indexOnStartup(Set<IndexType> emptyIndexTypes) {
-    doIndex(null, Size.LARGE);
+    BulkIndexer bulk = new BulkIndexer(esClient, INDEX_TYPE_TEST.getIndex());
+    bulk.setSize(Size.LARGE);
+    List<String> projectUuids;
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      projectUuids = dbClient.componentDao().selectAllProjectUuids(dbSession);
+    }
+    new PartitionedIndexing("test files").index(bulk, projectUuids, projectUuid -> {
+      try (DbSession dbSession = dbClient.openSession(false);
+        TestResultSetIterator rowIt = TestResultSetIterator.create(dbClient, dbSession, projectUuid)) {
+        long count = 0L;
+        while (rowIt.hasNext()) {
+          rowIt.next().getUpdateRequests().forEach(bulk::add);
+          count++;
+        }
+        return count;
+      }
+    });
   }
 
   public long index(Iterator<FileSourcesUpdaterHelper.Row> dbRows) {
@@ -86,7 +103,7 @@ public class TestIndexer implements ProjectIndexer, StartupIndexer {
     return doIndex(bulk, dbRows);
   }
 
-  private long doIndex(@Nullable String projectUuid, Size bulkSize) {
+  private long doIndex(String projectUuid, Size bulkSize) {
     final BulkIndexer bulk = new BulkIndexer(esClient, INDEX_TYPE_TEST.getIndex());
     bulk.setSize(bulkSize);
 
@@ -23,8 +23,6 @@ import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import javax.annotation.CheckForNull;
@@ -35,12 +33,11 @@ import org.sonar.db.DbSession;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.user.GroupDto;
 import org.sonar.db.user.UserDto;
+import org.sonar.server.cache.PermissionCache;
 import org.sonar.server.organization.DefaultOrganizationProvider;
 import org.sonar.server.organization.OrganizationFlags;
 import org.sonar.db.permission.OrganizationPermission;
 
-import static com.google.common.collect.Maps.newHashMap;
-
 /**
  * Implementation of {@link UserSession} used in web server
  */
@@ -50,20 +47,24 @@ public class ServerUserSession extends AbstractUserSession {
   private final DbClient dbClient;
   private final OrganizationFlags organizationFlags;
   private final DefaultOrganizationProvider defaultOrganizationProvider;
+  private final PermissionCache permissionCache;
   private final Supplier<Collection<GroupDto>> groups = Suppliers.memoize(this::loadGroups);
   private final Supplier<Boolean> isSystemAdministratorSupplier = Suppliers.memoize(this::loadIsSystemAdministrator);
-  private final Map<String, String> projectUuidByComponentUuid = newHashMap();
-  private Map<String, Set<OrganizationPermission>> permissionsByOrganizationUuid;
-  private Map<String, Set<String>> permissionsByProjectUuid;
+  private final Supplier<PermissionCache.Snapshot> permissions = Suppliers.memoize(this::loadPermissionSnapshot);
 
   ServerUserSession(DbClient dbClient, OrganizationFlags organizationFlags,
-    DefaultOrganizationProvider defaultOrganizationProvider, @Nullable UserDto userDto) {
+    DefaultOrganizationProvider defaultOrganizationProvider, PermissionCache permissionCache, @Nullable UserDto userDto) {
     this.dbClient = dbClient;
     this.organizationFlags = organizationFlags;
     this.defaultOrganizationProvider = defaultOrganizationProvider;
+    this.permissionCache = permissionCache;
     this.userDto = userDto;
   }
 
+  private PermissionCache.Snapshot loadPermissionSnapshot() {
+    return permissionCache.getSnapshot(userDto == null ? null : userDto.getId());
+  }
+
   private Collection<GroupDto> loadGroups() {
     if (this.userDto == null) {
       return Collections.emptyList();
@@ -108,11 +109,7 @@ public class ServerUserSession extends AbstractUserSession {
 
   @Override
   protected boolean hasPermissionImpl(OrganizationPermission permission, String organizationUuid) {
-    if (permissionsByOrganizationUuid == null) {
-      permissionsByOrganizationUuid = new HashMap<>();
-    }
-    Set<OrganizationPermission> permissions = permissionsByOrganizationUuid.computeIfAbsent(organizationUuid, this::loadOrganizationPermissions);
-    return permissions.contains(permission);
+    return permissions.get().getOrganizationPermissions(organizationUuid, this::loadOrganizationPermissions).contains(permission);
   }
 
   private Set<OrganizationPermission> loadOrganizationPermissions(String organizationUuid) {
@@ -131,28 +128,22 @@ public class ServerUserSession extends AbstractUserSession {
 
   @Override
   protected Optional<String> componentUuidToProjectUuid(String componentUuid) {
-    String projectUuid = projectUuidByComponentUuid.get(componentUuid);
-    if (projectUuid != null) {
-      return Optional.of(projectUuid);
-    }
+    return permissionCache.getProjectUuid(componentUuid, this::loadProjectUuid);
+  }
+
+  private Optional<String> loadProjectUuid(String componentUuid) {
     try (DbSession dbSession = dbClient.openSession(false)) {
       com.google.common.base.Optional<ComponentDto> component = dbClient.componentDao().selectByUuid(dbSession, componentUuid);
       if (!component.isPresent()) {
         return Optional.empty();
       }
-      projectUuid = component.get().projectUuid();
-      projectUuidByComponentUuid.put(componentUuid, projectUuid);
-      return Optional.of(projectUuid);
+      return Optional.of(component.get().projectUuid());
     }
   }
 
   @Override
   protected boolean hasProjectUuidPermission(String permission, String projectUuid) {
-    if (permissionsByProjectUuid == null) {
-      permissionsByProjectUuid = new HashMap<>();
-    }
-    Set<String> permissions = permissionsByProjectUuid.computeIfAbsent(projectUuid, this::loadProjectPermissions);
-    return permissions.contains(permission);
+    return permissions.get().getProjectPermissions(projectUuid, this::loadProjectPermissions).contains(permission);
   }
 
   private Set<String> loadProjectPermissions(String projectUuid) {
@@ -42,6 +42,8 @@ import org.sonar.db.organization.OrganizationMemberDto;
 import org.sonar.db.user.GroupDto;
 import org.sonar.db.user.UserDto;
 import org.sonar.db.user.UserGroupDto;
+import org.sonar.server.authentication.AuthenticationCache;
+import org.sonar.server.cache.ReferenceDataCache;
 import org.sonar.server.exceptions.ServerException;
 import org.sonar.server.organization.DefaultOrganizationProvider;
 import org.sonar.server.organization.OrganizationCreation;
@@ -78,9 +80,12 @@ public class UserUpdater {
   private final System2 system2;
   private final DefaultOrganizationProvider defaultOrganizationProvider;
   private final OrganizationCreation organizationCreation;
+  private final ReferenceDataCache referenceDataCache;
+  private final AuthenticationCache authenticationCache;
 
   public UserUpdater(NewUserNotifier newUserNotifier, Settings settings, DbClient dbClient, UserIndexer userIndexer, System2 system2,
-    DefaultOrganizationProvider defaultOrganizationProvider, OrganizationCreation organizationCreation) {
+    DefaultOrganizationProvider defaultOrganizationProvider, OrganizationCreation organizationCreation, ReferenceDataCache referenceDataCache,
+    AuthenticationCache authenticationCache) {
     this.newUserNotifier = newUserNotifier;
     this.settings = settings;
     this.dbClient = dbClient;
@@ -88,6 +93,8 @@ public class UserUpdater {
     this.system2 = system2;
     this.defaultOrganizationProvider = defaultOrganizationProvider;
     this.organizationCreation = organizationCreation;
+    this.referenceDataCache = referenceDataCache;
+    this.authenticationCache = authenticationCache;
   }
 
   public UserDto create(DbSession dbSession, NewUser newUser) {
@@ -353,6 +360,7 @@ public class UserUpdater {
     addUserToDefaultOrganization(dbSession, userDto);
     organizationCreation.createForUser(dbSession, userDto);
     dbSession.commit();
+    referenceDataCache.invalidateUser(userDto.getLogin());
     userIndexer.index(userDto.getLogin());
     return res;
   }
@@ -362,6 +370,8 @@ public class UserUpdater {
     userDto.setActive(true).setUpdatedAt(now);
     dbClient.userDao().update(dbSession, userDto);
     dbSession.commit();
+    referenceDataCache.invalidateUser(userDto.getLogin());
+    authenticationCache.invalidateUser(userDto.getLogin());
     userIndexer.index(userDto.getLogin());
   }
 
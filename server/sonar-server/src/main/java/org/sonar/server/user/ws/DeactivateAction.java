@@ -34,6 +34,8 @@ import org.sonar.db.DbSession;
 import org.sonar.db.organization.OrganizationDto;
 import org.sonar.db.permission.OrganizationPermission;
 import org.sonar.db.user.UserDto;
+import org.sonar.server.authentication.AuthenticationCache;
+import org.sonar.server.cache.ReferenceDataCache;
 import org.sonar.server.exceptions.BadRequestException;
 import org.sonar.server.organization.DefaultOrganizationProvider;
 import org.sonar.server.user.UserSession;
@@ -53,14 +55,19 @@ public class DeactivateAction implements UsersWsAction {
   private final UserSession userSession;
   private final UserJsonWriter userWriter;
   private final DefaultOrganizationProvider defaultOrganizationProvider;
+  private final ReferenceDataCache referenceDataCache;
+  private final AuthenticationCache authenticationCache;
 
   public DeactivateAction(DbClient dbClient, UserIndexer userIndexer, UserSession userSession, UserJsonWriter userWriter,
-    DefaultOrganizationProvider defaultOrganizationProvider) {
+    DefaultOrganizationProvider defaultOrganizationProvider, ReferenceDataCache referenceDataCache,
+    AuthenticationCache authenticationCache) {
     this.dbClient = dbClient;
     this.userIndexer = userIndexer;
     this.userSession = userSession;
     this.userWriter = userWriter;
     this.defaultOrganizationProvider = defaultOrganizationProvider;
+    this.referenceDataCache = referenceDataCache;
+    this.authenticationCache = authenticationCache;
   }
 
   @Override
@@ -95,6 +102,8 @@ public class DeactivateAction implements UsersWsAction {
       dbClient.userDao().deactivateUserByLogin(dbSession, login);
       dbSession.commit();
     }
+    referenceDataCache.invalidateUser(login);
+    authenticationCache.invalidateUser(login);
 
     userIndexer.index(login);
     writeResponse(response, login);
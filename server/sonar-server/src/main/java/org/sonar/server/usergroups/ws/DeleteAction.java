@@ -29,6 +29,7 @@ import org.sonar.api.server.ws.WebService.NewController;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.user.GroupDto;
+import org.sonar.server.cache.PermissionCache;
 import org.sonar.server.organization.DefaultOrganizationProvider;
 import org.sonar.db.permission.OrganizationPermission;
 import org.sonar.server.user.UserSession;
@@ -46,14 +47,16 @@ public class DeleteAction implements UserGroupsWsAction {
   private final GroupWsSupport support;
   private final Settings settings;
   private final DefaultOrganizationProvider defaultOrganizationProvider;
+  private final PermissionCache permissionCache;
 
   public DeleteAction(DbClient dbClient, UserSession userSession, GroupWsSupport support, Settings settings,
-    DefaultOrganizationProvider defaultOrganizationProvider) {
+    DefaultOrganizationProvider defaultOrganizationProvider, PermissionCache permissionCache) {
     this.dbClient = dbClient;
     this.userSession = userSession;
     this.support = support;
     this.settings = settings;
     this.defaultOrganizationProvider = defaultOrganizationProvider;
+    this.permissionCache = permissionCache;
   }
 
   @Override
@@ -84,6 +87,7 @@ public class DeleteAction implements UserGroupsWsAction {
       dbClient.groupDao().deleteById(dbSession, groupId.getId());
 
       dbSession.commit();
+      permissionCache.invalidateAll();
       response.noContent();
     }
   }
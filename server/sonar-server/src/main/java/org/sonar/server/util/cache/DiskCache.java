@@ -19,12 +19,22 @@
  */
 package org.sonar.server.util.cache;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import net.jpountz.lz4.LZ4BlockInputStream;
+import net.jpountz.lz4.LZ4BlockOutputStream;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.sonar.api.utils.System2;
@@ -33,22 +43,49 @@ import org.sonar.server.util.ObjectInputStreamIterator;
 
 /**
  * Serialize and deserialize objects on disk. No search capabilities, only traversal (full scan).
+ * <p>
+ * Objects are written with Java serialization, unless a {@link DiskCacheCodec} is provided. Each appender can
+ * then optionally compress its objects with LZ4.
+ * </p>
  */
 public class DiskCache<O extends Serializable> {
 
+  // written before each object when a codec is used, so that end of file can be detected between two objects
+  private static final int OBJECT_MARKER = 1;
+
   private final File file;
   private final System2 system2;
+  @CheckForNull
+  private final DiskCacheCodec<O> codec;
+  private final boolean compressed;
 
   public DiskCache(File file, System2 system2) {
+    this(file, system2, null, false);
+  }
+
+  /**
+   * @param codec the format of objects. If {@code null}, Java serialization is used.
+   * @param compressed whether objects written with {@code codec} are compressed with LZ4
+   */
+  public DiskCache(File file, System2 system2, @Nullable DiskCacheCodec<O> codec, boolean compressed) {
+    if (codec == null && compressed) {
+      throw new IllegalArgumentException("Compression requires a codec");
+    }
     this.system2 = system2;
     this.file = file;
+    this.codec = codec;
+    this.compressed = compressed;
     OutputStream output = null;
     boolean threw = true;
     try {
-      // writes the serialization stream header required when calling "traverse()"
-      // on empty stream. Moreover it allows to call multiple times "newAppender()"
-      output = new ObjectOutputStream(new FileOutputStream(file));
-      output.flush();
+      if (codec == null) {
+        // writes the serialization stream header required when calling "traverse()"
+        // on empty stream. Moreover it allows to call multiple times "newAppender()"
+        output = new ObjectOutputStream(new FileOutputStream(file));
+        output.flush();
+      } else {
+        output = new FileOutputStream(file);
+      }
       threw = false;
     } catch (IOException e) {
       throw new IllegalStateException("Fail to write into file: " + file, e);
@@ -69,23 +106,33 @@ public class DiskCache<O extends Serializable> {
 
   public CloseableIterator<O> traverse() {
     try {
-      return new ObjectInputStreamIterator<>(FileUtils.openInputStream(file));
+      if (codec == null) {
+        return new ObjectInputStreamIterator<>(FileUtils.openInputStream(file));
+      }
+      InputStream input = new BufferedInputStream(FileUtils.openInputStream(file));
+      return new CodecIterator<>(codec, compressed ? new Lz4StreamsInputStream(input) : input);
     } catch (IOException e) {
       throw new IllegalStateException("Fail to traverse file: " + file, e);
     }
   }
 
   public class DiskAppender implements AutoCloseable {
-    private final ObjectOutputStream output;
+    private final OutputStream output;
 
     private DiskAppender() {
       try {
-        this.output = new ObjectOutputStream(new FileOutputStream(file, true)) {
-          @Override
-          protected void writeStreamHeader() throws IOException {
-            // do not write stream headers as it's already done in constructor of DiskCache
-          }
-        };
+        if (codec == null) {
+          this.output = new ObjectOutputStream(new FileOutputStream(file, true)) {
+            @Override
+            protected void writeStreamHeader() throws IOException {
+              // do not write stream headers as it's already done in constructor of DiskCache
+            }
+          };
+        } else if (compressed) {
+          this.output = new DataOutputStream(new LZ4BlockOutputStream(new FileOutputStream(file, true)));
+        } else {
+          this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        }
       } catch (IOException e) {
         throw new IllegalStateException("Fail to open file " + file, e);
       }
@@ -93,8 +140,15 @@ public class DiskCache<O extends Serializable> {
 
     public DiskAppender append(O object) {
       try {
-        output.writeObject(object);
-        output.reset();
+        if (codec == null) {
+          ObjectOutputStream objectOutput = (ObjectOutputStream) output;
+          objectOutput.writeObject(object);
+          objectOutput.reset();
+        } else {
+          DataOutputStream dataOutput = (DataOutputStream) output;
+          dataOutput.writeByte(OBJECT_MARKER);
+          codec.write(object, dataOutput);
+        }
         return this;
       } catch (IOException e) {
         throw new IllegalStateException("Fail to write into file " + file, e);
@@ -106,4 +160,96 @@ public class DiskCache<O extends Serializable> {
       system2.close(output);
     }
   }
+
+  private static class CodecIterator<T> extends CloseableIterator<T> {
+    private final DiskCacheCodec<T> codec;
+    private final DataInputStream input;
+
+    private CodecIterator(DiskCacheCodec<T> codec, InputStream input) {
+      this.codec = codec;
+      this.input = new DataInputStream(input);
+    }
+
+    @Override
+    protected T doNext() {
+      try {
+        int marker = input.read();
+        if (marker == -1) {
+          return null;
+        }
+        if (marker != OBJECT_MARKER) {
+          throw new IllegalStateException("File is corrupted");
+        }
+        return codec.read(input);
+      } catch (EOFException e) {
+        throw new IllegalStateException("Unexpected end of file", e);
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to read object", e);
+      }
+    }
+
+    @Override
+    protected void doClose() {
+      IOUtils.closeQuietly(input);
+    }
+  }
+
+  /**
+   * Reads the LZ4 streams written one after the other by the appenders.
+   */
+  private static class Lz4StreamsInputStream extends InputStream {
+    private final InputStream input;
+    private InputStream current;
+
+    private Lz4StreamsInputStream(InputStream input) {
+      // mark is required to detect the end of file between two streams
+      this.input = input.markSupported() ? input : new BufferedInputStream(input);
+    }
+
+    @Override
+    public int read() throws IOException {
+      while (nextStream()) {
+        int b = current.read();
+        if (b != -1) {
+          return b;
+        }
+        current = null;
+      }
+      return -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      while (nextStream()) {
+        int read = current.read(b, off, len);
+        if (read != -1) {
+          return read;
+        }
+        current = null;
+      }
+      return -1;
+    }
+
+    private boolean nextStream() throws IOException {
+      if (current != null) {
+        return true;
+      }
+      input.mark(1);
+      if (input.read() == -1) {
+        return false;
+      }
+      input.reset();
+      // LZ4BlockInputStream reads exactly the blocks of its stream, so the next stream starts right after it
+      current = new LZ4BlockInputStream(input);
+      return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      input.close();
+    }
+  }
 }
@@ -0,0 +1,74 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.authentication;
+
+import java.util.Optional;
+import org.junit.Test;
+import org.sonar.db.user.UserDto;
+import org.sonar.server.usertoken.TokenGeneratorImpl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.db.user.UserTesting.newUserDto;
+
+public class AuthenticationCacheTest {
+
+  private AuthenticationCache underTest = new AuthenticationCache(new TokenGeneratorImpl());
+
+  @Test
+  public void user_of_token_is_cached_until_user_is_invalidated() {
+    UserDto user = newUserDto().setLogin("john");
+    UserDto otherUser = newUserDto().setLogin("jane");
+
+    assertThat(underTest.getUserByToken("token1", token -> user)).isSameAs(user);
+    assertThat(underTest.getUserByToken("token1", token -> otherUser)).isSameAs(user);
+    assertThat(underTest.getUserByToken("token2", token -> otherUser)).isSameAs(otherUser);
+
+    underTest.invalidateUser("jane");
+    assertThat(underTest.getUserByToken("token1", token -> otherUser)).isSameAs(user);
+
+    underTest.invalidateUser("john");
+    assertThat(underTest.getUserByToken("token1", token -> otherUser)).isSameAs(otherUser);
+  }
+
+  @Test
+  public void user_of_session_is_cached_only_if_found() {
+    UserDto user = newUserDto().setLogin("john");
+
+    assertThat(underTest.getUserBySession("S1", Optional::empty)).isEmpty();
+    assertThat(underTest.getUserBySession("S1", () -> Optional.of(user))).contains(user);
+    assertThat(underTest.getUserBySession("S1", Optional::empty)).contains(user);
+
+    underTest.invalidateUser("john");
+    assertThat(underTest.getUserBySession("S1", Optional::empty)).isEmpty();
+  }
+
+  @Test
+  public void user_loaded_during_revocation_is_not_cached() {
+    UserDto user = newUserDto().setLogin("john");
+
+    underTest.getUserByToken("token", token -> {
+      underTest.invalidateUser("john");
+      return user;
+    });
+
+    UserDto reloadedUser = newUserDto().setLogin("john");
+    assertThat(underTest.getUserByToken("token", token -> reloadedUser)).isSameAs(reloadedUser);
+  }
+}
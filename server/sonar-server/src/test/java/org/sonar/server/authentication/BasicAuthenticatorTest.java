@@ -32,12 +32,14 @@ import org.sonar.db.DbTester;
 import org.sonar.db.user.UserDto;
 import org.sonar.db.user.UserTesting;
 import org.sonar.server.authentication.event.AuthenticationEvent;
+import org.sonar.server.usertoken.TokenGeneratorImpl;
 import org.sonar.server.usertoken.UserTokenAuthenticator;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Java6Assertions.assertThat;
 import static org.junit.rules.ExpectedException.none;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.verifyZeroInteractions;
@@ -74,8 +76,9 @@ public class BasicAuthenticatorTest {
   private HttpServletRequest request = mock(HttpServletRequest.class);
 
   private AuthenticationEvent authenticationEvent = mock(AuthenticationEvent.class);
+  private AuthenticationCache authenticationCache = new AuthenticationCache(new TokenGeneratorImpl());
 
-  private BasicAuthenticator underTest = new BasicAuthenticator(dbClient, credentialsAuthenticator, userTokenAuthenticator, authenticationEvent);
+  private BasicAuthenticator underTest = new BasicAuthenticator(dbClient, credentialsAuthenticator, userTokenAuthenticator, authenticationEvent, authenticationCache);
 
   @Test
   public void authenticate_from_basic_http_header() throws Exception {
@@ -150,6 +153,21 @@ public class BasicAuthenticatorTest {
     verify(authenticationEvent).loginSuccess(request, LOGIN, Source.local(BASIC_TOKEN));
   }
 
+  @Test
+  public void user_of_token_is_loaded_once_until_revocation() throws Exception {
+    insertUser(UserTesting.newUserDto().setLogin(LOGIN));
+    when(userTokenAuthenticator.authenticate("token")).thenReturn(Optional.of(LOGIN));
+    when(request.getHeader("Authorization")).thenReturn("Basic " + toBase64("token:"));
+
+    underTest.authenticate(request);
+    underTest.authenticate(request);
+    verify(userTokenAuthenticator, times(1)).authenticate("token");
+
+    authenticationCache.invalidateUser(LOGIN);
+    underTest.authenticate(request);
+    verify(userTokenAuthenticator, times(2)).authenticate("token");
+  }
+
   @Test
   public void does_not_authenticate_from_user_token_when_token_is_invalid() throws Exception {
     insertUser(UserTesting.newUserDto().setLogin(LOGIN));
@@ -40,6 +40,7 @@ import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
 import org.sonar.db.user.UserDto;
+import org.sonar.server.usertoken.TokenGeneratorImpl;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
@@ -83,9 +84,10 @@ public class JwtHttpHandlerTest {
   private Settings settings = new MapSettings();
   private JwtSerializer jwtSerializer = mock(JwtSerializer.class);
   private JwtCsrfVerifier jwtCsrfVerifier = mock(JwtCsrfVerifier.class);
+  private AuthenticationCache authenticationCache = new AuthenticationCache(new TokenGeneratorImpl());
   private UserDto userDto = newUserDto().setLogin(USER_LOGIN);
 
-  private JwtHttpHandler underTest = new JwtHttpHandler(system2, dbClient, settings, jwtSerializer, jwtCsrfVerifier);
+  private JwtHttpHandler underTest = new JwtHttpHandler(system2, dbClient, settings, jwtSerializer, jwtCsrfVerifier, authenticationCache);
 
   @Before
   public void setUp() throws Exception {
@@ -125,7 +127,7 @@ public class JwtHttpHandlerTest {
     int sessionTimeoutInMinutes = 10;
     settings.setProperty("sonar.web.sessionTimeoutInMinutes", sessionTimeoutInMinutes);
 
-    underTest = new JwtHttpHandler(system2, dbClient, settings, jwtSerializer, jwtCsrfVerifier);
+    underTest = new JwtHttpHandler(system2, dbClient, settings, jwtSerializer, jwtCsrfVerifier, authenticationCache);
     underTest.generateToken(userDto, request, response);
 
     verify(jwtSerializer).encode(jwtArgumentCaptor.capture());
@@ -137,7 +139,7 @@ public class JwtHttpHandlerTest {
     int firstSessionTimeoutInMinutes = 10;
     settings.setProperty("sonar.web.sessionTimeoutInMinutes", firstSessionTimeoutInMinutes);
 
-    underTest = new JwtHttpHandler(system2, dbClient, settings, jwtSerializer, jwtCsrfVerifier);
+    underTest = new JwtHttpHandler(system2, dbClient, settings, jwtSerializer, jwtCsrfVerifier, authenticationCache);
     underTest.generateToken(userDto, request, response);
 
     // The property is updated, but it won't be taking into account
@@ -155,7 +157,7 @@ public class JwtHttpHandlerTest {
     expectedException.expect(IllegalArgumentException.class);
     expectedException.expectMessage("Property sonar.web.sessionTimeoutInMinutes must be strictly positive. Got 0.");
 
-    new JwtHttpHandler(system2, dbClient, settings, jwtSerializer, jwtCsrfVerifier);
+    new JwtHttpHandler(system2, dbClient, settings, jwtSerializer, jwtCsrfVerifier, authenticationCache);
   }
 
   @Test
@@ -165,7 +167,7 @@ public class JwtHttpHandlerTest {
     expectedException.expect(IllegalArgumentException.class);
     expectedException.expectMessage("Property sonar.web.sessionTimeoutInMinutes must be strictly positive. Got -10.");
 
-    new JwtHttpHandler(system2, dbClient, settings, jwtSerializer, jwtCsrfVerifier);
+    new JwtHttpHandler(system2, dbClient, settings, jwtSerializer, jwtCsrfVerifier, authenticationCache);
   }
 
   @Test
@@ -175,7 +177,7 @@ public class JwtHttpHandlerTest {
     expectedException.expect(IllegalArgumentException.class);
     expectedException.expectMessage("Property sonar.web.sessionTimeoutInMinutes must not be greater than 129600. Got 172800.");
 
-    new JwtHttpHandler(system2, dbClient, settings, jwtSerializer, jwtCsrfVerifier);
+    new JwtHttpHandler(system2, dbClient, settings, jwtSerializer, jwtCsrfVerifier, authenticationCache);
   }
 
   @Test
@@ -190,6 +192,21 @@ public class JwtHttpHandlerTest {
     verify(jwtSerializer, never()).encode(any(JwtSerializer.JwtSession.class));
   }
 
+  @Test
+  public void user_of_session_is_loaded_once_until_revocation() throws Exception {
+    addJwtCookie();
+    Claims claims = createToken(USER_LOGIN, NOW);
+    when(jwtSerializer.decode(JWT_TOKEN)).thenReturn(Optional.of(claims));
+    assertThat(underTest.validateToken(request, response).isPresent()).isTrue();
+
+    dbClient.userDao().deactivateUserByLogin(dbSession, USER_LOGIN);
+    dbSession.commit();
+    assertThat(underTest.validateToken(request, response).isPresent()).isTrue();
+
+    authenticationCache.invalidateUser(USER_LOGIN);
+    assertThat(underTest.validateToken(request, response).isPresent()).isFalse();
+  }
+
   @Test
   public void validate_token_refresh_session_when_refresh_time_is_reached() throws Exception {
     addJwtCookie();
@@ -35,6 +35,8 @@ import org.sonar.db.DbTester;
 import org.sonar.db.organization.OrganizationDto;
 import org.sonar.db.user.GroupDto;
 import org.sonar.db.user.UserDto;
+import org.sonar.server.cache.PermissionCache;
+import org.sonar.server.cache.ReferenceDataCache;
 import org.sonar.server.organization.DefaultOrganizationProvider;
 import org.sonar.server.organization.OrganizationCreation;
 import org.sonar.server.organization.TestDefaultOrganizationProvider;
@@ -84,8 +86,8 @@ public class UserIdentityAuthenticatorTest {
     mock(UserIndexer.class),
     System2.INSTANCE,
     defaultOrganizationProvider,
-      organizationCreation);
-  private UserIdentityAuthenticator underTest = new UserIdentityAuthenticator(db.getDbClient(), userUpdater, defaultOrganizationProvider);
+      organizationCreation, mock(ReferenceDataCache.class), mock(AuthenticationCache.class));
+  private UserIdentityAuthenticator underTest = new UserIdentityAuthenticator(db.getDbClient(), userUpdater, defaultOrganizationProvider, mock(PermissionCache.class));
   private GroupDto defaultGroup;
 
   @Before
@@ -0,0 +1,189 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.batch;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.rule.RuleStatus;
+import org.sonar.api.utils.System2;
+import org.sonar.db.DbTester;
+import org.sonar.db.organization.OrganizationDto;
+import org.sonar.db.qualityprofile.ActiveRuleDto;
+import org.sonar.db.qualityprofile.ActiveRuleParamDto;
+import org.sonar.db.qualityprofile.QualityProfileDto;
+import org.sonar.db.rule.RuleDefinitionDto;
+import org.sonar.db.rule.RuleParamDto;
+import org.sonar.server.cache.ReferenceDataCache;
+import org.sonar.server.exceptions.NotFoundException;
+import org.sonar.server.ws.TestResponse;
+import org.sonar.server.ws.WsActionTester;
+import org.sonarqube.ws.MediaTypes;
+import org.sonarqube.ws.WsBatch.WsActiveRulesResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.sonar.api.rule.Severity.BLOCKER;
+
+public class ActiveRulesActionTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Rule
+  public DbTester db = DbTester.create(System2.INSTANCE);
+
+  private ReferenceDataCache referenceDataCache = mock(ReferenceDataCache.class);
+  private WsActionTester ws = new WsActionTester(new ActiveRulesAction(db.getDbClient(), referenceDataCache));
+
+  @Test
+  public void return_all_active_rules_of_profile() throws Exception {
+    OrganizationDto organization = db.organizations().insert();
+    QualityProfileDto profile = db.qualityProfiles().insert(organization, p -> p.setLanguage("java"));
+    QualityProfileDto otherProfile = db.qualityProfiles().insert(organization, p -> p.setLanguage("java"));
+    RuleDefinitionDto template = db.rules().insert(r -> r.setLanguage("java").setIsTemplate(true));
+    RuleDefinitionDto rule = db.rules().insert(r -> r.setLanguage("java").setConfigKey("Checker/S1").setTemplateId(template.getId()));
+    RuleParamDto ruleParam = db.rules().insertRuleParam(rule, p -> p.setName("max").setDefaultValue("10"));
+    db.rules().insertRuleParam(rule, p -> p.setName("min").setDefaultValue("1"));
+    ActiveRuleDto activeRule = ActiveRuleDto.createFor(profile, rule).setSeverity(BLOCKER).setCreatedAt(1_000L);
+    db.getDbClient().activeRuleDao().insert(db.getSession(), activeRule);
+    db.getDbClient().activeRuleDao().insertParam(db.getSession(), activeRule, ActiveRuleParamDto.createFor(ruleParam).setValue("20"));
+    db.commit();
+    RuleDefinitionDto removedRule = db.rules().insert(r -> r.setLanguage("java").setStatus(RuleStatus.REMOVED));
+    db.qualityProfiles().activateRule(profile, removedRule);
+    db.qualityProfiles().activateRule(otherProfile, db.rules().insert(r -> r.setLanguage("java")));
+
+    TestResponse response = ws.newRequest().setParam("qprofile", profile.getKey()).execute();
+
+    assertThat(response.getMediaType()).isEqualTo(MediaTypes.PROTOBUF);
+    assertThat(response.getHeader("ETag")).isNotEmpty();
+    WsActiveRulesResponse bundle = WsActiveRulesResponse.parseFrom(response.getInputStream());
+    assertThat(bundle.getVersion()).isEqualTo(ActiveRulesAction.FORMAT_VERSION);
+    assertThat(bundle.getQProfile()).isEqualTo(profile.getKey());
+    assertThat(bundle.getActiveRulesList()).hasSize(1);
+    WsActiveRulesResponse.ActiveRule loaded = bundle.getActiveRules(0);
+    assertThat(loaded.getRepository()).isEqualTo(rule.getRepositoryKey());
+    assertThat(loaded.getKey()).isEqualTo(rule.getRuleKey());
+    assertThat(loaded.getName()).isEqualTo(rule.getName());
+    assertThat(loaded.getSeverity()).isEqualTo(BLOCKER);
+    assertThat(loaded.getLanguage()).isEqualTo("java");
+    assertThat(loaded.getInternalKey()).isEqualTo("Checker/S1");
+    assertThat(loaded.getTemplateKey()).isEqualTo(template.getRuleKey());
+    assertThat(loaded.getCreatedAt()).isEqualTo(1_000L);
+    assertThat(loaded.getParams()).containsOnly(entry("max", "20"), entry("min", "1"));
+  }
+
+  @Test
+  public void return_304_without_content_when_etag_matches() throws Exception {
+    OrganizationDto organization = db.organizations().insert();
+    QualityProfileDto profile = db.qualityProfiles().insert(organization);
+    db.qualityProfiles().activateRule(profile, db.rules().insert());
+    String etag = ws.newRequest().setParam("qprofile", profile.getKey()).execute().getHeader("ETag");
+
+    TestResponse response = ws.newRequest().setParam("qprofile", profile.getKey()).setHeader("If-None-Match", etag).execute();
+
+    assertThat(response.getStatus()).isEqualTo(304);
+    assertThat(response.getHeader("ETag")).isEqualTo(etag);
+    assertThat(response.getInput()).isEmpty();
+  }
+
+  @Test
+  public void return_new_bundle_when_profile_changed() throws Exception {
+    OrganizationDto organization = db.organizations().insert();
+    QualityProfileDto profile = db.qualityProfiles().insert(organization);
+    db.qualityProfiles().activateRule(profile, db.rules().insert());
+    String etag = ws.newRequest().setParam("qprofile", profile.getKey()).execute().getHeader("ETag");
+    db.qualityProfiles().activateRule(profile, db.rules().insert());
+    updateRulesUpdatedAt(profile, "2017-03-01T10:00:00+0000");
+
+    TestResponse response = ws.newRequest().setParam("qprofile", profile.getKey()).setHeader("If-None-Match", etag).execute();
+
+    assertThat(response.getHeader("ETag")).isNotEqualTo(etag);
+    assertThat(WsActiveRulesResponse.parseFrom(response.getInputStream()).getActiveRulesList()).hasSize(2);
+  }
+
+  @Test
+  public void return_new_bundle_when_rules_changed() throws Exception {
+    OrganizationDto organization = db.organizations().insert();
+    QualityProfileDto profile = db.qualityProfiles().insert(organization);
+    RuleDefinitionDto rule = db.rules().insert(r -> r.setName("old name"));
+    db.qualityProfiles().activateRule(profile, rule);
+    String etag = ws.newRequest().setParam("qprofile", profile.getKey()).execute().getHeader("ETag");
+    db.getDbClient().ruleDao().update(db.getSession(), rule.setName("new name"));
+    db.commit();
+    when(referenceDataCache.getRulesVersion()).thenReturn(1L);
+
+    TestResponse response = ws.newRequest().setParam("qprofile", profile.getKey()).setHeader("If-None-Match", etag).execute();
+
+    assertThat(response.getHeader("ETag")).isNotEqualTo(etag);
+    assertThat(WsActiveRulesResponse.parseFrom(response.getInputStream()).getActiveRules(0).getName()).isEqualTo("new name");
+  }
+
+  @Test
+  public void bundle_is_not_built_again_while_profile_and_rules_are_unchanged() throws Exception {
+    OrganizationDto organization = db.organizations().insert();
+    QualityProfileDto profile = db.qualityProfiles().insert(organization);
+    db.qualityProfiles().activateRule(profile, db.rules().insert());
+    String etag = ws.newRequest().setParam("qprofile", profile.getKey()).execute().getHeader("ETag");
+    // not a real change, the date of the profile is not updated
+    db.qualityProfiles().activateRule(profile, db.rules().insert());
+
+    TestResponse response = ws.newRequest().setParam("qprofile", profile.getKey()).setHeader("If-None-Match", etag).execute();
+
+    assertThat(response.getStatus()).isEqualTo(304);
+  }
+
+  @Test
+  public void parameters_without_value_are_empty() throws Exception {
+    OrganizationDto organization = db.organizations().insert();
+    QualityProfileDto profile = db.qualityProfiles().insert(organization);
+    RuleDefinitionDto rule = db.rules().insert();
+    db.rules().insertRuleParam(rule, p -> p.setName("format").setDefaultValue(null));
+    db.qualityProfiles().activateRule(profile, rule);
+
+    TestResponse response = ws.newRequest().setParam("qprofile", profile.getKey()).execute();
+
+    assertThat(WsActiveRulesResponse.parseFrom(response.getInputStream()).getActiveRules(0).getParams()).containsOnly(entry("format", ""));
+  }
+
+  @Test
+  public void fail_if_profile_does_not_exist() {
+    expectedException.expect(NotFoundException.class);
+    expectedException.expectMessage("Quality profile not found: unknown");
+
+    ws.newRequest().setParam("qprofile", "unknown").execute();
+  }
+
+  private void updateRulesUpdatedAt(QualityProfileDto profile, String rulesUpdatedAt) {
+    db.getDbClient().qualityProfileDao().update(db.getSession(), profile.setRulesUpdatedAt(rulesUpdatedAt));
+    db.commit();
+  }
+
+  @Test
+  public void definition() {
+    assertThat(ws.getDef().key()).isEqualTo("active_rules");
+    assertThat(ws.getDef().isInternal()).isTrue();
+    assertThat(ws.getDef().since()).isEqualTo("6.4");
+    assertThat(ws.getDef().responseExampleAsString()).isNotEmpty();
+    assertThat(ws.getDef().param("qprofile").isRequired()).isTrue();
+  }
+}
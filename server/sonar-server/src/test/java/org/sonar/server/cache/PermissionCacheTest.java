@@ -0,0 +1,143 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.cache;
+
+import java.util.Optional;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.utils.System2;
+import org.sonar.core.util.UuidFactoryFast;
+import org.sonar.db.DbTester;
+import org.sonar.server.property.InternalPropertiesImpl;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singleton;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.sonar.server.cache.PermissionCache.SYNC_INTERVAL_MS;
+
+public class PermissionCacheTest {
+
+  @Rule
+  public DbTester db = DbTester.create(System2.INSTANCE);
+
+  private System2 system2 = mock(System2.class);
+  private PermissionCache underTest = newCache();
+
+  @Test
+  public void snapshot_is_shared_until_user_is_invalidated() {
+    PermissionCache.Snapshot snapshot = underTest.getSnapshot(1);
+
+    assertThat(underTest.getSnapshot(1)).isSameAs(snapshot);
+    assertThat(underTest.getSnapshot(2)).isNotSameAs(snapshot);
+    assertThat(underTest.getSnapshot(null)).isNotSameAs(snapshot).isSameAs(underTest.getSnapshot(null));
+
+    underTest.invalidateUser(2);
+    assertThat(underTest.getSnapshot(1)).isSameAs(snapshot);
+
+    underTest.invalidateUser(1);
+    assertThat(underTest.getSnapshot(1)).isNotSameAs(snapshot);
+  }
+
+  @Test
+  public void invalidate_all_snapshots() {
+    PermissionCache.Snapshot snapshot = underTest.getSnapshot(1);
+    PermissionCache.Snapshot anonymousSnapshot = underTest.getSnapshot(null);
+
+    underTest.invalidateAll();
+
+    assertThat(underTest.getSnapshot(1)).isNotSameAs(snapshot);
+    assertThat(underTest.getSnapshot(null)).isNotSameAs(anonymousSnapshot);
+  }
+
+  @Test
+  public void snapshot_loads_permissions_once() {
+    PermissionCache.Snapshot snapshot = underTest.getSnapshot(1);
+
+    assertThat(snapshot.getProjectPermissions("P1", uuid -> singleton("user"))).containsOnly("user");
+    assertThat(snapshot.getProjectPermissions("P1", uuid -> singleton("admin"))).containsOnly("user");
+    assertThat(snapshot.getProjectPermissions("P2", uuid -> singleton("admin"))).containsOnly("admin");
+  }
+
+  @Test
+  public void invalidate_projects_drops_only_their_permissions() {
+    PermissionCache.Snapshot snapshot = underTest.getSnapshot(1);
+    snapshot.getProjectPermissions("P1", uuid -> singleton("user"));
+    snapshot.getProjectPermissions("P2", uuid -> singleton("user"));
+
+    underTest.invalidateProjects(singleton("P1"));
+
+    assertThat(underTest.getSnapshot(1)).isSameAs(snapshot);
+    assertThat(snapshot.getProjectPermissions("P1", uuid -> singleton("admin"))).containsOnly("admin");
+    assertThat(snapshot.getProjectPermissions("P2", uuid -> singleton("admin"))).containsOnly("user");
+  }
+
+  @Test
+  public void invalidation_of_projects_drops_all_snapshots_of_other_processes() {
+    PermissionCache otherProcess = newCache();
+    when(system2.now()).thenReturn(100_000L);
+    PermissionCache.Snapshot snapshot = otherProcess.getSnapshot(1);
+
+    underTest.invalidateProjects(singleton("P1"));
+
+    when(system2.now()).thenReturn(100_000L + SYNC_INTERVAL_MS);
+    assertThat(otherProcess.getSnapshot(1)).isNotSameAs(snapshot);
+  }
+
+  @Test
+  public void invalidation_of_no_projects_is_not_broadcast() {
+    PermissionCache otherProcess = newCache();
+    when(system2.now()).thenReturn(100_000L);
+    PermissionCache.Snapshot snapshot = otherProcess.getSnapshot(1);
+
+    underTest.invalidateProjects(emptyList());
+
+    when(system2.now()).thenReturn(100_000L + SYNC_INTERVAL_MS);
+    assertThat(otherProcess.getSnapshot(1)).isSameAs(snapshot);
+  }
+
+  @Test
+  public void project_of_component_is_cached_only_if_component_exists() {
+    assertThat(underTest.getProjectUuid("FILE", uuid -> Optional.empty())).isEmpty();
+    assertThat(underTest.getProjectUuid("FILE", uuid -> Optional.of("P1"))).contains("P1");
+    assertThat(underTest.getProjectUuid("FILE", uuid -> Optional.of("P2"))).contains("P1");
+  }
+
+  @Test
+  public void invalidation_is_shared_with_other_processes() {
+    PermissionCache otherProcess = newCache();
+    when(system2.now()).thenReturn(100_000L);
+    PermissionCache.Snapshot snapshot = otherProcess.getSnapshot(1);
+
+    underTest.invalidateUser(1);
+
+    // not checked before the end of interval
+    when(system2.now()).thenReturn(100_000L + SYNC_INTERVAL_MS - 1);
+    assertThat(otherProcess.getSnapshot(1)).isSameAs(snapshot);
+
+    when(system2.now()).thenReturn(100_000L + SYNC_INTERVAL_MS);
+    assertThat(otherProcess.getSnapshot(1)).isNotSameAs(snapshot);
+  }
+
+  private PermissionCache newCache() {
+    return new PermissionCache(new InternalPropertiesImpl(db.getDbClient()), UuidFactoryFast.getInstance(), system2);
+  }
+}
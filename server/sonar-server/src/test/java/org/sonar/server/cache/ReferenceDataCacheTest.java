@@ -0,0 +1,190 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.cache;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.System2;
+import org.sonar.core.util.UuidFactoryFast;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.DbTester;
+import org.sonar.db.metric.MetricDto;
+import org.sonar.db.rule.RuleDefinitionDto;
+import org.sonar.db.rule.RuleDto;
+import org.sonar.db.user.UserDao;
+import org.sonar.db.user.UserDto;
+import org.sonar.server.platform.cluster.Cluster;
+import org.sonar.server.property.InternalPropertiesImpl;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+import static org.sonar.db.metric.MetricTesting.newMetricDto;
+import static org.sonar.server.cache.ReferenceDataCache.CLUSTER_SYNC_INTERVAL_MS;
+
+public class ReferenceDataCacheTest {
+
+  private System2 system2 = mock(System2.class);
+
+  @Rule
+  public DbTester db = DbTester.create(System2.INSTANCE);
+
+  private DbClient dbClient = db.getDbClient();
+  private DbSession dbSession = db.getSession();
+  private Cluster cluster = mock(Cluster.class);
+
+  private ReferenceDataCache underTest = newCache();
+
+  @Test
+  public void rules_are_loaded_once() {
+    RuleDto rule1 = db.rules().insertRule(r -> r.setName("name1"));
+    RuleDto rule2 = db.rules().insertRule(r -> r.setName("name2"));
+
+    assertThat(underTest.selectRuleDefinitionsByKeys(dbSession, asList(rule2.getKey(), rule1.getKey(), RuleKey.of("unknown", "unknown"))))
+      .extracting(RuleDefinitionDto::getName).containsExactly("name2", "name1");
+
+    updateRuleName(rule1, "updated");
+    assertThat(underTest.selectRuleDefinitionsByKeys(dbSession, asList(rule1.getKey())))
+      .extracting(RuleDefinitionDto::getName).containsExactly("name1");
+
+    underTest.invalidateRules();
+    assertThat(underTest.selectRuleDefinitionsByKeys(dbSession, asList(rule1.getKey(), rule2.getKey())))
+      .extracting(RuleDefinitionDto::getName).containsExactly("updated", "name2");
+  }
+
+  @Test
+  public void rules_version_changes_when_rules_are_invalidated() {
+    long version = underTest.getRulesVersion();
+    underTest.invalidateMetrics();
+    assertThat(underTest.getRulesVersion()).isEqualTo(version);
+
+    underTest.invalidateRules();
+    assertThat(underTest.getRulesVersion()).isNotEqualTo(version);
+  }
+
+  @Test
+  public void metrics_are_loaded_once() {
+    MetricDto metric1 = insertMetric("metric1", "name1");
+    MetricDto metric2 = insertMetric("metric2", "name2");
+
+    assertThat(underTest.selectMetricsByKeys(dbSession, asList("metric1", "unknown", "metric2")))
+      .extracting(MetricDto::getShortName).containsExactly("name1", "name2");
+
+    dbClient.metricDao().update(dbSession, metric1.setShortName("updated"));
+    dbSession.commit();
+    assertThat(underTest.selectMetricsByKeys(dbSession, asList("metric1")))
+      .extracting(MetricDto::getShortName).containsExactly("name1");
+
+    underTest.invalidateMetrics();
+    assertThat(underTest.selectMetricsByKeys(dbSession, asList(metric1.getKey(), metric2.getKey())))
+      .extracting(MetricDto::getShortName).containsExactly("updated", "name2");
+  }
+
+  @Test
+  public void users_are_loaded_once() {
+    UserDto user1 = db.users().insertUser(u -> u.setName("name1"));
+    UserDto user2 = db.users().insertUser(u -> u.setName("name2"));
+
+    assertThat(underTest.selectUsersByLogins(dbSession, asList(user1.getLogin(), user2.getLogin(), user1.getLogin())))
+      .extracting(UserDto::getName).containsExactly("name1", "name2");
+
+    updateUserName(user1, "updated1");
+    updateUserName(user2, "updated2");
+    underTest.invalidateUser(user1.getLogin());
+
+    assertThat(underTest.selectUsersByLogins(dbSession, asList(user1.getLogin(), user2.getLogin())))
+      .extracting(UserDto::getName).containsExactly("updated1", "name2");
+  }
+
+  @Test
+  public void user_invalidated_while_loading_is_not_cached() {
+    UserDto user = db.users().insertUser(u -> u.setName("name"));
+    DbClient spiedDbClient = spy(dbClient);
+    UserDao userDao = spy(dbClient.userDao());
+    when(spiedDbClient.userDao()).thenReturn(userDao);
+    ReferenceDataCache cache = new ReferenceDataCache(spiedDbClient, cluster, new InternalPropertiesImpl(dbClient), UuidFactoryFast.getInstance(), system2);
+    doAnswer(invocation -> {
+      Object loaded = invocation.callRealMethod();
+      // user is updated by another request once loaded
+      updateUserName(user, "updated");
+      cache.invalidateUser(user.getLogin());
+      return loaded;
+    }).doCallRealMethod().when(userDao).selectByLogins(any(DbSession.class), anyCollectionOf(String.class));
+
+    assertThat(cache.selectUsersByLogins(dbSession, asList(user.getLogin()))).extracting(UserDto::getName).containsExactly("name");
+    assertThat(cache.selectUsersByLogins(dbSession, asList(user.getLogin()))).extracting(UserDto::getName).containsExactly("updated");
+  }
+
+  @Test
+  public void invalidation_reaches_other_nodes_of_cluster() {
+    when(cluster.isEnabled()).thenReturn(true);
+    when(system2.now()).thenReturn(1_000_000L);
+    ReferenceDataCache node1 = newCache();
+    ReferenceDataCache node2 = newCache();
+    UserDto user = db.users().insertUser(u -> u.setName("name"));
+    assertThat(node2.selectUsersByLogins(dbSession, asList(user.getLogin()))).extracting(UserDto::getName).containsExactly("name");
+
+    updateUserName(user, "updated");
+    node1.invalidateUser(user.getLogin());
+
+    // other nodes are synchronized periodically
+    assertThat(node2.selectUsersByLogins(dbSession, asList(user.getLogin()))).extracting(UserDto::getName).containsExactly("name");
+    when(system2.now()).thenReturn(1_000_000L + CLUSTER_SYNC_INTERVAL_MS);
+    assertThat(node2.selectUsersByLogins(dbSession, asList(user.getLogin()))).extracting(UserDto::getName).containsExactly("updated");
+  }
+
+  @Test
+  public void invalidation_is_not_shared_when_cluster_is_disabled() {
+    underTest.invalidateRules();
+    underTest.invalidateMetrics();
+    underTest.invalidateUser("foo");
+
+    assertThat(dbClient.internalPropertiesDao().selectByKey(dbSession, "referenceDataCache.rules.version")).isEmpty();
+    assertThat(dbClient.internalPropertiesDao().selectByKey(dbSession, "referenceDataCache.users.version")).isEmpty();
+  }
+
+  private ReferenceDataCache newCache() {
+    return new ReferenceDataCache(dbClient, cluster, new InternalPropertiesImpl(dbClient), UuidFactoryFast.getInstance(), system2);
+  }
+
+  private MetricDto insertMetric(String key, String shortName) {
+    MetricDto metric = newMetricDto().setKey(key).setShortName(shortName);
+    dbClient.metricDao().insert(dbSession, metric);
+    dbSession.commit();
+    return metric;
+  }
+
+  private void updateRuleName(RuleDto rule, String name) {
+    dbClient.ruleDao().update(dbSession, rule.getDefinition().setName(name));
+    dbSession.commit();
+  }
+
+  private void updateUserName(UserDto user, String name) {
+    dbClient.userDao().update(dbSession, user.setName(name));
+    dbSession.commit();
+  }
+}
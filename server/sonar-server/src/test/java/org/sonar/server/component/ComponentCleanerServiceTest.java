@@ -37,9 +37,11 @@ import org.sonar.db.issue.IssueDto;
 import org.sonar.db.issue.IssueTesting;
 import org.sonar.db.rule.RuleDto;
 import org.sonar.db.rule.RuleTesting;
+import org.sonar.server.cache.PermissionCache;
 import org.sonar.server.es.ProjectIndexer;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
@@ -63,7 +65,8 @@ public class ComponentCleanerServiceTest {
   private DbSession dbSession = db.getSession();
   private ProjectIndexer projectIndexer = mock(ProjectIndexer.class);
   private ResourceTypes mockResourceTypes = mock(ResourceTypes.class);
-  private ComponentCleanerService underTest = new ComponentCleanerService(dbClient, mockResourceTypes, projectIndexer);
+  private PermissionCache permissionCache = mock(PermissionCache.class);
+  private ComponentCleanerService underTest = new ComponentCleanerService(dbClient, mockResourceTypes, permissionCache, projectIndexer);
 
   @Test
   public void delete_project_from_db_and_index() {
@@ -74,6 +77,7 @@ public class ComponentCleanerServiceTest {
 
     assertNotExists(data1);
     assertExists(data2);
+    verify(permissionCache).invalidateProjects(singletonList(data1.project.uuid()));
   }
 
   @Test
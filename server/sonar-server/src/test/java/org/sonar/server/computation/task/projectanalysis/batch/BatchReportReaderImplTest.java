@@ -25,10 +25,13 @@ import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.sonar.api.utils.ZipUtils;
 import org.sonar.api.utils.internal.JUnitTempFolder;
 import org.sonar.core.util.CloseableIterator;
+import org.sonar.scanner.protocol.output.IndexedReportArchive;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.scanner.protocol.output.ScannerReportWriter;
+import org.sonar.scanner.protocol.output.ZipReportContainer;
 
 import static com.google.common.collect.ImmutableList.of;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -315,4 +318,41 @@ public class BatchReportReaderImplTest {
     assertThat(res).containsExactly(COVERAGE_DETAIL_1, COVERAGE_DETAIL_2);
     res.close();
   }
+
+  @Test
+  public void read_entries_of_indexed_archive() throws IOException {
+    File reportDir = tempFolder.newDir();
+    ScannerReportWriter archiveWriter = new ScannerReportWriter(reportDir);
+    archiveWriter.writeComponent(COMPONENT);
+    archiveWriter.writeTests(COMPONENT_REF, of(TEST_1, TEST_2));
+    FileUtils.write(archiveWriter.getSourceFile(COMPONENT_REF), "1\n2\n3");
+    FileUtils.write(archiveWriter.getFileStructure().analysisLog(), "log1\nlog2");
+    archiveWriter.writeIndexedArchive(new File(writer.getFileStructure().root(), IndexedReportArchive.FILENAME));
+
+    assertThat(underTest.readComponent(COMPONENT_REF)).isEqualTo(COMPONENT);
+    assertThat(underTest.readTests(COMPONENT_REF)).containsExactly(TEST_1, TEST_2);
+    assertThat(underTest.readFileSource(COMPONENT_REF).get()).containsExactly("1", "2", "3");
+    assertThat(underTest.readScannerLogs()).containsExactly("log1", "log2");
+    assertThat(underTest.readComponentIssues(COMPONENT_REF)).isEmpty();
+
+    underTest.close();
+  }
+
+  @Test
+  public void read_entries_of_zipped_report() throws IOException {
+    File reportDir = tempFolder.newDir();
+    ScannerReportWriter zipWriter = new ScannerReportWriter(reportDir);
+    zipWriter.writeComponent(COMPONENT);
+    zipWriter.writeCoverageDetails(COMPONENT_REF, of(COVERAGE_DETAIL_1, COVERAGE_DETAIL_2));
+    FileUtils.write(zipWriter.getSourceFile(COMPONENT_REF), "1\n2");
+    ZipUtils.zipDir(reportDir, new File(writer.getFileStructure().root(), ZipReportContainer.FILENAME));
+
+    assertThat(underTest.readComponent(COMPONENT_REF)).isEqualTo(COMPONENT);
+    assertThat(underTest.readCoverageDetails(COMPONENT_REF)).containsExactly(COVERAGE_DETAIL_1, COVERAGE_DETAIL_2);
+    assertThat(underTest.readFileSource(COMPONENT_REF).get()).containsExactly("1", "2");
+    assertThat(underTest.readScannerLogs().hasNext()).isFalse();
+    assertThat(underTest.readFileSource(2)).isAbsent();
+
+    underTest.close();
+  }
 }
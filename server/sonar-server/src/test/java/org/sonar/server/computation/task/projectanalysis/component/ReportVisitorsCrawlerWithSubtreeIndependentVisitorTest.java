@@ -0,0 +1,309 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.component;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.slf4j.MDC;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.DIRECTORY;
+import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.FILE;
+import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.MODULE;
+import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.PROJECT;
+import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.POST_ORDER;
+import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.PRE_ORDER;
+
+public class ReportVisitorsCrawlerWithSubtreeIndependentVisitorTest {
+
+  private static final ReportComponent SOME_TREE_ROOT = ReportComponent.builder(PROJECT, 1)
+    .addChildren(
+      ReportComponent.builder(MODULE, 11)
+        .addChildren(
+          ReportComponent.builder(DIRECTORY, 111)
+            .addChildren(
+              ReportComponent.builder(FILE, 1111).build(),
+              ReportComponent.builder(FILE, 1112).build())
+            .build(),
+          ReportComponent.builder(DIRECTORY, 112)
+            .addChildren(
+              ReportComponent.builder(FILE, 1121).build())
+            .build(),
+          ReportComponent.builder(FILE, 113).build())
+        .build(),
+      ReportComponent.builder(MODULE, 12)
+        .addChildren(
+          ReportComponent.builder(MODULE, 121)
+            .addChildren(
+              ReportComponent.builder(DIRECTORY, 1211)
+                .addChildren(
+                  ReportComponent.builder(FILE, 12111).build(),
+                  ReportComponent.builder(FILE, 12112).build(),
+                  ReportComponent.builder(FILE, 12113).build())
+                .build())
+            .build())
+        .build())
+    .build();
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+
+  @After
+  public void tearDown() {
+    forkJoinPool.shutdownNow();
+  }
+
+  @Test
+  public void path_aware_visitor_counts_files_of_subtrees_visited_concurrently() {
+    FileCounterVisitor visitor = new FileCounterVisitor();
+    VisitorsCrawler underTest = new VisitorsCrawler(singletonList(visitor), false, forkJoinPool);
+
+    underTest.visit(SOME_TREE_ROOT);
+
+    assertThat(underTest.isConcurrent()).isTrue();
+    assertThat(visitor.fileCounts).containsOnly(
+      entry(1, 7), entry(11, 4), entry(111, 2), entry(112, 1), entry(12, 3), entry(121, 3), entry(1211, 3),
+      entry(1111, 1), entry(1112, 1), entry(1121, 1), entry(113, 1), entry(12111, 1), entry(12112, 1), entry(12113, 1));
+  }
+
+  @Test
+  public void concurrent_visit_gives_same_results_as_sequential_visit() {
+    FileCounterVisitor concurrentVisitor = new FileCounterVisitor();
+    FileCounterVisitor sequentialVisitor = new FileCounterVisitor();
+
+    new VisitorsCrawler(singletonList(concurrentVisitor), false, forkJoinPool).visit(SOME_TREE_ROOT);
+    new VisitorsCrawler(singletonList(sequentialVisitor), false).visit(SOME_TREE_ROOT);
+
+    assertThat(concurrentVisitor.fileCounts).isEqualTo(sequentialVisitor.fileCounts);
+  }
+
+  @Test
+  public void elements_of_path_are_not_shared_between_threads() {
+    ElementThreadsVisitor visitor = new ElementThreadsVisitor();
+
+    new VisitorsCrawler(singletonList(visitor), false, forkJoinPool).visit(SOME_TREE_ROOT);
+
+    assertThat(visitor.threadsByElement).isNotEmpty();
+    for (Set<Thread> threads : visitor.threadsByElement.values()) {
+      assertThat(threads).hasSize(1);
+    }
+  }
+
+  @Test
+  public void subtrees_are_visited_with_logging_context_of_calling_thread() {
+    MdcRecorderVisitor visitor = new MdcRecorderVisitor();
+    MDC.put("ceTaskUuid", "TASK_1");
+    try {
+      new VisitorsCrawler(singletonList(visitor), false, forkJoinPool).visit(SOME_TREE_ROOT);
+
+      assertThat(MDC.get("ceTaskUuid")).isEqualTo("TASK_1");
+    } finally {
+      MDC.clear();
+    }
+
+    assertThat(visitor.taskUuids).hasSize(14);
+    assertThat(visitor.taskUuids.values()).containsOnly("TASK_1");
+  }
+
+  @Test
+  public void type_aware_visitors_visit_each_component_once_and_pre_order_before_children() {
+    RecordingVisitor preOrder = new RecordingVisitor(PRE_ORDER);
+    RecordingVisitor postOrder = new RecordingVisitor(POST_ORDER);
+    VisitorsCrawler underTest = new VisitorsCrawler(asList(preOrder, postOrder), true, forkJoinPool);
+
+    underTest.visit(SOME_TREE_ROOT);
+
+    assertThat(preOrder.visitIndexes).hasSize(14);
+    assertThat(postOrder.visitIndexes).hasSize(14);
+    // parents are visited before their children in pre-order, after them in post-order
+    assertThat(preOrder.visitIndexes.get(1)).isLessThan(preOrder.visitIndexes.get(11));
+    assertThat(preOrder.visitIndexes.get(11)).isLessThan(preOrder.visitIndexes.get(111));
+    assertThat(postOrder.visitIndexes.get(1211)).isLessThan(postOrder.visitIndexes.get(121));
+    assertThat(postOrder.visitIndexes.get(121)).isLessThan(postOrder.visitIndexes.get(1));
+    assertThat(underTest.getCumulativeDurations()).containsOnlyKeys(preOrder, postOrder);
+  }
+
+  @Test
+  public void visit_is_sequential_if_any_visitor_is_not_subtree_independent() {
+    VisitorsCrawler underTest = new VisitorsCrawler(asList(new FileCounterVisitor(), new TypeAwareVisitorAdapter(CrawlerDepthLimit.FILE, PRE_ORDER) {
+    }), false, forkJoinPool);
+
+    assertThat(underTest.isConcurrent()).isFalse();
+  }
+
+  @Test
+  public void fail_if_path_aware_visitor_can_not_merge_subtrees() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("must implement SubtreeIndependentPathAwareVisitor to be visited concurrently");
+
+    new VisitorsCrawler(singletonList(new NotMergingPathAwareVisitor()), false, forkJoinPool);
+  }
+
+  @Test
+  public void exception_in_subtree_is_wrapped_in_VisitException() {
+    RecordingVisitor visitor = new RecordingVisitor(POST_ORDER) {
+      @Override
+      public void visitFile(Component file) {
+        if (file.getReportAttributes().getRef() == 12112) {
+          throw new IllegalStateException("Faking an exception");
+        }
+      }
+    };
+
+    expectedException.expect(VisitException.class);
+    expectedException.expectMessage("Visit of Component {key=key_12112,type=FILE} failed");
+
+    new VisitorsCrawler(singletonList(visitor), false, forkJoinPool).visit(SOME_TREE_ROOT);
+  }
+
+  private static class FileCounterVisitor extends PathAwareVisitorAdapter<AtomicInteger> implements SubtreeIndependentPathAwareVisitor<AtomicInteger> {
+    private final Map<Integer, Integer> fileCounts = new ConcurrentHashMap<>();
+
+    private FileCounterVisitor() {
+      super(CrawlerDepthLimit.FILE, POST_ORDER, new SimpleStackElementFactory<AtomicInteger>() {
+        @Override
+        public AtomicInteger createForAny(Component component) {
+          return new AtomicInteger();
+        }
+      });
+    }
+
+    @Override
+    public void visitFile(Component file, Path<AtomicInteger> path) {
+      path.current().incrementAndGet();
+      visitNode(file, path);
+    }
+
+    @Override
+    public void visitDirectory(Component directory, Path<AtomicInteger> path) {
+      visitNode(directory, path);
+    }
+
+    @Override
+    public void visitModule(Component module, Path<AtomicInteger> path) {
+      visitNode(module, path);
+    }
+
+    @Override
+    public void visitProject(Component project, Path<AtomicInteger> path) {
+      visitNode(project, path);
+    }
+
+    private void visitNode(Component component, Path<AtomicInteger> path) {
+      fileCounts.put(component.getReportAttributes().getRef(), path.current().get());
+      if (!path.isRoot()) {
+        // not thread-safe on purpose: parent elements are specific to each subtree
+        path.parent().set(path.parent().get() + path.current().get());
+      }
+    }
+
+    @Override
+    public void mergeSubtree(AtomicInteger element, AtomicInteger subtreeElement) {
+      element.addAndGet(subtreeElement.get());
+    }
+  }
+
+  /**
+   * Records the threads which accessed each element of the path, on all levels, during visits.
+   */
+  private static class ElementThreadsVisitor extends PathAwareVisitorAdapter<Object> implements SubtreeIndependentPathAwareVisitor<Object> {
+    private final Map<Object, Set<Thread>> threadsByElement = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    private ElementThreadsVisitor() {
+      super(CrawlerDepthLimit.FILE, POST_ORDER, new SimpleStackElementFactory<Object>() {
+        @Override
+        public Object createForAny(Component component) {
+          return new Object();
+        }
+      });
+    }
+
+    @Override
+    public void visitAny(Component component, Path<Object> path) {
+      for (PathElement<Object> pathElement : path.getCurrentPath()) {
+        record(pathElement.getElement());
+      }
+    }
+
+    @Override
+    public void mergeSubtree(Object element, Object subtreeElement) {
+      // merges happen once the subtree is joined
+    }
+
+    private void record(Object element) {
+      threadsByElement.computeIfAbsent(element, e -> ConcurrentHashMap.newKeySet()).add(Thread.currentThread());
+    }
+  }
+
+  private static class MdcRecorderVisitor extends TypeAwareVisitorAdapter implements SubtreeIndependentVisitor {
+    private final Map<Integer, String> taskUuids = new ConcurrentHashMap<>();
+
+    private MdcRecorderVisitor() {
+      super(CrawlerDepthLimit.FILE, PRE_ORDER);
+    }
+
+    @Override
+    public void visitAny(Component component) {
+      taskUuids.put(component.getReportAttributes().getRef(), MDC.get("ceTaskUuid"));
+    }
+  }
+
+  private static class NotMergingPathAwareVisitor extends PathAwareVisitorAdapter<Integer> implements SubtreeIndependentVisitor {
+    private NotMergingPathAwareVisitor() {
+      super(CrawlerDepthLimit.FILE, POST_ORDER, new SimpleStackElementFactory<Integer>() {
+        @Override
+        public Integer createForAny(Component component) {
+          return 0;
+        }
+      });
+    }
+  }
+
+  private static class RecordingVisitor extends TypeAwareVisitorAdapter implements SubtreeIndependentVisitor {
+    private final AtomicInteger counter = new AtomicInteger();
+    private final Map<Integer, Integer> visitIndexes = new ConcurrentHashMap<>();
+    private final Set<Integer> visited = ConcurrentHashMap.newKeySet();
+
+    private RecordingVisitor(Order order) {
+      super(CrawlerDepthLimit.FILE, order);
+    }
+
+    @Override
+    public void visitAny(Component component) {
+      int ref = component.getReportAttributes().getRef();
+      assertThat(visited.add(ref)).isTrue();
+      visitIndexes.put(ref, counter.getAndIncrement());
+    }
+  }
+}
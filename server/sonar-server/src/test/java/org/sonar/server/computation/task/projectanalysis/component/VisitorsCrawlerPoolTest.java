@@ -0,0 +1,63 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.component;
+
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.config.MapSettings;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class VisitorsCrawlerPoolTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Test
+  public void pool_is_created_on_first_use_and_shut_down_on_stop() {
+    VisitorsCrawlerPool underTest = new VisitorsCrawlerPool(new MapSettings().setProperty(VisitorsCrawlerPool.THREADS_PROPERTY, 3));
+    underTest.start();
+
+    ForkJoinPool forkJoinPool = underTest.get();
+    assertThat(forkJoinPool.getParallelism()).isEqualTo(3);
+    assertThat(underTest.get()).isSameAs(forkJoinPool);
+
+    underTest.stop();
+    assertThat(forkJoinPool.isShutdown()).isTrue();
+  }
+
+  @Test
+  public void no_pool_if_single_thread_is_configured() {
+    VisitorsCrawlerPool underTest = new VisitorsCrawlerPool(1);
+
+    assertThat(underTest.get()).isNull();
+    underTest.stop();
+  }
+
+  @Test
+  public void fail_if_number_of_threads_is_not_strictly_positive() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Property sonar.ce.visitors.threads must be strictly positive: 0");
+
+    new VisitorsCrawlerPool(0);
+  }
+}
@@ -0,0 +1,240 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.duplication;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.utils.System2;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.DbTester;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.db.component.SnapshotDto;
+import org.sonar.db.duplication.DuplicationUnitDto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.sonar.db.component.ComponentTesting.newFileDto;
+import static org.sonar.db.component.ComponentTesting.newProjectDto;
+import static org.sonar.db.component.SnapshotTesting.newAnalysis;
+
+public class CrossProjectDuplicationIndexTest {
+
+  private static final String JAVA = "java";
+
+  private System2 system2 = mock(System2.class);
+
+  @Rule
+  public DbTester db = DbTester.create(System2.INSTANCE);
+
+  private DbClient dbClient = db.getDbClient();
+  private DbSession dbSession = db.getSession();
+
+  private CrossProjectDuplicationIndex underTest = new CrossProjectDuplicationIndex(dbClient, system2, new MapSettings());
+
+  @Test
+  public void hash_may_be_duplicated_if_in_last_analysis_of_another_project() {
+    ComponentDto project1 = insertProject();
+    ComponentDto project2 = insertProject();
+    insertBlocks(project1, insertAnalysis(project1, true), JAVA, "aa", "bb");
+    insertBlocks(project2, insertAnalysis(project2, true), JAVA, "bb");
+
+    CrossProjectDuplicationIndex.Hashes hashes = underTest.getHashes(JAVA);
+
+    assertThat(hashes.size()).isEqualTo(2);
+    assertThat(hashes.mayBeDuplicated("aa", project2.uuid())).isTrue();
+    assertThat(hashes.mayBeDuplicated("aa", "unknown")).isTrue();
+    assertThat(hashes.mayBeDuplicated("aa", project1.uuid())).isFalse();
+    assertThat(hashes.mayBeDuplicated("bb", project1.uuid())).isTrue();
+    assertThat(hashes.mayBeDuplicated("bb", project2.uuid())).isTrue();
+    assertThat(hashes.mayBeDuplicated("cc", "unknown")).isFalse();
+  }
+
+  @Test
+  public void ignore_hashes_of_other_languages_and_of_previous_analyses() {
+    ComponentDto project = insertProject();
+    insertBlocks(project, insertAnalysis(project, false), JAVA, "aa");
+    insertBlocks(project, insertAnalysis(project, true), "js", "bb");
+
+    CrossProjectDuplicationIndex.Hashes hashes = underTest.getHashes(JAVA);
+
+    assertThat(hashes.size()).isEqualTo(0);
+    assertThat(hashes.mayBeDuplicated("aa", "unknown")).isFalse();
+    assertThat(hashes.mayBeDuplicated("bb", "unknown")).isFalse();
+    assertThat(underTest.getHashes("js").mayBeDuplicated("bb", "unknown")).isTrue();
+  }
+
+  @Test
+  public void add_hashes_of_new_last_analyses() {
+    when(system2.now()).thenReturn(1_000L);
+    ComponentDto project1 = insertProject();
+    insertBlocks(project1, insertAnalysis(project1, true), JAVA, "aa");
+    CrossProjectDuplicationIndex.Hashes hashes = underTest.getHashes(JAVA);
+    assertThat(hashes.mayBeDuplicated("bb", "unknown")).isFalse();
+
+    ComponentDto project2 = insertProject();
+    insertBlocks(project2, insertAnalysis(project2, true), JAVA, "aa", "bb");
+    CrossProjectDuplicationIndex.Hashes newHashes = underTest.getHashes(JAVA);
+
+    assertThat(newHashes.mayBeDuplicated("bb", project1.uuid())).isTrue();
+    assertThat(newHashes.mayBeDuplicated("bb", project2.uuid())).isFalse();
+    assertThat(newHashes.mayBeDuplicated("aa", project1.uuid())).isTrue();
+    assertThat(newHashes.mayBeDuplicated("aa", project2.uuid())).isTrue();
+    // previous view is not changed
+    assertThat(hashes.mayBeDuplicated("bb", "unknown")).isFalse();
+  }
+
+  @Test
+  public void hashes_of_previous_analyses_are_dropped_when_index_is_rebuilt() {
+    when(system2.now()).thenReturn(1_000L);
+    ComponentDto project = insertProject();
+    SnapshotDto analysis = insertAnalysis(project, true);
+    insertBlocks(project, analysis, JAVA, "aa");
+    assertThat(underTest.getHashes(JAVA).mayBeDuplicated("aa", "unknown")).isTrue();
+
+    dbClient.snapshotDao().switchIsLastFlagAndSetProcessedStatus(dbSession, project.uuid(), insertAnalysis(project, false).getUuid());
+    dbSession.commit();
+    assertThat(underTest.getHashes(JAVA).mayBeDuplicated("aa", "unknown")).isTrue();
+
+    when(system2.now()).thenReturn(1_000L + CrossProjectDuplicationIndex.REBUILD_INTERVAL_MS);
+    assertThat(underTest.getHashes(JAVA).mayBeDuplicated("aa", "unknown")).isFalse();
+  }
+
+  @Test
+  public void index_is_built_by_batches_of_analyses() {
+    underTest = new CrossProjectDuplicationIndex(dbClient, system2, 1_000, 1);
+    ComponentDto project1 = insertProject();
+    ComponentDto project2 = insertProject();
+    insertBlocks(project1, insertAnalysis(project1, true), JAVA, "aa");
+    insertBlocks(project2, insertAnalysis(project2, true), JAVA, "bb");
+
+    // all blocks are searched in db until index is built
+    CrossProjectDuplicationIndex.Hashes hashes = underTest.getHashes(JAVA);
+    assertThat(hashes.size()).isEqualTo(0);
+    assertThat(hashes.mayBeDuplicated("cc", "unknown")).isTrue();
+
+    hashes = underTest.getHashes(JAVA);
+    assertThat(hashes.size()).isEqualTo(2);
+    assertThat(hashes.mayBeDuplicated("aa", "unknown")).isTrue();
+    assertThat(hashes.mayBeDuplicated("bb", "unknown")).isTrue();
+    assertThat(hashes.mayBeDuplicated("cc", "unknown")).isFalse();
+  }
+
+  @Test
+  public void previous_index_is_used_while_index_is_rebuilt() {
+    underTest = new CrossProjectDuplicationIndex(dbClient, system2, 1_000, 1);
+    when(system2.now()).thenReturn(1_000L);
+    ComponentDto project1 = insertProject();
+    insertBlocks(project1, insertAnalysis(project1, true), JAVA, "aa");
+    CrossProjectDuplicationIndex.Hashes hashes = underTest.getHashes(JAVA);
+    assertThat(hashes.mayBeDuplicated("aa", "unknown")).isTrue();
+    ComponentDto project2 = insertProject();
+    insertBlocks(project2, insertAnalysis(project2, true), JAVA, "bb");
+
+    when(system2.now()).thenReturn(1_000L + CrossProjectDuplicationIndex.REBUILD_INTERVAL_MS);
+    CrossProjectDuplicationIndex.Hashes previousHashes = underTest.getHashes(JAVA);
+    assertThat(previousHashes.mayBeDuplicated("aa", "unknown")).isTrue();
+    assertThat(previousHashes.mayBeDuplicated("bb", "unknown")).isTrue();
+    assertThat(previousHashes.mayBeDuplicated("cc", "unknown")).isFalse();
+
+    CrossProjectDuplicationIndex.Hashes newHashes = underTest.getHashes(JAVA);
+    assertThat(newHashes).isNotSameAs(previousHashes);
+    assertThat(newHashes.size()).isEqualTo(2);
+    assertThat(newHashes.mayBeDuplicated("cc", "unknown")).isFalse();
+  }
+
+  @Test
+  public void all_blocks_may_be_duplicated_if_index_would_exceed_max_blocks() {
+    underTest = new CrossProjectDuplicationIndex(dbClient, system2, 2, 1_000);
+    when(system2.now()).thenReturn(1_000L);
+    ComponentDto project = insertProject();
+    insertBlocks(project, insertAnalysis(project, true), JAVA, "aa", "bb", "cc");
+
+    CrossProjectDuplicationIndex.Hashes hashes = underTest.getHashes(JAVA);
+    assertThat(hashes.size()).isEqualTo(0);
+    assertThat(hashes.mayBeDuplicated("dd", "unknown")).isTrue();
+
+    // index is not rebuilt before next interval
+    assertThat(underTest.getHashes(JAVA).mayBeDuplicated("dd", "unknown")).isTrue();
+  }
+
+  @Test
+  public void index_is_dropped_if_new_blocks_exceed_max_blocks() {
+    underTest = new CrossProjectDuplicationIndex(dbClient, system2, 2, 1_000);
+    when(system2.now()).thenReturn(1_000L);
+    ComponentDto project1 = insertProject();
+    insertBlocks(project1, insertAnalysis(project1, true), JAVA, "aa");
+    assertThat(underTest.getHashes(JAVA).mayBeDuplicated("dd", "unknown")).isFalse();
+
+    ComponentDto project2 = insertProject();
+    insertBlocks(project2, insertAnalysis(project2, true), JAVA, "bb", "cc");
+
+    assertThat(underTest.getHashes(JAVA).mayBeDuplicated("dd", "unknown")).isTrue();
+  }
+
+  @Test
+  public void max_blocks_is_shared_by_languages() {
+    underTest = new CrossProjectDuplicationIndex(dbClient, system2, 2, 1_000);
+    ComponentDto project = insertProject();
+    SnapshotDto analysis = insertAnalysis(project, true);
+    insertBlocks(project, analysis, JAVA, "aa", "bb");
+    insertBlocks(project, analysis, "js", "cc");
+
+    assertThat(underTest.getHashes(JAVA).mayBeDuplicated("dd", "unknown")).isFalse();
+    assertThat(underTest.getHashes("js").mayBeDuplicated("dd", "unknown")).isTrue();
+  }
+
+  @Test
+  public void max_blocks_is_read_from_settings() {
+    MapSettings settings = new MapSettings();
+    settings.setProperty(CrossProjectDuplicationIndex.MAX_BLOCKS_PROPERTY, 0);
+    underTest = new CrossProjectDuplicationIndex(dbClient, system2, settings);
+    ComponentDto project = insertProject();
+    insertBlocks(project, insertAnalysis(project, true), JAVA, "aa");
+
+    assertThat(underTest.getHashes(JAVA).mayBeDuplicated("dd", "unknown")).isTrue();
+  }
+
+  private ComponentDto insertProject() {
+    return db.components().insertComponent(newProjectDto(db.getDefaultOrganization()));
+  }
+
+  private SnapshotDto insertAnalysis(ComponentDto project, boolean last) {
+    SnapshotDto analysis = dbClient.snapshotDao().insert(dbSession, newAnalysis(project).setLast(last));
+    dbSession.commit();
+    return analysis;
+  }
+
+  private void insertBlocks(ComponentDto project, SnapshotDto analysis, String language, String... hashes) {
+    ComponentDto file = db.components().insertComponent(newFileDto(project, null).setLanguage(language));
+    for (int i = 0; i < hashes.length; i++) {
+      dbClient.duplicationDao().insert(dbSession, new DuplicationUnitDto()
+        .setHash(hashes[i])
+        .setStartLine(i)
+        .setEndLine(i + 10)
+        .setIndexInFile(i)
+        .setAnalysisUuid(analysis.getUuid())
+        .setComponentUuid(file.uuid()));
+    }
+    dbSession.commit();
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.filemove;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.server.computation.task.projectanalysis.filemove.FileMoveDetectionStep.MIN_REQUIRED_SCORE;
+
+public class MatchCandidatesTest {
+
+  private SourceSimilarityImpl sourceSimilarity = new SourceSimilarityImpl();
+
+  @Test
+  public void candidates_share_lines() {
+    List<FileSimilarity.File> removed = asList(
+      file("a", "b", "c", "d", "e", "f", "g", "h", "i", "j"),
+      file("k", "l", "m"),
+      null,
+      file());
+    List<FileSimilarity.File> added = asList(
+      file("x", "y", "z"),
+      file("a", "b", "c", "d", "e", "f", "g", "h", "i", "j", "k"),
+      file("a", "b", "c"),
+      file("k", "l", "m"));
+
+    MatchCandidates underTest = MatchCandidates.create(removed, added);
+
+    assertThat(underTest.of(0)).containsExactly(1);
+    assertThat(underTest.of(1)).containsExactly(3);
+    assertThat(underTest.of(2)).isEmpty();
+    assertThat(underTest.of(3)).isEmpty();
+  }
+
+  @Test
+  public void same_lines_in_different_order_are_candidates() {
+    MatchCandidates underTest = MatchCandidates.create(
+      asList(file("a", "b", "a", "b", "a", "b", "a", "b", "a", "b")),
+      asList(file("a", "a", "a", "a", "a", "b", "b", "b", "b", "b"), file("a", "a", "a", "a", "a", "a", "a", "a", "a", "a")));
+
+    assertThat(underTest.of(0)).containsExactly(0);
+  }
+
+  @Test
+  public void no_pair_with_min_required_score_is_missed() {
+    Random random = new Random(42L);
+    List<FileSimilarity.File> removed = new ArrayList<>();
+    List<FileSimilarity.File> added = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      List<String> lines = randomLines(random, random.nextInt(200));
+      removed.add(new FileSimilarity.File("removed" + i, lines));
+      // modified copy, with a score around the min required score
+      List<String> modified = new ArrayList<>(lines);
+      int changes = random.nextInt(1 + lines.size() / 5);
+      for (int j = 0; j < changes && !modified.isEmpty(); j++) {
+        int index = random.nextInt(modified.size());
+        switch (random.nextInt(3)) {
+          case 0:
+            modified.remove(index);
+            break;
+          case 1:
+            modified.set(index, "changed" + random.nextInt(10));
+            break;
+          default:
+            modified.add(index, lines.get(random.nextInt(lines.size())));
+        }
+      }
+      added.add(new FileSimilarity.File("added" + i, modified));
+    }
+
+    MatchCandidates underTest = MatchCandidates.create(removed, added);
+
+    int matches = 0;
+    for (int i = 0; i < removed.size(); i++) {
+      List<Integer> candidates = new ArrayList<>();
+      for (int candidate : underTest.of(i)) {
+        candidates.add(candidate);
+      }
+      for (int j = 0; j < added.size(); j++) {
+        if (sourceSimilarity.score(removed.get(i).getLineHashes(), added.get(j).getLineHashes()) >= MIN_REQUIRED_SCORE) {
+          assertThat(candidates).contains(j);
+          matches++;
+        }
+      }
+    }
+    assertThat(matches).isGreaterThan(50);
+  }
+
+  private static List<String> randomLines(Random random, int size) {
+    List<String> res = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      // frequent lines, such as "}", and lines specific to a file
+      res.add(random.nextInt(4) == 0 ? String.valueOf(random.nextInt(5)) : Integer.toHexString(random.nextInt()));
+    }
+    return res;
+  }
+
+  private static FileSimilarity.File file(String... lineHashes) {
+    return new FileSimilarity.File("path", lineHashes.length == 0 ? emptyList() : asList(lineHashes));
+  }
+}
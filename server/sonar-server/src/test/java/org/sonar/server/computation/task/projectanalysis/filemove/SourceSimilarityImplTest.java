@@ -19,11 +19,15 @@
  */
 package org.sonar.server.computation.task.projectanalysis.filemove;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import static java.lang.Math.max;
+import static java.lang.Math.min;
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -59,4 +63,67 @@ public class SourceSimilarityImplTest {
   public void two_empty_lists_are_not_considered_as_equal() {
     assertThat(underTest.score(emptyList(), emptyList())).isEqualTo(0);
   }
+
+  @Test
+  public void score_is_based_on_levenshtein_distance_of_lists_larger_than_a_word() {
+    Random random = new Random(42L);
+    for (int i = 0; i < 500; i++) {
+      // small alphabet, so that lists share elements
+      List<Integer> left = randomList(random, random.nextInt(300), 1 + random.nextInt(20));
+      List<Integer> right = randomList(random, random.nextInt(300), 1 + random.nextInt(20));
+      if (random.nextBoolean()) {
+        right = new ArrayList<>(left);
+        right.subList(0, random.nextInt(right.size() + 1)).clear();
+        right.addAll(randomList(random, random.nextInt(10), 30));
+      }
+
+      int expected = left.isEmpty() && right.isEmpty() ? 0 : (int) (100 * (1.0 - ((double) levenshteinDistance(left, right)) / max(left.size(), right.size())));
+      assertThat(underTest.score(left, right)).isEqualTo(expected);
+      assertThat(underTest.score(right, left)).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void score_large_lists_of_distinct_elements() {
+    List<String> left = new ArrayList<>();
+    for (int i = 0; i < 50_000; i++) {
+      left.add("line " + i);
+    }
+    List<String> right = new ArrayList<>(left);
+    right.subList(25_000, 25_500).clear();
+    for (int i = 0; i < 500; i++) {
+      right.add("new line " + i);
+    }
+
+    assertThat(underTest.score(left, right)).isEqualTo(SourceSimilarityImpl.toScore(1_000, 50_000));
+    assertThat(underTest.score(right, left)).isEqualTo(SourceSimilarityImpl.toScore(1_000, 50_000));
+  }
+
+  private static List<Integer> randomList(Random random, int size, int alphabetSize) {
+    List<Integer> res = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      res.add(random.nextInt(alphabetSize));
+    }
+    return res;
+  }
+
+  /**
+   * Dynamic programming over the full matrix
+   */
+  private static int levenshteinDistance(List<Integer> left, List<Integer> right) {
+    int[][] distances = new int[left.size() + 1][right.size() + 1];
+    for (int i = 0; i <= left.size(); i++) {
+      distances[i][0] = i;
+    }
+    for (int j = 0; j <= right.size(); j++) {
+      distances[0][j] = j;
+    }
+    for (int i = 1; i <= left.size(); i++) {
+      for (int j = 1; j <= right.size(); j++) {
+        int cost = left.get(i - 1).equals(right.get(j - 1)) ? 0 : 1;
+        distances[i][j] = min(min(distances[i - 1][j] + 1, distances[i][j - 1] + 1), distances[i - 1][j - 1] + cost);
+      }
+    }
+    return distances[left.size()][right.size()];
+  }
 }
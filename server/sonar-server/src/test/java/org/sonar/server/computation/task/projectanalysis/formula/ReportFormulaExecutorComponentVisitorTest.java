@@ -21,13 +21,17 @@ package org.sonar.server.computation.task.projectanalysis.formula;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
+import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
 import org.junit.Rule;
 import org.junit.Test;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor;
 import org.sonar.server.computation.task.projectanalysis.component.PathAwareCrawler;
 import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
+import org.sonar.server.computation.task.projectanalysis.component.VisitorsCrawler;
 import org.sonar.server.computation.task.projectanalysis.formula.counter.IntValue;
 import org.sonar.server.computation.task.projectanalysis.measure.Measure;
 import org.sonar.server.computation.task.projectanalysis.measure.MeasureRepositoryRule;
@@ -112,6 +116,33 @@ public class ReportFormulaExecutorComponentVisitorTest {
     assertAddedRawMeasure(FILE_3_REF, 2);
   }
 
+  @Test
+  public void verify_aggregation_on_value_when_subtrees_are_visited_by_forks() throws Exception {
+    treeRootHolder.setRoot(BALANCED_COMPONENT_TREE);
+
+    measureRepository.addRawMeasure(FILE_1_REF, LINES_KEY, newMeasureBuilder().create(10));
+    measureRepository.addRawMeasure(FILE_2_REF, LINES_KEY, newMeasureBuilder().create(8));
+    measureRepository.addRawMeasure(FILE_3_REF, LINES_KEY, newMeasureBuilder().create(2));
+
+    // a single thread, as MeasureRepositoryRule is not thread-safe, but each subtree is still visited by its own fork
+    ForkJoinPool forkJoinPool = new ForkJoinPool(1);
+    try {
+      new VisitorsCrawler(Collections.<ComponentVisitor>singletonList(formulaExecutorComponentVisitor(new FakeFormula())), false, forkJoinPool)
+        .visit(BALANCED_COMPONENT_TREE);
+    } finally {
+      forkJoinPool.shutdownNow();
+    }
+
+    assertAddedRawMeasure(ROOT_REF, 20);
+    assertAddedRawMeasure(MODULE_1_REF, 18);
+    assertAddedRawMeasure(111, 18);
+    assertAddedRawMeasure(FILE_1_REF, 10);
+    assertAddedRawMeasure(FILE_2_REF, 8);
+    assertAddedRawMeasure(MODULE_2_REF, 2);
+    assertAddedRawMeasure(DIRECTORY_2_REF, 2);
+    assertAddedRawMeasure(FILE_3_REF, 2);
+  }
+
   @Test
   public void verify_multi_metric_formula_support_and_aggregation() throws Exception {
     treeRootHolder.setRoot(BALANCED_COMPONENT_TREE);
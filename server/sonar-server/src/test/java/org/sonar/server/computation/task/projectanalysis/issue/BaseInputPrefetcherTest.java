@@ -0,0 +1,140 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import com.google.common.base.Optional;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.source.FileSourceDao;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
+import org.sonar.server.computation.task.projectanalysis.filemove.MovedFilesRepository;
+
+import static com.google.common.collect.ImmutableMap.of;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.DIRECTORY;
+import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.FILE;
+import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.PROJECT;
+
+public class BaseInputPrefetcherTest {
+
+  private static final Component FILE_1 = ReportComponent.builder(FILE, 3).setUuid("FILE_1").build();
+  private static final Component FILE_2 = ReportComponent.builder(FILE, 4).setUuid("FILE_2").build();
+  private static final Component FILE_3 = ReportComponent.builder(FILE, 5).setUuid("FILE_3").build();
+  private static final Component DIR = ReportComponent.builder(DIRECTORY, 2).setUuid("DIR").addChildren(FILE_1, FILE_2, FILE_3).build();
+  private static final Component ROOT = ReportComponent.builder(PROJECT, 1).setUuid("ROOT").addChildren(DIR).build();
+
+  @Rule
+  public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule().setRoot(ROOT);
+
+  private MovedFilesRepository movedFilesRepository = mock(MovedFilesRepository.class);
+  private BaseIssuesLoader baseIssuesLoader = mock(BaseIssuesLoader.class);
+  private DbClient dbClient = mock(DbClient.class);
+  private DbSession dbSession = mock(DbSession.class);
+  private FileSourceDao fileSourceDao = mock(FileSourceDao.class);
+
+  private BaseInputPrefetcher underTest = new BaseInputPrefetcher(treeRootHolder, movedFilesRepository, baseIssuesLoader, dbClient, 2);
+
+  @Before
+  public void setUp() {
+    when(dbClient.openSession(false)).thenReturn(dbSession);
+    when(dbClient.fileSourceDao()).thenReturn(fileSourceDao);
+    when(movedFilesRepository.getOriginalFile(any(Component.class))).thenReturn(Optional.absent());
+    when(baseIssuesLoader.loadForComponentUuids(anyCollection())).thenReturn(emptyMap());
+    when(fileSourceDao.selectLineHashesByFileUuids(any(DbSession.class), anyCollection())).thenReturn(emptyMap());
+  }
+
+  @Test
+  public void load_issues_by_windows_in_the_order_of_the_crawl() {
+    DefaultIssue issue = new DefaultIssue().setKey("ISSUE").setComponentUuid("FILE_2");
+    when(baseIssuesLoader.loadForComponentUuids(asList("FILE_1", "FILE_2"))).thenReturn(of("FILE_2", singletonList(issue)));
+
+    assertThat(underTest.loadIssues("FILE_1")).isEmpty();
+    assertThat(underTest.loadIssues("FILE_2")).containsExactly(issue);
+    verify(baseIssuesLoader, times(1)).loadForComponentUuids(anyCollection());
+
+    assertThat(underTest.loadIssues("FILE_3")).isEmpty();
+    assertThat(underTest.loadIssues("DIR")).isEmpty();
+    assertThat(underTest.loadIssues("ROOT")).isEmpty();
+
+    verify(baseIssuesLoader).loadForComponentUuids(asList("FILE_1", "FILE_2"));
+    verify(baseIssuesLoader).loadForComponentUuids(asList("FILE_3", "DIR"));
+    verify(baseIssuesLoader).loadForComponentUuids(singletonList("ROOT"));
+    verify(baseIssuesLoader, never()).loadForComponentUuid(anyString());
+  }
+
+  @Test
+  public void prefetch_line_hashes_of_files_having_issues() {
+    DefaultIssue issue = new DefaultIssue().setKey("ISSUE").setComponentUuid("FILE_1");
+    List<String> lineHashes = asList("hash1", "hash2");
+    when(baseIssuesLoader.loadForComponentUuids(asList("FILE_1", "FILE_2"))).thenReturn(of("FILE_1", singletonList(issue)));
+    when(fileSourceDao.selectLineHashesByFileUuids(dbSession, singletonList("FILE_1"))).thenReturn(of("FILE_1", lineHashes));
+
+    underTest.loadIssues("FILE_1");
+
+    assertThat(underTest.loadLineHashes("FILE_1")).isEqualTo(lineHashes);
+    verify(fileSourceDao, never()).selectLineHashes(any(DbSession.class), anyString());
+  }
+
+  @Test
+  public void load_line_hashes_of_files_without_issues_on_demand() {
+    List<String> lineHashes = asList("hash1", "hash2");
+    when(fileSourceDao.selectLineHashes(dbSession, "FILE_2")).thenReturn(lineHashes);
+
+    underTest.loadIssues("FILE_2");
+
+    verify(fileSourceDao, never()).selectLineHashesByFileUuids(any(DbSession.class), anyCollection());
+    assertThat(underTest.loadLineHashes("FILE_2")).isEqualTo(lineHashes);
+  }
+
+  @Test
+  public void load_issues_of_original_file_when_file_is_moved() {
+    when(movedFilesRepository.getOriginalFile(FILE_1)).thenReturn(Optional.of(new MovedFilesRepository.OriginalFile(12, "ORIGINAL", "original key")));
+
+    underTest.loadIssues("ORIGINAL");
+
+    verify(baseIssuesLoader).loadForComponentUuids(asList("ORIGINAL", "FILE_2"));
+  }
+
+  @Test
+  public void load_issues_of_component_out_of_the_tree_on_demand() {
+    underTest.loadIssues("UNKNOWN");
+
+    verify(baseIssuesLoader).loadForComponentUuid("UNKNOWN");
+    verify(baseIssuesLoader, never()).loadForComponentUuids(anyCollection());
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ChangedIssuesHolderImplTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  ChangedIssuesHolderImpl underTest = new ChangedIssuesHolderImpl();
+
+  @Test
+  public void no_issues_changed_by_default() {
+    assertThat(underTest.getIssueKeys()).isEmpty();
+    assertThat(underTest.areAllIssuesChanged()).isFalse();
+  }
+
+  @Test
+  public void add_and_get_issue_keys() {
+    underTest.addIssueKey("I1");
+    underTest.addIssueKey("I2");
+    underTest.addIssueKey("I1");
+
+    assertThat(underTest.getIssueKeys()).containsOnly("I1", "I2");
+  }
+
+  @Test
+  public void addIssueKey_fails_if_key_is_null() {
+    expectedException.expect(NullPointerException.class);
+    expectedException.expectMessage("Issue key can't be null");
+
+    underTest.addIssueKey(null);
+  }
+
+  @Test
+  public void set_all_issues_changed() {
+    underTest.setAllIssuesChanged();
+
+    assertThat(underTest.areAllIssuesChanged()).isTrue();
+  }
+}
@@ -0,0 +1,224 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.issue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.Date;
+import org.junit.Test;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rule.Severity;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.utils.Duration;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.issue.DefaultIssueComment;
+import org.sonar.core.issue.FieldDiffs;
+import org.sonar.core.issue.IssueChangeContext;
+import org.sonar.db.protobuf.DbCommons;
+import org.sonar.db.protobuf.DbIssues;
+
+import static com.google.common.collect.ImmutableMap.of;
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DefaultIssueCodecTest {
+
+  private DefaultIssueCodec underTest = new DefaultIssueCodec();
+
+  @Test
+  public void write_and_read_all_fields() throws IOException {
+    DefaultIssue issue = newIssue();
+
+    DefaultIssue read = writeAndRead(issue);
+
+    assertThat(read.key()).isEqualTo("ISSUE_KEY");
+    assertThat(read.type()).isEqualTo(RuleType.BUG);
+    assertThat(read.componentUuid()).isEqualTo("FILE_UUID");
+    assertThat(read.componentKey()).isEqualTo("FILE_KEY");
+    assertThat(read.moduleUuid()).isEqualTo("MODULE_UUID");
+    assertThat(read.moduleUuidPath()).isEqualTo(".MODULE_UUID.");
+    assertThat(read.projectUuid()).isEqualTo("PROJECT_UUID");
+    assertThat(read.projectKey()).isEqualTo("PROJECT_KEY");
+    assertThat(read.ruleKey()).isEqualTo(RuleKey.of("xoo", "S001"));
+    assertThat(read.language()).isEqualTo("xoo");
+    assertThat(read.severity()).isEqualTo(Severity.BLOCKER);
+    assertThat(read.manualSeverity()).isTrue();
+    assertThat(read.message()).isEqualTo("the message");
+    assertThat(read.line()).isEqualTo(42);
+    assertThat(read.gap()).isEqualTo(3.14);
+    assertThat(read.effort()).isEqualTo(Duration.create(10L));
+    assertThat(read.status()).isEqualTo("RESOLVED");
+    assertThat(read.resolution()).isEqualTo("FIXED");
+    assertThat(read.assignee()).isEqualTo("simon");
+    assertThat(read.checksum()).isEqualTo("CHECKSUM");
+    assertThat(read.attributes()).isEqualTo(of("JIRA", "FOO-1234"));
+    assertThat(read.authorLogin()).isEqualTo("julien");
+    assertThat(read.tags()).containsExactly("tag1", "tag2");
+    assertThat((DbIssues.Locations) read.getLocations()).isEqualTo(issue.getLocations());
+    assertThat(read.creationDate()).isEqualTo(issue.creationDate());
+    assertThat(read.updateDate()).isEqualTo(issue.updateDate());
+    assertThat(read.closeDate()).isEqualTo(issue.closeDate());
+    assertThat(read.isNew()).isFalse();
+    assertThat(read.isBeingClosed()).isTrue();
+    assertThat(read.isOnDisabledRule()).isTrue();
+    assertThat(read.isChanged()).isTrue();
+    assertThat(read.mustSendNotifications()).isTrue();
+    assertThat(read.selectedAt()).isEqualTo(1_400_000_000_000L);
+
+    assertThat(read.comments()).hasSize(1);
+    DefaultIssueComment comment = (DefaultIssueComment) read.comments().get(0);
+    assertThat(comment.key()).isEqualTo("COMMENT_KEY");
+    assertThat(comment.issueKey()).isEqualTo("ISSUE_KEY");
+    assertThat(comment.userLogin()).isEqualTo("julien");
+    assertThat(comment.markdownText()).isEqualTo("the comment");
+    assertThat(comment.createdAt()).isEqualTo(new Date(1_500_000_000_000L));
+    assertThat(comment.updatedAt()).isNull();
+    assertThat(comment.isNew()).isTrue();
+  }
+
+  @Test
+  public void write_and_read_changes() throws IOException {
+    DefaultIssue issue = newIssue();
+
+    DefaultIssue read = writeAndRead(issue);
+
+    assertThat(read.changes()).hasSize(3);
+    assertThat(read.changes().get(0).toString()).isEqualTo("severity=MINOR|MAJOR");
+    assertThat(read.changes().get(0).userLogin()).isEqualTo("julien");
+    assertThat(read.changes().get(0).creationDate()).isEqualTo(new Date(1_300_000_000_000L));
+    assertThat(read.changes().get(0).issueKey()).isEqualTo("ISSUE_KEY");
+    assertThat(read.changes().get(1).get("effort").oldValueLong()).isEqualTo(5L);
+    assertThat(read.changes().get(1).get("effort").newValueLong()).isEqualTo(10L);
+    assertThat(read.changes().get(1).get("status").oldValue()).isNull();
+    // current change is the same instance as in changes
+    assertThat(read.currentChange()).isSameAs(read.changes().get(1)).isSameAs(read.changes().get(2));
+
+    read.setFieldChange(IssueChangeContext.createUser(new Date(), "simon"), "assignee", "simon", "julien");
+    assertThat(read.changes().get(1).get("assignee").newValue()).isEqualTo("julien");
+  }
+
+  @Test
+  public void write_and_read_issue_without_optional_fields() throws IOException {
+    DefaultIssue issue = new DefaultIssue().setKey("ISSUE_KEY");
+
+    DefaultIssue read = writeAndRead(issue);
+
+    assertThat(read.key()).isEqualTo("ISSUE_KEY");
+    assertThat(read.type()).isNull();
+    assertThat(read.ruleKey()).isNull();
+    assertThat(read.line()).isNull();
+    assertThat(read.gap()).isNull();
+    assertThat(read.effort()).isNull();
+    assertThat(read.creationDate()).isNull();
+    assertThat((Object) read.getLocations()).isNull();
+    assertThat(read.attributes()).isEmpty();
+    assertThat(read.tags()).isEmpty();
+    assertThat(read.comments()).isEmpty();
+    assertThat(read.changes()).isEmpty();
+    assertThat(read.currentChange()).isNull();
+    assertThat(read.isNew()).isTrue();
+    assertThat(read.selectedAt()).isNull();
+  }
+
+  @Test
+  public void is_more_compact_than_java_serialization() throws IOException {
+    DefaultIssue issue = newIssue();
+
+    ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+    try (ObjectOutputStream output = new ObjectOutputStream(serialized)) {
+      output.writeObject(issue);
+    }
+
+    assertThat(write(issue).length).isLessThan(serialized.size() / 2);
+  }
+
+  private DefaultIssue writeAndRead(DefaultIssue issue) throws IOException {
+    try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(write(issue)))) {
+      DefaultIssue read = underTest.read(input);
+      assertThat(input.read()).isEqualTo(-1);
+      return read;
+    }
+  }
+
+  private byte[] write(DefaultIssue issue) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream output = new DataOutputStream(bytes)) {
+      underTest.write(issue, output);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static DefaultIssue newIssue() {
+    DefaultIssue issue = new DefaultIssue()
+      .setKey("ISSUE_KEY")
+      .setType(RuleType.BUG)
+      .setComponentUuid("FILE_UUID")
+      .setComponentKey("FILE_KEY")
+      .setModuleUuid("MODULE_UUID")
+      .setModuleUuidPath(".MODULE_UUID.")
+      .setProjectUuid("PROJECT_UUID")
+      .setProjectKey("PROJECT_KEY")
+      .setRuleKey(RuleKey.of("xoo", "S001"))
+      .setLanguage("xoo")
+      .setSeverity(Severity.BLOCKER)
+      .setManualSeverity(true)
+      .setMessage("the message")
+      .setLine(42)
+      .setGap(3.14)
+      .setEffort(Duration.create(10L))
+      .setStatus("RESOLVED")
+      .setResolution("FIXED")
+      .setAssignee("simon")
+      .setChecksum("CHECKSUM")
+      .setAttribute("JIRA", "FOO-1234")
+      .setAuthorLogin("julien")
+      .setTags(asList("tag1", "tag2"))
+      .setLocations(DbIssues.Locations.newBuilder().setTextRange(DbCommons.TextRange.newBuilder().setStartLine(42).setEndLine(43)).build())
+      .setCreationDate(new Date(1_100_000_000_000L))
+      .setUpdateDate(new Date(1_200_000_000_000L))
+      .setCloseDate(new Date(1_300_000_000_000L))
+      .setNew(false)
+      .setBeingClosed(true)
+      .setOnDisabledRule(true)
+      .setChanged(true)
+      .setSendNotifications(true)
+      .setSelectedAt(1_400_000_000_000L)
+      .addComment(new DefaultIssueComment()
+        .setKey("COMMENT_KEY")
+        .setIssueKey("ISSUE_KEY")
+        .setUserLogin("julien")
+        .setMarkdownText("the comment")
+        .setCreatedAt(new Date(1_500_000_000_000L))
+        .setNew(true));
+    issue.addChange(new FieldDiffs()
+      .setIssueKey("ISSUE_KEY")
+      .setUserLogin("julien")
+      .setCreationDate(new Date(1_300_000_000_000L))
+      .setDiff("severity", "MINOR", "MAJOR"));
+    IssueChangeContext context = IssueChangeContext.createScan(new Date(1_600_000_000_000L));
+    issue.setFieldChange(context, "effort", 5L, 10L);
+    issue.setFieldChange(context, "status", null, "RESOLVED");
+    return issue;
+  }
+}
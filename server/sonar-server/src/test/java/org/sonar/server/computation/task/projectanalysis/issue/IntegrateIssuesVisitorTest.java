@@ -105,7 +105,8 @@ public class IntegrateIssuesVisitorTest {
 
   BaseIssuesLoader baseIssuesLoader = new BaseIssuesLoader(treeRootHolder, dbTester.getDbClient(), ruleRepositoryRule, activeRulesHolderRule);
   MovedFilesRepository movedFilesRepository = mock(MovedFilesRepository.class);
-  TrackerExecution tracker = new TrackerExecution(new TrackerBaseInputFactory(baseIssuesLoader, dbTester.getDbClient(), movedFilesRepository),
+  TrackerExecution tracker = new TrackerExecution(new TrackerBaseInputFactory(
+    new BaseInputPrefetcher(treeRootHolder, movedFilesRepository, baseIssuesLoader, dbTester.getDbClient()), movedFilesRepository),
     new TrackerRawInputFactory(treeRootHolder, reportReader,
       fileSourceRepository, new CommonRuleEngineImpl(), issueFilter),
     new Tracker<>());
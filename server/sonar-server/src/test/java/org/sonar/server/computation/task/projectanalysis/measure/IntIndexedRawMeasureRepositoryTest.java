@@ -0,0 +1,234 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.measure;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.SetMultimap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.component.Developer;
+import org.sonar.server.computation.task.projectanalysis.component.DumbDeveloper;
+import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.measure.MapBasedRawMeasureRepository.OverridePolicy;
+import org.sonar.server.computation.task.projectanalysis.metric.Metric;
+import org.sonar.server.computation.task.projectanalysis.metric.MetricImpl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.guava.api.Assertions.assertThat;
+import static org.sonar.server.computation.task.projectanalysis.component.ComponentFunctions.toReportRef;
+import static org.sonar.server.computation.task.projectanalysis.measure.Measure.newMeasureBuilder;
+
+public class IntIndexedRawMeasureRepositoryTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private static final ReportComponent FILE_COMPONENT = ReportComponent.builder(Component.Type.FILE, 1).build();
+  private static final ReportComponent OTHER_COMPONENT = ReportComponent.builder(Component.Type.FILE, 2).build();
+  private static final ReportComponent FAR_COMPONENT = ReportComponent.builder(Component.Type.FILE, 10_000).build();
+  private static final Developer SOME_DEVELOPER = new DumbDeveloper("DEV1");
+
+  private final Metric intMetric = new MetricImpl(1, "int", "int", Metric.MetricType.INT);
+  private final Metric longMetric = new MetricImpl(2, "long", "long", Metric.MetricType.WORK_DUR);
+  private final Metric doubleMetric = new MetricImpl(3, "double", "double", Metric.MetricType.FLOAT, 3, null, false);
+  private final Metric booleanMetric = new MetricImpl(4, "boolean", "boolean", Metric.MetricType.BOOL);
+  private final Metric stringMetric = new MetricImpl(5, "string", "string", Metric.MetricType.STRING);
+  private final Metric levelMetric = new MetricImpl(6, "level", "level", Metric.MetricType.LEVEL);
+
+  private IntIndexedRawMeasureRepository underTest = new IntIndexedRawMeasureRepository(toReportRef());
+
+  @Test
+  public void getBaseMeasure_is_not_supported() {
+    expectedException.expect(UnsupportedOperationException.class);
+
+    underTest.getBaseMeasure(FILE_COMPONENT, intMetric);
+  }
+
+  @Test
+  public void numeric_measures_are_restored_from_primitive_columns() {
+    underTest.add(FILE_COMPONENT, intMetric, newMeasureBuilder().setVariation(-2.5d).create(12));
+    underTest.add(FILE_COMPONENT, longMetric, newMeasureBuilder().create(1L << 40));
+    underTest.add(FILE_COMPONENT, doubleMetric, newMeasureBuilder().create(0.123456d, 3));
+    underTest.add(FILE_COMPONENT, booleanMetric, newMeasureBuilder().create(true));
+    underTest.add(OTHER_COMPONENT, intMetric, newMeasureBuilder().createNoValue());
+
+    Measure intMeasure = underTest.getRawMeasure(FILE_COMPONENT, intMetric).get();
+    assertThat(intMeasure.getValueType()).isEqualTo(Measure.ValueType.INT);
+    assertThat(intMeasure.getIntValue()).isEqualTo(12);
+    assertThat(intMeasure.getVariation()).isEqualTo(-2.5d);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, longMetric).get().getLongValue()).isEqualTo(1L << 40);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, longMetric).get().hasVariation()).isFalse();
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, doubleMetric).get().getDoubleValue()).isEqualTo(0.123d);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, booleanMetric).get().getBooleanValue()).isTrue();
+    assertThat(underTest.getRawMeasure(OTHER_COMPONENT, intMetric).get().getValueType()).isEqualTo(Measure.ValueType.NO_VALUE);
+    assertThat(underTest.getRawMeasure(OTHER_COMPONENT, longMetric)).isAbsent();
+  }
+
+  @Test
+  public void non_numeric_measures_are_kept_as_is() {
+    Measure stringMeasure = newMeasureBuilder().create("foo");
+    Measure levelMeasure = newMeasureBuilder().create(Measure.Level.ERROR);
+    Measure measureWithData = newMeasureBuilder().create(5, "some data");
+    Measure measureWithDescription = newMeasureBuilder().setDescription("desc").create(7L);
+
+    underTest.add(FILE_COMPONENT, stringMetric, stringMeasure);
+    underTest.add(FILE_COMPONENT, levelMetric, levelMeasure);
+    underTest.add(FILE_COMPONENT, intMetric, measureWithData);
+    underTest.add(FILE_COMPONENT, longMetric, measureWithDescription);
+
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, stringMetric).get()).isSameAs(stringMeasure);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, levelMetric).get()).isSameAs(levelMeasure);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, intMetric).get()).isSameAs(measureWithData);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, longMetric).get()).isSameAs(measureWithDescription);
+  }
+
+  @Test
+  public void update_replaces_object_measure_by_numeric_measure_and_conversely() {
+    underTest.add(FILE_COMPONENT, intMetric, newMeasureBuilder().create(5, "some data"));
+    underTest.update(FILE_COMPONENT, intMetric, newMeasureBuilder().create(6));
+
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, intMetric).get().getIntValue()).isEqualTo(6);
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, intMetric).get().getData()).isNull();
+
+    Measure withQualityGateStatus = Measure.updatedMeasureBuilder(underTest.getRawMeasure(FILE_COMPONENT, intMetric).get())
+      .setQualityGateStatus(new QualityGateStatus(Measure.Level.OK))
+      .create();
+    underTest.update(FILE_COMPONENT, intMetric, withQualityGateStatus);
+
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, intMetric).get()).isSameAs(withQualityGateStatus);
+  }
+
+  @Test
+  public void add_with_DO_NOT_OVERRIDE_policy_keeps_existing_measure() {
+    underTest.add(FILE_COMPONENT, intMetric, newMeasureBuilder().create(1), OverridePolicy.DO_NOT_OVERRIDE);
+    underTest.add(FILE_COMPONENT, intMetric, newMeasureBuilder().create(2), OverridePolicy.DO_NOT_OVERRIDE);
+
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, intMetric).get().getIntValue()).isEqualTo(1);
+
+    underTest.add(FILE_COMPONENT, intMetric, newMeasureBuilder().create(3), OverridePolicy.OVERRIDE);
+
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, intMetric).get().getIntValue()).isEqualTo(3);
+  }
+
+  @Test
+  public void add_throws_UOE_if_measure_already_exists() {
+    underTest.add(FILE_COMPONENT, intMetric, newMeasureBuilder().create(1));
+
+    expectedException.expect(UnsupportedOperationException.class);
+
+    underTest.add(FILE_COMPONENT, intMetric, newMeasureBuilder().create(1));
+  }
+
+  @Test
+  public void update_throws_UOE_if_measure_does_not_exist() {
+    expectedException.expect(UnsupportedOperationException.class);
+
+    underTest.update(FILE_COMPONENT, intMetric, newMeasureBuilder().create(1));
+  }
+
+  @Test
+  public void add_throws_IAE_if_value_type_is_not_consistent_with_metric() {
+    expectedException.expect(IllegalArgumentException.class);
+
+    underTest.add(FILE_COMPONENT, intMetric, newMeasureBuilder().create("foo"));
+  }
+
+  @Test
+  public void columns_grow_with_component_refs() {
+    underTest.add(FILE_COMPONENT, intMetric, newMeasureBuilder().create(1));
+    underTest.add(FAR_COMPONENT, intMetric, newMeasureBuilder().create(2));
+    underTest.add(FAR_COMPONENT, stringMetric, newMeasureBuilder().create("foo"));
+
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, intMetric).get().getIntValue()).isEqualTo(1);
+    assertThat(underTest.getRawMeasure(FAR_COMPONENT, intMetric).get().getIntValue()).isEqualTo(2);
+    assertThat(underTest.getRawMeasure(FAR_COMPONENT, stringMetric).get().getStringValue()).isEqualTo("foo");
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, stringMetric)).isAbsent();
+  }
+
+  @Test
+  public void developer_measures_are_stored_separately() {
+    Measure devMeasure = newMeasureBuilder().forDeveloper(SOME_DEVELOPER).create(10);
+    underTest.add(FILE_COMPONENT, intMetric, newMeasureBuilder().create(1));
+    underTest.add(FILE_COMPONENT, intMetric, devMeasure);
+
+    assertThat(underTest.getRawMeasure(FILE_COMPONENT, intMetric).get().getIntValue()).isEqualTo(1);
+    assertThat(underTest.getRawMeasures(FILE_COMPONENT, intMetric)).hasSize(2).contains(devMeasure);
+  }
+
+  @Test
+  public void getRawMeasures_returns_measures_of_all_metrics_of_component() {
+    Measure stringMeasure = newMeasureBuilder().create("foo");
+    underTest.add(FILE_COMPONENT, intMetric, newMeasureBuilder().create(1));
+    underTest.add(FILE_COMPONENT, stringMetric, stringMeasure);
+    underTest.add(OTHER_COMPONENT, booleanMetric, newMeasureBuilder().create(false));
+
+    SetMultimap<String, Measure> measures = underTest.getRawMeasures(FILE_COMPONENT);
+
+    assertThat(measures.keySet()).containsOnly("int", "string");
+    assertThat(measures.get("int").iterator().next().getIntValue()).isEqualTo(1);
+    assertThat(measures.get("string")).containsOnly(stringMeasure);
+    assertThat(underTest.getRawMeasures(FAR_COMPONENT).isEmpty()).isTrue();
+  }
+
+  @Test
+  public void getRawMeasure_returns_absent_if_repository_is_empty() {
+    Optional<Measure> res = underTest.getRawMeasure(FILE_COMPONENT, intMetric);
+
+    assertThat(res).isAbsent();
+  }
+
+  @Test
+  public void measures_of_distinct_components_can_be_added_concurrently() throws Exception {
+    int threads = 4;
+    int componentsPerThread = 1_000;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        int firstRef = 1 + t * componentsPerThread;
+        futures.add(executor.submit(() -> {
+          for (int ref = firstRef; ref < firstRef + componentsPerThread; ref++) {
+            ReportComponent component = ReportComponent.builder(Component.Type.FILE, ref).build();
+            underTest.add(component, intMetric, newMeasureBuilder().create(ref));
+            underTest.add(component, stringMetric, newMeasureBuilder().create("ref" + ref));
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    for (int ref = 1; ref <= threads * componentsPerThread; ref++) {
+      ReportComponent component = ReportComponent.builder(Component.Type.FILE, ref).build();
+      assertThat(underTest.getRawMeasure(component, intMetric).get().getIntValue()).isEqualTo(ref);
+      assertThat(underTest.getRawMeasure(component, stringMetric).get().getStringValue()).isEqualTo("ref" + ref);
+    }
+  }
+}
@@ -45,6 +45,7 @@ import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReaderRule;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
+import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
 import org.sonar.server.computation.task.projectanalysis.metric.Metric;
 import org.sonar.server.computation.task.projectanalysis.metric.MetricImpl;
 import org.sonar.server.computation.task.projectanalysis.metric.MetricRepository;
@@ -70,6 +71,8 @@ public class MeasureRepositoryImplTest {
   public DbTester dbTester = DbTester.create(System2.INSTANCE);
   @Rule
   public BatchReportReaderRule reportReader = new BatchReportReaderRule();
+  @Rule
+  public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule();
 
   private static final String FILE_COMPONENT_KEY = "file cpt key";
   private static final ReportComponent FILE_COMPONENT = ReportComponent.builder(Component.Type.FILE, 1).setKey(FILE_COMPONENT_KEY).build();
@@ -89,18 +92,21 @@ public class MeasureRepositoryImplTest {
 
   private DbClient dbClient = dbTester.getDbClient();
   private MetricRepository metricRepository = mock(MetricRepository.class);
-  private MeasureRepositoryImpl underTest = new MeasureRepositoryImpl(dbClient, reportReader, metricRepository, reportMetricValidator);
+  private MeasureRepositoryImpl underTest = new MeasureRepositoryImpl(dbClient, treeRootHolder, reportReader, metricRepository, reportMetricValidator);
 
   private DbClient mockedDbClient = mock(DbClient.class);
   private BatchReportReader mockBatchReportReader = mock(BatchReportReader.class);
-  private MeasureRepositoryImpl underTestWithMock = new MeasureRepositoryImpl(mockedDbClient, mockBatchReportReader, metricRepository, reportMetricValidator);
+  private MeasureRepositoryImpl underTestWithMock = new MeasureRepositoryImpl(mockedDbClient, treeRootHolder, mockBatchReportReader, metricRepository, reportMetricValidator);
 
   private DbSession dbSession = dbTester.getSession();
 
   @Before
   public void setUp() {
+    treeRootHolder.setRoot(FILE_COMPONENT);
+    when(metric1.getId()).thenReturn(METRIC_ID_1);
     when(metric1.getKey()).thenReturn(METRIC_KEY_1);
     when(metric1.getType()).thenReturn(Metric.MetricType.STRING);
+    when(metric2.getId()).thenReturn(METRIC_ID_2);
     when(metric2.getKey()).thenReturn(METRIC_KEY_2);
     when(metric2.getType()).thenReturn(Metric.MetricType.STRING);
 
@@ -155,6 +161,32 @@ public class MeasureRepositoryImplTest {
     assertThat(res).isAbsent();
   }
 
+  @Test
+  public void getBaseMeasure_loads_measures_of_a_metric_on_all_components_of_the_tree() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+    ReportComponent project = ReportComponent.builder(Component.Type.PROJECT, 1).setKey(FILE_COMPONENT_KEY).addChildren(OTHER_COMPONENT).build();
+    treeRootHolder.setRoot(project);
+    dbClient.measureDao().insert(dbSession, createMeasureDto(METRIC_ID_1, project.getUuid(), LAST_ANALYSIS_UUID));
+    dbClient.measureDao().insert(dbSession, createMeasureDto(METRIC_ID_1, OTHER_COMPONENT.getUuid(), LAST_ANALYSIS_UUID));
+    dbClient.measureDao().insert(dbSession, createMeasureDto(METRIC_ID_2, OTHER_COMPONENT.getUuid(), OTHER_ANALYSIS_UUID));
+    dbSession.commit();
+
+    assertThat(underTest.getBaseMeasure(project, metric1).get().getStringValue()).isEqualTo(SOME_DATA);
+    assertThat(underTest.getBaseMeasure(OTHER_COMPONENT, metric1).get().getStringValue()).isEqualTo(SOME_DATA);
+    assertThat(underTest.getBaseMeasure(project, metric2)).isAbsent();
+    assertThat(underTest.getBaseMeasure(OTHER_COMPONENT, metric2)).isAbsent();
+  }
+
+  @Test
+  public void getBaseMeasure_loads_measure_of_component_which_is_not_in_the_tree() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+    treeRootHolder.setRoot(OTHER_COMPONENT);
+    dbClient.measureDao().insert(dbSession, createMeasureDto(METRIC_ID_1, FILE_COMPONENT.getUuid(), LAST_ANALYSIS_UUID));
+    dbSession.commit();
+
+    assertThat(underTest.getBaseMeasure(FILE_COMPONENT, metric1).get().getStringValue()).isEqualTo(SOME_DATA);
+  }
+
   @Test
   public void add_throws_NPE_if_Component_argument_is_null() {
     expectedException.expect(NullPointerException.class);
@@ -20,18 +20,25 @@
 package org.sonar.server.computation.task.projectanalysis.step;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.sonar.api.config.MapSettings;
 import org.sonar.api.utils.log.LogTester;
 import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.server.computation.task.ChangeLogLevel;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor;
+import org.sonar.server.computation.task.projectanalysis.component.CrawlBoundVisitor;
 import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthLimit;
 import org.sonar.server.computation.task.projectanalysis.component.PathAwareVisitorAdapter;
+import org.sonar.server.computation.task.projectanalysis.component.SubtreeIndependentVisitor;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
 import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
+import org.sonar.server.computation.task.projectanalysis.component.VisitorsCrawlerPool;
 import org.sonar.server.computation.task.projectanalysis.measure.MeasureRepositoryRule;
 import org.sonar.server.computation.task.projectanalysis.metric.Metric;
 import org.sonar.server.computation.task.projectanalysis.metric.MetricImpl;
@@ -70,6 +77,8 @@ public class ExecuteVisitorsStepTest {
   @Rule
   public LogTester logTester = new LogTester();
 
+  private VisitorsCrawlerPool visitorsCrawlerPool;
+
   @Before
   public void setUp() throws Exception {
     treeRootHolder.setRoot(
@@ -86,6 +95,13 @@ public class ExecuteVisitorsStepTest {
         .build());
   }
 
+  @After
+  public void tearDown() {
+    if (visitorsCrawlerPool != null) {
+      visitorsCrawlerPool.stop();
+    }
+  }
+
   @Test
   public void execute_with_type_aware_visitor() throws Exception {
     ExecuteVisitorsStep underStep = new ExecuteVisitorsStep(treeRootHolder, singletonList(new TestTypeAwareVisitor()));
@@ -143,6 +159,79 @@ public class ExecuteVisitorsStepTest {
     }
   }
 
+  @Test
+  public void execute_visits_subtrees_concurrently_with_runs_of_subtree_independent_visitors() {
+    ThreadRecorderVisitor leading = new SubtreeIndependentThreadRecorderVisitor();
+    ThreadRecorderVisitor sequential = new ThreadRecorderVisitor();
+    ThreadRecorderVisitor independentInTheMiddle = new SubtreeIndependentThreadRecorderVisitor();
+    ThreadRecorderVisitor trailing = new SubtreeIndependentThreadRecorderVisitor();
+    ExecuteVisitorsStep underStep = new ExecuteVisitorsStep(treeRootHolder, asList(leading, sequential, independentInTheMiddle, new VisitorA(), trailing),
+      visitorsCrawlerPool(4));
+
+    underStep.execute();
+
+    String currentThread = Thread.currentThread().getName();
+    for (ThreadRecorderVisitor visitor : asList(leading, independentInTheMiddle, trailing)) {
+      assertThat(visitor.threads).hasSize(5);
+      assertThat(visitor.threads.values()).doesNotContain(currentThread);
+    }
+    assertThat(sequential.threads.values()).containsOnly(currentThread);
+  }
+
+  @Test
+  public void execute_keeps_subtree_independent_visitors_in_sequential_crawl_if_a_crawl_bound_visitor_follows_them() {
+    ThreadRecorderVisitor leading = new SubtreeIndependentThreadRecorderVisitor();
+    ThreadRecorderVisitor sequential = new ThreadRecorderVisitor();
+    ThreadRecorderVisitor independentInTheMiddle = new SubtreeIndependentThreadRecorderVisitor();
+    ThreadRecorderVisitor crawlBound = new CrawlBoundThreadRecorderVisitor();
+    ThreadRecorderVisitor trailing = new SubtreeIndependentThreadRecorderVisitor();
+    ExecuteVisitorsStep underStep = new ExecuteVisitorsStep(treeRootHolder, asList(leading, sequential, independentInTheMiddle, crawlBound, trailing),
+      visitorsCrawlerPool(4));
+
+    underStep.execute();
+
+    String currentThread = Thread.currentThread().getName();
+    assertThat(leading.threads.values()).doesNotContain(currentThread);
+    assertThat(sequential.threads.values()).containsOnly(currentThread);
+    assertThat(independentInTheMiddle.threads.values()).containsOnly(currentThread);
+    assertThat(crawlBound.threads.values()).containsOnly(currentThread);
+    assertThat(trailing.threads.values()).doesNotContain(currentThread);
+  }
+
+  @Test
+  public void execute_is_sequential_if_single_thread_is_configured() {
+    ThreadRecorderVisitor visitor = new SubtreeIndependentThreadRecorderVisitor();
+
+    new ExecuteVisitorsStep(treeRootHolder, singletonList(visitor), visitorsCrawlerPool(1)).execute();
+
+    assertThat(visitor.threads.values()).containsOnly(Thread.currentThread().getName());
+  }
+
+  private VisitorsCrawlerPool visitorsCrawlerPool(int threads) {
+    visitorsCrawlerPool = new VisitorsCrawlerPool(new MapSettings().setProperty(VisitorsCrawlerPool.THREADS_PROPERTY, threads));
+    return visitorsCrawlerPool;
+  }
+
+  private static class ThreadRecorderVisitor extends TypeAwareVisitorAdapter {
+    // thread which visited each component, by ref
+    private final Map<Integer, String> threads = new ConcurrentHashMap<>();
+
+    public ThreadRecorderVisitor() {
+      super(CrawlerDepthLimit.FILE, Order.POST_ORDER);
+    }
+
+    @Override
+    public void visitAny(Component any) {
+      threads.put(any.getReportAttributes().getRef(), Thread.currentThread().getName());
+    }
+  }
+
+  private static class SubtreeIndependentThreadRecorderVisitor extends ThreadRecorderVisitor implements SubtreeIndependentVisitor {
+  }
+
+  private static class CrawlBoundThreadRecorderVisitor extends ThreadRecorderVisitor implements CrawlBoundVisitor {
+  }
+
   private static class VisitorA extends TypeAwareVisitorAdapter {
     public VisitorA() {
       super(CrawlerDepthLimit.PROJECT, Order.PRE_ORDER);
@@ -22,7 +22,9 @@ package org.sonar.server.computation.task.projectanalysis.step;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -35,6 +37,9 @@ import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.ce.queue.CeTask;
 import org.sonar.db.DbTester;
 import org.sonar.db.ce.CeTaskTypes;
+import org.sonar.scanner.protocol.output.IndexedReportArchive;
+import org.sonar.scanner.protocol.output.ScannerReportWriter;
+import org.sonar.scanner.protocol.output.ZipReportContainer;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportDirectoryHolderImpl;
 import org.sonar.server.computation.task.projectanalysis.batch.MutableBatchReportDirectoryHolder;
 
@@ -70,7 +75,7 @@ public class ExtractReportStepTest {
   }
 
   @Test
-  public void unzip_report() throws Exception {
+  public void copy_zipped_report_without_extracting_it() throws Exception {
     File reportFile = generateReport();
     try (InputStream input = FileUtils.openInputStream(reportFile)) {
       dbTester.getDbClient().ceTaskInputDao().insert(dbTester.getSession(), TASK_UUID, input);
@@ -80,11 +85,33 @@ public class ExtractReportStepTest {
 
     underTest.execute();
 
-    // directory contains the uncompressed report (which contains only metadata.pb in this test)
-    File unzippedDir = reportDirectoryHolder.getDirectory();
-    assertThat(unzippedDir).isDirectory().exists();
-    assertThat(unzippedDir.listFiles()).hasSize(1);
-    assertThat(new File(unzippedDir, "metadata.pb")).hasContent("{metadata}");
+    // directory contains the zipped report (which contains only metadata.pb in this test)
+    File dir = reportDirectoryHolder.getDirectory();
+    assertThat(dir).isDirectory().exists();
+    assertThat(dir.listFiles()).hasSize(1);
+    File zip = new File(dir, ZipReportContainer.FILENAME);
+    assertThat(FileUtils.contentEquals(zip, reportFile)).isTrue();
+    try (ZipReportContainer container = ZipReportContainer.open(zip)) {
+      assertThat(IOUtils.toString(container.openEntry("metadata.pb"), StandardCharsets.UTF_8)).isEqualTo("{metadata}");
+    }
+  }
+
+  @Test
+  public void copy_indexed_archive_without_extracting_it() throws Exception {
+    File reportDir = tempFolder.newDir();
+    FileUtils.write(new File(reportDir, "metadata.pb"), "{metadata}");
+    File archive = new ScannerReportWriter(reportDir).writeIndexedArchive(tempFolder.newFile());
+    try (InputStream input = FileUtils.openInputStream(archive)) {
+      dbTester.getDbClient().ceTaskInputDao().insert(dbTester.getSession(), TASK_UUID, input);
+    }
+    dbTester.getSession().commit();
+    dbTester.getSession().close();
+
+    underTest.execute();
+
+    File dir = reportDirectoryHolder.getDirectory();
+    assertThat(dir.listFiles()).hasSize(1);
+    assertThat(FileUtils.contentEquals(new File(dir, IndexedReportArchive.FILENAME), archive)).isTrue();
   }
 
   private File generateReport() throws IOException {
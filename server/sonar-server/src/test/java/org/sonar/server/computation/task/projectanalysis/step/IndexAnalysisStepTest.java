@@ -26,10 +26,15 @@ import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
 import org.sonar.server.computation.task.projectanalysis.component.ViewsComponent;
+import org.sonar.server.computation.task.projectanalysis.issue.ChangedIssuesHolderImpl;
 import org.sonar.server.computation.task.step.ComputationStep;
 import org.sonar.server.es.ProjectIndexer;
+import org.sonar.server.issue.index.IssueIndexer;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyCollectionOf;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.PROJECT;
 import static org.sonar.server.computation.task.projectanalysis.component.Component.Type.VIEW;
@@ -44,8 +49,10 @@ public class IndexAnalysisStepTest extends BaseStepTest {
   @Rule
   public BatchReportReaderRule reportReader = new BatchReportReaderRule();
 
+  private ChangedIssuesHolderImpl changedIssuesHolder = new ChangedIssuesHolderImpl();
   private ProjectIndexer componentIndexer = mock(ProjectIndexer.class);
-  private IndexAnalysisStep underTest = new IndexAnalysisStep(treeRootHolder, componentIndexer);
+  private IssueIndexer issueIndexer = mock(IssueIndexer.class);
+  private IndexAnalysisStep underTest = new IndexAnalysisStep(treeRootHolder, changedIssuesHolder, componentIndexer, issueIndexer);
 
   @Test
   public void call_indexByProjectUuid_of_indexer_for_project() {
@@ -67,6 +74,31 @@ public class IndexAnalysisStepTest extends BaseStepTest {
     verify(componentIndexer).indexProject(PROJECT_UUID, ProjectIndexer.Cause.NEW_ANALYSIS);
   }
 
+  @Test
+  public void index_only_changed_issues() {
+    treeRootHolder.setRoot(ReportComponent.builder(PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).build());
+    changedIssuesHolder.addIssueKey("I1");
+    changedIssuesHolder.addIssueKey("I2");
+
+    underTest.execute();
+
+    verify(issueIndexer).index(changedIssuesHolder.getIssueKeys());
+    verify(issueIndexer, never()).indexProject(PROJECT_UUID, ProjectIndexer.Cause.NEW_ANALYSIS);
+    assertThat(changedIssuesHolder.getIssueKeys()).containsOnly("I1", "I2");
+  }
+
+  @Test
+  public void index_all_issues_of_project_when_all_issues_changed() {
+    treeRootHolder.setRoot(ReportComponent.builder(PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).build());
+    changedIssuesHolder.addIssueKey("I1");
+    changedIssuesHolder.setAllIssuesChanged();
+
+    underTest.execute();
+
+    verify(issueIndexer).indexProject(PROJECT_UUID, ProjectIndexer.Cause.NEW_ANALYSIS);
+    verify(issueIndexer, never()).index(anyCollectionOf(String.class));
+  }
+
   @Override
   protected ComputationStep step() {
     return underTest;
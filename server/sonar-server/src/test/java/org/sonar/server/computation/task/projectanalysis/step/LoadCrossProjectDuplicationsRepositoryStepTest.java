@@ -30,6 +30,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.mockito.ArgumentCaptor;
+import org.sonar.api.config.MapSettings;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
@@ -49,12 +50,14 @@ import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.FileAttributes;
 import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
+import org.sonar.server.computation.task.projectanalysis.duplication.CrossProjectDuplicationIndex;
 import org.sonar.server.computation.task.projectanalysis.duplication.CrossProjectDuplicationStatusHolder;
 import org.sonar.server.computation.task.projectanalysis.duplication.IntegrateCrossProjectDuplications;
 import org.sonar.server.computation.task.step.ComputationStep;
 
 import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyCollectionOf;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -104,7 +107,7 @@ public class LoadCrossProjectDuplicationsRepositoryStepTest {
   Analysis baseProjectAnalysis;
 
   ComputationStep underTest = new LoadCrossProjectDuplicationsRepositoryStep(treeRootHolder, batchReportReader, analysisMetadataHolder, crossProjectDuplicationStatusHolder,
-    integrateCrossProjectDuplications, dbClient);
+    integrateCrossProjectDuplications, new CrossProjectDuplicationIndex(dbClient, System2.INSTANCE, new MapSettings()), dbClient);
 
   @Before
   public void setUp() throws Exception {
@@ -259,6 +262,46 @@ public class LoadCrossProjectDuplicationsRepositoryStepTest {
         .build());
   }
 
+  @Test
+  public void call_compute_cpd_on_each_file_having_duplications() throws Exception {
+    int otherFileRef = 3;
+    Component otherCurrentFile = ReportComponent.builder(FILE, otherFileRef)
+      .setKey("OTHER_CURRENT_FILE_KEY")
+      .setFileAttributes(new FileAttributes(false, XOO_LANGUAGE, 1))
+      .build();
+    treeRootHolder.setRoot(ReportComponent.builder(PROJECT, PROJECT_REF).addChildren(CURRENT_FILE, otherCurrentFile).build());
+    when(crossProjectDuplicationStatusHolder.isEnabled()).thenReturn(true);
+    analysisMetadataHolder.setBaseAnalysis(baseProjectAnalysis);
+
+    ComponentDto otherProject = createProject("OTHER_PROJECT_KEY");
+    SnapshotDto otherProjectSnapshot = createProjectSnapshot(otherProject);
+    ComponentDto otherFile = createFile("OTHER_FILE_KEY", otherProject);
+    String hash1 = "a8998353e96320ec";
+    String hash2 = "b1234353e96320ff";
+    for (String hash : asList(hash1, hash2)) {
+      dbClient.duplicationDao().insert(dbSession, new DuplicationUnitDto()
+        .setHash(hash)
+        .setStartLine(40)
+        .setEndLine(55)
+        .setIndexInFile(0)
+        .setAnalysisUuid(otherProjectSnapshot.getUuid())
+        .setComponentUuid(otherFile.uuid()));
+    }
+    dbSession.commit();
+
+    batchReportReader.putDuplicationBlocks(FILE_REF, asList(newCpdTextBlock(hash1)));
+    batchReportReader.putDuplicationBlocks(otherFileRef, asList(newCpdTextBlock(hash1), newCpdTextBlock(hash2)));
+
+    underTest.execute();
+
+    Class<ArrayList<Block>> listClass = (Class<ArrayList<Block>>) (Class) ArrayList.class;
+    ArgumentCaptor<ArrayList<Block>> duplicationBlocks = ArgumentCaptor.forClass(listClass);
+    verify(integrateCrossProjectDuplications).computeCpd(eq(CURRENT_FILE), anyCollectionOf(Block.class), duplicationBlocks.capture());
+    assertThat(duplicationBlocks.getValue()).extracting(Block::getBlockHash).containsOnly(new ByteArray(hash1));
+    verify(integrateCrossProjectDuplications).computeCpd(eq(otherCurrentFile), anyCollectionOf(Block.class), duplicationBlocks.capture());
+    assertThat(duplicationBlocks.getValue()).extracting(Block::getBlockHash).containsOnly(new ByteArray(hash1), new ByteArray(hash2));
+  }
+
   @Test
   public void nothing_to_do_when_cross_project_duplication_is_disabled() throws Exception {
     when(crossProjectDuplicationStatusHolder.isEnabled()).thenReturn(false);
@@ -325,6 +368,16 @@ public class LoadCrossProjectDuplicationsRepositoryStepTest {
     verifyZeroInteractions(integrateCrossProjectDuplications);
   }
 
+  private static ScannerReport.CpdTextBlock newCpdTextBlock(String hash) {
+    return ScannerReport.CpdTextBlock.newBuilder()
+      .setHash(hash)
+      .setStartLine(30)
+      .setEndLine(45)
+      .setStartTokenIndex(0)
+      .setEndTokenIndex(10)
+      .build();
+  }
+
   private ComponentDto createProject(String projectKey) {
     ComponentDto project = ComponentTesting.newProjectDto(dbTester.organizations().insert()).setKey(projectKey);
     dbClient.componentDao().insert(dbSession, project);
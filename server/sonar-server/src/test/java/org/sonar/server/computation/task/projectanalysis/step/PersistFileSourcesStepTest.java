@@ -20,10 +20,13 @@
 package org.sonar.server.computation.task.projectanalysis.step;
 
 import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.slf4j.MDC;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
@@ -46,6 +49,7 @@ import org.sonar.server.computation.task.projectanalysis.duplication.InnerDuplic
 import org.sonar.server.computation.task.projectanalysis.duplication.TextBlock;
 import org.sonar.server.computation.task.projectanalysis.scm.Changeset;
 import org.sonar.server.computation.task.projectanalysis.scm.ScmInfoRepositoryRule;
+import org.sonar.server.computation.task.projectanalysis.source.SourceLinesRepository;
 import org.sonar.server.computation.task.projectanalysis.source.SourceLinesRepositoryRule;
 import org.sonar.server.computation.task.step.ComputationStep;
 
@@ -456,6 +460,85 @@ public class PersistFileSourcesStepTest extends BaseStepTest {
     assertThat(fileSourceDto.getRevision()).isNull();
   }
 
+  @Test
+  public void persist_sources_of_many_files_concurrently() {
+    int files = PersistFileSourcesStep.MAX_BATCH_ROWS * 2 + 10;
+    initManyFiles(files);
+
+    new PersistFileSourcesStep(dbClient, system2, treeRootHolder, reportReader, fileSourceRepository, scmInfoRepository, duplicationRepository, 4).execute();
+
+    assertThat(dbTester.countRowsOfTable("file_sources")).isEqualTo(files);
+    for (int i = 0; i < files; i++) {
+      DbFileSources.Data data = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE_UUID + i).getSourceData();
+      assertThat(data.getLinesCount()).isEqualTo(2);
+      assertThat(data.getLines(1).getSource()).isEqualTo("line2 of " + i);
+    }
+  }
+
+  @Test
+  public void persist_sources_concurrently_when_computed_files_exceed_max_pending_bytes() {
+    int files = 20;
+    initManyFiles(files);
+
+    new PersistFileSourcesStep(dbClient, system2, treeRootHolder, reportReader, fileSourceRepository, scmInfoRepository, duplicationRepository, 4, 0L).execute();
+
+    assertThat(dbTester.countRowsOfTable("file_sources")).isEqualTo(files);
+    for (int i = 0; i < files; i++) {
+      DbFileSources.Data data = dbClient.fileSourceDao().selectSourceByFileUuid(session, FILE_UUID + i).getSourceData();
+      assertThat(data.getLines(1).getSource()).isEqualTo("line2 of " + i);
+    }
+  }
+
+  @Test
+  public void compute_files_in_logging_context_of_step() {
+    int files = 10;
+    initManyFiles(files);
+    Set<String> loggingContexts = ConcurrentHashMap.newKeySet();
+    SourceLinesRepository sourceLinesRepository = file -> {
+      loggingContexts.add(String.valueOf(MDC.get("ceTaskUuid")));
+      return fileSourceRepository.readLines(file);
+    };
+
+    MDC.put("ceTaskUuid", "TASK_1");
+    try {
+      new PersistFileSourcesStep(dbClient, system2, treeRootHolder, reportReader, sourceLinesRepository, scmInfoRepository, duplicationRepository, 4).execute();
+      assertThat(MDC.get("ceTaskUuid")).isEqualTo("TASK_1");
+    } finally {
+      MDC.clear();
+    }
+
+    assertThat(loggingContexts).containsOnly("TASK_1");
+  }
+
+  @Test
+  public void fail_when_data_of_a_file_can_not_be_computed_concurrently() {
+    initBasicReport(2);
+    // no lines in report for the second file
+    treeRootHolder.setRoot(ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).addChildren(
+      ReportComponent.builder(Component.Type.FILE, FILE_REF).setUuid(FILE_UUID).setKey("MODULE_KEY:src/Foo.java")
+        .setFileAttributes(new FileAttributes(false, null, 2)).build(),
+      ReportComponent.builder(Component.Type.FILE, FILE_REF + 1).setUuid("FILE2").setKey("MODULE_KEY:src/Bar.java")
+        .setFileAttributes(new FileAttributes(false, null, 2)).build())
+      .build());
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("has no source code");
+
+    new PersistFileSourcesStep(dbClient, system2, treeRootHolder, reportReader, fileSourceRepository, scmInfoRepository, duplicationRepository, 4).execute();
+  }
+
+  private void initManyFiles(int files) {
+    ReportComponent.Builder module = ReportComponent.builder(Component.Type.MODULE, 2).setUuid("MODULE").setKey("MODULE_KEY");
+    for (int i = 0; i < files; i++) {
+      int ref = FILE_REF + i;
+      module.addChildren(ReportComponent.builder(Component.Type.FILE, ref).setUuid(FILE_UUID + i).setKey("MODULE_KEY:src/Foo" + i + ".java")
+        .setFileAttributes(new FileAttributes(false, null, 2)).build());
+      fileSourceRepository.addLine(ref, "line1 of " + i);
+      fileSourceRepository.addLine(ref, "line2 of " + i);
+    }
+    treeRootHolder.setRoot(ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).addChildren(module.build()).build());
+  }
+
   private void initBasicReport(int numberOfLines) {
     treeRootHolder.setRoot(ReportComponent.builder(Component.Type.PROJECT, 1).setUuid(PROJECT_UUID).setKey(PROJECT_KEY).addChildren(
       ReportComponent.builder(Component.Type.MODULE, 2).setUuid("MODULE").setKey("MODULE_KEY").addChildren(
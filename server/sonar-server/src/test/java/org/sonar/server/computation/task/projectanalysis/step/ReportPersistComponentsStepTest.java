@@ -37,6 +37,7 @@ import org.sonar.server.computation.task.projectanalysis.component.FileAttribute
 import org.sonar.server.computation.task.projectanalysis.component.MutableDbIdsRepositoryRule;
 import org.sonar.server.computation.task.projectanalysis.component.MutableDisabledComponentsHolder;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
+import org.sonar.server.computation.task.projectanalysis.issue.ChangedIssuesHolderImpl;
 import org.sonar.server.computation.task.step.ComputationStep;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -72,6 +73,7 @@ public class ReportPersistComponentsStepTest extends BaseStepTest {
   private DbClient dbClient = dbTester.getDbClient();
   private Date now;
   private MutableDisabledComponentsHolder disabledComponentsHolder = mock(MutableDisabledComponentsHolder.class, RETURNS_DEEP_STUBS);
+  private ChangedIssuesHolderImpl changedIssuesHolder = new ChangedIssuesHolderImpl();
   private PersistComponentsStep underTest;
 
   @Before
@@ -80,7 +82,7 @@ public class ReportPersistComponentsStepTest extends BaseStepTest {
     when(system2.now()).thenReturn(now.getTime());
 
     dbTester.organizations().insertForUuid(ORGANIZATION_UUID);
-    underTest = new PersistComponentsStep(dbClient, treeRootHolder, dbIdsRepository, system2, disabledComponentsHolder, analysisMetadataHolder);
+    underTest = new PersistComponentsStep(dbClient, treeRootHolder, dbIdsRepository, system2, disabledComponentsHolder, analysisMetadataHolder, changedIssuesHolder);
   }
 
   @Override
@@ -520,12 +522,26 @@ public class ReportPersistComponentsStepTest extends BaseStepTest {
     underTest.execute();
 
     assertThat(dbClient.componentDao().selectByKey(dbTester.getSession(), MODULE_KEY).get().path()).isEqualTo("path");
+    assertThat(changedIssuesHolder.areAllIssuesChanged()).isTrue();
 
     // commit the functional transaction
     dbClient.componentDao().applyBChangesForRootComponentUuid(dbTester.getSession(), project.uuid());
     assertThat(dbClient.componentDao().selectByKey(dbTester.getSession(), MODULE_KEY).get().path()).isEqualTo("New path");
   }
 
+  @Test
+  public void issues_are_not_changed_when_path_of_components_is_not_updated() {
+    ComponentDto project = ComponentTesting.newProjectDto(dbTester.organizations().insert(), "ABCD").setKey(PROJECT_KEY).setName("Project");
+    dbClient.componentDao().insert(dbTester.getSession(), project);
+    dbTester.getSession().commit();
+
+    treeRootHolder.setRoot(builder(PROJECT, 1).setUuid("ABCD").setKey(PROJECT_KEY).setName("New Project").build());
+
+    underTest.execute();
+
+    assertThat(changedIssuesHolder.areAllIssuesChanged()).isFalse();
+  }
+
   @Test
   public void update_module_uuid_when_moving_a_module() {
     ComponentDto project = ComponentTesting.newProjectDto(dbTester.getDefaultOrganization(), "ABCD").setKey(PROJECT_KEY).setName("Project");
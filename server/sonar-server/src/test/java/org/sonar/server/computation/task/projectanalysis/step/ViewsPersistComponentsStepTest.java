@@ -41,6 +41,7 @@ import org.sonar.server.computation.task.projectanalysis.component.ProjectViewAt
 import org.sonar.server.computation.task.projectanalysis.component.SubViewAttributes;
 import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolderRule;
 import org.sonar.server.computation.task.projectanalysis.component.ViewsComponent;
+import org.sonar.server.computation.task.projectanalysis.issue.ChangedIssuesHolderImpl;
 import org.sonar.server.computation.task.step.ComputationStep;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -85,6 +86,7 @@ public class ViewsPersistComponentsStepTest extends BaseStepTest {
   private Date now;
   private ComponentDbTester componentDbTester = new ComponentDbTester(dbTester);
   private MutableDisabledComponentsHolder disabledComponentsHolder = mock(MutableDisabledComponentsHolder.class, RETURNS_DEEP_STUBS);
+  private ChangedIssuesHolderImpl changedIssuesHolder = new ChangedIssuesHolderImpl();
   private PersistComponentsStep underTest;
 
   @Before
@@ -93,7 +95,7 @@ public class ViewsPersistComponentsStepTest extends BaseStepTest {
     when(system2.now()).thenReturn(now.getTime());
 
     dbTester.organizations().insertForUuid(ORGANIZATION_UUID);
-    underTest = new PersistComponentsStep(dbClient, treeRootHolder, dbIdsRepository, system2, disabledComponentsHolder, analysisMetadataHolder);
+    underTest = new PersistComponentsStep(dbClient, treeRootHolder, dbIdsRepository, system2, disabledComponentsHolder, analysisMetadataHolder, changedIssuesHolder);
   }
 
   @Override
@@ -19,22 +19,31 @@
  */
 package org.sonar.server.computation.task.step;
 
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.mockito.InOrder;
+import org.sonar.api.config.MapSettings;
 import org.sonar.api.utils.log.LogTester;
 import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.server.computation.task.ChangeLogLevel;
 
+import static java.util.Collections.emptySet;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
 import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -49,6 +58,7 @@ public class ComputationStepExecutorTest {
   private final ComputationStep computationStep1 = mockComputationStep("step1");
   private final ComputationStep computationStep2 = mockComputationStep("step2");
   private final ComputationStep computationStep3 = mockComputationStep("step3");
+  private final List<String> executedSteps = Collections.synchronizedList(new ArrayList<>());
 
   @Test
   public void execute_call_execute_on_each_ComputationStep_in_order_returned_by_instances_method() {
@@ -152,6 +162,159 @@ public class ComputationStepExecutorTest {
     new ComputationStepExecutor(mockComputationSteps(computationStep1), listener).execute();
   }
 
+  @Test
+  public void constructor_fails_if_threads_property_is_not_strictly_positive() {
+    MapSettings settings = new MapSettings();
+    settings.setProperty(ComputationStepExecutor.THREADS_PROPERTY, 0);
+
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Property sonar.ce.steps.threads must be strictly positive: 0");
+
+    new ComputationStepExecutor(mockComputationSteps(computationStep1), settings);
+  }
+
+  @Test
+  public void execute_runs_independent_DependencyAwareComputationSteps_concurrently() {
+    CyclicBarrier barrier = new CyclicBarrier(2);
+    Runnable awaitOtherStep = () -> {
+      try {
+        barrier.await(10, TimeUnit.SECONDS);
+      } catch (Exception e) {
+        throw new IllegalStateException("steps are not executed concurrently", e);
+      }
+    };
+    RecordingStep step1 = new RecordingStep("step1", ImmutableSet.of(String.class), emptySet(), awaitOtherStep);
+    RecordingStep step2 = new RecordingStep("step2", ImmutableSet.of(String.class), emptySet(), awaitOtherStep);
+
+    newConcurrentExecutor(2, step1, step2).execute();
+
+    assertThat(executedSteps).containsOnly("step1", "step2");
+  }
+
+  @Test
+  public void execute_runs_DependencyAwareComputationStep_after_the_steps_writing_the_holders_it_reads() {
+    RecordingStep writer = new RecordingStep("writer", emptySet(), ImmutableSet.of(CharSequence.class), () -> sleep(50));
+    RecordingStep independent = new RecordingStep("independent", ImmutableSet.of(Integer.class), emptySet(), () -> {
+    });
+    RecordingStep reader = new RecordingStep("reader", ImmutableSet.of(String.class), emptySet(), () -> {
+    });
+
+    newConcurrentExecutor(4, writer, independent, reader).execute();
+
+    assertThat(executedSteps).containsOnly("writer", "independent", "reader");
+    assertThat(executedSteps.indexOf("reader")).isGreaterThan(executedSteps.indexOf("writer"));
+  }
+
+  @Test
+  public void execute_runs_steps_which_are_not_DependencyAwareComputationStep_once_all_previous_steps_are_finished() {
+    RecordingStep step1 = new RecordingStep("step1", emptySet(), emptySet(), () -> sleep(50));
+    ComputationStep step2 = new ComputationStep() {
+      @Override
+      public void execute() {
+        executedSteps.add("step2");
+      }
+
+      @Override
+      public String getDescription() {
+        return "step2";
+      }
+    };
+    RecordingStep step3 = new RecordingStep("step3", emptySet(), emptySet(), () -> {
+    });
+
+    newConcurrentExecutor(4, step1, step2, step3).execute();
+
+    assertThat(executedSteps).containsExactly("step1", "step2", "step3");
+  }
+
+  @Test
+  public void execute_does_not_run_next_steps_and_rethrows_exception_when_a_concurrent_step_fails() {
+    RuntimeException toBeThrown = new RuntimeException("simulating failing execute Step method");
+    RecordingStep failing = new RecordingStep("failing", emptySet(), ImmutableSet.of(String.class), () -> {
+      throw toBeThrown;
+    });
+    RecordingStep independent = new RecordingStep("independent", ImmutableSet.of(Integer.class), emptySet(), () -> {
+    });
+    RecordingStep dependent = new RecordingStep("dependent", ImmutableSet.of(String.class), emptySet(), () -> {
+    });
+
+    try {
+      newConcurrentExecutor(4, failing, independent, dependent, computationStep1).execute();
+      fail("exception toBeThrown should have been raised");
+    } catch (RuntimeException e) {
+      assertThat(e).isSameAs(toBeThrown);
+      assertThat(executedSteps).doesNotContain("dependent");
+      verify(listener).finished(false);
+      verify(computationStep1, never()).execute();
+    }
+  }
+
+  @Test
+  public void execute_logs_end_timing_for_each_concurrent_ComputationStep_when_level_is_DEBUG() {
+    RecordingStep step1 = new RecordingStep("step1", emptySet(), emptySet(), () -> {
+    });
+    RecordingStep step2 = new RecordingStep("step2", emptySet(), emptySet(), () -> {
+    });
+
+    try (ChangeLogLevel executor = new ChangeLogLevel(ComputationStepExecutor.class, LoggerLevel.DEBUG)) {
+      newConcurrentExecutor(2, step1, step2).execute();
+    }
+
+    List<String> debugLogs = logTester.logs(LoggerLevel.DEBUG);
+    assertThat(debugLogs).hasSize(2);
+    assertThat(debugLogs.stream().anyMatch(log -> log.contains("step1 | time="))).isTrue();
+    assertThat(debugLogs.stream().anyMatch(log -> log.contains("step2 | time="))).isTrue();
+  }
+
+  private ComputationStepExecutor newConcurrentExecutor(int threads, ComputationStep... computationSteps) {
+    MapSettings settings = new MapSettings();
+    settings.setProperty(ComputationStepExecutor.THREADS_PROPERTY, threads);
+    return new ComputationStepExecutor(mockComputationSteps(computationSteps), listener, settings);
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private class RecordingStep implements DependencyAwareComputationStep {
+    private final String description;
+    private final Set<Class<?>> readHolders;
+    private final Set<Class<?>> writtenHolders;
+    private final Runnable action;
+
+    private RecordingStep(String description, Set<Class<?>> readHolders, Set<Class<?>> writtenHolders, Runnable action) {
+      this.description = description;
+      this.readHolders = readHolders;
+      this.writtenHolders = writtenHolders;
+      this.action = action;
+    }
+
+    @Override
+    public void execute() {
+      action.run();
+      executedSteps.add(description);
+    }
+
+    @Override
+    public Set<Class<?>> readHolders() {
+      return readHolders;
+    }
+
+    @Override
+    public Set<Class<?>> writtenHolders() {
+      return writtenHolders;
+    }
+
+    @Override
+    public String getDescription() {
+      return description;
+    }
+  }
+
   private static ComputationSteps mockComputationSteps(ComputationStep... computationSteps) {
     ComputationSteps steps = mock(ComputationSteps.class);
     when(steps.instances()).thenReturn(Arrays.asList(computationSteps));
@@ -86,6 +86,24 @@ public class BulkIndexerTest {
     assertThat(replicas()).isEqualTo(1);
   }
 
+  @Test
+  public void record_throughput_of_index() {
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), INDEX)
+      .setFlushByteSize(500);
+    indexer.start();
+    for (int i = 0; i < 10; i++) {
+      indexer.add(newIndexRequest(i));
+    }
+    indexer.stop();
+
+    BulkIndexingStats.IndexStats stats = esTester.client().getBulkIndexingStats().forIndex(INDEX);
+    assertThat(stats.getDocs()).isEqualTo(10);
+    assertThat(stats.getBytes()).isGreaterThan(0L);
+    assertThat(stats.getRejectedDocs()).isEqualTo(0);
+    assertThat(stats.getInFlightRequests()).isEqualTo(0);
+    assertThat(stats.getDocsPerSecond()).isGreaterThan(0L);
+  }
+
   @Test
   public void bulk_delete() throws Exception {
     int max = 500;
@@ -0,0 +1,126 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.server.es.BulkThrottle.FAST_RESPONSES_BEFORE_INCREASE;
+import static org.sonar.server.es.BulkThrottle.MAX_FLUSH_BYTE_SIZE;
+import static org.sonar.server.es.BulkThrottle.MIN_FLUSH_BYTE_SIZE;
+
+public class BulkThrottleTest {
+
+  private static final long MB = 1024 * 1024L;
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Test
+  public void fixed_throttle_never_changes_limits() {
+    BulkThrottle underTest = BulkThrottle.fixed(2, MB);
+
+    underTest.acquire();
+    underTest.release(10L, true);
+    underTest.acquire();
+    underTest.release(10_000L, false);
+    underTest.acquire();
+    underTest.release(1L, false);
+
+    assertThat(underTest.getConcurrency()).isEqualTo(2);
+    assertThat(underTest.getFlushByteSize()).isEqualTo(MB);
+  }
+
+  @Test
+  public void rejections_halve_concurrency_and_size_of_requests() {
+    BulkThrottle underTest = BulkThrottle.adaptive(4, 8, MB);
+
+    underTest.acquire();
+    underTest.release(10L, true);
+
+    assertThat(underTest.getConcurrency()).isEqualTo(2);
+    assertThat(underTest.getFlushByteSize()).isEqualTo(MB / 2);
+  }
+
+  @Test
+  public void rejections_do_not_decrease_limits_below_minimum() {
+    BulkThrottle underTest = BulkThrottle.adaptive(2, 8, MB);
+
+    for (int i = 0; i < 10; i++) {
+      underTest.acquire();
+      underTest.release(10L, true);
+    }
+
+    assertThat(underTest.getConcurrency()).isEqualTo(1);
+    assertThat(underTest.getFlushByteSize()).isEqualTo(MIN_FLUSH_BYTE_SIZE);
+  }
+
+  @Test
+  public void slow_responses_decrease_concurrency() {
+    BulkThrottle underTest = BulkThrottle.adaptive(4, 8, MB);
+
+    underTest.acquire();
+    underTest.release(BulkThrottle.SLOW_RESPONSE_MS, false);
+
+    assertThat(underTest.getConcurrency()).isEqualTo(3);
+    assertThat(underTest.getFlushByteSize()).isEqualTo(MB);
+  }
+
+  @Test
+  public void fast_responses_increase_concurrency_and_size_of_requests_up_to_maximum() {
+    BulkThrottle underTest = BulkThrottle.adaptive(1, 2, MB);
+
+    for (int i = 0; i < FAST_RESPONSES_BEFORE_INCREASE; i++) {
+      underTest.acquire();
+      underTest.release(1L, false);
+    }
+    assertThat(underTest.getConcurrency()).isEqualTo(2);
+    assertThat(underTest.getFlushByteSize()).isGreaterThan(MB);
+
+    for (int i = 0; i < 100; i++) {
+      underTest.acquire();
+      underTest.release(1L, false);
+    }
+    assertThat(underTest.getConcurrency()).isEqualTo(2);
+    assertThat(underTest.getFlushByteSize()).isEqualTo(MAX_FLUSH_BYTE_SIZE);
+  }
+
+  @Test
+  public void await_idle_fails_if_requests_are_in_flight() throws Exception {
+    BulkThrottle underTest = BulkThrottle.fixed(2, MB);
+
+    underTest.acquire();
+    assertThat(underTest.awaitIdle(10, TimeUnit.MILLISECONDS)).isFalse();
+
+    underTest.release(1L, false);
+    assertThat(underTest.awaitIdle(10, TimeUnit.MILLISECONDS)).isTrue();
+  }
+
+  @Test
+  public void fail_if_concurrency_is_not_strictly_positive() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Concurrency must be strictly positive: 0");
+
+    BulkThrottle.fixed(0, MB);
+  }
+}
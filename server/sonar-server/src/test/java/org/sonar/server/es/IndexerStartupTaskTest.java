@@ -20,6 +20,10 @@
 package org.sonar.server.es;
 
 import com.google.common.collect.ImmutableSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import org.junit.Rule;
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -27,6 +31,8 @@ import org.sonar.api.config.MapSettings;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbTester;
 
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -76,13 +82,33 @@ public class IndexerStartupTaskTest {
     verifyNoMoreInteractions(indexer);
   }
 
+  @Test
+  public void group_indexers_sharing_indices() {
+    StartupIndexer a = createIndexer(new IndexType("i1", "a"));
+    StartupIndexer b = createIndexer(new IndexType("i2", "b"));
+    StartupIndexer c = createIndexer(new IndexType("i1", "c"), new IndexType("i3", "c"));
+    StartupIndexer d = createIndexer(new IndexType("i3", "d"));
+    StartupIndexer e = createIndexer(new IndexType("i4", "e"));
+
+    Map<StartupIndexer, Set<IndexType>> indexTypesByIndexer = new LinkedHashMap<>();
+    asList(a, b, c, d, e).forEach(indexer -> indexTypesByIndexer.put(indexer, indexer.getIndexTypes()));
+
+    List<List<StartupIndexer>> groups = IndexerStartupTask.groupBySharedIndex(indexTypesByIndexer);
+
+    assertThat(groups).containsOnly(asList(a, c, d), asList(b), asList(e));
+  }
+
   private void insertDocumentIntoIndex() {
     es.putDocuments(INDEX_TYPE_FAKE, new FakeDoc());
   }
 
   private StartupIndexer createIndexer() {
+    return createIndexer(INDEX_TYPE_FAKE);
+  }
+
+  private StartupIndexer createIndexer(IndexType... indexTypes) {
     StartupIndexer indexer = mock(StartupIndexer.class);
-    doReturn(ImmutableSet.of(INDEX_TYPE_FAKE)).when(indexer).getIndexTypes();
+    doReturn(ImmutableSet.copyOf(indexTypes)).when(indexer).getIndexTypes();
     return indexer;
   }
 
@@ -0,0 +1,98 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.List;
+import org.elasticsearch.action.index.IndexRequest;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.server.es.FakeIndexDefinition.INDEX;
+import static org.sonar.server.es.FakeIndexDefinition.INDEX_TYPE_FAKE;
+
+public class PartitionedIndexingTest {
+
+  @Rule
+  public EsTester esTester = new EsTester(new FakeIndexDefinition());
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Test
+  public void index_all_partitions() {
+    BulkIndexer bulk = new BulkIndexer(esTester.client(), INDEX).setFlushByteSize(500);
+    List<String> partitions = asList("10", "20", "30", "40", "50");
+
+    long count = new PartitionedIndexing("fakes", 3).index(bulk, partitions, partition -> {
+      int size = Integer.parseInt(partition);
+      for (int i = 0; i < size; i++) {
+        bulk.add(newIndexRequest(i));
+      }
+      return size;
+    });
+
+    assertThat(count).isEqualTo(150);
+    assertThat(esTester.countDocuments(INDEX_TYPE_FAKE)).isEqualTo(150);
+  }
+
+  @Test
+  public void index_nothing_if_no_partitions() {
+    BulkIndexer bulk = new BulkIndexer(esTester.client(), INDEX);
+
+    long count = new PartitionedIndexing("fakes", 3).index(bulk, emptyList(), partition -> {
+      throw new IllegalStateException("no partitions to index");
+    });
+
+    assertThat(count).isEqualTo(0);
+    assertThat(esTester.countDocuments(INDEX_TYPE_FAKE)).isEqualTo(0);
+  }
+
+  @Test
+  public void fail_if_a_partition_fails() {
+    BulkIndexer bulk = new BulkIndexer(esTester.client(), INDEX);
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Fail to read partition P2");
+
+    new PartitionedIndexing("fakes", 2).index(bulk, asList("P1", "P2", "P3"), partition -> {
+      if (partition.equals("P2")) {
+        throw new IllegalStateException("Fail to read partition P2");
+      }
+      return 0L;
+    });
+  }
+
+  @Test
+  public void fail_if_number_of_workers_is_not_strictly_positive() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Number of workers must be strictly positive: 0");
+
+    new PartitionedIndexing("fakes", 0);
+  }
+
+  private static IndexRequest newIndexRequest(int intField) {
+    return new IndexRequest(INDEX, INDEX_TYPE_FAKE.getType())
+      .source(ImmutableMap.of(FakeIndexDefinition.INT_FIELD, intField));
+  }
+}
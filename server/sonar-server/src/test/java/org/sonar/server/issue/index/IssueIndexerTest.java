@@ -170,6 +170,7 @@ public class IssueIndexerTest {
     assertThat(doc.directoryPath()).isEqualTo(StringUtils.substringBeforeLast(file.path(), "/"));
     assertThat(doc.severity()).isEqualTo(issue.getSeverity());
     assertThat(doc.ruleKey()).isEqualTo(rule.getKey());
+    assertThat(doc.locations()).isEqualTo(issue.getLocations());
     assertThat(doc.organizationUuid()).isEqualTo(org.getUuid());
     // functional date
     assertThat(doc.updateDate().getTime()).isEqualTo(issue.getIssueUpdateTime());
@@ -21,6 +21,7 @@ package org.sonar.server.issue.index;
 
 import com.google.common.base.Function;
 import com.google.common.collect.Maps;
+import java.util.List;
 import java.util.Map;
 import javax.annotation.Nonnull;
 import org.junit.Rule;
@@ -30,6 +31,7 @@ import org.sonar.api.utils.System2;
 import org.sonar.db.DbTester;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 
 public class IssueResultSetIteratorTest {
 
@@ -135,6 +137,32 @@ public class IssueResultSetIteratorTest {
     assertThat(issuesByKey).hasSize(2);
   }
 
+  @Test
+  public void split_issues_of_large_project_into_ranges_of_components() {
+    dbTester.prepareDbUnit(getClass(), "extract_directory_path.xml");
+    IssueIteratorFactory factory = new IssueIteratorFactory(dbTester.getDbClient());
+
+    List<IssueIteratorFactory.Partition> partitions = factory.selectPartitions(2);
+
+    assertThat(partitions).extracting(IssueIteratorFactory.Partition::getProjectUuid, IssueIteratorFactory.Partition::getFromComponentUuid,
+      IssueIteratorFactory.Partition::getToComponentUuid)
+      .containsExactly(tuple("PROJECT", null, "PROJECT"), tuple("PROJECT", "PROJECT", null));
+    assertThat(issuesByKey(f -> f.createForPartition(partitions.get(0)))).containsOnlyKeys("ABC", "FGH");
+    assertThat(issuesByKey(f -> f.createForPartition(partitions.get(1)))).containsOnlyKeys("DEF", "EFG");
+  }
+
+  @Test
+  public void do_not_split_issues_of_project_below_max_issues_per_partition() {
+    dbTester.prepareDbUnit(getClass(), "many_projects.xml");
+    IssueIteratorFactory factory = new IssueIteratorFactory(dbTester.getDbClient());
+
+    List<IssueIteratorFactory.Partition> partitions = factory.selectPartitions(2);
+
+    assertThat(partitions).extracting(IssueIteratorFactory.Partition::toString).containsOnly("THE_PROJECT_1", "THE_PROJECT_2");
+    IssueIteratorFactory.Partition partition = partitions.stream().filter(p -> p.getProjectUuid().equals("THE_PROJECT_1")).findFirst().get();
+    assertThat(issuesByKey(f -> f.createForPartition(partition))).hasSize(2);
+  }
+
   @Test
   public void extract_directory_path() {
     dbTester.prepareDbUnit(getClass(), "extract_directory_path.xml");
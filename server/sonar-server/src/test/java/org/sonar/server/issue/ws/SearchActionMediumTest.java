@@ -44,6 +44,8 @@ import org.sonar.db.issue.IssueTesting;
 import org.sonar.db.organization.OrganizationDao;
 import org.sonar.db.organization.OrganizationDto;
 import org.sonar.db.organization.OrganizationTesting;
+import org.sonar.db.protobuf.DbCommons;
+import org.sonar.db.protobuf.DbIssues;
 import org.sonar.db.rule.RuleDao;
 import org.sonar.db.rule.RuleDto;
 import org.sonar.db.rule.RuleTesting;
@@ -190,6 +192,32 @@ public class SearchActionMediumTest {
     result.assertJson(this.getClass(), "issue_with_comments.json");
   }
 
+  @Test
+  public void issues_are_loaded_from_index() throws Exception {
+    ComponentDto project = insertComponent(ComponentTesting.newProjectDto(otherOrganization2, "PROJECT_ID").setKey("PROJECT_KEY"));
+    setDefaultProjectPermission(project);
+    ComponentDto file = insertComponent(ComponentTesting.newFileDto(project, null, "FILE_ID").setKey("FILE_KEY"));
+    IssueDto issue = IssueTesting.newDto(newRule(), file, project)
+      .setKee("82fd47d4-b650-4037-80bc-7b112bd4eac2")
+      .setMessage("the message")
+      .setLocations(DbIssues.Locations.newBuilder()
+        .setTextRange(DbCommons.TextRange.newBuilder().setStartLine(2).setEndLine(3))
+        .addFlow(DbIssues.Flow.newBuilder().addLocation(DbIssues.Location.newBuilder().setComponentId(file.uuid()).setMsg("flow message")))
+        .build());
+    db.issueDao().insert(session, issue);
+    session.commit();
+    IssueIndexer r = tester.get(IssueIndexer.class);
+    r.indexOnStartup(r.getIndexTypes());
+
+    // db is updated but not the index
+    db.issueDao().update(session, issue.setMessage("the updated message"));
+    session.commit();
+
+    String result = wsTester.newGetRequest(CONTROLLER_ISSUES, ACTION_SEARCH).execute().outputAsString();
+    assertThat(result).contains("the message", "\"startLine\":2", "\"endLine\":3", "flow message");
+    assertThat(result).doesNotContain("the updated message");
+  }
+
   @Test
   public void issue_with_comment_hidden() throws Exception {
     db.userDao().insert(session, new UserDto().setLogin("john").setName("John").setEmail("john@email.com"));
@@ -31,6 +31,7 @@ import org.sonar.db.DbTester;
 import org.sonar.db.measure.custom.CustomMeasureTesting;
 import org.sonar.db.metric.MetricDto;
 import org.sonar.db.metric.MetricTesting;
+import org.sonar.server.cache.ReferenceDataCache;
 import org.sonar.server.exceptions.ForbiddenException;
 import org.sonar.server.exceptions.ServerException;
 import org.sonar.server.exceptions.UnauthorizedException;
@@ -38,6 +39,7 @@ import org.sonar.server.tester.UserSessionRule;
 import org.sonar.server.ws.WsTester;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
 import static org.sonar.server.metric.ws.CreateAction.PARAM_DESCRIPTION;
 import static org.sonar.server.metric.ws.CreateAction.PARAM_DOMAIN;
 import static org.sonar.server.metric.ws.CreateAction.PARAM_KEY;
@@ -65,7 +67,7 @@ public class CreateActionTest {
 
   @Before
   public void setUp() {
-    ws = new WsTester(new MetricsWs(new CreateAction(dbClient, userSessionRule)));
+    ws = new WsTester(new MetricsWs(new CreateAction(dbClient, userSessionRule, mock(ReferenceDataCache.class))));
     userSessionRule.logIn().setSystemAdministrator();
   }
 
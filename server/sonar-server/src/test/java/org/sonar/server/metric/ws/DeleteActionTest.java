@@ -33,12 +33,14 @@ import org.sonar.db.measure.custom.CustomMeasureDto;
 import org.sonar.db.measure.custom.CustomMeasureTesting;
 import org.sonar.db.metric.MetricDao;
 import org.sonar.db.metric.MetricDto;
+import org.sonar.server.cache.ReferenceDataCache;
 import org.sonar.server.exceptions.ForbiddenException;
 import org.sonar.server.exceptions.UnauthorizedException;
 import org.sonar.server.tester.UserSessionRule;
 import org.sonar.server.ws.WsTester;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
 import static org.sonar.db.metric.MetricTesting.newMetricDto;
 
 public class DeleteActionTest {
@@ -58,7 +60,7 @@ public class DeleteActionTest {
   @Before
   public void setUp() {
     userSessionRule.logIn().setSystemAdministrator();
-    ws = new WsTester(new MetricsWs(new DeleteAction(dbClient, userSessionRule)));
+    ws = new WsTester(new MetricsWs(new DeleteAction(dbClient, userSessionRule, mock(ReferenceDataCache.class))));
     metricDao = dbClient.metricDao();
   }
 
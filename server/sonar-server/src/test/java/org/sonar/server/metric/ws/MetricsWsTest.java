@@ -23,6 +23,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.sonar.api.server.ws.WebService;
 import org.sonar.db.DbClient;
+import org.sonar.server.cache.ReferenceDataCache;
 import org.sonar.server.user.UserSession;
 import org.sonar.server.ws.WsTester;
 
@@ -39,9 +40,9 @@ public class MetricsWsTest {
     UserSession userSession = mock(UserSession.class);
     ws = new WsTester(new MetricsWs(
       new SearchAction(dbClient),
-      new CreateAction(dbClient, userSession),
-      new UpdateAction(dbClient, userSession),
-      new DeleteAction(dbClient, userSession),
+      new CreateAction(dbClient, userSession, mock(ReferenceDataCache.class)),
+      new UpdateAction(dbClient, userSession, mock(ReferenceDataCache.class)),
+      new DeleteAction(dbClient, userSession, mock(ReferenceDataCache.class)),
       new TypesAction(),
       new DomainsAction(dbClient)));
   }
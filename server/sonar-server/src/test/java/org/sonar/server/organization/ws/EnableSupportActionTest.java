@@ -26,6 +26,7 @@ import org.junit.rules.ExpectedException;
 import org.sonar.api.server.ws.WebService;
 import org.sonar.db.DbTester;
 import org.sonar.db.user.UserDto;
+import org.sonar.server.authentication.AuthenticationCache;
 import org.sonar.server.exceptions.ForbiddenException;
 import org.sonar.server.exceptions.UnauthorizedException;
 import org.sonar.server.organization.DefaultOrganizationProvider;
@@ -37,6 +38,8 @@ import org.sonar.server.ws.TestResponse;
 import org.sonar.server.ws.WsActionTester;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.sonar.db.permission.OrganizationPermission.ADMINISTER;
 
 public class EnableSupportActionTest {
@@ -50,7 +53,9 @@ public class EnableSupportActionTest {
 
   private DefaultOrganizationProvider defaultOrganizationProvider = TestDefaultOrganizationProvider.from(db);
   private OrganizationFlags organizationFlags = new OrganizationFlagsImpl(db.getDbClient());
-  private EnableSupportAction underTest = new EnableSupportAction(userSession, db.getDbClient(), defaultOrganizationProvider, organizationFlags);
+  private AuthenticationCache authenticationCache = mock(AuthenticationCache.class);
+  private EnableSupportAction underTest = new EnableSupportAction(userSession, db.getDbClient(), defaultOrganizationProvider, organizationFlags,
+    authenticationCache);
   private WsActionTester tester = new WsActionTester(underTest);
 
   @Test
@@ -67,6 +72,7 @@ public class EnableSupportActionTest {
     verifyFeatureEnabled(true);
     verifyRoot(user, true);
     verifyRoot(otherUser, false);
+    verify(authenticationCache).invalidateUser(user.getLogin());
   }
 
   @Test
@@ -101,6 +107,7 @@ public class EnableSupportActionTest {
     // if he was not already root
     call();
     verifyFeatureEnabled(true);
+    verify(authenticationCache).invalidateUser("foo");
   }
 
   @Test
@@ -27,6 +27,8 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.sonar.api.config.MapSettings;
 import org.sonar.api.server.ws.WebService;
+import org.sonar.api.utils.System2;
+import org.sonar.core.util.UuidFactoryFast;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
@@ -39,12 +41,18 @@ import org.sonar.db.property.PropertyDto;
 import org.sonar.db.property.PropertyQuery;
 import org.sonar.db.user.GroupDto;
 import org.sonar.db.user.UserDto;
+import org.sonar.server.cache.PermissionCache;
 import org.sonar.server.es.EsTester;
 import org.sonar.server.es.SearchOptions;
 import org.sonar.server.exceptions.BadRequestException;
 import org.sonar.server.exceptions.ForbiddenException;
 import org.sonar.server.exceptions.NotFoundException;
+import org.sonar.server.organization.TestDefaultOrganizationProvider;
+import org.sonar.server.organization.TestOrganizationFlags;
+import org.sonar.server.property.InternalPropertiesImpl;
 import org.sonar.server.tester.UserSessionRule;
+import org.sonar.server.user.UserSession;
+import org.sonar.server.user.UserSessionFactoryImpl;
 import org.sonar.server.user.index.UserIndex;
 import org.sonar.server.user.index.UserIndexDefinition;
 import org.sonar.server.user.index.UserIndexer;
@@ -80,7 +88,9 @@ public class RemoveMemberActionTest {
   private UserIndex userIndex = new UserIndex(es.client());
   private UserIndexer userIndexer = new UserIndexer(dbClient, es.client());
 
-  private WsActionTester ws = new WsActionTester(new RemoveMemberAction(dbClient, userSession, userIndexer));
+  private PermissionCache permissionCache = new PermissionCache(new InternalPropertiesImpl(dbClient), UuidFactoryFast.getInstance(), System2.INSTANCE);
+
+  private WsActionTester ws = new WsActionTester(new RemoveMemberAction(dbClient, userSession, userIndexer, permissionCache));
 
   private OrganizationDto organization;
   private ComponentDto project;
@@ -164,6 +174,21 @@ public class RemoveMemberActionTest {
     assertProjectPermissionsOfUser(anotherUser, project, CODEVIEWER, USER);
   }
 
+  @Test
+  public void removed_member_loses_cached_permissions_at_once() {
+    GroupDto group = db.users().insertGroup(organization);
+    db.users().insertPermissionOnGroup(group, SCAN);
+    db.users().insertMember(group, user);
+    db.users().insertProjectPermissionOnUser(user, USER, project);
+    assertThat(newServerUserSession(user).hasPermission(SCAN, organization)).isTrue();
+    assertThat(newServerUserSession(user).hasComponentPermission(USER, project)).isTrue();
+
+    call(organization.getKey(), user.getLogin());
+
+    assertThat(newServerUserSession(user).hasPermission(SCAN, organization)).isFalse();
+    assertThat(newServerUserSession(user).hasComponentPermission(USER, project)).isFalse();
+  }
+
   @Test
   public void remove_template_permissions() {
     OrganizationDto anotherOrganization = db.organizations().insert();
@@ -332,6 +357,10 @@ public class RemoveMemberActionTest {
     call(anotherOrganization.getKey(), admin.getLogin());
   }
 
+  private UserSession newServerUserSession(UserDto user) {
+    return new UserSessionFactoryImpl(dbClient, TestDefaultOrganizationProvider.from(db), TestOrganizationFlags.standalone(), permissionCache).create(user);
+  }
+
   private TestResponse call(@Nullable String organizationKey, @Nullable String login) {
     TestRequest request = ws.newRequest();
     setNullable(organizationKey, o -> request.setParam(PARAM_ORGANIZATION, o));
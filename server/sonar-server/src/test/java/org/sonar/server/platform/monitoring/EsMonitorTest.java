@@ -25,6 +25,7 @@ import org.elasticsearch.cluster.health.ClusterHealthStatus;
 import org.junit.Rule;
 import org.junit.Test;
 import org.sonar.api.config.MapSettings;
+import org.sonar.server.es.BulkIndexer;
 import org.sonar.server.es.EsClient;
 import org.sonar.server.es.EsTester;
 import org.sonar.server.issue.index.IssueIndexDefinition;
@@ -78,6 +79,19 @@ public class EsMonitorTest {
     assertThat(indexAttributes.get("Store Size")).isNotNull();
   }
 
+  @Test
+  public void index_attributes_contain_bulk_indexing_stats() {
+    BulkIndexer bulk = new BulkIndexer(esTester.client(), IssueIndexDefinition.INDEX_TYPE_ISSUE.getIndex());
+    bulk.start();
+    bulk.stop();
+
+    Map indicesAttributes = (Map) underTest.attributes().get("Indices");
+
+    Map indexAttributes = (Map) indicesAttributes.values().iterator().next();
+    assertThat(indexAttributes.get("Bulk Indexed Docs")).isEqualTo(0L);
+    assertThat(indexAttributes.get("Bulk In-flight Requests")).isEqualTo(0);
+  }
+
   @Test
   public void attributes_displays_exception_message_when_cause_null_when_client_fails() {
     EsClient esClientMock = mock(EsClient.class);
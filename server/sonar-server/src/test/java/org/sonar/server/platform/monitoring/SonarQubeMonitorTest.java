@@ -32,18 +32,22 @@ import org.sonar.api.config.MapSettings;
 import org.sonar.api.platform.Server;
 import org.sonar.api.security.SecurityRealm;
 import org.sonar.api.utils.log.LoggerLevel;
+import org.sonar.db.user.UserDto;
+import org.sonar.server.authentication.AuthenticationCache;
 import org.sonar.server.authentication.IdentityProviderRepositoryRule;
 import org.sonar.server.authentication.TestIdentityProvider;
 import org.sonar.server.platform.ServerId;
 import org.sonar.server.platform.ServerIdLoader;
 import org.sonar.server.platform.ServerLogging;
 import org.sonar.server.user.SecurityRealmFactory;
+import org.sonar.server.usertoken.TokenGeneratorImpl;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.data.MapEntry.entry;
 import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
+import static org.sonar.db.user.UserTesting.newUserDto;
 
 public class SonarQubeMonitorTest {
 
@@ -62,8 +66,9 @@ public class SonarQubeMonitorTest {
   ServerLogging serverLogging = mock(ServerLogging.class);
   SecurityRealmFactory securityRealmFactory = mock(SecurityRealmFactory.class);
 
+  AuthenticationCache authenticationCache = new AuthenticationCache(new TokenGeneratorImpl());
   SonarQubeMonitor underTest = new SonarQubeMonitor(settings, securityRealmFactory, identityProviderRepository, server,
-    serverLogging, serverIdLoader);
+    serverLogging, serverIdLoader, authenticationCache);
 
   @Before
   public void setUp() throws Exception {
@@ -135,6 +140,20 @@ public class SonarQubeMonitorTest {
     assertThat(attributes).containsEntry("Logs Level", "DEBUG");
   }
 
+  @Test
+  public void attributes_contain_hits_and_misses_of_authentication_cache() throws Exception {
+    UserDto user = newUserDto();
+    authenticationCache.getUserByToken("token", token -> user);
+    authenticationCache.getUserByToken("token", token -> user);
+    authenticationCache.getUserBySession("session", () -> java.util.Optional.of(user));
+
+    Map<String, Object> attributes = underTest.attributes();
+    assertThat(attributes).containsEntry("Token Authentication Cache Hits", 1L);
+    assertThat(attributes).containsEntry("Token Authentication Cache Misses", 1L);
+    assertThat(attributes).containsEntry("Session Authentication Cache Hits", 0L);
+    assertThat(attributes).containsEntry("Session Authentication Cache Misses", 1L);
+  }
+
   @Test
   public void get_realm() throws Exception {
     SecurityRealm realm = mock(SecurityRealm.class);
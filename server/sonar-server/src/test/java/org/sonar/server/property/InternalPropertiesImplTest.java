@@ -20,6 +20,7 @@
 package org.sonar.server.property;
 
 import java.util.Optional;
+import org.apache.ibatis.exceptions.PersistenceException;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -29,7 +30,11 @@ import org.sonar.db.DbSession;
 import org.sonar.db.property.InternalPropertiesDao;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -106,13 +111,52 @@ public class InternalPropertiesImplTest {
   }
 
   @Test
-  public void write_calls_dao_save_when_value_is_neither_null_nor_empty() {
+  public void write_calls_dao_update_when_value_is_neither_null_nor_empty() {
+    when(internalPropertiesDao.update(dbSession, SOME_KEY, SOME_VALUE)).thenReturn(true);
+
+    underTest.write(SOME_KEY, SOME_VALUE);
+
+    verify(internalPropertiesDao).update(dbSession, SOME_KEY, SOME_VALUE);
+    verify(internalPropertiesDao, never()).save(dbSession, SOME_KEY, SOME_VALUE);
+    verify(dbSession).commit();
+  }
+
+  @Test
+  public void write_calls_dao_save_when_value_is_neither_null_nor_empty_and_property_does_not_exist() {
+    when(internalPropertiesDao.update(dbSession, SOME_KEY, SOME_VALUE)).thenReturn(false);
+
     underTest.write(SOME_KEY, SOME_VALUE);
 
     verify(internalPropertiesDao).save(dbSession, SOME_KEY, SOME_VALUE);
     verify(dbSession).commit();
   }
 
+  @Test
+  public void write_updates_property_inserted_concurrently() {
+    when(internalPropertiesDao.update(dbSession, SOME_KEY, SOME_VALUE)).thenReturn(false, true);
+    doThrow(new PersistenceException("duplicate key")).when(internalPropertiesDao).save(dbSession, SOME_KEY, SOME_VALUE);
+
+    underTest.write(SOME_KEY, SOME_VALUE);
+
+    verify(internalPropertiesDao, times(2)).update(dbSession, SOME_KEY, SOME_VALUE);
+    verify(dbSession).commit();
+  }
+
+  @Test
+  public void write_fails_if_insert_fails_and_property_still_does_not_exist() {
+    PersistenceException failure = new PersistenceException("db failure");
+    when(internalPropertiesDao.update(dbSession, SOME_KEY, SOME_VALUE)).thenReturn(false);
+    doThrow(failure).when(internalPropertiesDao).save(dbSession, SOME_KEY, SOME_VALUE);
+
+    try {
+      underTest.write(SOME_KEY, SOME_VALUE);
+      fail("PersistenceException expected");
+    } catch (PersistenceException e) {
+      assertThat(e).isSameAs(failure);
+    }
+    verify(dbSession, never()).commit();
+  }
+
   private void expectKeyNullOrEmptyIAE() {
     expectedException.expect(IllegalArgumentException.class);
     expectedException.expectMessage("key can't be null nor empty");
@@ -30,6 +30,7 @@ import org.sonar.db.DbTester;
 import org.sonar.db.user.UserDao;
 import org.sonar.db.user.UserDto;
 import org.sonar.db.user.UserTesting;
+import org.sonar.server.authentication.AuthenticationCache;
 import org.sonar.server.exceptions.ForbiddenException;
 import org.sonar.server.exceptions.NotFoundException;
 import org.sonar.server.tester.UserSessionRule;
@@ -37,6 +38,7 @@ import org.sonar.server.ws.TestRequest;
 import org.sonar.server.ws.WsActionTester;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
 
 public class SetRootActionTest {
   private static final String SOME_LOGIN = "johndoe";
@@ -50,7 +52,7 @@ public class SetRootActionTest {
 
   private UserDao userDao = dbTester.getDbClient().userDao();
   private DbSession dbSession = dbTester.getSession();
-  private SetRootAction underTest = new SetRootAction(userSessionRule, dbTester.getDbClient());
+  private SetRootAction underTest = new SetRootAction(userSessionRule, dbTester.getDbClient(), mock(AuthenticationCache.class));
   private WsActionTester wsTester = new WsActionTester(underTest);
 
   @Test
@@ -29,6 +29,7 @@ import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
 import org.sonar.db.user.UserDao;
 import org.sonar.db.user.UserDto;
+import org.sonar.server.authentication.AuthenticationCache;
 import org.sonar.server.exceptions.BadRequestException;
 import org.sonar.server.exceptions.ForbiddenException;
 import org.sonar.server.exceptions.NotFoundException;
@@ -37,6 +38,7 @@ import org.sonar.server.ws.TestRequest;
 import org.sonar.server.ws.WsActionTester;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
 import static org.sonar.db.user.UserTesting.newUserDto;
 
 public class UnsetRootActionTest {
@@ -51,7 +53,7 @@ public class UnsetRootActionTest {
 
   private UserDao userDao = dbTester.getDbClient().userDao();
   private DbSession dbSession = dbTester.getSession();
-  private UnsetRootAction underTest = new UnsetRootAction(userSessionRule, dbTester.getDbClient());
+  private UnsetRootAction underTest = new UnsetRootAction(userSessionRule, dbTester.getDbClient(), mock(AuthenticationCache.class));
   private WsActionTester wsTester = new WsActionTester(underTest);
 
   @Test
@@ -40,6 +40,7 @@ import org.sonar.db.rule.RuleDefinitionDto;
 import org.sonar.db.rule.RuleDto;
 import org.sonar.db.rule.RuleParamDto;
 import org.sonar.db.rule.RuleRepositoryDto;
+import org.sonar.server.cache.ReferenceDataCache;
 import org.sonar.server.es.EsTester;
 import org.sonar.server.es.SearchOptions;
 import org.sonar.server.organization.TestDefaultOrganizationProvider;
@@ -56,6 +57,7 @@ import static java.util.Arrays.asList;
 import static org.apache.commons.lang.RandomStringUtils.randomAlphanumeric;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.sonar.api.rule.Severity.BLOCKER;
 import static org.sonar.api.rule.Severity.INFO;
@@ -78,6 +80,7 @@ public class RegisterRulesTest {
   public EsTester esTester = new EsTester(new RuleIndexDefinition(new MapSettings()));
 
   private RuleActivator ruleActivator = mock(RuleActivator.class);
+  private ReferenceDataCache referenceDataCache = mock(ReferenceDataCache.class);
   private DbClient dbClient = dbTester.getDbClient();
   private RuleIndexer ruleIndexer;
   private ActiveRuleIndexer activeRuleIndexer;
@@ -123,6 +126,9 @@ public class RegisterRulesTest {
 
     // verify repositories
     assertThat(dbClient.ruleRepositoryDao().selectAll(dbTester.getSession())).extracting(RuleRepositoryDto::getKey).containsOnly("fake");
+
+    // verify that rules cached by other nodes are invalidated
+    verify(referenceDataCache).invalidateRules();
   }
   @Test
   public void insert_then_remove_rule() {
@@ -457,7 +463,8 @@ public class RegisterRulesTest {
     Languages languages = mock(Languages.class);
     when(languages.get("java")).thenReturn(mock(Language.class));
 
-    RegisterRules task = new RegisterRules(loader, ruleActivator, dbClient, ruleIndexer, activeRuleIndexer, languages, system, TestDefaultOrganizationProvider.from(dbTester));
+    RegisterRules task = new RegisterRules(loader, ruleActivator, dbClient, ruleIndexer, activeRuleIndexer, languages, system, TestDefaultOrganizationProvider.from(dbTester),
+      referenceDataCache);
     task.start();
     // Execute a commit to refresh session state as the task is using its own session
     dbTester.getSession().commit();
@@ -29,9 +29,12 @@ import org.sonar.api.measures.Metrics;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbTester;
+import org.sonar.server.cache.ReferenceDataCache;
 
 import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 
 
 public class RegisterMetricsTest {
@@ -40,6 +43,7 @@ public class RegisterMetricsTest {
   public DbTester dbTester = DbTester.create(System2.INSTANCE);
 
   DbClient dbClient = dbTester.getDbClient();
+  ReferenceDataCache referenceDataCache = mock(ReferenceDataCache.class);
 
   /**
    * Insert new metrics, including custom metrics
@@ -60,7 +64,7 @@ public class RegisterMetricsTest {
       .setUserManaged(true)
       .create();
 
-    RegisterMetrics register = new RegisterMetrics(dbClient);
+    RegisterMetrics register = new RegisterMetrics(dbClient, referenceDataCache);
     register.register(asList(m1, custom));
     dbTester.assertDbUnit(getClass(), "insert_new_metrics-result.xml", "metrics");
   }
@@ -72,7 +76,7 @@ public class RegisterMetricsTest {
   public void update_non_custom_metrics() {
     dbTester.prepareDbUnit(getClass(), "update_non_custom_metrics.xml");
 
-    RegisterMetrics register = new RegisterMetrics(dbClient);
+    RegisterMetrics register = new RegisterMetrics(dbClient, referenceDataCache);
     Metric m1 = new Metric.Builder("m1", "New name", Metric.ValueType.FLOAT)
       .setDescription("new description")
       .setDirection(-1)
@@ -95,7 +99,7 @@ public class RegisterMetricsTest {
   public void disable_undefined_metrics() {
     dbTester.prepareDbUnit(getClass(), "disable_undefined_metrics.xml");
 
-    RegisterMetrics register = new RegisterMetrics(dbClient);
+    RegisterMetrics register = new RegisterMetrics(dbClient, referenceDataCache);
     register.register(Collections.<Metric>emptyList());
 
     dbTester.assertDbUnit(getClass(), "disable_undefined_metrics-result.xml", "metrics");
@@ -105,7 +109,7 @@ public class RegisterMetricsTest {
   public void enable_disabled_metrics() {
     dbTester.prepareDbUnit(getClass(), "enable_disabled_metric.xml");
 
-    RegisterMetrics register = new RegisterMetrics(dbClient);
+    RegisterMetrics register = new RegisterMetrics(dbClient, referenceDataCache);
     Metric m1 = new Metric.Builder("m1", "New name", Metric.ValueType.FLOAT)
         .setDescription("new description")
         .setDirection(-1)
@@ -121,25 +125,32 @@ public class RegisterMetricsTest {
 
   @Test
   public void insert_core_metrics() {
-    RegisterMetrics register = new RegisterMetrics(dbClient);
+    RegisterMetrics register = new RegisterMetrics(dbClient, referenceDataCache);
     register.start();
 
     assertThat(dbTester.countRowsOfTable("metrics")).isEqualTo(CoreMetrics.getMetrics().size());
   }
 
+  @Test
+  public void invalidate_cached_metrics() {
+    new RegisterMetrics(dbClient, referenceDataCache).start();
+
+    verify(referenceDataCache).invalidateMetrics();
+  }
+
   @Test(expected = IllegalStateException.class)
   public void fail_if_duplicated_plugin_metrics() {
     Metrics plugin1 = new TestMetrics(new Metric.Builder("m1", "In first plugin", Metric.ValueType.FLOAT).create());
     Metrics plugin2 = new TestMetrics(new Metric.Builder("m1", "In second plugin", Metric.ValueType.FLOAT).create());
 
-    new RegisterMetrics(dbClient, new Metrics[] {plugin1, plugin2}).start();
+    new RegisterMetrics(dbClient, referenceDataCache, new Metrics[] {plugin1, plugin2}).start();
   }
 
   @Test(expected = IllegalStateException.class)
   public void fail_if_plugin_duplicates_core_metric() {
     Metrics plugin = new TestMetrics(new Metric.Builder("ncloc", "In plugin", Metric.ValueType.FLOAT).create());
 
-    new RegisterMetrics(dbClient, new Metrics[] {plugin}).start();
+    new RegisterMetrics(dbClient, referenceDataCache, new Metrics[] {plugin}).start();
   }
 
   private class TestMetrics implements Metrics {
@@ -26,6 +26,7 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.sonar.api.utils.System2;
 import org.sonar.api.web.UserRole;
+import org.sonar.core.util.UuidFactoryFast;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbTester;
 import org.sonar.db.component.ComponentDto;
@@ -34,9 +35,11 @@ import org.sonar.db.organization.OrganizationDto;
 import org.sonar.db.permission.OrganizationPermission;
 import org.sonar.db.user.GroupDto;
 import org.sonar.db.user.UserDto;
+import org.sonar.server.cache.PermissionCache;
 import org.sonar.server.exceptions.ForbiddenException;
 import org.sonar.server.organization.TestDefaultOrganizationProvider;
 import org.sonar.server.organization.TestOrganizationFlags;
+import org.sonar.server.property.InternalPropertiesImpl;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.sonar.core.permission.GlobalPermissions.PROVISIONING;
@@ -72,6 +75,7 @@ public class ServerUserSessionTest {
   private UserDto userDto = newUserDto().setLogin(LOGIN);
   private TestOrganizationFlags organizationFlags = TestOrganizationFlags.standalone();
   private TestDefaultOrganizationProvider defaultOrganizationProvider = TestDefaultOrganizationProvider.from(db);
+  private PermissionCache permissionCache = new PermissionCache(new InternalPropertiesImpl(dbClient), UuidFactoryFast.getInstance(), System2.INSTANCE);
   private OrganizationDto organization;
   private ComponentDto project;
 
@@ -405,8 +409,38 @@ public class ServerUserSessionTest {
     session.checkIsSystemAdministrator();
   }
 
+  @Test
+  public void permissions_are_shared_by_sessions_of_user_until_invalidation() {
+    db.users().insertPermissionOnUser(organization, userDto, PROVISION_PROJECTS);
+    db.users().insertProjectPermissionOnUser(userDto, UserRole.USER, project);
+    assertThat(newUserSession(userDto).hasPermission(PROVISION_PROJECTS, organization.getUuid())).isTrue();
+    assertThat(newUserSession(userDto).hasComponentPermission(UserRole.USER, project)).isTrue();
+
+    db.users().deletePermissionFromUser(organization, userDto, PROVISION_PROJECTS);
+    db.users().deletePermissionFromUser(project, userDto, UserRole.USER);
+    assertThat(newUserSession(userDto).hasPermission(PROVISION_PROJECTS, organization.getUuid())).isTrue();
+    assertThat(newUserSession(userDto).hasComponentPermission(UserRole.USER, project)).isTrue();
+
+    permissionCache.invalidateUser(userDto.getId());
+    assertThat(newUserSession(userDto).hasPermission(PROVISION_PROJECTS, organization.getUuid())).isFalse();
+    assertThat(newUserSession(userDto).hasComponentPermission(UserRole.USER, project)).isFalse();
+  }
+
+  @Test
+  public void permissions_of_anonymous_are_reloaded_when_all_users_are_invalidated() {
+    db.users().insertPermissionOnAnyone(organization, SCAN);
+    assertThat(newAnonymousSession().hasPermission(SCAN, organization.getUuid())).isTrue();
+
+    dbClient.groupPermissionDao().delete(db.getSession(), SCAN.getKey(), organization.getUuid(), null, null);
+    db.commit();
+    assertThat(newAnonymousSession().hasPermission(SCAN, organization.getUuid())).isTrue();
+
+    permissionCache.invalidateAll();
+    assertThat(newAnonymousSession().hasPermission(SCAN, organization.getUuid())).isFalse();
+  }
+
   private ServerUserSession newUserSession(@Nullable UserDto userDto) {
-    return new ServerUserSession(dbClient, organizationFlags, defaultOrganizationProvider, userDto);
+    return new ServerUserSession(dbClient, organizationFlags, defaultOrganizationProvider, permissionCache, userDto);
   }
 
   private ServerUserSession newAnonymousSession() {
@@ -27,6 +27,8 @@ import org.sonar.api.config.MapSettings;
 import org.sonar.api.utils.System2;
 import org.sonar.db.DbTester;
 import org.sonar.db.user.GroupTesting;
+import org.sonar.server.authentication.AuthenticationCache;
+import org.sonar.server.cache.ReferenceDataCache;
 import org.sonar.server.es.EsTester;
 import org.sonar.server.exceptions.BadRequestException;
 import org.sonar.server.exceptions.ForbiddenException;
@@ -60,7 +62,7 @@ public class ChangePasswordActionTest {
     new UserIndexer(db.getDbClient(), esTester.client()),
     System2.INSTANCE,
     TestDefaultOrganizationProvider.from(db),
-    mock(OrganizationCreation.class));
+    mock(OrganizationCreation.class), mock(ReferenceDataCache.class), mock(AuthenticationCache.class));
 
   private WsTester tester = new WsTester(new UsersWs(new ChangePasswordAction(db.getDbClient(), userUpdater, userSessionRule)));
 
@@ -19,15 +19,19 @@
  */
 package org.sonar.server.util.cache;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.sonar.api.utils.System2;
 import org.sonar.core.util.CloseableIterator;
 
-import java.io.ObjectOutputStream;
-import java.io.Serializable;
-
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.fail;
 
@@ -52,6 +56,62 @@ public class DiskCacheTest {
     }
   }
 
+  @Test
+  public void write_and_read_with_codec() throws Exception {
+    verifyWriteAndRead(new DiskCache<>(temp.newFile(), System2.INSTANCE, new StringCodec(), false));
+  }
+
+  @Test
+  public void write_and_read_compressed_with_codec() throws Exception {
+    verifyWriteAndRead(new DiskCache<>(temp.newFile(), System2.INSTANCE, new StringCodec(), true));
+  }
+
+  private static void verifyWriteAndRead(DiskCache<String> cache) {
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      assertThat(traverse).isEmpty();
+    }
+
+    cache.newAppender()
+      .append("foo")
+      .append("bar")
+      .close();
+    // appender without objects
+    cache.newAppender().close();
+    cache.newAppender()
+      .append("baz")
+      .close();
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      assertThat(traverse).containsExactly("foo", "bar", "baz");
+    }
+  }
+
+  @Test
+  public void compression_requires_a_codec() throws Exception {
+    try {
+      new DiskCache<String>(temp.newFile(), System2.INSTANCE, null, true);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertThat(e).hasMessage("Compression requires a codec");
+    }
+  }
+
+  @Test
+  public void fail_to_traverse_truncated_file() throws Exception {
+    File file = temp.newFile();
+    DiskCache<String> cache = new DiskCache<>(file, System2.INSTANCE, new StringCodec(), false);
+    cache.newAppender().append("foo").close();
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+      randomAccessFile.setLength(file.length() - 1);
+    }
+
+    try (CloseableIterator<String> traverse = cache.traverse()) {
+      traverse.next();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Unexpected end of file");
+    }
+  }
+
   @Test
   public void fail_if_file_is_not_writable() throws Exception {
     try {
@@ -77,4 +137,16 @@ public class DiskCacheTest {
       assertThat(e).hasMessage("expected error");
     }
   }
+
+  private static class StringCodec implements DiskCacheCodec<String> {
+    @Override
+    public void write(String object, DataOutput output) throws IOException {
+      output.writeUTF(object);
+    }
+
+    @Override
+    public String read(DataInput input) throws IOException {
+      return input.readUTF();
+    }
+  }
 }
@@ -89,6 +89,14 @@ public class ServletRequestTest {
     assertThat(underTest.readParam("param")).isEqualTo("value");
   }
 
+  @Test
+  public void read_header_from_source() {
+    when(source.getHeader("If-None-Match")).thenReturn("\"abc\"");
+
+    assertThat(underTest.header("If-None-Match")).contains("\"abc\"");
+    assertThat(underTest.header("Unknown")).isEmpty();
+  }
+
   @Test
   public void read_multi_param_from_source_with_values() {
     when(source.getParameterValues("param")).thenReturn(new String[]{"firstValue", "secondValue", "thirdValue"});
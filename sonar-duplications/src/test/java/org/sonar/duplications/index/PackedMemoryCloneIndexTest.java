@@ -28,6 +28,10 @@ import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.is;
@@ -110,6 +114,34 @@ public class PackedMemoryCloneIndexTest {
     
   }
 
+  /**
+   * Given: sorted index.
+   * Expected: queries by hash from several threads should see the same blocks.
+   */
+  @Test
+  public void should_query_by_hash_concurrently() throws Exception {
+    for (int i = 0; i < 1000; i++) {
+      index.insert(newBlock("a", i % 100 - 50));
+      index.insert(newBlock("b" + i, i % 100 - 50));
+    }
+    assertThat(index.noResources()).isEqualTo(1001);
+
+    ExecutorService executorService = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Integer>> results = new ArrayList<>();
+      for (int i = 0; i < 1000; i++) {
+        long hash = i % 100 - 50;
+        results.add(executorService.submit(() -> index.getBySequenceHash(new ByteArray(hash)).size()));
+      }
+      for (Future<Integer> result : results) {
+        assertThat(result.get()).isEqualTo(20);
+      }
+    } finally {
+      executorService.shutdown();
+    }
+    assertThat(index.getBySequenceHash(new ByteArray(100L))).isEmpty();
+  }
+
   /**
    * Given: index with initial capacity 1.
    * Expected: size and capacity should be increased after insertion of two blocks.
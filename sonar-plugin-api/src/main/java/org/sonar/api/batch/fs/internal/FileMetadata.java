@@ -25,18 +25,10 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
-import java.nio.ByteBuffer;
-import java.nio.CharBuffer;
-import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
-import java.nio.charset.CharsetEncoder;
-import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.apache.commons.codec.binary.Hex;
-import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.ByteOrderMark;
 import org.apache.commons.io.input.BOMInputStream;
 import org.sonar.api.CoreProperties;
@@ -72,198 +64,129 @@ public class FileMetadata {
     }
   }
 
-  private static class LineCounter extends CharHandler {
+  /**
+   * Computes lines, hash and line offsets in a single pass over the content.
+   */
+  private static class MetadataComputer extends LineScanner {
+    private final File file;
+    private final Charset encoding;
+    private final Utf8Digest fileDigest = new Utf8Digest();
+    private final IntArrayList originalLineOffsets = new IntArrayList();
     private int lines = 1;
     private int nonBlankLines = 0;
     private boolean blankLine = true;
-    boolean alreadyLoggedInvalidCharacter = false;
-    private final File file;
-    private final Charset encoding;
+    private boolean alreadyLoggedInvalidCharacter = false;
+    private long lastValidOffset = 0;
 
-    LineCounter(File file, Charset encoding) {
+    MetadataComputer(File file, Charset encoding) {
       this.file = file;
       this.encoding = encoding;
+      originalLineOffsets.add(0);
     }
 
     @Override
-    protected void handleAll(char c) {
-      if (!alreadyLoggedInvalidCharacter && c == '\ufffd') {
-        LOG.warn("Invalid character encountered in file {} at line {} for encoding {}. Please fix file content or configure the encoding to be used using property '{}'.", file,
-          lines, encoding, CoreProperties.ENCODING_PROPERTY);
-        alreadyLoggedInvalidCharacter = true;
+    protected void handleLine(char[] chars, int from, int to) {
+      if (blankLine) {
+        blankLine = isBlank(chars, from, to);
+      }
+      if (!alreadyLoggedInvalidCharacter) {
+        logInvalidCharacter(chars, from, to);
+      }
+      fileDigest.update(chars, from, to);
+    }
+
+    private void logInvalidCharacter(char[] chars, int from, int to) {
+      for (int i = from; i < to; i++) {
+        if (chars[i] == '\ufffd') {
+          LOG.warn("Invalid character encountered in file {} at line {} for encoding {}. Please fix file content or configure the encoding to be used using property '{}'.", file,
+            lines, encoding, CoreProperties.ENCODING_PROPERTY);
+          alreadyLoggedInvalidCharacter = true;
+          return;
+        }
       }
     }
 
     @Override
-    protected void newLine() {
+    protected void newLine(long offset) {
       lines++;
       if (!blankLine) {
         nonBlankLines++;
       }
       blankLine = true;
+      fileDigest.update(LINE_FEED);
+      originalLineOffsets.add(checkSize(offset));
     }
 
     @Override
-    protected void handleIgnoreEoL(char c) {
-      if (!Character.isWhitespace(c)) {
-        blankLine = false;
-      }
-    }
-
-    @Override
-    protected void eof() {
+    protected void eof(long length) {
       if (!blankLine) {
         nonBlankLines++;
       }
+      lastValidOffset = length;
     }
 
-    public int lines() {
-      return lines;
-    }
-
-    public int nonBlankLines() {
-      return nonBlankLines;
+    Metadata toMetadata() {
+      return new Metadata(lines, nonBlankLines, Hex.encodeHexString(fileDigest.digest()), originalLineOffsets.trimAndGet(), checkSize(lastValidOffset));
     }
 
-  }
-
-  private static class FileHashComputer extends CharHandler {
-    private MessageDigest globalMd5Digest = DigestUtils.getMd5Digest();
-    private StringBuilder sb = new StringBuilder();
-    private final CharsetEncoder encoder;
-    private final File file;
-
-    public FileHashComputer(File f) {
-      encoder = StandardCharsets.UTF_8.newEncoder()
-        .onMalformedInput(CodingErrorAction.REPLACE)
-        .onUnmappableCharacter(CodingErrorAction.REPLACE);
-      file = f;
-    }
-
-    @Override
-    protected void handleIgnoreEoL(char c) {
-      sb.append(c);
-    }
-
-    @Override
-    protected void newLine() {
-      sb.append(LINE_FEED);
-      processBuffer();
-      sb.setLength(0);
-    }
-
-    @Override
-    protected void eof() {
-      if (sb.length() > 0) {
-        processBuffer();
-      }
-    }
-
-    private void processBuffer() {
-      try {
-        if (sb.length() > 0) {
-          ByteBuffer encoded = encoder.encode(CharBuffer.wrap(sb));
-          globalMd5Digest.update(encoded.array(), 0, encoded.limit());
+    private static boolean isBlank(char[] chars, int from, int to) {
+      for (int i = from; i < to; i++) {
+        if (!Character.isWhitespace(chars[i])) {
+          return false;
         }
-      } catch (CharacterCodingException e) {
-        throw new IllegalStateException("Error encoding line hash in file: " + file.getAbsolutePath(), e);
       }
+      return true;
     }
 
-    @CheckForNull
-    public String getHash() {
-      return Hex.encodeHexString(globalMd5Digest.digest());
+    private static int checkSize(long offset) {
+      if (offset > Integer.MAX_VALUE) {
+        throw new IllegalStateException("File is too big: " + offset);
+      }
+      return (int) offset;
     }
   }
 
-  private static class LineHashComputer extends CharHandler {
-    private final MessageDigest lineMd5Digest = DigestUtils.getMd5Digest();
-    private final CharsetEncoder encoder;
-    private final StringBuilder sb = new StringBuilder();
+  /**
+   * Computes the hash of each line, blank chars being ignored.
+   */
+  private static class LineHashesComputer extends LineScanner {
+    private final Utf8Digest lineDigest = new Utf8Digest();
     private final LineHashConsumer consumer;
-    private final File file;
+    private boolean blankLine = true;
     private int line = 1;
 
-    public LineHashComputer(LineHashConsumer consumer, File f) {
+    LineHashesComputer(LineHashConsumer consumer) {
       this.consumer = consumer;
-      this.file = f;
-      this.encoder = StandardCharsets.UTF_8.newEncoder()
-        .onMalformedInput(CodingErrorAction.REPLACE)
-        .onUnmappableCharacter(CodingErrorAction.REPLACE);
-    }
-
-    @Override
-    protected void handleIgnoreEoL(char c) {
-      if (!Character.isWhitespace(c)) {
-        sb.append(c);
-      }
     }
 
     @Override
-    protected void newLine() {
-      processBuffer();
-      sb.setLength(0);
-      line++;
-    }
-
-    @Override
-    protected void eof() {
-      if (this.line > 0) {
-        processBuffer();
-      }
-    }
-
-    private void processBuffer() {
-      try {
-        if (sb.length() > 0) {
-          ByteBuffer encoded = encoder.encode(CharBuffer.wrap(sb));
-          lineMd5Digest.update(encoded.array(), 0, encoded.limit());
-          consumer.consume(line, lineMd5Digest.digest());
+    protected void handleLine(char[] chars, int from, int to) {
+      for (int i = from; i < to; i++) {
+        char c = chars[i];
+        if (!Character.isWhitespace(c)) {
+          lineDigest.update(c);
+          blankLine = false;
         }
-      } catch (CharacterCodingException e) {
-        throw new IllegalStateException("Error encoding line hash in file: " + file.getAbsolutePath(), e);
       }
     }
-  }
-
-  private static class LineOffsetCounter extends CharHandler {
-    private long currentOriginalOffset = 0;
-    private IntArrayList originalLineOffsets = new IntArrayList();
-    private long lastValidOffset = 0;
-
-    public LineOffsetCounter() {
-      originalLineOffsets.add(0);
-    }
 
     @Override
-    protected void handleAll(char c) {
-      currentOriginalOffset++;
-    }
-
-    @Override
-    protected void newLine() {
-      if (currentOriginalOffset > Integer.MAX_VALUE) {
-        throw new IllegalStateException("File is too big: " + currentOriginalOffset);
-      }
-      originalLineOffsets.add((int) currentOriginalOffset);
+    protected void newLine(long offset) {
+      processLine();
+      line++;
     }
 
     @Override
-    protected void eof() {
-      lastValidOffset = currentOriginalOffset;
+    protected void eof(long length) {
+      processLine();
     }
 
-    public int[] getOriginalLineOffsets() {
-      return originalLineOffsets.trimAndGet();
-    }
-
-    public int getLastValidOffset() {
-      if (lastValidOffset > Integer.MAX_VALUE) {
-        throw new IllegalStateException("File is too big: " + lastValidOffset);
+    private void processLine() {
+      if (!blankLine) {
+        consumer.consume(line, lineDigest.digest());
+        blankLine = true;
       }
-      return (int) lastValidOffset;
     }
-
   }
 
   /**
@@ -271,28 +194,40 @@ public class FileMetadata {
    * Maximum performance is needed.
    */
   public Metadata readMetadata(File file, Charset encoding) {
-    LineCounter lineCounter = new LineCounter(file, encoding);
-    FileHashComputer fileHashComputer = new FileHashComputer(file);
-    LineOffsetCounter lineOffsetCounter = new LineOffsetCounter();
-    readFile(file, encoding, lineCounter, fileHashComputer, lineOffsetCounter);
-    return new Metadata(lineCounter.lines(), lineCounter.nonBlankLines(), fileHashComputer.getHash(), lineOffsetCounter.getOriginalLineOffsets(),
-      lineOffsetCounter.getLastValidOffset());
+    MetadataComputer computer = new MetadataComputer(file, encoding);
+    scanFile(file, encoding, computer);
+    return computer.toMetadata();
   }
 
   /**
    * For testing purpose
    */
   public Metadata readMetadata(Reader reader) {
-    LineCounter lineCounter = new LineCounter(new File("fromString"), StandardCharsets.UTF_16);
-    FileHashComputer fileHashComputer = new FileHashComputer(new File("fromString"));
-    LineOffsetCounter lineOffsetCounter = new LineOffsetCounter();
+    return readMetadata(reader, new File("fromString"), StandardCharsets.UTF_16);
+  }
+
+  /**
+   * Same as {@link #readMetadata(File, Charset)}, but on the content of the file which is already decoded
+   * and does not start with a BOM. File and encoding are used only in logs.
+   */
+  public Metadata readMetadata(Reader reader, File file, Charset encoding) {
+    MetadataComputer computer = new MetadataComputer(file, encoding);
     try {
-      read(reader, lineCounter, fileHashComputer, lineOffsetCounter);
+      computer.scan(reader);
     } catch (IOException e) {
-      throw new IllegalStateException("Should never occurs", e);
+      throw new IllegalStateException(String.format("Fail to read file '%s' with encoding '%s'", file.getAbsolutePath(), encoding), e);
+    }
+    return computer.toMetadata();
+  }
+
+  private static void scanFile(File file, Charset encoding, LineScanner scanner) {
+    try (BOMInputStream bomIn = new BOMInputStream(new FileInputStream(file),
+      ByteOrderMark.UTF_8, ByteOrderMark.UTF_16LE, ByteOrderMark.UTF_16BE, ByteOrderMark.UTF_32LE, ByteOrderMark.UTF_32BE);
+      Reader reader = new InputStreamReader(bomIn, encoding)) {
+      scanner.scan(reader);
+    } catch (IOException e) {
+      throw new IllegalStateException(String.format("Fail to read file '%s' with encoding '%s'", file.getAbsolutePath(), encoding), e);
     }
-    return new Metadata(lineCounter.lines(), lineCounter.nonBlankLines(), fileHashComputer.getHash(), lineOffsetCounter.getOriginalLineOffsets(),
-      lineOffsetCounter.getLastValidOffset());
   }
 
   public static void readFile(File file, Charset encoding, CharHandler... handlers) {
@@ -363,6 +298,6 @@ public class FileMetadata {
    * Compute a MD5 hash of each line of the file after removing of all blank chars
    */
   public static void computeLineHashesForIssueTracking(InputFile f, LineHashConsumer consumer) {
-    readFile(f.file(), f.charset(), new LineHashComputer(consumer, f.file()));
+    scanFile(f.file(), f.charset(), new LineHashesComputer(consumer));
   }
 }
@@ -0,0 +1,98 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.api.batch.fs.internal;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads chars by blocks and splits them into lines, so that subclasses are called once per line instead of
+ * once per char. Lines end with "\n", "\r\n" or "\r", like in {@link FileMetadata#readFile(java.io.File, java.nio.charset.Charset, FileMetadata.CharHandler...)}.
+ */
+abstract class LineScanner {
+
+  static final int BUFFER_SIZE = 16 * 1024;
+
+  private static final char LINE_FEED = '\n';
+  private static final char CARRIAGE_RETURN = '\r';
+
+  /**
+   * Called with the chars of the current line, line ends excluded. A line can be split in several calls
+   * when it overlaps two blocks.
+   */
+  protected abstract void handleLine(char[] chars, int from, int to);
+
+  /**
+   * Called at the end of each line.
+   *
+   * @param offset offset of the first char of the next line
+   */
+  protected abstract void newLine(long offset);
+
+  /**
+   * @param length total number of chars, line ends included
+   */
+  protected abstract void eof(long length);
+
+  final void scan(Reader reader) throws IOException {
+    char[] chars = new char[BUFFER_SIZE];
+    long blockOffset = 0;
+    // a "\r" ends a block, the next block may start with "\n"
+    boolean afterCR = false;
+    int read;
+    while ((read = reader.read(chars, 0, BUFFER_SIZE)) != -1) {
+      int lineStart = 0;
+      if (afterCR && read > 0) {
+        if (chars[0] == LINE_FEED) {
+          lineStart = 1;
+        }
+        newLine(blockOffset + lineStart);
+        afterCR = false;
+      }
+      for (int i = lineStart; i < read; i++) {
+        char c = chars[i];
+        if (c > CARRIAGE_RETURN || (c != LINE_FEED && c != CARRIAGE_RETURN)) {
+          continue;
+        }
+        handleLine(chars, lineStart, i);
+        if (c == CARRIAGE_RETURN) {
+          if (i + 1 == read) {
+            afterCR = true;
+            lineStart = read;
+            break;
+          }
+          if (chars[i + 1] == LINE_FEED) {
+            i++;
+          }
+        }
+        lineStart = i + 1;
+        newLine(blockOffset + lineStart);
+      }
+      if (lineStart < read) {
+        handleLine(chars, lineStart, read);
+      }
+      blockOffset += read;
+    }
+    if (afterCR) {
+      newLine(blockOffset);
+    }
+    eof(blockOffset);
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.api.batch.fs.internal;
+
+import java.security.MessageDigest;
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * MD5 digest of chars encoded in UTF-8. Chars are encoded in a reused buffer, without intermediate
+ * {@link String} nor {@link java.nio.ByteBuffer}. Unpaired surrogates are replaced by '?', as
+ * {@link java.nio.charset.CharsetEncoder} does with {@link java.nio.charset.CodingErrorAction#REPLACE}.
+ */
+class Utf8Digest {
+
+  private static final int BUFFER_SIZE = 8 * 1024;
+  // the longest encoding of a char, or of a surrogate pair, is 4 bytes
+  private static final int MAX_BYTES_PER_CHAR = 4;
+  private static final byte REPLACEMENT = '?';
+
+  private final MessageDigest digest = DigestUtils.getMd5Digest();
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+  private int length = 0;
+  private boolean pendingHighSurrogate = false;
+  private char highSurrogate;
+
+  void update(char[] chars, int from, int to) {
+    for (int i = from; i < to; i++) {
+      char c = chars[i];
+      if (c < 0x80 && !pendingHighSurrogate) {
+        if (length == BUFFER_SIZE) {
+          flushBuffer();
+        }
+        buffer[length] = (byte) c;
+        length++;
+      } else {
+        update(c);
+      }
+    }
+  }
+
+  void update(char c) {
+    if (length > BUFFER_SIZE - MAX_BYTES_PER_CHAR) {
+      flushBuffer();
+    }
+    if (pendingHighSurrogate) {
+      pendingHighSurrogate = false;
+      if (Character.isLowSurrogate(c)) {
+        writeCodePoint(Character.toCodePoint(highSurrogate, c));
+        return;
+      }
+      buffer[length] = REPLACEMENT;
+      length++;
+    }
+    if (c < 0x80) {
+      buffer[length] = (byte) c;
+      length++;
+    } else if (c < 0x800) {
+      buffer[length] = (byte) (0xC0 | (c >> 6));
+      buffer[length + 1] = (byte) (0x80 | (c & 0x3F));
+      length += 2;
+    } else if (Character.isHighSurrogate(c)) {
+      pendingHighSurrogate = true;
+      highSurrogate = c;
+    } else if (Character.isLowSurrogate(c)) {
+      buffer[length] = REPLACEMENT;
+      length++;
+    } else {
+      buffer[length] = (byte) (0xE0 | (c >> 12));
+      buffer[length + 1] = (byte) (0x80 | ((c >> 6) & 0x3F));
+      buffer[length + 2] = (byte) (0x80 | (c & 0x3F));
+      length += 3;
+    }
+  }
+
+  private void writeCodePoint(int codePoint) {
+    buffer[length] = (byte) (0xF0 | (codePoint >> 18));
+    buffer[length + 1] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+    buffer[length + 2] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+    buffer[length + 3] = (byte) (0x80 | (codePoint & 0x3F));
+    length += 4;
+  }
+
+  /**
+   * Completes the digest and resets it, so that it can be reused.
+   */
+  byte[] digest() {
+    if (pendingHighSurrogate) {
+      pendingHighSurrogate = false;
+      if (length == BUFFER_SIZE) {
+        flushBuffer();
+      }
+      buffer[length] = REPLACEMENT;
+      length++;
+    }
+    flushBuffer();
+    return digest.digest();
+  }
+
+  private void flushBuffer() {
+    digest.update(buffer, 0, length);
+    length = 0;
+  }
+}
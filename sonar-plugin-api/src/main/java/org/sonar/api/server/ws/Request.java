@@ -26,6 +26,7 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
@@ -328,6 +329,15 @@ public abstract class Request {
    */
   public abstract String getPath();
 
+  /**
+   * Value of the HTTP header, if present. Empty if the request is not an HTTP request,
+   * for example when a web service is called through {@link LocalConnector}.
+   * @since 6.4
+   */
+  public Optional<String> header(String name) {
+    return Optional.empty();
+  }
+
   /**
    * @since 6.0
    */
@@ -0,0 +1,190 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.api.batch.fs.internal;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.sonar.api.batch.fs.internal.FileMetadata.CharHandler;
+import org.sonar.api.batch.fs.internal.FileMetadata.LineHashConsumer;
+
+/**
+ * Former implementation of {@link FileMetadata}, which processes files char by char through {@link CharHandler}s.
+ * Used as reference by tests and benchmarks of the bulk implementation.
+ */
+class CharHandlerFileMetadata {
+
+  private CharHandlerFileMetadata() {
+    // only static methods
+  }
+
+  static Metadata readMetadata(File file, Charset encoding) {
+    LineCounter lineCounter = new LineCounter();
+    FileHashComputer fileHashComputer = new FileHashComputer();
+    LineOffsetCounter lineOffsetCounter = new LineOffsetCounter();
+    FileMetadata.readFile(file, encoding, lineCounter, fileHashComputer, lineOffsetCounter);
+    return new Metadata(lineCounter.lines, lineCounter.nonBlankLines, Hex.encodeHexString(fileHashComputer.globalMd5Digest.digest()),
+      lineOffsetCounter.originalLineOffsets.trimAndGet(), (int) lineOffsetCounter.lastValidOffset);
+  }
+
+  static void computeLineHashes(File file, Charset encoding, LineHashConsumer consumer) {
+    FileMetadata.readFile(file, encoding, new LineHashComputer(consumer));
+  }
+
+  private static CharsetEncoder newEncoder() {
+    return StandardCharsets.UTF_8.newEncoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+  }
+
+  private static void update(MessageDigest digest, CharsetEncoder encoder, StringBuilder sb) {
+    try {
+      ByteBuffer encoded = encoder.encode(CharBuffer.wrap(sb));
+      digest.update(encoded.array(), 0, encoded.limit());
+    } catch (CharacterCodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static class LineCounter extends CharHandler {
+    private int lines = 1;
+    private int nonBlankLines = 0;
+    private boolean blankLine = true;
+
+    @Override
+    protected void newLine() {
+      lines++;
+      if (!blankLine) {
+        nonBlankLines++;
+      }
+      blankLine = true;
+    }
+
+    @Override
+    protected void handleIgnoreEoL(char c) {
+      if (!Character.isWhitespace(c)) {
+        blankLine = false;
+      }
+    }
+
+    @Override
+    protected void eof() {
+      if (!blankLine) {
+        nonBlankLines++;
+      }
+    }
+  }
+
+  private static class FileHashComputer extends CharHandler {
+    private final MessageDigest globalMd5Digest = DigestUtils.getMd5Digest();
+    private final CharsetEncoder encoder = newEncoder();
+    private final StringBuilder sb = new StringBuilder();
+
+    @Override
+    protected void handleIgnoreEoL(char c) {
+      sb.append(c);
+    }
+
+    @Override
+    protected void newLine() {
+      sb.append('\n');
+      update(globalMd5Digest, encoder, sb);
+      sb.setLength(0);
+    }
+
+    @Override
+    protected void eof() {
+      if (sb.length() > 0) {
+        update(globalMd5Digest, encoder, sb);
+      }
+    }
+  }
+
+  private static class LineHashComputer extends CharHandler {
+    private final MessageDigest lineMd5Digest = DigestUtils.getMd5Digest();
+    private final CharsetEncoder encoder = newEncoder();
+    private final StringBuilder sb = new StringBuilder();
+    private final LineHashConsumer consumer;
+    private int line = 1;
+
+    LineHashComputer(LineHashConsumer consumer) {
+      this.consumer = consumer;
+    }
+
+    @Override
+    protected void handleIgnoreEoL(char c) {
+      if (!Character.isWhitespace(c)) {
+        sb.append(c);
+      }
+    }
+
+    @Override
+    protected void newLine() {
+      processBuffer();
+      line++;
+    }
+
+    @Override
+    protected void eof() {
+      processBuffer();
+    }
+
+    private void processBuffer() {
+      if (sb.length() > 0) {
+        update(lineMd5Digest, encoder, sb);
+        consumer.consume(line, lineMd5Digest.digest());
+        sb.setLength(0);
+      }
+    }
+  }
+
+  private static class LineOffsetCounter extends CharHandler {
+    private final IntArrayList originalLineOffsets = new IntArrayList();
+    private long currentOriginalOffset = 0;
+    private long lastValidOffset = 0;
+
+    LineOffsetCounter() {
+      originalLineOffsets.add(0);
+    }
+
+    @Override
+    protected void handleAll(char c) {
+      currentOriginalOffset++;
+    }
+
+    @Override
+    protected void newLine() {
+      originalLineOffsets.add((int) currentOriginalOffset);
+    }
+
+    @Override
+    protected void eof() {
+      lastValidOffset = currentOriginalOffset;
+    }
+  }
+}
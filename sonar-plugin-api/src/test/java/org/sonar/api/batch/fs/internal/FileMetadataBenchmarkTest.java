@@ -0,0 +1,114 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.api.batch.fs.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.function.BiFunction;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Compares the time to compute the metadata of a 100MB source file char by char, as {@link CharHandlerFileMetadata} does,
+ * and by blocks of chars, as {@link FileMetadata} does. Executed only with the profile "runBenchmarks".
+ */
+public class FileMetadataBenchmarkTest {
+
+  private static final Logger LOGGER = Loggers.get(FileMetadataBenchmarkTest.class);
+  private static final int LINES = 2_000_000;
+  private static final int WARMUPS = 2;
+  private static final int ITERATIONS = 5;
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private File file;
+
+  @Before
+  public void setUp() throws IOException {
+    assumeTrue(Boolean.getBoolean("enableBenchmarkAssertions"));
+    file = temp.newFile("Generated.java");
+    try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+      for (int i = 0; i < LINES; i++) {
+        writer.write("    private static final String FIELD_" + i + " = \"g\u00e9n\u00e9r\u00e9 " + i + "\";\r\n");
+        if (i % 10 == 0) {
+          writer.write("\r\n");
+        }
+      }
+    }
+  }
+
+  @Test
+  public void read_metadata_by_blocks_of_chars() {
+    FileMetadata fileMetadata = new FileMetadata();
+    long charByChar = measure(CharHandlerFileMetadata::readMetadata);
+    long byBlocks = measure(fileMetadata::readMetadata);
+
+    LOGGER.info("Metadata of {} lines computed in {} ms char by char, in {} ms by blocks of chars", LINES, charByChar, byBlocks);
+    assertThat(fileMetadata.readMetadata(file, StandardCharsets.UTF_8).hash()).isEqualTo(CharHandlerFileMetadata.readMetadata(file, StandardCharsets.UTF_8).hash());
+    assertThat(byBlocks).isLessThan(charByChar);
+  }
+
+  @Test
+  public void compute_line_hashes_by_blocks_of_chars() {
+    DefaultInputFile inputFile = new TestInputFileBuilder("foo", file.getName())
+      .setModuleBaseDir(file.getParentFile().toPath())
+      .setCharset(StandardCharsets.UTF_8)
+      .build();
+    long charByChar = measure((f, charset) -> {
+      CharHandlerFileMetadata.computeLineHashes(f, charset, (line, hash) -> {
+      });
+      return null;
+    });
+    long byBlocks = measure((f, charset) -> {
+      FileMetadata.computeLineHashesForIssueTracking(inputFile, (line, hash) -> {
+      });
+      return null;
+    });
+
+    LOGGER.info("Hashes of {} lines computed in {} ms char by char, in {} ms by blocks of chars", LINES, charByChar, byBlocks);
+    assertThat(byBlocks).isLessThan(charByChar);
+  }
+
+  /**
+   * @return average duration in ms
+   */
+  private long measure(BiFunction<File, Charset, Metadata> computation) {
+    for (int i = 0; i < WARMUPS; i++) {
+      computation.apply(file, StandardCharsets.UTF_8);
+    }
+    long start = System.currentTimeMillis();
+    for (int i = 0; i < ITERATIONS; i++) {
+      computation.apply(file, StandardCharsets.UTF_8);
+    }
+    return (System.currentTimeMillis() - start) / ITERATIONS;
+  }
+}
@@ -20,11 +20,16 @@
 package org.sonar.api.batch.fs.internal;
 
 import java.io.File;
+import java.io.StringReader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
 import javax.annotation.Nullable;
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -318,4 +323,51 @@ public class FileMetadataTest {
       "glyphicons-halflings-regular.woff at line 1 for encoding UTF-8. Please fix file content or configure the encoding to be used using property 'sonar.sourceEncoding'.");
   }
 
+  @Test
+  public void bulk_computation_is_identical_to_computation_char_by_char() throws Exception {
+    // chars which are line ends, blank, multi-bytes in UTF-8, surrogates (paired or not) or replacement of invalid input
+    char[] alphabet = {'a', 'Z', '{', ' ', '\t', '\n', '\r', '\u00e9', '\u20ac', '\ud83d', '\ude00', '\ufffd', '\u3000'};
+    Random random = new Random(42L);
+    for (int i = 0; i < 20; i++) {
+      // larger than the blocks of chars, so that lines and surrogate pairs overlap two blocks
+      int length = i < 10 ? random.nextInt(100) : (LineScanner.BUFFER_SIZE + random.nextInt(3 * LineScanner.BUFFER_SIZE));
+      StringBuilder sb = new StringBuilder(length);
+      for (int j = 0; j < length; j++) {
+        sb.append(alphabet[random.nextInt(alphabet.length)]);
+      }
+      File file = temp.newFile();
+      FileUtils.write(file, sb, StandardCharsets.UTF_16BE);
+
+      Metadata expected = CharHandlerFileMetadata.readMetadata(file, StandardCharsets.UTF_16BE);
+      Metadata metadata = new FileMetadata().readMetadata(file, StandardCharsets.UTF_16BE);
+      assertThat(metadata.lines()).isEqualTo(expected.lines());
+      assertThat(metadata.nonBlankLines()).isEqualTo(expected.nonBlankLines());
+      assertThat(metadata.hash()).isEqualTo(expected.hash());
+      assertThat(metadata.originalLineOffsets()).isEqualTo(expected.originalLineOffsets());
+      assertThat(metadata.lastValidOffset()).isEqualTo(expected.lastValidOffset());
+
+      Map<Integer, String> expectedLineHashes = new HashMap<>();
+      CharHandlerFileMetadata.computeLineHashes(file, StandardCharsets.UTF_16BE, (line, hash) -> expectedLineHashes.put(line, Hex.encodeHexString(hash)));
+      Map<Integer, String> lineHashes = new HashMap<>();
+      DefaultInputFile f = new TestInputFileBuilder("foo", file.getName())
+        .setModuleBaseDir(file.getParentFile().toPath())
+        .setCharset(StandardCharsets.UTF_16BE)
+        .build();
+      FileMetadata.computeLineHashesForIssueTracking(f, (line, hash) -> lineHashes.put(line, Hex.encodeHexString(hash)));
+      assertThat(lineHashes).isEqualTo(expectedLineHashes);
+    }
+  }
+
+  @Test
+  public void line_end_overlapping_two_blocks() throws Exception {
+    String firstLine = StringUtils.repeat("a", LineScanner.BUFFER_SIZE - 1);
+
+    Metadata metadata = new FileMetadata().readMetadata(new StringReader(firstLine + "\r\nb\r"));
+    assertThat(metadata.lines()).isEqualTo(3);
+    assertThat(metadata.nonBlankLines()).isEqualTo(2);
+    assertThat(metadata.hash()).isEqualTo(md5Hex(firstLine + "\nb\n"));
+    assertThat(metadata.originalLineOffsets()).containsOnly(0, LineScanner.BUFFER_SIZE + 1, LineScanner.BUFFER_SIZE + 3);
+    assertThat(metadata.lastValidOffset()).isEqualTo(LineScanner.BUFFER_SIZE + 3);
+  }
+
 }
@@ -0,0 +1,78 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.api.batch.fs.internal;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class Utf8DigestTest {
+
+  private Utf8Digest underTest = new Utf8Digest();
+
+  @Test
+  public void digest_of_chars_encoded_in_utf8() throws Exception {
+    verifyDigest("");
+    verifyDigest("foo\nbar");
+    verifyDigest("caf\u00e9 \u20ac \ud83d\ude00 \u3000");
+    // longer than the internal buffer
+    verifyDigest(StringUtils.repeat("\u00e9a\u20ac\ud83d\ude00", 5000));
+  }
+
+  @Test
+  public void unpaired_surrogates_are_replaced() throws Exception {
+    verifyDigest("\ud83d");
+    verifyDigest("\ude00");
+    verifyDigest("a\ud83dbc\ude00d");
+    verifyDigest("\ude00\ud83d");
+    verifyDigest("\ud83d\ud83d\ude00");
+  }
+
+  @Test
+  public void digest_is_reset() throws Exception {
+    underTest.update('a');
+    underTest.digest();
+
+    verifyDigest("b");
+  }
+
+  private void verifyDigest(String s) throws Exception {
+    ByteBuffer expected = StandardCharsets.UTF_8.newEncoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE)
+      .encode(CharBuffer.wrap(s));
+    byte[] expectedBytes = new byte[expected.limit()];
+    expected.get(expectedBytes);
+
+    // a surrogate pair may be split between two updates
+    char[] chars = s.toCharArray();
+    int half = chars.length / 2;
+    underTest.update(chars, 0, half);
+    underTest.update(chars, half, chars.length);
+
+    assertThat(underTest.digest()).isEqualTo(DigestUtils.md5(expectedBytes));
+  }
+}
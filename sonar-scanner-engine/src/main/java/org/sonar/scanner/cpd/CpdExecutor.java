@@ -22,7 +22,10 @@ package org.sonar.scanner.cpd;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
@@ -30,7 +33,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-
+import javax.annotation.CheckForNull;
 import org.sonar.api.batch.fs.InputComponent;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputComponent;
@@ -56,6 +59,8 @@ import static com.google.common.collect.FluentIterable.from;
  * Runs on the root module, at the end of the project analysis.
  * It executes copy paste detection involving all files of all modules, which were indexed during sensors execution for each module
  * by {@link CpdSensor). The sensor is responsible for handling exclusions and block sizes.
+ * Files can be analyzed concurrently by setting the property "sonar.cpd.threads". Duplications are
+ * saved in the same order whatever the number of threads.
  */
 public class CpdExecutor {
   private static final Logger LOG = Loggers.get(CpdExecutor.class);
@@ -63,6 +68,7 @@ public class CpdExecutor {
   private static final int TIMEOUT = 5 * 60 * 1000;
   static final int MAX_CLONE_GROUP_PER_FILE = 100;
   static final int MAX_CLONE_PART_PER_GROUP = 100;
+  static final String THREADS_PROPERTY = "sonar.cpd.threads";
 
   private final SonarCpdBlockIndex index;
   private final ReportPublisher publisher;
@@ -87,44 +93,72 @@ public class CpdExecutor {
   @VisibleForTesting
   void execute(long timeout) {
     total = index.noResources();
+    int threads = getThreads();
     progressReport.start(String.format("Calculating CPD for %d files", total));
-    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    ExecutorService executorService = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("CpdExecutor-%d").build());
     try {
       Iterator<ResourceBlocks> it = index.iterator();
+      // at most one detection per thread is pending, so that each detection starts as soon as it is submitted.
+      // Results are saved in the order of the index, whatever the number of threads.
+      Deque<Detection> pending = new ArrayDeque<>(threads);
 
       while (it.hasNext()) {
         ResourceBlocks resourceBlocks = it.next();
-        runCpdAnalysis(executorService, resourceBlocks.resourceId(), resourceBlocks.blocks(), timeout);
+        Detection detection = submitDetection(executorService, resourceBlocks.resourceId(), resourceBlocks.blocks());
+        if (detection != null) {
+          pending.add(detection);
+        }
+        if (pending.size() >= threads) {
+          completeDetection(pending.remove(), timeout);
+        }
         count++;
       }
+      while (!pending.isEmpty()) {
+        completeDetection(pending.remove(), timeout);
+      }
       progressReport.stop("CPD calculation finished");
     } catch (Exception e) {
       progressReport.stop("");
       throw e;
     } finally {
-      executorService.shutdown();
+      executorService.shutdownNow();
     }
   }
 
   @VisibleForTesting
   void runCpdAnalysis(ExecutorService executorService, String componentKey, final Collection<Block> fileBlocks, long timeout) {
+    Detection detection = submitDetection(executorService, componentKey, fileBlocks);
+    if (detection != null) {
+      completeDetection(detection, timeout);
+    }
+  }
+
+  @CheckForNull
+  private Detection submitDetection(ExecutorService executorService, String componentKey, final Collection<Block> fileBlocks) {
     DefaultInputComponent component = (DefaultInputComponent) componentStore.getByKey(componentKey);
     if (component == null) {
       LOG.error("Resource not found in component store: {}. Skipping CPD computation for it", componentKey);
-      return;
+      return null;
     }
 
     InputFile inputFile = (InputFile) component;
     LOG.debug("Detection of duplications for {}", inputFile.absolutePath());
     progressReport.message(String.format("%d/%d - current file: %s", count, total, inputFile.absolutePath()));
 
-    List<CloneGroup> duplications;
     Future<List<CloneGroup>> futureResult = executorService.submit(() -> SuffixTreeCloneDetectionAlgorithm.detect(index, fileBlocks));
+    return new Detection(component, futureResult, System.currentTimeMillis());
+  }
+
+  private void completeDetection(Detection detection, long timeout) {
+    InputFile inputFile = (InputFile) detection.component;
+    List<CloneGroup> duplications;
     try {
-      duplications = futureResult.get(timeout, TimeUnit.MILLISECONDS);
+      // the timeout applies from the submission of the detection, not from the beginning of the wait
+      long remaining = Math.max(0L, detection.submittedAt + timeout - System.currentTimeMillis());
+      duplications = detection.result.get(remaining, TimeUnit.MILLISECONDS);
     } catch (TimeoutException e) {
       LOG.warn("Timeout during detection of duplications for " + inputFile.absolutePath());
-      futureResult.cancel(true);
+      detection.result.cancel(true);
       return;
     } catch (Exception e) {
       throw new IllegalStateException("Fail during detection of duplication for " + inputFile.absolutePath(), e);
@@ -138,7 +172,16 @@ public class CpdExecutor {
       filtered = duplications;
     }
 
-    saveDuplications(component, filtered);
+    saveDuplications(detection.component, filtered);
+  }
+
+  /**
+   * Number of files analyzed concurrently, 1 by default.
+   */
+  @VisibleForTesting
+  int getThreads() {
+    int threads = settings.getInt(THREADS_PROPERTY);
+    return threads > 0 ? threads : 1;
   }
 
   @VisibleForTesting
@@ -213,4 +256,16 @@ public class CpdExecutor {
     }
     return dupBuilder.build();
   }
+
+  private static class Detection {
+    private final DefaultInputComponent component;
+    private final Future<List<CloneGroup>> result;
+    private final long submittedAt;
+
+    private Detection(DefaultInputComponent component, Future<List<CloneGroup>> result, long submittedAt) {
+      this.component = component;
+      this.result = result;
+      this.submittedAt = submittedAt;
+    }
+  }
 }
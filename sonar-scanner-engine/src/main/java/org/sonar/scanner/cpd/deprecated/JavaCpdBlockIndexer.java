@@ -20,11 +20,7 @@
 package org.sonar.scanner.cpd.deprecated;
 
 import com.google.common.collect.Lists;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.Reader;
 import java.util.List;
 import org.sonar.api.CoreProperties;
@@ -43,6 +39,7 @@ import org.sonar.duplications.statement.Statement;
 import org.sonar.duplications.statement.StatementChunker;
 import org.sonar.duplications.token.TokenChunker;
 import org.sonar.scanner.cpd.index.SonarCpdBlockIndex;
+import org.sonar.scanner.scan.filesystem.FileContentCache;
 
 public class JavaCpdBlockIndexer extends CpdBlockIndexer {
 
@@ -53,11 +50,13 @@ public class JavaCpdBlockIndexer extends CpdBlockIndexer {
   private final FileSystem fs;
   private final Settings settings;
   private final SonarCpdBlockIndex index;
+  private final FileContentCache fileContentCache;
 
-  public JavaCpdBlockIndexer(FileSystem fs, Settings settings, SonarCpdBlockIndex index) {
+  public JavaCpdBlockIndexer(FileSystem fs, Settings settings, SonarCpdBlockIndex index, FileContentCache fileContentCache) {
     this.fs = fs;
     this.settings = settings;
     this.index = index;
+    this.fileContentCache = fileContentCache;
   }
 
   @Override
@@ -91,11 +90,8 @@ public class JavaCpdBlockIndexer extends CpdBlockIndexer {
 
       List<Statement> statements;
 
-      try (InputStream is = new FileInputStream(inputFile.file());
-        Reader reader = new InputStreamReader(is, fs.encoding())) {
+      try (Reader reader = fileContentCache.reader(inputFile.path(), fs.encoding())) {
         statements = statementChunker.chunk(tokenChunker.chunk(reader));
-      } catch (FileNotFoundException e) {
-        throw new IllegalStateException("Cannot find file " + inputFile.file(), e);
       } catch (IOException e) {
         throw new IllegalStateException("Exception handling file: " + inputFile.file(), e);
       }
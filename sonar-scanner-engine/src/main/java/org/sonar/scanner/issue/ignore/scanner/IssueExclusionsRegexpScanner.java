@@ -26,11 +26,11 @@ import org.sonar.api.batch.ScannerSide;
 import org.sonar.scanner.issue.ignore.pattern.IssueExclusionPatternInitializer;
 import org.sonar.scanner.issue.ignore.pattern.IssuePattern;
 import org.sonar.scanner.issue.ignore.pattern.LineRange;
+import org.sonar.scanner.scan.filesystem.FileContentCache;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.nio.charset.Charset;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -43,6 +43,7 @@ public class IssueExclusionsRegexpScanner {
   private static final Logger LOG = LoggerFactory.getLogger(IssueExclusionsRegexpScanner.class);
 
   private IssueExclusionPatternInitializer exclusionPatternInitializer;
+  private final FileContentCache fileContentCache;
   private List<java.util.regex.Pattern> allFilePatterns;
   private List<DoubleRegexpMatcher> blockMatchers;
 
@@ -52,8 +53,9 @@ public class IssueExclusionsRegexpScanner {
   private List<LineExclusion> lineExclusions;
   private LineExclusion currentLineExclusion;
 
-  public IssueExclusionsRegexpScanner(IssueExclusionPatternInitializer patternsInitializer) {
+  public IssueExclusionsRegexpScanner(IssueExclusionPatternInitializer patternsInitializer, FileContentCache fileContentCache) {
     this.exclusionPatternInitializer = patternsInitializer;
+    this.fileContentCache = fileContentCache;
 
     lineExclusions = new ArrayList<>();
     allFilePatterns = new ArrayList<>();
@@ -83,7 +85,7 @@ public class IssueExclusionsRegexpScanner {
     init();
 
     int lineIndex = 0;
-    try (BufferedReader br = Files.newBufferedReader(filePath, encoding)) {
+    try (BufferedReader br = new BufferedReader(fileContentCache.strictReader(filePath, encoding))) {
       String line;
       while ((line = br.readLine()) != null) {
         lineIndex++;
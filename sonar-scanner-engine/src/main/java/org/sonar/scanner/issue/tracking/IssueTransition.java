@@ -66,6 +66,8 @@ public class IssueTransition {
       localIssueTracking.init();
     }
 
+    // issues appended to the report may still be buffered
+    reportPublisher.getWriter().flush();
     ScannerReportReader reader = new ScannerReportReader(reportPublisher.getReportDir());
     int nbComponents = inputComponentStore.all().size();
 
@@ -42,11 +42,13 @@ import org.sonar.api.config.Settings;
 import org.sonar.api.platform.Server;
 import org.sonar.api.utils.MessageException;
 import org.sonar.api.utils.TempFolder;
+import org.sonar.api.utils.Version;
 import org.sonar.api.utils.ZipUtils;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.scanner.analysis.DefaultAnalysisMode;
 import org.sonar.scanner.bootstrap.ScannerWsClient;
+import org.sonar.scanner.protocol.output.IndexedReportArchive;
 import org.sonar.scanner.protocol.output.ScannerReportWriter;
 import org.sonar.scanner.scan.ImmutableProjectReactor;
 import org.sonarqube.ws.MediaTypes;
@@ -65,6 +67,7 @@ public class ReportPublisher implements Startable {
   public static final String KEEP_REPORT_PROP_KEY = "sonar.batch.keepReport";
   public static final String VERBOSE_KEY = "sonar.verbose";
   public static final String METADATA_DUMP_FILENAME = "report-task.txt";
+  private static final String ARCHIVE_EXTENSION = ".sqa";
 
   private final Settings settings;
   private final ScannerWsClient wsClient;
@@ -106,6 +109,9 @@ public class ReportPublisher implements Startable {
 
   @Override
   public void stop() {
+    if (writer != null) {
+      writer.close();
+    }
     if (!shouldKeepReport()) {
       deleteQuietly(reportDir);
     }
@@ -141,6 +147,8 @@ public class ReportPublisher implements Startable {
   private File generateReportFile() {
     try {
       long startTime = System.currentTimeMillis();
+      // issues appended during the analysis must be on disk before being read by publishers
+      writer.close();
       for (ReportPublisherStep publisher : publishers) {
         publisher.publish(writer);
       }
@@ -148,6 +156,12 @@ public class ReportPublisher implements Startable {
       LOG.info("Analysis report generated in {}ms, dir size={}", stopTime - startTime, FileUtils.byteCountToDisplaySize(FileUtils.sizeOfDirectory(reportDir)));
 
       startTime = System.currentTimeMillis();
+      if (serverSupportsIndexedArchive()) {
+        File reportArchive = writer.writeIndexedArchive(temp.newFile("batch-report", ARCHIVE_EXTENSION));
+        stopTime = System.currentTimeMillis();
+        LOG.info("Analysis reports packed in {}ms, archive size={}", stopTime - startTime, FileUtils.byteCountToDisplaySize(FileUtils.sizeOf(reportArchive)));
+        return reportArchive;
+      }
       File reportZip = temp.newFile("batch-report", ".zip");
       ZipUtils.zipDir(reportDir, reportZip);
       stopTime = System.currentTimeMillis();
@@ -158,6 +172,15 @@ public class ReportPublisher implements Startable {
     }
   }
 
+  /**
+   * The single-file indexed archive is uploaded only to servers able to read it. Older servers
+   * receive the zipped report directory.
+   */
+  @VisibleForTesting
+  boolean serverSupportsIndexedArchive() {
+    return Version.parse(server.getVersion()).isGreaterThanOrEqual(Version.parse(IndexedReportArchive.MIN_SERVER_VERSION));
+  }
+
   /**
    * Uploads the report file to server and returns the generated task id
    */
@@ -166,7 +189,8 @@ public class ReportPublisher implements Startable {
     LOG.debug("Upload report");
     long startTime = System.currentTimeMillis();
     ProjectDefinition projectDefinition = projectReactor.getRoot();
-    PostRequest.Part filePart = new PostRequest.Part(MediaTypes.ZIP, report);
+    String mediaType = report.getName().endsWith(ARCHIVE_EXTENSION) ? MediaTypes.DEFAULT : MediaTypes.ZIP;
+    PostRequest.Part filePart = new PostRequest.Part(mediaType, report);
     PostRequest post = new PostRequest("api/ce/submit")
       .setMediaType(MediaTypes.PROTOBUF)
       .setParam("organization", settings.getString(CoreProperties.PROJECT_ORGANIZATION_PROPERTY))
@@ -19,27 +19,26 @@
  */
 package org.sonar.scanner.report;
 
-import org.apache.commons.io.ByteOrderMark;
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.io.input.BOMInputStream;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.scanner.protocol.output.ScannerReportWriter;
+import org.sonar.scanner.scan.filesystem.FileContentCache;
 import org.sonar.scanner.scan.filesystem.InputComponentStore;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 
 public class SourcePublisher implements ReportPublisherStep {
 
   private final InputComponentStore componentCache;
+  private final FileContentCache fileContentCache;
 
-  public SourcePublisher(InputComponentStore componentStore) {
+  public SourcePublisher(InputComponentStore componentStore, FileContentCache fileContentCache) {
     this.componentCache = componentStore;
+    this.fileContentCache = fileContentCache;
   }
 
   @Override
@@ -47,10 +46,9 @@ public class SourcePublisher implements ReportPublisherStep {
     for (final DefaultInputFile inputFile : componentCache.allFilesToPublish()) {
       File iofile = writer.getSourceFile(inputFile.batchId());
 
+      // BOM is removed by the cache
       try (FileOutputStream output = new FileOutputStream(iofile);
-        BOMInputStream bomIn = new BOMInputStream(new FileInputStream(inputFile.file()),
-          ByteOrderMark.UTF_8, ByteOrderMark.UTF_16LE, ByteOrderMark.UTF_16BE, ByteOrderMark.UTF_32LE, ByteOrderMark.UTF_32BE);
-        BufferedReader reader = new BufferedReader(new InputStreamReader(bomIn, inputFile.charset()))) {
+        BufferedReader reader = new BufferedReader(fileContentCache.reader(inputFile.path(), inputFile.charset()))) {
         writeSource(reader, output, inputFile.lines());
       } catch (IOException e) {
         throw new IllegalStateException("Unable to store file source in the report", e);
@@ -19,14 +19,30 @@
  */
 package org.sonar.scanner.rule;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.CheckForNull;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.core.util.Protobuf;
+import org.sonar.home.cache.FileCache;
 import org.sonar.scanner.bootstrap.ScannerWsClient;
 import org.sonar.scanner.util.ScannerUtils;
 import org.sonarqube.ws.Rules;
@@ -35,22 +51,152 @@ import org.sonarqube.ws.Rules.Active.Param;
 import org.sonarqube.ws.Rules.ActiveList;
 import org.sonarqube.ws.Rules.Rule;
 import org.sonarqube.ws.Rules.SearchResponse;
+import org.sonarqube.ws.WsBatch.WsActiveRulesResponse;
 import org.sonarqube.ws.client.GetRequest;
+import org.sonarqube.ws.client.HttpException;
+import org.sonarqube.ws.client.WsResponse;
 
 import static org.sonar.api.utils.DateUtils.dateToLong;
 import static org.sonar.api.utils.DateUtils.parseDateTime;
 
+/**
+ * Loads the active rules of a quality profile. The bundle of active rules returned by the server is kept in
+ * the user cache (see {@link FileCache}) with its ETag, so that it is downloaded again only when
+ * the quality profile changed. Servers which do not provide the bundle are requested page after page.
+ */
 public class DefaultActiveRulesLoader implements ActiveRulesLoader {
+  private static final Logger LOG = Loggers.get(DefaultActiveRulesLoader.class);
+
   private static final String RULES_SEARCH_URL = "/api/rules/search.protobuf?f=repo,name,severity,lang,internalKey,templateKey,params,actives,createdAt&activation=true";
+  private static final String ACTIVE_RULES_URL = "/api/batch/active_rules.protobuf";
+  private static final String BUNDLE_FILENAME = "active_rules.pb";
+  // ETags of the last bundles downloaded, by server and quality profile
+  private static final String ETAGS_DIRNAME = "_active_rules";
+  // bundles are stored in cache by their MD5 hash, which is the ETag sent by server
+  private static final Pattern MD5_ETAG = Pattern.compile("(?:W/)?\"([0-9a-f]{32})\"");
 
   private final ScannerWsClient wsClient;
+  private final FileCache fileCache;
 
-  public DefaultActiveRulesLoader(ScannerWsClient wsClient) {
+  public DefaultActiveRulesLoader(ScannerWsClient wsClient, FileCache fileCache) {
     this.wsClient = wsClient;
+    this.fileCache = fileCache;
   }
 
   @Override
   public List<LoadedActiveRule> load(String qualityProfileKey) {
+    Optional<WsActiveRulesResponse> bundle = loadBundle(qualityProfileKey);
+    if (bundle.isPresent()) {
+      return readBundle(bundle.get());
+    }
+    return search(qualityProfileKey);
+  }
+
+  private Optional<WsActiveRulesResponse> loadBundle(String qualityProfileKey) {
+    File etagFile = new File(new File(fileCache.getDir(), ETAGS_DIRNAME), DigestUtils.md5Hex(wsClient.baseUrl() + "|" + qualityProfileKey));
+    String cachedHash = readCachedHash(etagFile);
+    File cachedBundle = cachedHash == null ? null : fileCache.get(BUNDLE_FILENAME, cachedHash);
+
+    GetRequest getRequest = new GetRequest(ACTIVE_RULES_URL + "?qprofile=" + ScannerUtils.encodeForUrl(qualityProfileKey));
+    if (cachedBundle != null) {
+      getRequest.setHeader("If-None-Match", '"' + cachedHash + '"');
+    }
+    // closed on every path, including when the bundle is already in cache and its content is not read
+    try (WsResponse response = callBundle(getRequest)) {
+      if (response == null) {
+        LOG.debug("Bundle of active rules not available - searching active rules");
+        return Optional.empty();
+      }
+
+      if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED && cachedBundle != null) {
+        LOG.debug("Active rules of quality profile {} are up-to-date in cache", qualityProfileKey);
+        return Optional.of(Protobuf.read(cachedBundle, WsActiveRulesResponse.parser()));
+      }
+
+      Matcher etag = MD5_ETAG.matcher(response.header("ETag").orElse(""));
+      if (!etag.matches()) {
+        // can't be cached
+        return Optional.of(loadBundleFromStream(response.contentStream()));
+      }
+      String hash = etag.group(1);
+      File bundleFile = fileCache.get(BUNDLE_FILENAME, hash, (filename, toFile) -> {
+        try (InputStream input = response.contentStream()) {
+          FileUtils.copyInputStreamToFile(input, toFile);
+        }
+      });
+      writeCachedHash(etagFile, hash);
+      return Optional.of(Protobuf.read(bundleFile, WsActiveRulesResponse.parser()));
+    }
+  }
+
+  /**
+   * @return {@code null} if the server does not provide the bundle of active rules
+   */
+  @CheckForNull
+  private WsResponse callBundle(GetRequest getRequest) {
+    try {
+      return wsClient.call(getRequest);
+    } catch (HttpException e) {
+      if (e.code() != HttpURLConnection.HTTP_NOT_FOUND) {
+        throw e;
+      }
+      return null;
+    }
+  }
+
+  @CheckForNull
+  private static String readCachedHash(File etagFile) {
+    try {
+      return etagFile.isFile() ? FileUtils.readFileToString(etagFile, StandardCharsets.UTF_8).trim() : null;
+    } catch (IOException e) {
+      LOG.debug("Unable to read " + etagFile, e);
+      return null;
+    }
+  }
+
+  private void writeCachedHash(File etagFile, String hash) {
+    // the file is replaced atomically, as several analyses may run at the same time
+    try {
+      File tempFile = new File(fileCache.createTempDir(), etagFile.getName());
+      FileUtils.write(tempFile, hash, StandardCharsets.UTF_8);
+      Files.createDirectories(etagFile.getParentFile().toPath());
+      Files.move(tempFile.toPath(), etagFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      FileUtils.deleteQuietly(tempFile.getParentFile());
+    } catch (IOException e) {
+      LOG.debug("Unable to write " + etagFile, e);
+    }
+  }
+
+  private static WsActiveRulesResponse loadBundleFromStream(InputStream is) {
+    try {
+      return WsActiveRulesResponse.parseFrom(is);
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to load quality profiles", e);
+    } finally {
+      IOUtils.closeQuietly(is);
+    }
+  }
+
+  private static List<LoadedActiveRule> readBundle(WsActiveRulesResponse bundle) {
+    List<LoadedActiveRule> loadedRules = new ArrayList<>(bundle.getActiveRulesCount());
+    for (WsActiveRulesResponse.ActiveRule activeRule : bundle.getActiveRulesList()) {
+      LoadedActiveRule loadedRule = new LoadedActiveRule();
+      loadedRule.setRuleKey(RuleKey.of(activeRule.getRepository(), activeRule.getKey()));
+      loadedRule.setName(activeRule.getName());
+      loadedRule.setSeverity(activeRule.getSeverity());
+      loadedRule.setCreatedAt(activeRule.getCreatedAt());
+      loadedRule.setLanguage(activeRule.getLanguage());
+      loadedRule.setInternalKey(activeRule.getInternalKey());
+      if (activeRule.hasTemplateKey()) {
+        loadedRule.setTemplateRuleKey(activeRule.getTemplateKey());
+      }
+      loadedRule.setParams(new HashMap<>(activeRule.getParams()));
+      loadedRules.add(loadedRule);
+    }
+    return loadedRules;
+  }
+
+  private List<LoadedActiveRule> search(String qualityProfileKey) {
     List<LoadedActiveRule> ruleList = new LinkedList<>();
     int page = 1;
     int pageSize = 500;
@@ -88,6 +88,8 @@ import org.sonar.scanner.rule.DefaultRulesLoader;
 import org.sonar.scanner.rule.RulesLoader;
 import org.sonar.scanner.rule.RulesProvider;
 import org.sonar.scanner.scan.filesystem.BatchIdGenerator;
+import org.sonar.scanner.scan.filesystem.FileContentCache;
+import org.sonar.scanner.scan.filesystem.FileMetadataCache;
 import org.sonar.scanner.scan.filesystem.InputComponentStore;
 import org.sonar.scanner.scan.measure.DefaultMetricFinder;
 import org.sonar.scanner.scan.measure.DeprecatedMetricFinder;
@@ -152,6 +154,8 @@ public class ProjectScanContainer extends ComponentContainer {
       DefaultInputModuleHierarchy.class,
       DefaultComponentTree.class,
       BatchIdGenerator.class,
+      FileMetadataCache.class,
+      FileContentCache.class,
 
       // rules
       new ActiveRulesProvider(),
@@ -22,6 +22,7 @@ package org.sonar.scanner.scan;
 import org.sonar.api.batch.bootstrap.ProjectReactor;
 import org.sonar.core.util.FileUtils;
 import org.sonar.home.cache.DirectoryLock;
+import org.sonar.scanner.scan.filesystem.FileMetadataCache;
 
 import java.io.IOException;
 import java.nio.file.DirectoryStream;
@@ -53,6 +54,9 @@ public class WorkDirectoryCleaner {
   }
 
   private DirectoryStream<Path> list() throws IOException {
-    return Files.newDirectoryStream(workDir, entry -> !DirectoryLock.LOCK_FILE_NAME.equals(entry.getFileName().toString()));
+    return Files.newDirectoryStream(workDir, entry -> {
+      String filename = entry.getFileName().toString();
+      return !DirectoryLock.LOCK_FILE_NAME.equals(filename) && !FileMetadataCache.FILENAME.equals(filename);
+    });
   }
 }
@@ -0,0 +1,291 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.scan.filesystem;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.apache.commons.io.ByteOrderMark;
+import org.apache.commons.io.input.BOMInputStream;
+import org.sonar.api.batch.ScannerSide;
+import org.sonar.api.config.Settings;
+
+/**
+ * Decoded content of the source files, shared by the components which read them during an analysis
+ * (metadata, issue exclusions, CPD and report), so that a file is read and decoded only once.
+ * <p/>
+ * The byte order mark of UTF-8, UTF-16 and UTF-32 is skipped whatever the encoding, as {@link BOMInputStream}
+ * does. Content is then decoded as {@link java.io.InputStreamReader} does, malformed input being replaced, unless it is
+ * read with {@link #strictReader(Path, Charset)}. The most recently used contents are kept in memory, up to the size
+ * defined by the property {@link #MAX_SIZE_KEY}, in MB. Files which can't fit in this size are never loaded in memory:
+ * they are streamed each time they are read.
+ */
+@ScannerSide
+public class FileContentCache {
+
+  public static final String MAX_SIZE_KEY = "sonar.fileContentCacheSize";
+  static final int DEFAULT_MAX_SIZE_MB = 64;
+  // longest first, as the BOM of UTF-32LE starts with the BOM of UTF-16LE
+  private static final byte[][] BOMS = {
+    {0x00, 0x00, (byte) 0xFE, (byte) 0xFF},
+    {(byte) 0xFF, (byte) 0xFE, 0x00, 0x00},
+    {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF},
+    {(byte) 0xFE, (byte) 0xFF},
+    {(byte) 0xFF, (byte) 0xFE}
+  };
+
+  private final long maxSizeInBytes;
+  // in access order, so that the least recently used content is evicted first
+  private final LinkedHashMap<Key, Content> contents = new LinkedHashMap<>(16, 0.75f, true);
+  private long sizeInBytes = 0L;
+
+  public FileContentCache(Settings settings) {
+    int maxSizeInMb = settings.hasKey(MAX_SIZE_KEY) ? settings.getInt(MAX_SIZE_KEY) : DEFAULT_MAX_SIZE_MB;
+    this.maxSizeInBytes = maxSizeInMb * 1024L * 1024L;
+  }
+
+  /**
+   * Reader of the file, malformed input and unmappable characters being replaced.
+   */
+  public Reader reader(Path file, Charset charset) {
+    if (!isCacheable(file)) {
+      return streamingReader(file, charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE));
+    }
+    return new StringReader(contents(file, charset));
+  }
+
+  /**
+   * Reader of the file, as {@link java.nio.file.Files#newBufferedReader(Path, Charset)}. When the file is streamed,
+   * malformed input is reported by the reader.
+   *
+   * @throws CharacterCodingException if the file is in memory and has malformed input or unmappable characters
+   */
+  public Reader strictReader(Path file, Charset charset) throws CharacterCodingException {
+    if (!isCacheable(file)) {
+      return streamingReader(file, charset.newDecoder().onMalformedInput(CodingErrorAction.REPORT).onUnmappableCharacter(CodingErrorAction.REPORT));
+    }
+    return new StringReader(strictContents(file, charset));
+  }
+
+  String contents(Path file, Charset charset) {
+    return content(file, charset).text;
+  }
+
+  String strictContents(Path file, Charset charset) throws CharacterCodingException {
+    Content content = content(file, charset);
+    if (content.decodingError != null) {
+      throw content.decodingError;
+    }
+    return content.text;
+  }
+
+  /**
+   * Decoded contents take at most 2 bytes per byte of the file
+   */
+  private boolean isCacheable(Path file) {
+    try {
+      return 2L * Files.size(file) <= maxSizeInBytes;
+    } catch (IOException e) {
+      throw new IllegalStateException(String.format("Fail to read file '%s'", file.toAbsolutePath()), e);
+    }
+  }
+
+  private static Reader streamingReader(Path file, CharsetDecoder decoder) {
+    try {
+      return new InputStreamReader(new BOMInputStream(Files.newInputStream(file),
+        ByteOrderMark.UTF_8, ByteOrderMark.UTF_16LE, ByteOrderMark.UTF_16BE, ByteOrderMark.UTF_32LE, ByteOrderMark.UTF_32BE), decoder);
+    } catch (IOException e) {
+      throw new IllegalStateException(String.format("Fail to read file '%s'", file.toAbsolutePath()), e);
+    }
+  }
+
+  private Content content(Path file, Charset charset) {
+    Key key = new Key(file, charset);
+    synchronized (this) {
+      Content content = contents.get(key);
+      if (content != null) {
+        return content;
+      }
+    }
+    // decoded outside of lock, so that files are read concurrently
+    Content content = read(file, charset);
+    put(key, content);
+    return content;
+  }
+
+  private synchronized void put(Key key, Content content) {
+    long size = content.sizeInBytes();
+    if (size > maxSizeInBytes) {
+      return;
+    }
+    Content previous = contents.put(key, content);
+    if (previous != null) {
+      sizeInBytes -= previous.sizeInBytes();
+    }
+    sizeInBytes += size;
+    Iterator<Content> eldest = contents.values().iterator();
+    while (sizeInBytes > maxSizeInBytes && eldest.hasNext()) {
+      sizeInBytes -= eldest.next().sizeInBytes();
+      eldest.remove();
+    }
+  }
+
+  synchronized long sizeInBytes() {
+    return sizeInBytes;
+  }
+
+  private static Content read(Path file, Charset charset) {
+    ByteBuffer bytes;
+    try {
+      bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+    } catch (IOException e) {
+      throw new IllegalStateException(String.format("Fail to read file '%s'", file.toAbsolutePath()), e);
+    }
+    skipBom(bytes);
+    return decode(bytes, charset);
+  }
+
+  private static void skipBom(ByteBuffer bytes) {
+    for (byte[] bom : BOMS) {
+      if (startsWith(bytes, bom)) {
+        bytes.position(bytes.position() + bom.length);
+        return;
+      }
+    }
+  }
+
+  private static boolean startsWith(ByteBuffer bytes, byte[] prefix) {
+    if (bytes.remaining() < prefix.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length; i++) {
+      if (bytes.get(bytes.position() + i) != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Decodes in a single pass: malformed input and unmappable characters are replaced, as {@link CodingErrorAction#REPLACE}
+   * does, and the first error is kept for {@link #strictContents(Path, Charset)}.
+   */
+  private static Content decode(ByteBuffer in, Charset charset) {
+    CharsetDecoder decoder = charset.newDecoder()
+      .onMalformedInput(CodingErrorAction.REPORT)
+      .onUnmappableCharacter(CodingErrorAction.REPORT);
+    CharBuffer out = CharBuffer.allocate((int) (in.remaining() * (double) decoder.averageCharsPerByte()) + 16);
+    CharacterCodingException decodingError = null;
+    CoderResult result = decoder.decode(in, out, true);
+    while (!result.isUnderflow()) {
+      if (result.isOverflow()) {
+        out = grow(out);
+      } else {
+        if (decodingError == null) {
+          decodingError = toException(result);
+        }
+        while (out.remaining() < decoder.replacement().length()) {
+          out = grow(out);
+        }
+        out.put(decoder.replacement());
+        in.position(in.position() + result.length());
+      }
+      result = decoder.decode(in, out, true);
+    }
+    while (decoder.flush(out).isOverflow()) {
+      out = grow(out);
+    }
+    out.flip();
+    return new Content(out.toString(), decodingError);
+  }
+
+  private static CharBuffer grow(CharBuffer buffer) {
+    CharBuffer res = CharBuffer.allocate(2 * buffer.capacity() + 16);
+    buffer.flip();
+    res.put(buffer);
+    return res;
+  }
+
+  private static CharacterCodingException toException(CoderResult result) {
+    try {
+      result.throwException();
+    } catch (CharacterCodingException e) {
+      return e;
+    }
+    throw new IllegalStateException("Not an error: " + result);
+  }
+  private static class Content {
+    private final String text;
+    // error of strict decoding, if any
+    @CheckForNull
+    private final CharacterCodingException decodingError;
+
+    Content(String text, @Nullable CharacterCodingException decodingError) {
+      this.text = text;
+      this.decodingError = decodingError;
+    }
+
+    long sizeInBytes() {
+      return 2L * text.length();
+    }
+  }
+
+  private static class Key {
+    private final Path file;
+    private final Charset charset;
+
+    Key(Path file, Charset charset) {
+      this.file = file.toAbsolutePath().normalize();
+      this.charset = charset;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key other = (Key) o;
+      return file.equals(other.file) && charset.equals(other.charset);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(file, charset);
+    }
+  }
+}
@@ -0,0 +1,195 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.scan.filesystem;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import org.picocontainer.Startable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.ScannerSide;
+import org.sonar.api.batch.bootstrap.ProjectReactor;
+import org.sonar.api.batch.fs.internal.Metadata;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.System2;
+
+/**
+ * Optional on-disk cache of the metadata of files, stored in the working directory. Metadata of a file
+ * are reused by the next analysis on the same working directory if size and last modification date of
+ * the file did not change, so that its content is not read again.
+ * <p/>
+ * Files modified less than {@link #RACY_MODIFICATION_MS} milliseconds before their metadata are computed
+ * are not cached, as a following change in the same timestamp granularity could not be detected.
+ */
+@ScannerSide
+public class FileMetadataCache implements Startable {
+
+  public static final String ENABLED_KEY = "sonar.cacheFileMetadata";
+  public static final String FILENAME = "file-metadata.cache";
+
+  static final long RACY_MODIFICATION_MS = 2_000L;
+  private static final int FORMAT_VERSION = 1;
+  private static final Logger LOG = LoggerFactory.getLogger(FileMetadataCache.class);
+
+  private final boolean enabled;
+  private final Path cacheFile;
+  private final System2 system2;
+  private final Map<String, Entry> previousEntries = new ConcurrentHashMap<>();
+  private final Map<String, Entry> currentEntries = new ConcurrentHashMap<>();
+
+  public FileMetadataCache(ProjectReactor projectReactor, Settings settings, System2 system2) {
+    this.enabled = settings.getBoolean(ENABLED_KEY);
+    this.cacheFile = projectReactor.getRoot().getWorkDir().toPath().resolve(FILENAME);
+    this.system2 = system2;
+  }
+
+  @Override
+  public void start() {
+    if (!enabled || !Files.isRegularFile(cacheFile)) {
+      return;
+    }
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+      if (in.readInt() != FORMAT_VERSION) {
+        return;
+      }
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        String path = in.readUTF();
+        previousEntries.put(path, Entry.read(in));
+      }
+      LOG.debug("Load metadata of {} files from cache", count);
+    } catch (IOException | RuntimeException e) {
+      // the cache is optional, files are simply read again
+      previousEntries.clear();
+      LOG.warn("Fail to load file metadata cache " + cacheFile + ", it is ignored", e);
+    }
+  }
+
+  @Override
+  public void stop() {
+    if (!enabled) {
+      return;
+    }
+    Path tempFile = cacheFile.resolveSibling(FILENAME + ".tmp");
+    try {
+      Files.createDirectories(cacheFile.getParent());
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(currentEntries.size());
+        for (Map.Entry<String, Entry> entry : currentEntries.entrySet()) {
+          out.writeUTF(entry.getKey());
+          entry.getValue().write(out);
+        }
+      }
+      Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      LOG.warn("Fail to write file metadata cache " + cacheFile, e);
+    }
+  }
+
+  /**
+   * Returns the metadata of the file from cache if the file is unchanged, else computes them.
+   */
+  public Metadata getOrCompute(Path file, Charset charset, Supplier<Metadata> computation) {
+    if (!enabled) {
+      return computation.get();
+    }
+    String key = file.toAbsolutePath().normalize().toString();
+    BasicFileAttributes attributes;
+    try {
+      attributes = Files.readAttributes(file, BasicFileAttributes.class);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to read attributes of file " + file, e);
+    }
+    long lastModified = attributes.lastModifiedTime().toMillis();
+    long size = attributes.size();
+
+    Entry previous = previousEntries.get(key);
+    if (previous != null && previous.matches(lastModified, size, charset)) {
+      currentEntries.put(key, previous);
+      return previous.metadata;
+    }
+    long now = system2.now();
+    Metadata metadata = computation.get();
+    if (lastModified < now - RACY_MODIFICATION_MS) {
+      currentEntries.put(key, new Entry(lastModified, size, charset.name(), metadata));
+    }
+    return metadata;
+  }
+
+  private static class Entry {
+    private final long lastModified;
+    private final long size;
+    private final String charset;
+    private final Metadata metadata;
+
+    Entry(long lastModified, long size, String charset, Metadata metadata) {
+      this.lastModified = lastModified;
+      this.size = size;
+      this.charset = charset;
+      this.metadata = metadata;
+    }
+
+    boolean matches(long otherLastModified, long otherSize, Charset otherCharset) {
+      return lastModified == otherLastModified && size == otherSize && charset.equals(otherCharset.name());
+    }
+
+    void write(DataOutputStream out) throws IOException {
+      out.writeLong(lastModified);
+      out.writeLong(size);
+      out.writeUTF(charset);
+      out.writeInt(metadata.lines());
+      out.writeInt(metadata.nonBlankLines());
+      out.writeUTF(metadata.hash());
+      out.writeInt(metadata.lastValidOffset());
+      int[] offsets = metadata.originalLineOffsets();
+      out.writeInt(offsets.length);
+      for (int offset : offsets) {
+        out.writeInt(offset);
+      }
+    }
+
+    static Entry read(DataInputStream in) throws IOException {
+      long lastModified = in.readLong();
+      long size = in.readLong();
+      String charset = in.readUTF();
+      int lines = in.readInt();
+      int nonBlankLines = in.readInt();
+      String hash = in.readUTF();
+      int lastValidOffset = in.readInt();
+      int[] offsets = new int[in.readInt()];
+      for (int i = 0; i < offsets.length; i++) {
+        offsets[i] = in.readInt();
+      }
+      return new Entry(lastModified, size, charset, new Metadata(lines, nonBlankLines, hash, offsets, lastValidOffset));
+    }
+  }
+}
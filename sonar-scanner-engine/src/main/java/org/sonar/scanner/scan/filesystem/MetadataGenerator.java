@@ -23,6 +23,7 @@ import com.google.common.annotations.VisibleForTesting;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -47,22 +48,28 @@ class MetadataGenerator {
   private final StatusDetection statusDetection;
   private final FileMetadata fileMetadata;
   private final DefaultInputModule inputModule;
+  private final FileMetadataCache fileMetadataCache;
+  private final FileContentCache fileContentCache;
 
-  MetadataGenerator(DefaultInputModule inputModule, StatusDetection statusDetection, FileMetadata fileMetadata) {
+  MetadataGenerator(DefaultInputModule inputModule, StatusDetection statusDetection, FileMetadata fileMetadata, FileMetadataCache fileMetadataCache,
+    FileContentCache fileContentCache) {
     this.inputModule = inputModule;
     this.statusDetection = statusDetection;
     this.fileMetadata = fileMetadata;
+    this.fileMetadataCache = fileMetadataCache;
+    this.fileContentCache = fileContentCache;
   }
 
   /**
    * Sets all metadata in the file, including charset and status.
-   * It is an expensive computation, reading the entire file.
+   * It is an expensive computation, reading the entire file, unless metadata of unchanged file are
+   * in {@link FileMetadataCache}.
    */
   public void setMetadata(final DefaultInputFile inputFile, Charset defaultEncoding) {
     try {
       Charset charset = detectCharset(inputFile.path(), defaultEncoding);
       inputFile.setCharset(charset);
-      Metadata metadata = fileMetadata.readMetadata(inputFile.file(), charset);
+      Metadata metadata = fileMetadataCache.getOrCompute(inputFile.path(), charset, () -> readMetadata(inputFile, charset));
       inputFile.setMetadata(metadata);
       inputFile.setStatus(statusDetection.status(inputModule.definition().getKeyWithBranch(), inputFile.relativePath(), metadata.hash()));
       LOG.debug("'{}' generated metadata {} with charset '{}'",
@@ -72,6 +79,14 @@ class MetadataGenerator {
     }
   }
 
+  private Metadata readMetadata(DefaultInputFile inputFile, Charset charset) {
+    try (Reader reader = fileContentCache.reader(inputFile.path(), charset)) {
+      return fileMetadata.readMetadata(reader, inputFile.file(), charset);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to read file " + inputFile.path().toAbsolutePath(), e);
+    }
+  }
+
   /**
    * @return charset detected from BOM in given file or given defaultCharset
    * @throws IllegalStateException if an I/O error occurs
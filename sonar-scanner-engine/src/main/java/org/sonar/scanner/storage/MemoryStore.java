@@ -0,0 +1,249 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import static com.google.common.collect.Iterables.transform;
+
+/**
+ * Store which keeps values on heap, without serializing them. Keys are sorted the same way as Persistit does
+ * for the types used as key elements (null, booleans, numbers, strings and dates), so that both stores
+ * iterate in the same order.
+ * <p>
+ * Contrary to {@link PersistitStore}, values are not copied: a value got from the store is the instance which
+ * was put. That's why values of a {@link Storage} must not be modified once put, unless they are put again.
+ * </p>
+ */
+class MemoryStore<V> implements Store<V> {
+
+  // value of entries put with a null value, which are not supported by ConcurrentSkipListMap
+  private static final Object NULL = new Object();
+  // element which is after all the other elements
+  private static final Object AFTER = new Object();
+  private static final Class<?>[] ORDERED_TYPES = {Boolean.class, Byte.class, Short.class, Character.class, Integer.class, Long.class, Float.class,
+    Double.class, BigInteger.class, BigDecimal.class, String.class, Date.class};
+  private static final Comparator<Object[]> KEY_COMPARATOR = MemoryStore::compareKeys;
+
+  private final ConcurrentSkipListMap<Object[], Object> entries = new ConcurrentSkipListMap<>(KEY_COMPARATOR);
+  // number of entries of all the memory stores sharing the same budget
+  private final AtomicLong entryCounter;
+
+  MemoryStore(AtomicLong entryCounter) {
+    this.entryCounter = entryCounter;
+  }
+
+  @Override
+  public void put(Object[] key, @Nullable V value) {
+    if (entries.put(key.clone(), value == null ? NULL : value) == null) {
+      entryCounter.incrementAndGet();
+    }
+  }
+
+  @Override
+  @CheckForNull
+  public V get(Object[] key) {
+    return unwrap(entries.get(key));
+  }
+
+  @Override
+  public boolean containsKey(Object[] key) {
+    return entries.containsKey(key);
+  }
+
+  @Override
+  public boolean remove(Object[] key) {
+    if (entries.remove(key) != null) {
+      entryCounter.decrementAndGet();
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  public void clear(Object[] key) {
+    removeAll(entries.subMap(key, true, append(key, AFTER), false));
+  }
+
+  @Override
+  public void clear() {
+    removeAll(entries);
+  }
+
+  private void removeAll(NavigableMap<Object[], Object> map) {
+    while (map.pollFirstEntry() != null) {
+      entryCounter.decrementAndGet();
+    }
+  }
+
+  @Override
+  public Set<Object> keySet(Object[] prefix) {
+    Set<Object> keys = new LinkedHashSet<>();
+    Object[] key = entries.higherKey(prefix);
+    while (key != null && key.length > prefix.length && isPrefix(prefix, key)) {
+      Object element = key[prefix.length];
+      keys.add(element);
+      // skip the other keys starting with the same element
+      key = entries.higherKey(append(Arrays.copyOf(key, prefix.length + 1), AFTER));
+    }
+    return keys;
+  }
+
+  @Override
+  public Iterable<V> values(Object[] prefix) {
+    return () -> transform(descendants(prefix).values(), MemoryStore::<V>unwrap).iterator();
+  }
+
+  @Override
+  public Iterable<Storage.Entry<V>> entries(Object[] prefix) {
+    return () -> transform(descendants(prefix).entrySet(), MemoryStore::<V>toEntry).iterator();
+  }
+
+  /**
+   * Gives back the memory budget of the entries of this store, which is not used anymore. Entries are not removed,
+   * so that the iterators which are still open go on with the entries as they were.
+   */
+  void release() {
+    entryCounter.addAndGet(-entries.size());
+  }
+
+  /**
+   * Number of entries of this store
+   */
+  int size() {
+    return entries.size();
+  }
+
+  @Override
+  public void close() {
+    clear();
+  }
+
+  private ConcurrentNavigableMap<Object[], Object> descendants(Object[] prefix) {
+    if (prefix.length == 0) {
+      return entries;
+    }
+    return entries.subMap(prefix, false, append(prefix, AFTER), false);
+  }
+
+  private static <V> Storage.Entry<V> toEntry(Map.Entry<Object[], Object> entry) {
+    return new Storage.Entry<>(entry.getKey().clone(), MemoryStore.<V>unwrap(entry.getValue()));
+  }
+
+  @SuppressWarnings("unchecked")
+  @CheckForNull
+  private static <V> V unwrap(@Nullable Object value) {
+    return value == NULL ? null : (V) value;
+  }
+
+  private static Object[] append(Object[] key, Object element) {
+    Object[] res = Arrays.copyOf(key, key.length + 1);
+    res[key.length] = element;
+    return res;
+  }
+
+  private static boolean isPrefix(Object[] prefix, Object[] key) {
+    for (int i = 0; i < prefix.length; i++) {
+      if (compareElements(prefix[i], key[i]) != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  static int compareKeys(Object[] key1, Object[] key2) {
+    int length = Math.min(key1.length, key2.length);
+    for (int i = 0; i < length; i++) {
+      int cmp = compareElements(key1[i], key2[i]);
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return Integer.compare(key1.length, key2.length);
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static int compareElements(@Nullable Object element1, @Nullable Object element2) {
+    if (element1 == element2) {
+      return 0;
+    }
+    if (element1 == AFTER || element2 == AFTER) {
+      return element1 == AFTER ? 1 : -1;
+    }
+    int cmp = Integer.compare(typeRank(element1), typeRank(element2));
+    if (cmp != 0 || element1 == null) {
+      return cmp;
+    }
+    if (element1 instanceof String) {
+      return compareCodePoints((String) element1, (String) element2);
+    }
+    if (element1.getClass() == element2.getClass() && element1 instanceof Comparable) {
+      return ((Comparable) element1).compareTo(element2);
+    }
+    cmp = element1.getClass().getName().compareTo(element2.getClass().getName());
+    return cmp != 0 ? cmp : element1.toString().compareTo(element2.toString());
+  }
+
+  /**
+   * Elements of different types are sorted by type, as Persistit does
+   */
+  private static int typeRank(@Nullable Object element) {
+    if (element == null) {
+      return 0;
+    }
+    for (int i = 0; i < ORDERED_TYPES.length; i++) {
+      if (ORDERED_TYPES[i].isInstance(element)) {
+        return i + 1;
+      }
+    }
+    return ORDERED_TYPES.length + 1;
+  }
+
+  /**
+   * Strings are sorted by code points (the order of their UTF-8 encoding), as Persistit does
+   */
+  private static int compareCodePoints(String s1, String s2) {
+    int length = Math.min(s1.length(), s2.length());
+    for (int i = 0; i < length; i++) {
+      char c1 = s1.charAt(i);
+      char c2 = s2.charAt(i);
+      if (c1 != c2) {
+        if (Character.isSurrogate(c1) || Character.isSurrogate(c2)) {
+          return Integer.compare(s1.codePointAt(i), s2.codePointAt(i));
+        }
+        return Character.compare(c1, c2);
+      }
+    }
+    return Integer.compare(s1.length(), s2.length());
+  }
+}
@@ -24,25 +24,34 @@ import com.persistit.Exchange;
 import com.persistit.Persistit;
 import com.persistit.Value;
 import com.persistit.Volume;
-import com.persistit.encoding.CoderManager;
 import com.persistit.encoding.ValueCoder;
 import com.persistit.exception.PersistitException;
-
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
 import org.picocontainer.Startable;
 import org.sonar.api.batch.ScannerSide;
 
+/**
+ * Storages of a project. Storages are in memory, and moved to a temporary Persistit volume when the
+ * memory budget is exceeded, or are directly in the volume, see {@link StoragesManager}.
+ */
 @ScannerSide
 public class Storages implements Startable {
-  private final Map<String, Exchange> cacheMap = new HashMap<>();
+  private final Map<String, Storage<?>> cacheMap = new HashMap<>();
+  private final Map<Class<?>, ValueCoder> valueCoders = new HashMap<>();
+  private final StoragesManager storagesManager;
+  // number of entries of all the storages which are in memory
+  private final AtomicLong entriesInMemory = new AtomicLong();
   private Persistit persistit;
   private Volume volume;
+  private boolean stopped = false;
 
   public Storages(StoragesManager storagesManager) {
-    persistit = storagesManager.persistit();
-    doStart();
+    this.storagesManager = storagesManager;
+    if (!storagesManager.isInMemory()) {
+      doStart();
+    }
   }
 
   @Override
@@ -52,39 +61,61 @@ public class Storages implements Startable {
 
   private void doStart() {
     try {
+      persistit = storagesManager.persistit();
       persistit.flush();
       volume = persistit.createTemporaryVolume();
     } catch (Exception e) {
       throw new IllegalStateException("Fail to create a cache volume", e);
     }
+    for (Map.Entry<Class<?>, ValueCoder> coder : valueCoders.entrySet()) {
+      persistit.getCoderManager().registerValueCoder(coder.getKey(), coder.getValue());
+    }
   }
 
+  /**
+   * Coders are used only by storages which are on disk
+   */
   public void registerValueCoder(Class<?> clazz, ValueCoder coder) {
-    CoderManager cm = persistit.getCoderManager();
-    cm.registerValueCoder(clazz, coder);
+    valueCoders.put(clazz, coder);
+    if (persistit != null) {
+      persistit.getCoderManager().registerValueCoder(clazz, coder);
+    }
   }
 
   public <V> Storage<V> createCache(String cacheName) {
-    Preconditions.checkState(volume != null && volume.isOpened(), "Caches are not initialized");
+    Preconditions.checkState(!stopped && (volume == null || volume.isOpened()), "Caches are not initialized");
     Preconditions.checkState(!cacheMap.containsKey(cacheName), "Cache is already created: %s", cacheName);
+    Store<V> store = storagesManager.isInMemory() ? new MemoryStore<>(entriesInMemory) : createDiskStore(cacheName);
+    Storage<V> cache = new Storage<>(cacheName, store, this);
+    cacheMap.put(cacheName, cache);
+    return cache;
+  }
+
+  <V> Store<V> createDiskStore(String cacheName) {
+    if (volume == null) {
+      doStart();
+    }
     try {
       Exchange exchange = persistit.getExchange(volume, cacheName, true);
       exchange.setMaximumValueSize(Value.MAXIMUM_SIZE);
-      Storage<V> cache = new Storage<>(cacheName, exchange);
-      cacheMap.put(cacheName, exchange);
-      return cache;
+      return new PersistitStore<>(cacheName, exchange);
     } catch (Exception e) {
       throw new IllegalStateException("Fail to create cache: " + cacheName, e);
     }
   }
 
+  boolean isMemoryBudgetExceeded() {
+    return entriesInMemory.get() > storagesManager.maxEntriesInMemory();
+  }
+
   @Override
   public void stop() {
-    for (Entry<String, Exchange> e : cacheMap.entrySet()) {
-      persistit.releaseExchange(e.getValue());
+    for (Storage<?> storage : cacheMap.values()) {
+      storage.close();
     }
 
     cacheMap.clear();
+    stopped = true;
 
     if (volume != null) {
       try {
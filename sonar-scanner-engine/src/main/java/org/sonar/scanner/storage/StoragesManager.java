@@ -24,32 +24,83 @@ import com.persistit.exception.PersistitException;
 import com.persistit.logging.Slf4jAdapter;
 import java.io.File;
 import java.util.Properties;
+import javax.annotation.CheckForNull;
+import org.apache.commons.lang.StringUtils;
 import org.picocontainer.Startable;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.ScannerSide;
+import org.sonar.api.utils.MessageException;
 import org.sonar.api.utils.TempFolder;
+import org.sonar.scanner.bootstrap.GlobalProperties;
 
 import static org.sonar.core.util.FileUtils.deleteQuietly;
 
 /**
- * Factory of storages
+ * Factory of storages.
+ * <p>
+ * By default, storages keep their data in a Persistit volume on disk. Setting {@link #STORAGE_TYPE_KEY}
+ * to {@code memory} keeps them in memory until the storages of a project have more than
+ * {@link #MAX_ENTRIES_IN_MEMORY_KEY} entries, then the storage being written is moved to disk.
+ * As this budget is a number of entries whatever the size of their values, the memory type is to be
+ * enabled only when the heap of the scanner is large enough for the biggest storages.
+ * </p>
  *
  * @since 3.6
  */
 @ScannerSide
 public class StoragesManager implements Startable {
+
+  public static final String STORAGE_TYPE_KEY = "sonar.scanner.storage";
+  public static final String MAX_ENTRIES_IN_MEMORY_KEY = "sonar.scanner.storage.maxEntriesInMemory";
+  static final String MEMORY_TYPE = "memory";
+  static final String PERSISTIT_TYPE = "persistit";
+  static final long DEFAULT_MAX_ENTRIES_IN_MEMORY = 500_000L;
+
+  private final boolean inMemory;
+  private final long maxEntriesInMemory;
   private File tempDir;
   private Persistit persistit;
-  private final TempFolder tempFolder;
 
   public StoragesManager(TempFolder tempFolder) {
-    this.tempFolder = tempFolder;
-    initPersistit();
+    this(tempFolder, false, DEFAULT_MAX_ENTRIES_IN_MEMORY);
+  }
+
+  public StoragesManager(TempFolder tempFolder, GlobalProperties properties) {
+    this(tempFolder, isInMemory(properties), maxEntriesInMemory(properties));
+  }
+
+  StoragesManager(TempFolder tempFolder, boolean inMemory, long maxEntriesInMemory) {
+    this.inMemory = inMemory;
+    this.maxEntriesInMemory = maxEntriesInMemory;
+    tempDir = tempFolder.newDir("caches");
+    if (!inMemory) {
+      initPersistit();
+    }
+  }
+
+  private static boolean isInMemory(GlobalProperties properties) {
+    String type = StringUtils.defaultIfBlank(properties.property(STORAGE_TYPE_KEY), PERSISTIT_TYPE);
+    if (!MEMORY_TYPE.equals(type) && !PERSISTIT_TYPE.equals(type)) {
+      throw MessageException.of(String.format("Invalid value of property %s: '%s'. Supported values are '%s' and '%s'.",
+        STORAGE_TYPE_KEY, type, MEMORY_TYPE, PERSISTIT_TYPE));
+    }
+    return MEMORY_TYPE.equals(type);
+  }
+
+  private static long maxEntriesInMemory(GlobalProperties properties) {
+    String value = properties.property(MAX_ENTRIES_IN_MEMORY_KEY);
+    if (StringUtils.isBlank(value)) {
+      return DEFAULT_MAX_ENTRIES_IN_MEMORY;
+    }
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      throw MessageException.of(String.format("Invalid value of property %s: '%s'", MAX_ENTRIES_IN_MEMORY_KEY, value));
+    }
   }
 
   private void initPersistit() {
     try {
-      tempDir = tempFolder.newDir("caches");
       persistit = new Persistit();
       persistit.setPersistitLogger(new Slf4jAdapter(LoggerFactory.getLogger("PERSISTIT")));
       Properties props = new Properties();
@@ -75,7 +126,7 @@ public class StoragesManager implements Startable {
   }
 
   @Override
-  public void stop() {
+  public synchronized void stop() {
     if (persistit != null) {
       try {
         persistit.close(false);
@@ -92,7 +143,22 @@ public class StoragesManager implements Startable {
     return tempDir;
   }
 
-  Persistit persistit() {
+  /**
+   * Persistit is started on first call when storages are in memory. Returns {@code null} once stopped.
+   */
+  @CheckForNull
+  synchronized Persistit persistit() {
+    if (persistit == null && tempDir != null) {
+      initPersistit();
+    }
     return persistit;
   }
+
+  boolean isInMemory() {
+    return inMemory;
+  }
+
+  long maxEntriesInMemory() {
+    return maxEntriesInMemory;
+  }
 }
@@ -0,0 +1,70 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+/**
+ * Backend of a {@link Storage}. Keys are arrays of elements, ordered element by element, a key being
+ * before the keys it is a prefix of.
+ *
+ * @see PersistitStore
+ * @see MemoryStore
+ */
+interface Store<V> {
+
+  void put(Object[] key, @Nullable V value);
+
+  @CheckForNull
+  V get(Object[] key);
+
+  boolean containsKey(Object[] key);
+
+  boolean remove(Object[] key);
+
+  /**
+   * Removes the key and all the keys it is a prefix of
+   */
+  void clear(Object[] key);
+
+  void clear();
+
+  /**
+   * Distinct elements which follow the prefix in the keys the prefix is a prefix of, in order
+   */
+  Set<Object> keySet(Object[] prefix);
+
+  /**
+   * Lazy-loading values of the keys the prefix is a strict prefix of, in order of keys
+   */
+  Iterable<V> values(Object[] prefix);
+
+  /**
+   * Lazy-loading entries of the keys the prefix is a strict prefix of, in order of keys
+   */
+  Iterable<Storage.Entry<V>> entries(Object[] prefix);
+
+  /**
+   * Releases the resources of the store. The store can't be used afterwards.
+   */
+  void close();
+}
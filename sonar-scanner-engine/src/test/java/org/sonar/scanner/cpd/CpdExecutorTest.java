@@ -122,6 +122,63 @@ public class CpdExecutorTest {
     assertThat(executor.getMinimumTokens("php")).isEqualTo(33);
   }
 
+  @Test
+  public void defaultThreads() {
+    assertThat(executor.getThreads()).isEqualTo(1);
+  }
+
+  @Test
+  public void threadsFromSettings() {
+    settings.setProperty(CpdExecutor.THREADS_PROPERTY, "4");
+    assertThat(executor.getThreads()).isEqualTo(4);
+
+    settings.setProperty(CpdExecutor.THREADS_PROPERTY, "-1");
+    assertThat(executor.getThreads()).isEqualTo(1);
+  }
+
+  @Test
+  public void detectInParallelWithSameResultsAsSequentially() throws IOException {
+    List<DefaultInputFile> components = new ArrayList<>();
+    for (int i = 1; i <= 10; i++) {
+      DefaultInputFile component = createComponent("src/Bar" + i + ".php", 100);
+      List<Block> blocks = new ArrayList<>();
+      for (int j = 1; j <= 3; j++) {
+        blocks.add(Block.builder()
+          .setResourceId(component.key())
+          .setIndexInFile(j)
+          .setLines(j * 10, j * 10 + 5)
+          .setUnit(j * 100, j * 100 + 99)
+          .setBlockHash(new ByteArray(("abcd123" + j).getBytes()))
+          .build());
+      }
+      index.insert((InputFile) component, blocks);
+      components.add(component);
+    }
+
+    ScannerReportReader sequential = executeWithThreads(1);
+    ScannerReportReader parallel = executeWithThreads(4);
+
+    for (DefaultInputFile component : components) {
+      List<Duplication> expected = new ArrayList<>();
+      sequential.readComponentDuplications(component.batchId()).forEachRemaining(expected::add);
+      List<Duplication> actual = new ArrayList<>();
+      parallel.readComponentDuplications(component.batchId()).forEachRemaining(actual::add);
+
+      assertThat(expected).hasSize(1);
+      assertThat(expected.get(0).getDuplicateList()).hasSize(9);
+      assertThat(actual).isEqualTo(expected);
+    }
+  }
+
+  private ScannerReportReader executeWithThreads(int threads) throws IOException {
+    File outputDir = temp.newFolder();
+    ReportPublisher reportPublisher = mock(ReportPublisher.class);
+    when(reportPublisher.getWriter()).thenReturn(new ScannerReportWriter(outputDir));
+    settings.setProperty(CpdExecutor.THREADS_PROPERTY, threads);
+    new CpdExecutor(settings, index, reportPublisher, componentStore).execute();
+    return new ScannerReportReader(outputDir);
+  }
+
   @Test
   public void testNothingToSave() {
     executor.saveDuplications(batchComponent1, Collections.<CloneGroup>emptyList());
@@ -40,6 +40,7 @@ import org.sonar.api.config.Settings;
 import org.sonar.api.config.MapSettings;
 import org.sonar.duplications.block.Block;
 import org.sonar.scanner.cpd.index.SonarCpdBlockIndex;
+import org.sonar.scanner.scan.filesystem.FileContentCache;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.eq;
@@ -77,12 +78,12 @@ public class JavaCpdBlockIndexerTest {
     FileUtils.copyURLToFile(this.getClass().getResource("ManyStatements.java"), ioFile);
 
     settings = new MapSettings();
-    engine = new JavaCpdBlockIndexer(fs, settings, index);
+    engine = new JavaCpdBlockIndexer(fs, settings, index, new FileContentCache(settings));
   }
 
   @Test
   public void languageSupported() {
-    JavaCpdBlockIndexer engine = new JavaCpdBlockIndexer(mock(FileSystem.class), new MapSettings(), index);
+    JavaCpdBlockIndexer engine = new JavaCpdBlockIndexer(mock(FileSystem.class), new MapSettings(), index, new FileContentCache(new MapSettings()));
     assertThat(engine.isLanguageSupported(JAVA)).isTrue();
     assertThat(engine.isLanguageSupported("php")).isFalse();
   }
@@ -26,6 +26,7 @@ import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import com.google.common.collect.ImmutableMap;
 import org.sonar.api.CoreProperties;
+import org.sonar.api.utils.TempFolder;
 import org.sonar.scanner.bootstrap.GlobalProperties;
 import org.sonar.scanner.bootstrap.GlobalTempFolderProvider;
 import org.sonar.scanner.storage.Storages;
@@ -43,10 +44,14 @@ public abstract class AbstractCachesTest {
   protected Storages caches;
 
   private static StoragesManager createCacheOnTemp() {
+    return new StoragesManager(createTempFolder());
+  }
+
+  protected static TempFolder createTempFolder() {
     Map<String, String> props = ImmutableMap.of(CoreProperties.WORKING_DIRECTORY, temp.getRoot().getAbsolutePath(),
       CoreProperties.GLOBAL_WORKING_DIRECTORY, temp.getRoot().getAbsolutePath());
 
-    return new StoragesManager(new GlobalTempFolderProvider().provide(new GlobalProperties(props)));
+    return new GlobalTempFolderProvider().provide(new GlobalProperties(props));
   }
 
   @BeforeClass
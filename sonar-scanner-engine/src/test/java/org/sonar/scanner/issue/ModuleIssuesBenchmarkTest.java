@@ -0,0 +1,121 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.issue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.rule.internal.ActiveRulesBuilder;
+import org.sonar.api.batch.rule.internal.RulesBuilder;
+import org.sonar.api.batch.sensor.issue.internal.DefaultIssue;
+import org.sonar.api.batch.sensor.issue.internal.DefaultIssueLocation;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rule.Severity;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.scanner.issue.ignore.pattern.IssueExclusionPatternInitializer;
+import org.sonar.scanner.issue.ignore.pattern.IssueInclusionPatternInitializer;
+import org.sonar.scanner.issue.ignore.scanner.IssueExclusionsLoader;
+import org.sonar.scanner.issue.ignore.scanner.IssueExclusionsRegexpScanner;
+import org.sonar.scanner.protocol.output.ScannerReport;
+import org.sonar.scanner.protocol.output.ScannerReportWriter;
+import org.sonar.scanner.report.ReportPublisher;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Measures the time to store 1M issues through {@link ModuleIssues}, with and without the pool of
+ * open issue files of {@link ScannerReportWriter}. Executed only with the profile "runBenchmarks".
+ */
+public class ModuleIssuesBenchmarkTest {
+
+  private static final Logger LOGGER = Loggers.get(ModuleIssuesBenchmarkTest.class);
+  private static final RuleKey RULE_KEY = RuleKey.of("squid", "AvoidCycle");
+  private static final int FILES = 10_000;
+  private static final int ISSUES_PER_FILE = 100;
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private List<DefaultInputFile> files = new ArrayList<>(FILES);
+
+  @Before
+  public void setUp() {
+    assumeTrue(Boolean.getBoolean("enableBenchmarkAssertions"));
+    for (int i = 0; i < FILES; i++) {
+      files.add(new TestInputFileBuilder("foo", "src/Foo" + i + ".php").initMetadata("Foo\nBar\nBiz\n").build());
+    }
+  }
+
+  @Test
+  public void append_issues_with_pool_of_open_files() throws Exception {
+    long withoutPool = storeIssues(0);
+    long withPool = storeIssues(ScannerReportWriter.DEFAULT_MAX_OPEN_ISSUE_STREAMS);
+
+    LOGGER.info("{} issues stored in {} ms without pool of open files, in {} ms with pool", FILES * ISSUES_PER_FILE, withoutPool, withPool);
+    assertThat(withPool).isLessThan(withoutPool);
+  }
+
+  private long storeIssues(int maxOpenIssueStreams) throws Exception {
+    ScannerReportWriter writer = new ScannerReportWriter(temp.newFolder(), maxOpenIssueStreams);
+    ReportPublisher reportPublisher = stub(ReportPublisher.class);
+    when(reportPublisher.getWriter()).thenReturn(writer);
+    IssueFilters filters = stub(IssueFilters.class);
+    when(filters.accept(anyString(), any(ScannerReport.Issue.class))).thenReturn(true);
+    ActiveRulesBuilder activeRules = new ActiveRulesBuilder();
+    activeRules.create(RULE_KEY).setSeverity(Severity.INFO).activate();
+    RulesBuilder rules = new RulesBuilder();
+    rules.add(RULE_KEY).setName("Avoid Cycle");
+    ModuleIssues moduleIssues = new ModuleIssues(activeRules.build(), rules.build(), filters, reportPublisher,
+      new IssueExclusionsLoader(stub(IssueExclusionsRegexpScanner.class), stub(IssueExclusionPatternInitializer.class),
+        stub(IssueInclusionPatternInitializer.class), stub(FileSystem.class)));
+
+    long start = System.currentTimeMillis();
+    for (DefaultInputFile file : files) {
+      for (int i = 0; i < ISSUES_PER_FILE; i++) {
+        DefaultIssue issue = new DefaultIssue()
+          .at(new DefaultIssueLocation().on(file).at(file.selectLine(1 + i % 3)).message("Issue " + i))
+          .forRule(RULE_KEY);
+        moduleIssues.initAndAddIssue(issue);
+      }
+    }
+    writer.close();
+    return System.currentTimeMillis() - start;
+  }
+
+  /**
+   * Mocks which do not record the millions of invocations
+   */
+  private static <T> T stub(Class<T> classToMock) {
+    return mock(classToMock, withSettings().stubOnly());
+  }
+}
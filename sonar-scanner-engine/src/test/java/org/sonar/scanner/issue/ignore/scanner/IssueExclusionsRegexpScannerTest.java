@@ -22,14 +22,22 @@ package org.sonar.scanner.issue.ignore.scanner;
 import com.google.common.collect.Sets;
 import com.google.common.io.Resources;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.sonar.api.config.MapSettings;
 import org.sonar.scanner.issue.ignore.pattern.IssueExclusionPatternInitializer;
 import org.sonar.scanner.issue.ignore.pattern.IssuePattern;
 import org.sonar.scanner.issue.ignore.pattern.LineRange;
 import org.sonar.scanner.issue.ignore.pattern.PatternMatcher;
 import org.sonar.scanner.issue.ignore.scanner.IssueExclusionsRegexpScanner;
+import org.sonar.scanner.scan.filesystem.FileContentCache;
+import java.nio.charset.MalformedInputException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Set;
@@ -42,6 +50,11 @@ import static org.mockito.Mockito.when;
 
 public class IssueExclusionsRegexpScannerTest {
 
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
   private IssueExclusionsRegexpScanner regexpScanner;
 
   private String javaFile;
@@ -69,7 +82,7 @@ public class IssueExclusionsRegexpScannerTest {
     when(patternsInitializer.getBlockPatterns()).thenReturn(Arrays.asList(blockPattern1, blockPattern2));
     when(patternsInitializer.getPatternMatcher()).thenReturn(patternMatcher);
 
-    regexpScanner = new IssueExclusionsRegexpScanner(patternsInitializer);
+    regexpScanner = new IssueExclusionsRegexpScanner(patternsInitializer, new FileContentCache(new MapSettings()));
     verify(patternsInitializer, times(1)).getAllFilePatterns();
     verify(patternsInitializer, times(1)).getBlockPatterns();
 
@@ -84,6 +97,16 @@ public class IssueExclusionsRegexpScannerTest {
     verifyNoMoreInteractions(patternsInitializer);
   }
 
+  @Test
+  public void fail_on_malformed_input() throws Exception {
+    Path file = temp.newFile().toPath();
+    Files.write(file, new byte[] {'a', (byte) 0xC3, 'b'});
+
+    expectedException.expect(MalformedInputException.class);
+
+    regexpScanner.scan(javaFile, file, UTF_8);
+  }
+
   @Test
   public void shouldAddPatternToExcludeFile() throws Exception {
     regexpScanner.scan(javaFile, Paths.get(Resources.getResource(
@@ -219,4 +219,18 @@ public class ReportPublisherTest {
       entry("projectKey", "struts"));
   }
 
+  @Test
+  public void upload_indexed_archive_only_to_servers_supporting_it() {
+    ReportPublisher underTest = new ReportPublisher(settings, wsClient, server, contextPublisher, reactor, mode, mock(TempFolder.class), new ReportPublisherStep[0]);
+
+    when(server.getVersion()).thenReturn("6.3.1");
+    assertThat(underTest.serverSupportsIndexedArchive()).isFalse();
+
+    when(server.getVersion()).thenReturn("6.4");
+    assertThat(underTest.serverSupportsIndexedArchive()).isTrue();
+
+    when(server.getVersion()).thenReturn("7.0-SNAPSHOT");
+    assertThat(underTest.serverSupportsIndexedArchive()).isTrue();
+  }
+
 }
@@ -23,25 +23,43 @@ import com.google.common.collect.ImmutableSortedMap;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Optional;
 import java.util.stream.IntStream;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.rule.Severity;
+import org.sonar.home.cache.FileCache;
+import org.sonar.home.cache.Logger;
 import org.sonar.scanner.WsTestUtil;
 import org.sonar.scanner.bootstrap.ScannerWsClient;
 import org.sonarqube.ws.Rules;
 import org.sonarqube.ws.Rules.Active;
 import org.sonarqube.ws.Rules.ActiveList;
 import org.sonarqube.ws.Rules.Actives;
-import org.sonarqube.ws.Rules.Rule;
 import org.sonarqube.ws.Rules.SearchResponse;
 import org.sonarqube.ws.Rules.SearchResponse.Builder;
+import org.sonarqube.ws.WsBatch.WsActiveRulesResponse;
+import org.sonarqube.ws.client.HttpException;
+import org.sonarqube.ws.client.MockWsResponse;
+import org.sonarqube.ws.client.WsRequest;
+import org.sonarqube.ws.client.WsResponse;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
 
 public class DefaultActiveRulesLoaderTest {
 
@@ -52,19 +70,83 @@ public class DefaultActiveRulesLoaderTest {
   private static final String FORMAT_VALUE = "^[a-z][a-zA-Z0-9]*$";
   private static final String SEVERITY_VALUE = Severity.MINOR;
 
+  private static final String BUNDLE_URL = "/api/batch/active_rules.protobuf?qprofile=c%2B-test_c%2B-values-17445";
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   private DefaultActiveRulesLoader loader;
   private ScannerWsClient wsClient;
 
   @Before
-  public void setUp() {
+  public void setUp() throws IOException {
     wsClient = mock(ScannerWsClient.class);
-    loader = new DefaultActiveRulesLoader(wsClient);
+    FileCache fileCache = FileCache.create(temp.newFolder(), mock(Logger.class));
+    loader = new DefaultActiveRulesLoader(wsClient, fileCache);
   }
 
   @Test
-  public void feed_real_response_encode_qp() throws IOException {
+  public void load_bundle_and_keep_it_in_cache() {
+    byte[] bundle = WsActiveRulesResponse.newBuilder()
+      .setVersion(1)
+      .addActiveRules(WsActiveRulesResponse.ActiveRule.newBuilder()
+        .setRepository("squid").setKey("S108").setName("Nested blocks").setSeverity(SEVERITY_VALUE)
+        .setLanguage("java").setInternalKey("S108").setTemplateKey("S100").setCreatedAt(1_000L)
+        .putAllParams(ImmutableSortedMap.of(FORMAT_KEY, FORMAT_VALUE, "max", "")))
+      .build().toByteArray();
+    String etag = "\"" + DigestUtils.md5Hex(bundle) + "\"";
+    when(wsClient.call(any(WsRequest.class)))
+      .thenReturn(new MockWsResponse().setHeader("ETag", etag).setContent(bundle))
+      .thenReturn(new MockWsResponse().setCode(304).setHeader("ETag", etag));
+
+    Collection<LoadedActiveRule> activeRules = loader.load("c+-test_c+-values-17445");
+    Collection<LoadedActiveRule> cachedActiveRules = loader.load("c+-test_c+-values-17445");
+
+    for (Collection<LoadedActiveRule> rules : Arrays.asList(activeRules, cachedActiveRules)) {
+      assertThat(rules).hasSize(1);
+      LoadedActiveRule rule = rules.iterator().next();
+      assertThat(rule.getRuleKey()).isEqualTo(EXAMPLE_KEY);
+      assertThat(rule.getName()).isEqualTo("Nested blocks");
+      assertThat(rule.getSeverity()).isEqualTo(SEVERITY_VALUE);
+      assertThat(rule.getLanguage()).isEqualTo("java");
+      assertThat(rule.getInternalKey()).isEqualTo("S108");
+      assertThat(rule.getTemplateRuleKey()).isEqualTo("S100");
+      assertThat(rule.getCreatedAt()).isEqualTo(1_000L);
+      // parameters without value are empty, as when searched with api/rules/search
+      assertThat(rule.getParams()).containsOnly(entry(FORMAT_KEY, FORMAT_VALUE), entry("max", ""));
+    }
+    ArgumentCaptor<WsRequest> requests = ArgumentCaptor.forClass(WsRequest.class);
+    verify(wsClient, times(2)).call(requests.capture());
+    assertThat(requests.getAllValues()).extracting(WsRequest::getPath).containsExactly(BUNDLE_URL, BUNDLE_URL);
+    assertThat(requests.getAllValues().get(0).getHeaders()).isEmpty();
+    assertThat(requests.getAllValues().get(1).getHeaders()).containsOnly(entry("If-None-Match", etag));
+  }
+
+  @Test
+  public void response_is_closed_when_bundle_is_already_in_cache() {
+    byte[] bundle = WsActiveRulesResponse.newBuilder().setVersion(1).build().toByteArray();
+    String etag = "\"" + DigestUtils.md5Hex(bundle) + "\"";
+    WsResponse alreadyInCache = mock(WsResponse.class);
+    when(alreadyInCache.code()).thenReturn(200);
+    when(alreadyInCache.header("ETag")).thenReturn(Optional.of(etag));
+    when(wsClient.call(any(WsRequest.class)))
+      .thenReturn(new MockWsResponse().setHeader("ETag", etag).setContent(bundle))
+      .thenReturn(alreadyInCache);
+
+    // profiles with the same active rules share the bundle in cache
+    loader.load("c+-test_c+-values-17445");
+    loader.load("other-profile");
+
+    verify(alreadyInCache).close();
+    verify(alreadyInCache, never()).contentStream();
+  }
+
+  @Test
+  public void search_active_rules_if_bundle_is_not_available() throws IOException {
     int total = PAGE_SIZE_1 + PAGE_SIZE_2;
 
+    WsTestUtil.mockException(wsClient, BUNDLE_URL, new HttpException(BUNDLE_URL, 404, ""));
+
     WsTestUtil.mockStream(wsClient, urlOfPage(1), responseOfSize(PAGE_SIZE_1, total));
     WsTestUtil.mockStream(wsClient, urlOfPage(2), responseOfSize(PAGE_SIZE_2, total));
 
@@ -80,6 +162,8 @@ public class DefaultActiveRulesLoaderTest {
       .extracting(LoadedActiveRule::getSeverity)
       .containsExactly(SEVERITY_VALUE);
 
+    verify(wsClient).baseUrl();
+    WsTestUtil.verifyCall(wsClient, BUNDLE_URL);
     WsTestUtil.verifyCall(wsClient, urlOfPage(1));
     WsTestUtil.verifyCall(wsClient, urlOfPage(2));
 
@@ -106,7 +190,7 @@ public class DefaultActiveRulesLoaderTest {
       .mapToObj(i -> RuleKey.of("squid", "S" + i))
       .forEach(key -> {
 
-        Rule.Builder ruleBuilder = Rule.newBuilder();
+        Rules.Rule.Builder ruleBuilder = Rules.Rule.newBuilder();
         ruleBuilder.setKey(key.toString());
         rules.addRules(ruleBuilder);
 
@@ -29,6 +29,7 @@ import org.sonar.home.cache.DirectoryLock;
 import org.sonar.scanner.scan.WorkDirectoryCleaner;
 import java.io.File;
 import java.io.IOException;
+import org.sonar.scanner.scan.filesystem.FileMetadataCache;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
@@ -76,4 +77,12 @@ public class WorkDirectoryCleanerTest {
     assertThat(temp.getRoot().list()).containsOnly(DirectoryLock.LOCK_FILE_NAME);
   }
 
+  @Test
+  public void keep_file_metadata_cache() throws IOException {
+    new File(temp.getRoot(), FileMetadataCache.FILENAME).createNewFile();
+    cleaner.execute();
+
+    assertThat(temp.getRoot().list()).containsOnly(DirectoryLock.LOCK_FILE_NAME, FileMetadataCache.FILENAME);
+  }
+
 }
@@ -0,0 +1,217 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.scan.filesystem;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.charset.MalformedInputException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.config.MapSettings;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_16LE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FileContentCacheTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private MapSettings settings = new MapSettings();
+
+  @Test
+  public void contents_are_read_once() throws IOException {
+    FileContentCache underTest = new FileContentCache(settings);
+    Path file = write("foo\nbar", UTF_8);
+
+    String contents = underTest.contents(file, UTF_8);
+    assertThat(contents).isEqualTo("foo\nbar");
+
+    Files.delete(file);
+    assertThat(underTest.contents(file, UTF_8)).isSameAs(contents);
+    assertThat(underTest.sizeInBytes()).isEqualTo(14L);
+  }
+
+  @Test
+  public void contents_are_cached_by_charset() throws IOException {
+    FileContentCache underTest = new FileContentCache(settings);
+    Path file = write("caf\u00E9", UTF_8);
+
+    assertThat(underTest.contents(file, UTF_8)).isEqualTo("caf\u00E9");
+    assertThat(underTest.contents(file, ISO_8859_1)).isEqualTo("caf\u00C3\u00A9");
+  }
+
+  @Test
+  public void bom_is_removed() throws IOException {
+    FileContentCache underTest = new FileContentCache(settings);
+
+    assertThat(underTest.contents(write("\uFEFFfoo", UTF_8), UTF_8)).isEqualTo("foo");
+    assertThat(underTest.contents(write("\uFEFFbar", UTF_16LE), UTF_16LE)).isEqualTo("bar");
+  }
+
+  @Test
+  public void utf8_bom_is_removed_whatever_the_encoding() throws IOException {
+    FileContentCache underTest = new FileContentCache(settings);
+    Path file = write("\uFEFFcaf\u00E9", UTF_8);
+
+    assertThat(underTest.contents(file, ISO_8859_1)).isEqualTo("caf\u00C3\u00A9");
+    assertThat(underTest.contents(file, Charset.forName("windows-1252"))).isEqualTo("caf\u00C3\u00A9");
+  }
+
+  @Test
+  public void malformed_input_is_replaced() throws IOException {
+    FileContentCache underTest = new FileContentCache(settings);
+    Path file = temp.newFile().toPath();
+    Files.write(file, new byte[] {'a', (byte) 0xC3, 'b'});
+
+    assertThat(underTest.contents(file, UTF_8)).isEqualTo("a\uFFFDb");
+  }
+
+  @Test
+  public void strict_contents_fail_on_malformed_input() throws IOException {
+    FileContentCache underTest = new FileContentCache(settings);
+    Path file = temp.newFile().toPath();
+    Files.write(file, new byte[] {'a', (byte) 0xC3, 'b'});
+
+    expectedException.expect(MalformedInputException.class);
+
+    underTest.strictContents(file, UTF_8);
+  }
+
+  @Test
+  public void strict_contents_of_well_formed_file() throws IOException {
+    FileContentCache underTest = new FileContentCache(settings);
+    Path file = write("\uFEFFcaf\u00E9", UTF_8);
+
+    assertThat(underTest.strictContents(file, UTF_8)).isEqualTo("caf\u00E9").isSameAs(underTest.contents(file, UTF_8));
+  }
+
+  @Test
+  public void files_larger_than_cache_are_streamed() throws IOException {
+    settings.setProperty(FileContentCache.MAX_SIZE_KEY, 1);
+    FileContentCache underTest = new FileContentCache(settings);
+    String contents = StringUtils.repeat("caf\u00E9\n", 100 * 1024);
+    Path file = write("\uFEFF" + contents, UTF_8);
+
+    try (Reader reader = underTest.reader(file, UTF_8)) {
+      assertThat(reader).isNotInstanceOf(StringReader.class);
+      assertThat(IOUtils.toString(reader)).isEqualTo(contents);
+    }
+    assertThat(underTest.sizeInBytes()).isZero();
+  }
+
+  @Test
+  public void streamed_files_are_decoded_with_replacement() throws IOException {
+    settings.setProperty(FileContentCache.MAX_SIZE_KEY, 0);
+    FileContentCache underTest = new FileContentCache(settings);
+    Path file = temp.newFile().toPath();
+    Files.write(file, new byte[] {'a', (byte) 0xC3, 'b'});
+
+    try (Reader reader = underTest.reader(file, UTF_8)) {
+      assertThat(IOUtils.toString(reader)).isEqualTo("a\uFFFDb");
+    }
+  }
+
+  @Test
+  public void strict_reader_of_streamed_file_fails_on_malformed_input() throws IOException {
+    settings.setProperty(FileContentCache.MAX_SIZE_KEY, 0);
+    FileContentCache underTest = new FileContentCache(settings);
+    Path file = temp.newFile().toPath();
+    Files.write(file, new byte[] {'a', (byte) 0xC3, 'b'});
+
+    expectedException.expect(MalformedInputException.class);
+
+    try (Reader reader = underTest.strictReader(file, UTF_8)) {
+      IOUtils.toString(reader);
+    }
+  }
+
+  @Test
+  public void strict_reader_of_cached_file_fails_on_malformed_input() throws IOException {
+    FileContentCache underTest = new FileContentCache(settings);
+    Path file = temp.newFile().toPath();
+    Files.write(file, new byte[] {'a', (byte) 0xC3, 'b'});
+
+    assertThat(underTest.contents(file, UTF_8)).isEqualTo("a\uFFFDb");
+    expectedException.expect(MalformedInputException.class);
+
+    underTest.strictReader(file, UTF_8);
+  }
+
+  @Test
+  public void least_recently_used_contents_are_evicted() throws IOException {
+    settings.setProperty(FileContentCache.MAX_SIZE_KEY, 1);
+    FileContentCache underTest = new FileContentCache(settings);
+    String content = StringUtils.repeat("a", 200 * 1024);
+    Path file1 = write(content, UTF_8);
+    Path file2 = write(content, UTF_8);
+    Path file3 = write(content, UTF_8);
+
+    String contents1 = underTest.contents(file1, UTF_8);
+    String contents2 = underTest.contents(file2, UTF_8);
+    // file1 becomes the most recently used
+    assertThat(underTest.contents(file1, UTF_8)).isSameAs(contents1);
+    underTest.contents(file3, UTF_8);
+
+    assertThat(underTest.sizeInBytes()).isLessThanOrEqualTo(1024L * 1024L);
+    assertThat(underTest.contents(file1, UTF_8)).isSameAs(contents1);
+    assertThat(underTest.contents(file2, UTF_8)).isNotSameAs(contents2).isEqualTo(contents2);
+  }
+
+  @Test
+  public void contents_larger_than_cache_are_not_cached() throws IOException {
+    settings.setProperty(FileContentCache.MAX_SIZE_KEY, 0);
+    FileContentCache underTest = new FileContentCache(settings);
+    Path file = write("foo", UTF_8);
+
+    String contents = underTest.contents(file, UTF_8);
+
+    assertThat(underTest.contents(file, UTF_8)).isNotSameAs(contents).isEqualTo(contents);
+    assertThat(underTest.sizeInBytes()).isZero();
+  }
+
+  @Test
+  public void fail_if_file_does_not_exist() throws IOException {
+    Path file = temp.getRoot().toPath().resolve("missing.java");
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Fail to read file '" + file.toAbsolutePath() + "'");
+
+    new FileContentCache(settings).contents(file, UTF_8);
+  }
+
+  private Path write(String contents, Charset charset) throws IOException {
+    Path file = temp.newFile().toPath();
+    Files.write(file, contents.getBytes(charset));
+    return file;
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.scan.filesystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.bootstrap.ProjectDefinition;
+import org.sonar.api.batch.bootstrap.ProjectReactor;
+import org.sonar.api.batch.fs.internal.FileMetadata;
+import org.sonar.api.batch.fs.internal.Metadata;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.utils.System2;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class FileMetadataCacheTest {
+
+  private static final long NOW = 1_500_000_000_000L;
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private System2 system2 = mock(System2.class);
+  private MapSettings settings = new MapSettings();
+  private File workDir;
+  private Path file;
+  private AtomicInteger computations = new AtomicInteger();
+
+  @Before
+  public void setUp() throws IOException {
+    when(system2.now()).thenReturn(NOW);
+    settings.setProperty(FileMetadataCache.ENABLED_KEY, true);
+    workDir = temp.newFolder();
+    file = temp.newFile("Foo.java").toPath();
+    write(file, "foo\n\nbar", NOW - 10_000L);
+  }
+
+  @Test
+  public void metadata_of_unchanged_file_are_reused_by_next_analysis() {
+    Metadata metadata = analyse(file, UTF_8);
+    assertThat(computations.get()).isEqualTo(1);
+
+    Metadata cached = analyse(file, UTF_8);
+    assertThat(computations.get()).isEqualTo(1);
+    assertThat(cached.lines()).isEqualTo(metadata.lines()).isEqualTo(3);
+    assertThat(cached.nonBlankLines()).isEqualTo(metadata.nonBlankLines()).isEqualTo(2);
+    assertThat(cached.hash()).isEqualTo(metadata.hash());
+    assertThat(cached.originalLineOffsets()).containsExactly(metadata.originalLineOffsets());
+    assertThat(cached.lastValidOffset()).isEqualTo(metadata.lastValidOffset());
+  }
+
+  @Test
+  public void metadata_are_computed_again_if_file_or_charset_changed() throws IOException {
+    analyse(file, UTF_8);
+
+    write(file, "foo\n\nbaz", NOW - 5_000L);
+    assertThat(analyse(file, UTF_8).hash()).isEqualTo(new FileMetadata().readMetadata(file.toFile(), UTF_8).hash());
+    assertThat(computations.get()).isEqualTo(2);
+
+    analyse(file, Charset.forName("ISO-8859-1"));
+    assertThat(computations.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void files_which_have_just_been_modified_are_not_cached() throws IOException {
+    write(file, "foo", NOW - FileMetadataCache.RACY_MODIFICATION_MS);
+
+    analyse(file, UTF_8);
+    analyse(file, UTF_8);
+
+    assertThat(computations.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void files_not_analysed_are_removed_from_cache() throws IOException {
+    Path other = temp.newFile("Bar.java").toPath();
+    write(other, "bar", NOW - 10_000L);
+    FileMetadataCache cache = startCache();
+    cache.getOrCompute(file, UTF_8, () -> compute(file, UTF_8));
+    cache.getOrCompute(other, UTF_8, () -> compute(other, UTF_8));
+    cache.stop();
+
+    analyse(file, UTF_8);
+    analyse(other, UTF_8);
+
+    assertThat(computations.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void do_nothing_if_disabled() {
+    settings.setProperty(FileMetadataCache.ENABLED_KEY, false);
+
+    analyse(file, UTF_8);
+    analyse(file, UTF_8);
+
+    assertThat(computations.get()).isEqualTo(2);
+    assertThat(new File(workDir, FileMetadataCache.FILENAME)).doesNotExist();
+  }
+
+  @Test
+  public void ignore_corrupted_cache() throws IOException {
+    Files.write(new File(workDir, FileMetadataCache.FILENAME).toPath(), new byte[] {0, 0, 0, 1, 0, 0, 0, 5, 1});
+
+    analyse(file, UTF_8);
+
+    assertThat(computations.get()).isEqualTo(1);
+  }
+
+  private Metadata analyse(Path path, Charset charset) {
+    FileMetadataCache cache = startCache();
+    Metadata metadata = cache.getOrCompute(path, charset, () -> compute(path, charset));
+    cache.stop();
+    return metadata;
+  }
+
+  private FileMetadataCache startCache() {
+    FileMetadataCache cache = new FileMetadataCache(new ProjectReactor(ProjectDefinition.create().setWorkDir(workDir)), settings, system2);
+    cache.start();
+    return cache;
+  }
+
+  private Metadata compute(Path path, Charset charset) {
+    computations.incrementAndGet();
+    return new FileMetadata().readMetadata(path.toFile(), charset);
+  }
+
+  private static void write(Path path, String content, long lastModified) throws IOException {
+    Files.write(path, content.getBytes(UTF_8));
+    Files.setLastModifiedTime(path, FileTime.fromMillis(lastModified));
+  }
+}
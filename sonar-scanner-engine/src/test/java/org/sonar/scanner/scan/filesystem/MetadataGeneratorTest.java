@@ -34,12 +34,16 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.sonar.api.batch.bootstrap.ProjectDefinition;
+import org.sonar.api.batch.bootstrap.ProjectReactor;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputModule;
 import org.sonar.api.batch.fs.internal.FileMetadata;
 import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.config.MapSettings;
 import org.sonar.api.utils.PathUtils;
+import org.sonar.api.utils.System2;
 
 public class MetadataGeneratorTest {
   @Rule
@@ -57,7 +61,9 @@ public class MetadataGeneratorTest {
   public void setUp() {
     MockitoAnnotations.initMocks(this);
     metadata = new FileMetadata();
-    generator = new MetadataGenerator(new DefaultInputModule("module"), statusDetection, metadata);
+    generator = new MetadataGenerator(new DefaultInputModule("module"), statusDetection, metadata, 
+      new FileMetadataCache(new ProjectReactor(ProjectDefinition.create().setWorkDir(temp.getRoot())), new MapSettings(), System2.INSTANCE),
+      new FileContentCache(new MapSettings()));
   }
 
   @Test
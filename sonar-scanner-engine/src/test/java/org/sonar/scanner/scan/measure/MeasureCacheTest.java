@@ -19,6 +19,7 @@
  */
 package org.sonar.scanner.scan.measure;
 
+import com.google.common.collect.ImmutableMap;
 import java.util.Iterator;
 import org.junit.Before;
 import org.junit.Rule;
@@ -27,8 +28,11 @@ import org.junit.rules.ExpectedException;
 import org.sonar.api.batch.measure.MetricFinder;
 import org.sonar.api.batch.sensor.measure.internal.DefaultMeasure;
 import org.sonar.api.measures.CoreMetrics;
+import org.sonar.scanner.bootstrap.GlobalProperties;
 import org.sonar.scanner.index.AbstractCachesTest;
 import org.sonar.scanner.storage.Storage.Entry;
+import org.sonar.scanner.storage.Storages;
+import org.sonar.scanner.storage.StoragesManager;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
@@ -113,11 +117,20 @@ public class MeasureCacheTest extends AbstractCachesTest {
       data.append('a');
     }
     DefaultMeasure<?> m = new DefaultMeasure().forMetric(CoreMetrics.COVERAGE_LINE_HITS_DATA).withValue(data.toString());
+    StoragesManager persistitManager = new StoragesManager(createTempFolder(),
+      new GlobalProperties(ImmutableMap.of(StoragesManager.STORAGE_TYPE_KEY, "persistit")));
+    Storages persistitStorages = new Storages(persistitManager);
+    MeasureCache persistitMeasureCache = new MeasureCache(persistitStorages, metricFinder);
 
     thrown.expect(IllegalStateException.class);
     thrown.expectMessage("Fail to put element in the storage 'measures'");
 
-    measureCache.put(COMPONENT_KEY, CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY, m);
+    try {
+      persistitMeasureCache.put(COMPONENT_KEY, CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY, m);
+    } finally {
+      persistitStorages.stop();
+      persistitManager.stop();
+    }
   }
 
   @Test
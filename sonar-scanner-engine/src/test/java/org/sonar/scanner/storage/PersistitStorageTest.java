@@ -0,0 +1,49 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+
+/**
+ * Same tests as {@link StorageTest}, with storages which are directly on disk
+ */
+public class PersistitStorageTest extends StorageTest {
+
+  private static StoragesManager persistitManager;
+
+  @BeforeClass
+  public static void startPersistit() {
+    persistitManager = new StoragesManager(createTempFolder(), false, StoragesManager.DEFAULT_MAX_ENTRIES_IN_MEMORY);
+  }
+
+  @Before
+  @Override
+  public void start() {
+    caches = new Storages(persistitManager);
+    caches.start();
+  }
+
+  @AfterClass
+  public static void stopPersistit() {
+    persistitManager.stop();
+  }
+}
@@ -19,24 +19,64 @@
  */
 package org.sonar.scanner.storage;
 
+import com.google.common.collect.ImmutableMap;
+import java.io.File;
+import java.util.Collections;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.utils.MessageException;
+import org.sonar.scanner.bootstrap.GlobalProperties;
 import org.sonar.scanner.index.AbstractCachesTest;
-import java.io.File;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class StoragesManagerTest extends AbstractCachesTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
   @Test
   public void should_stop_and_clean_temp_dir() {
-    File tempDir = cachesManager.tempDir();
+    // not the manager shared by tests, which must not be stopped
+    StoragesManager manager = new StoragesManager(createTempFolder());
+    File tempDir = manager.tempDir();
     assertThat(tempDir).isDirectory().exists();
-    assertThat(cachesManager.persistit()).isNotNull();
-    assertThat(cachesManager.persistit().isInitialized()).isTrue();
+    assertThat(manager.persistit()).isNotNull();
+    assertThat(manager.persistit().isInitialized()).isTrue();
 
-    cachesManager.stop();
+    manager.stop();
 
     assertThat(tempDir).doesNotExist();
-    assertThat(cachesManager.tempDir()).isNull();
-    assertThat(cachesManager.persistit()).isNull();
+    assertThat(manager.tempDir()).isNull();
+    assertThat(manager.persistit()).isNull();
+  }
+
+  @Test
+  public void storages_are_on_disk_by_default() {
+    StoragesManager manager = new StoragesManager(createTempFolder(), new GlobalProperties(Collections.emptyMap()));
+
+    assertThat(manager.isInMemory()).isFalse();
+    assertThat(manager.maxEntriesInMemory()).isEqualTo(StoragesManager.DEFAULT_MAX_ENTRIES_IN_MEMORY);
+    manager.stop();
+  }
+
+  @Test
+  public void configure_storages() {
+    StoragesManager manager = new StoragesManager(createTempFolder(), new GlobalProperties(ImmutableMap.of(
+      StoragesManager.STORAGE_TYPE_KEY, "memory",
+      StoragesManager.MAX_ENTRIES_IN_MEMORY_KEY, "1000")));
+
+    assertThat(manager.isInMemory()).isTrue();
+    assertThat(manager.maxEntriesInMemory()).isEqualTo(1000L);
+    manager.stop();
+  }
+
+  @Test
+  public void fail_on_unknown_storage_type() {
+    thrown.expect(MessageException.class);
+    thrown.expectMessage("Invalid value of property sonar.scanner.storage: 'foo'");
+
+    new StoragesManager(createTempFolder(), new GlobalProperties(ImmutableMap.of(StoragesManager.STORAGE_TYPE_KEY, "foo")));
   }
 }
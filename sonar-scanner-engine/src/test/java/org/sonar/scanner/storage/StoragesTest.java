@@ -20,6 +20,8 @@
 package org.sonar.scanner.storage;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.persistit.exception.PersistitException;
 import org.junit.Test;
@@ -86,6 +88,94 @@ public class StoragesTest extends AbstractCachesTest {
     }
   }
 
+  @Test
+  public void move_storage_to_disk_when_memory_budget_is_exceeded() {
+    StoragesManager manager = new StoragesManager(createTempFolder(), true, 10);
+    Storages storages = new Storages(manager);
+    Storage<String> first = storages.createCache("first");
+    Storage<String> second = storages.createCache("second");
+    Iterable<String> values = second.values("b");
+    for (int i = 0; i < 8; i++) {
+      first.put("a", i, "a" + i);
+    }
+    assertThat(first.isInMemory()).isTrue();
+
+    for (int i = 0; i < 5; i++) {
+      second.put("b", i, "b" + i);
+    }
+
+    assertThat(first.isInMemory()).isTrue();
+    assertThat(second.isInMemory()).isFalse();
+    assertThat(second.get("b", 2)).isEqualTo("b2");
+    assertThat(values).containsExactly("b0", "b1", "b2", "b3", "b4");
+    assertThat(first.values("a")).hasSize(8);
+    // budget is available again once the storage is on disk
+    first.put("a", 8, "a8");
+    assertThat(first.isInMemory()).isTrue();
+
+    storages.stop();
+    manager.stop();
+  }
+
+  @Test
+  public void iteration_in_progress_goes_on_when_storage_is_moved_to_disk() {
+    StoragesManager manager = new StoragesManager(createTempFolder(), true, 10);
+    Storages storages = new Storages(manager);
+    Storage<String> storage = storages.createCache("foo");
+    for (int i = 0; i < 8; i++) {
+      storage.put("a", i, "a" + i);
+    }
+
+    List<String> iterated = new ArrayList<>();
+    for (String value : storage.values("a")) {
+      iterated.add(value);
+      // put during iteration, which moves the storage to disk
+      storage.put("b", iterated.size(), "b" + iterated.size());
+    }
+
+    assertThat(storage.isInMemory()).isFalse();
+    assertThat(iterated).containsExactly("a0", "a1", "a2", "a3", "a4", "a5", "a6", "a7");
+    assertThat(storage.values("a")).containsExactly("a0", "a1", "a2", "a3", "a4", "a5", "a6", "a7");
+    assertThat(storage.values("b")).containsExactly("b1", "b2", "b3", "b4", "b5", "b6", "b7", "b8");
+
+    storages.stop();
+    manager.stop();
+  }
+
+  @Test
+  public void values_are_not_copied_in_memory_but_are_copied_on_disk() {
+    StoragesManager manager = new StoragesManager(createTempFolder(), true, 2);
+    Storages storages = new Storages(manager);
+    Storage<Element> storage = storages.createCache("foo");
+    Element element = new Element();
+
+    storage.put("a", element);
+    assertThat(storage.isInMemory()).isTrue();
+    assertThat(storage.get("a")).isSameAs(element);
+
+    storage.put("b", new Element());
+    storage.put("c", new Element());
+    assertThat(storage.isInMemory()).isFalse();
+    assertThat(storage.get("a")).isNotSameAs(element).isNotNull();
+    assertThat(storage.get("a")).isNotSameAs(storage.get("a"));
+
+    storages.stop();
+    manager.stop();
+  }
+
+  @Test
+  public void do_not_start_persistit_when_storages_are_in_memory() {
+    StoragesManager manager = new StoragesManager(createTempFolder(), true, 10);
+    Storages storages = new Storages(manager);
+    storages.<String>createCache("foo").put("a", "b");
+
+    assertThat(manager.tempDir()).isDirectory();
+    assertThat(manager.tempDir().list()).isEmpty();
+
+    storages.stop();
+    manager.stop();
+  }
+
   private static class Element implements Serializable {
     private static final long serialVersionUID = 1L;
 
@@ -22,10 +22,16 @@ package org.sonar.scanner.protocol.output;
 import java.io.File;
 
 /**
- * Structure of files in the zipped report
+ * Structure of files in the zipped report. The same names are used as entry names
+ * when the report is packed in an {@link IndexedReportArchive}.
  */
 public class FileStructure {
 
+  public static final String METADATA_ENTRY = "metadata.pb";
+  public static final String ANALYSIS_LOG_ENTRY = "analysis.log";
+  public static final String ACTIVE_RULES_ENTRY = "activerules.pb";
+  public static final String CONTEXT_PROPERTIES_ENTRY = "context-props.pb";
+
   public enum Domain {
     ISSUES("issues-", Domain.PB),
     COMPONENT("component-", Domain.PB),
@@ -48,6 +54,10 @@ public class FileStructure {
       this.filePrefix = filePrefix;
       this.fileSuffix = fileSuffix;
     }
+
+    public String entryFor(int componentRef) {
+      return filePrefix + componentRef + fileSuffix;
+    }
   }
 
   private final File dir;
@@ -60,25 +70,25 @@ public class FileStructure {
   }
 
   public File metadataFile() {
-    return new File(dir, "metadata.pb");
+    return new File(dir, METADATA_ENTRY);
   }
 
   public File analysisLog() {
-    return new File(dir, "analysis.log");
+    return new File(dir, ANALYSIS_LOG_ENTRY);
   }
 
   public File activeRules() {
-    return new File(dir, "activerules.pb");
+    return new File(dir, ACTIVE_RULES_ENTRY);
   }
 
   public File fileFor(Domain domain, int componentRef) {
-    return new File(dir, domain.filePrefix + componentRef + domain.fileSuffix);
+    return new File(dir, domain.entryFor(componentRef));
   }
 
   public File contextProperties() {
-    return new File(dir, "context-props.pb");
+    return new File(dir, CONTEXT_PROPERTIES_ENTRY);
   }
-  
+
   public File root() {
     return dir;
   }
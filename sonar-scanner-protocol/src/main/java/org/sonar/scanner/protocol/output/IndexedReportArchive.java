@@ -0,0 +1,86 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Single-file container of an analysis report. It replaces the zip of the report directory, so that
+ * the report can be uploaded and read by the Compute Engine without extracting thousands of small files.
+ * <p>
+ * Layout:
+ * <pre>
+ *   header   = MAGIC, int format version
+ *   segments = one LZ4 compressed block stream per entry, written contiguously
+ *   index    = int number of entries, then for each entry: UTF name, long offset, long length
+ *   trailer  = long offset of index, MAGIC
+ * </pre>
+ * Entries are read in random order through {@link IndexedReportArchiveReader}.
+ * </p>
+ */
+public final class IndexedReportArchive {
+
+  /**
+   * Name of the file holding the archive when it's stored in a directory
+   */
+  public static final String FILENAME = "report.sqa";
+
+  /**
+   * Version of the archive format. Servers accept archives since version {@link #MIN_SERVER_VERSION},
+   * older servers only accept zipped directories.
+   */
+  public static final int FORMAT_VERSION = 1;
+  public static final String MIN_SERVER_VERSION = "6.4";
+
+  static final byte[] MAGIC = {'S', 'Q', 'R', 'A'};
+  static final int HEADER_SIZE = MAGIC.length + Integer.BYTES;
+  static final int TRAILER_SIZE = Long.BYTES + MAGIC.length;
+
+  private IndexedReportArchive() {
+    // only constants and static methods
+  }
+
+  /**
+   * Whether the stream starts with the header of an archive. The stream must support
+   * {@link InputStream#mark(int)}, its position is not changed.
+   */
+  public static boolean isIndexedArchive(InputStream input) throws IOException {
+    if (!input.markSupported()) {
+      throw new IllegalArgumentException("Stream must support mark()");
+    }
+    input.mark(MAGIC.length);
+    try {
+      byte[] bytes = new byte[MAGIC.length];
+      int read = 0;
+      while (read < bytes.length) {
+        int count = input.read(bytes, read, bytes.length - read);
+        if (count < 0) {
+          return false;
+        }
+        read += count;
+      }
+      return Arrays.equals(MAGIC, bytes);
+    } finally {
+      input.reset();
+    }
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+import net.jpountz.lz4.LZ4BlockInputStream;
+
+import static java.lang.String.format;
+
+/**
+ * Reads the entries of an {@link IndexedReportArchive} in random order. Only the index is loaded
+ * in memory, the content of an entry is read from disk when it's opened. Entries can be read
+ * concurrently.
+ */
+public class IndexedReportArchiveReader implements ReportContainer {
+
+  private final File archive;
+  private final FileChannel channel;
+  private final Map<String, Entry> entriesByName;
+
+  private IndexedReportArchiveReader(File archive, FileChannel channel, Map<String, Entry> entriesByName) {
+    this.archive = archive;
+    this.channel = channel;
+    this.entriesByName = entriesByName;
+  }
+
+  public static IndexedReportArchiveReader open(File archive) {
+    FileChannel channel = null;
+    try {
+      channel = FileChannel.open(archive.toPath(), StandardOpenOption.READ);
+      return new IndexedReportArchiveReader(archive, channel, readIndex(archive, channel));
+    } catch (IOException | RuntimeException e) {
+      closeQuietly(channel);
+      throw new IllegalStateException("Fail to open report archive " + archive, e);
+    }
+  }
+
+  private static Map<String, Entry> readIndex(File archive, FileChannel channel) throws IOException {
+    long size = channel.size();
+    if (size < IndexedReportArchive.HEADER_SIZE + IndexedReportArchive.TRAILER_SIZE) {
+      throw new IllegalStateException("File is too small to be a report archive: " + archive);
+    }
+    ByteBuffer header = readFully(channel, 0L, IndexedReportArchive.HEADER_SIZE);
+    checkMagic(archive, header);
+    int version = header.getInt();
+    if (version != IndexedReportArchive.FORMAT_VERSION) {
+      throw new IllegalStateException(format("Unsupported version %d of report archive %s", version, archive));
+    }
+
+    ByteBuffer trailer = readFully(channel, size - IndexedReportArchive.TRAILER_SIZE, IndexedReportArchive.TRAILER_SIZE);
+    long indexOffset = trailer.getLong();
+    checkMagic(archive, trailer);
+
+    long indexLength = size - IndexedReportArchive.TRAILER_SIZE - indexOffset;
+    DataInputStream index = new DataInputStream(new BufferedInputStream(new SegmentInputStream(channel, indexOffset, indexLength)));
+    int count = index.readInt();
+    Map<String, Entry> entries = new HashMap<>(count * 2);
+    for (int i = 0; i < count; i++) {
+      Entry entry = new Entry(index.readUTF(), index.readLong(), index.readLong());
+      entries.put(entry.name, entry);
+    }
+    return entries;
+  }
+
+  private static void checkMagic(File archive, ByteBuffer buffer) {
+    byte[] magic = new byte[IndexedReportArchive.MAGIC.length];
+    buffer.get(magic);
+    if (!Arrays.equals(IndexedReportArchive.MAGIC, magic)) {
+      throw new IllegalStateException("File is not a report archive: " + archive);
+    }
+  }
+
+  private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new IllegalStateException("Unexpected end of report archive");
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  @Override
+  public boolean hasEntry(String name) {
+    return entriesByName.containsKey(name);
+  }
+
+  @Override
+  public InputStream openEntry(String name) {
+    Entry entry = entriesByName.get(name);
+    if (entry == null) {
+      throw new IllegalStateException(format("Entry %s does not exist in report archive %s", name, archive));
+    }
+    return new BufferedInputStream(new LZ4BlockInputStream(new SegmentInputStream(channel, entry.offset, entry.length)));
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  private static void closeQuietly(@Nullable FileChannel channel) {
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        // ignored
+      }
+    }
+  }
+
+  static class Entry {
+    final String name;
+    final long offset;
+    final long length;
+
+    Entry(String name, long offset, long length) {
+      this.name = name;
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+
+  /**
+   * Stream over a region of the archive. Positional reads do not change the position
+   * of the channel, so that several segments can be read at the same time.
+   */
+  private static class SegmentInputStream extends InputStream {
+    private final FileChannel channel;
+    private long position;
+    private long remaining;
+
+    SegmentInputStream(FileChannel channel, long offset, long length) {
+      this.channel = channel;
+      this.position = offset;
+      this.remaining = length;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] b = new byte[1];
+      int count = read(b, 0, 1);
+      return count < 0 ? -1 : (b[0] & 0xFF);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (remaining <= 0) {
+        return -1;
+      }
+      int toRead = (int) Math.min(len, remaining);
+      int count = channel.read(ByteBuffer.wrap(b, off, toRead), position);
+      if (count > 0) {
+        position += count;
+        remaining -= count;
+      }
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return (int) Math.min(Integer.MAX_VALUE, remaining);
+    }
+  }
+}
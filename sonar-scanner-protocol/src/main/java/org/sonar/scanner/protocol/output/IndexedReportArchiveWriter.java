@@ -0,0 +1,91 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import net.jpountz.lz4.LZ4BlockOutputStream;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.commons.io.output.CountingOutputStream;
+
+/**
+ * Packs the files of a report directory in a single {@link IndexedReportArchive}. Content is copied
+ * sequentially, so the cost is proportional to the size of the report, not to its number of files.
+ */
+class IndexedReportArchiveWriter {
+
+  private static final int BLOCK_SIZE = 64 * 1024;
+
+  private IndexedReportArchiveWriter() {
+    // only static stuff
+  }
+
+  static void write(File reportDir, File archive) {
+    File[] files = reportDir.listFiles(File::isFile);
+    if (files == null) {
+      throw new IllegalStateException("Unable to list files of directory " + reportDir);
+    }
+    // stable order of segments, whatever the file system
+    Arrays.sort(files);
+
+    List<IndexedReportArchiveReader.Entry> index = new ArrayList<>(files.length);
+    try (CountingOutputStream counting = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(archive)));
+      DataOutputStream output = new DataOutputStream(counting)) {
+      output.write(IndexedReportArchive.MAGIC);
+      output.writeInt(IndexedReportArchive.FORMAT_VERSION);
+
+      for (File file : files) {
+        long offset = counting.getByteCount();
+        writeSegment(file, counting);
+        index.add(new IndexedReportArchiveReader.Entry(file.getName(), offset, counting.getByteCount() - offset));
+      }
+
+      long indexOffset = counting.getByteCount();
+      output.writeInt(index.size());
+      for (IndexedReportArchiveReader.Entry entry : index) {
+        output.writeUTF(entry.name);
+        output.writeLong(entry.offset);
+        output.writeLong(entry.length);
+      }
+      output.writeLong(indexOffset);
+      output.write(IndexedReportArchive.MAGIC);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to write report archive " + archive, e);
+    }
+  }
+
+  private static void writeSegment(File file, OutputStream output) throws IOException {
+    LZ4BlockOutputStream segment = new LZ4BlockOutputStream(new CloseShieldOutputStream(output), BLOCK_SIZE);
+    try (InputStream input = Files.newInputStream(file.toPath())) {
+      IOUtils.copyLarge(input, segment);
+    }
+    segment.finish();
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import java.io.Closeable;
+import java.io.InputStream;
+
+/**
+ * Random access to the entries of an analysis report, whatever the way they are physically stored.
+ * Entries are identified by the names defined in {@link FileStructure}.
+ */
+public interface ReportContainer extends Closeable {
+
+  boolean hasEntry(String name);
+
+  /**
+   * Opens the content of an entry. The stream must be closed by caller.
+   *
+   * @throws IllegalStateException if the entry does not exist or can't be read
+   */
+  InputStream openEntry(String name);
+
+}
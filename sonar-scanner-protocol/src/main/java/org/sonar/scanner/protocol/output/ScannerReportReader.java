@@ -19,8 +19,12 @@
  */
 package org.sonar.scanner.protocol.output;
 
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
 import java.io.File;
+import java.io.InputStream;
 import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.core.util.Protobuf;
 
@@ -28,153 +32,171 @@ import static org.sonar.core.util.CloseableIterator.emptyCloseableIterator;
 
 public class ScannerReportReader {
 
+  @Nullable
   private final FileStructure fileStructure;
+  private final ReportContainer container;
 
   public ScannerReportReader(File dir) {
     this.fileStructure = new FileStructure(dir);
+    this.container = new DirectoryReportContainer(dir);
+  }
+
+  /**
+   * Reads a report which is not laid out as a directory, for example an {@link IndexedReportArchiveReader}.
+   * Methods returning {@link File} are not supported in this case, streams must be opened instead.
+   */
+  public ScannerReportReader(ReportContainer container) {
+    this.fileStructure = null;
+    this.container = container;
   }
 
   public ScannerReport.Metadata readMetadata() {
-    File file = fileStructure.metadataFile();
-    if (!fileExists(file)) {
-      throw new IllegalStateException("Metadata file is missing in analysis report: " + file);
+    if (!container.hasEntry(FileStructure.METADATA_ENTRY)) {
+      throw new IllegalStateException("Metadata file is missing in analysis report: " + describe(FileStructure.METADATA_ENTRY));
     }
-    return Protobuf.read(file, ScannerReport.Metadata.parser());
+    return Protobuf.read(container.openEntry(FileStructure.METADATA_ENTRY), ScannerReport.Metadata.parser());
   }
 
   public CloseableIterator<ScannerReport.ActiveRule> readActiveRules() {
-    File file = fileStructure.activeRules();
-    if (!fileExists(file)) {
-      return emptyCloseableIterator();
-    }
-    return Protobuf.readStream(file, ScannerReport.ActiveRule.parser());
+    return readStream(FileStructure.ACTIVE_RULES_ENTRY, ScannerReport.ActiveRule.parser());
   }
 
   public CloseableIterator<ScannerReport.Measure> readComponentMeasures(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.MEASURES, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Measure.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.Domain.MEASURES.entryFor(componentRef), ScannerReport.Measure.parser());
   }
 
   @CheckForNull
   public ScannerReport.Changesets readChangesets(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.CHANGESETS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.read(file, ScannerReport.Changesets.parser());
+    String entry = FileStructure.Domain.CHANGESETS.entryFor(componentRef);
+    if (container.hasEntry(entry)) {
+      return Protobuf.read(container.openEntry(entry), ScannerReport.Changesets.parser());
     }
     return null;
   }
 
   public ScannerReport.Component readComponent(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COMPONENT, componentRef);
-    if (!fileExists(file)) {
-      throw new IllegalStateException("Unable to find report for component #" + componentRef + ". File does not exist: " + file);
+    String entry = FileStructure.Domain.COMPONENT.entryFor(componentRef);
+    if (!container.hasEntry(entry)) {
+      throw new IllegalStateException("Unable to find report for component #" + componentRef + ". File does not exist: " + describe(entry));
     }
-    return Protobuf.read(file, ScannerReport.Component.parser());
+    return Protobuf.read(container.openEntry(entry), ScannerReport.Component.parser());
   }
 
   public CloseableIterator<ScannerReport.Issue> readComponentIssues(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.ISSUES, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Issue.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.Domain.ISSUES.entryFor(componentRef), ScannerReport.Issue.parser());
   }
 
   public CloseableIterator<ScannerReport.Duplication> readComponentDuplications(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.DUPLICATIONS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Duplication.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.Domain.DUPLICATIONS.entryFor(componentRef), ScannerReport.Duplication.parser());
   }
 
   public CloseableIterator<ScannerReport.CpdTextBlock> readCpdTextBlocks(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.CPD_TEXT_BLOCKS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.CpdTextBlock.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.Domain.CPD_TEXT_BLOCKS.entryFor(componentRef), ScannerReport.CpdTextBlock.parser());
   }
 
   public CloseableIterator<ScannerReport.Symbol> readComponentSymbols(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYMBOLS, componentRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.Symbol.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.Domain.SYMBOLS.entryFor(componentRef), ScannerReport.Symbol.parser());
   }
 
   public boolean hasSyntaxHighlighting(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, componentRef);
-    return file.exists();
+    return container.hasEntry(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS.entryFor(componentRef));
   }
 
   public CloseableIterator<ScannerReport.SyntaxHighlightingRule> readComponentSyntaxHighlighting(int fileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS, fileRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.SyntaxHighlightingRule.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.Domain.SYNTAX_HIGHLIGHTINGS.entryFor(fileRef), ScannerReport.SyntaxHighlightingRule.parser());
   }
 
   public boolean hasCoverage(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGES, componentRef);
-    return file.exists();
+    return container.hasEntry(FileStructure.Domain.COVERAGES.entryFor(componentRef));
   }
 
   public CloseableIterator<ScannerReport.LineCoverage> readComponentCoverage(int fileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGES, fileRef);
-    if (fileExists(file)) {
-      return Protobuf.readStream(file, ScannerReport.LineCoverage.parser());
-    }
-    return emptyCloseableIterator();
+    return readStream(FileStructure.Domain.COVERAGES.entryFor(fileRef), ScannerReport.LineCoverage.parser());
   }
 
   @CheckForNull
   public File readFileSource(int fileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.SOURCE, fileRef);
-    if (fileExists(file)) {
-      return file;
-    }
-    return null;
+    return fileIfExists(FileStructure.Domain.SOURCE.entryFor(fileRef));
+  }
+
+  /**
+   * Same as {@link #readFileSource(int)} but supported by all kinds of reports.
+   */
+  @CheckForNull
+  public InputStream openFileSource(int fileRef) {
+    return openIfExists(FileStructure.Domain.SOURCE.entryFor(fileRef));
   }
 
   @CheckForNull
   public File readTests(int testFileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.TESTS, testFileRef);
-    if (fileExists(file)) {
-      return file;
-    }
+    return fileIfExists(FileStructure.Domain.TESTS.entryFor(testFileRef));
+  }
 
-    return null;
+  /**
+   * Same as {@link #readTests(int)} but supported by all kinds of reports.
+   */
+  @CheckForNull
+  public InputStream openTests(int testFileRef) {
+    return openIfExists(FileStructure.Domain.TESTS.entryFor(testFileRef));
   }
 
   @CheckForNull
   public File readCoverageDetails(int testFileRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COVERAGE_DETAILS, testFileRef);
-    if (fileExists(file)) {
-      return file;
+    return fileIfExists(FileStructure.Domain.COVERAGE_DETAILS.entryFor(testFileRef));
+  }
+
+  /**
+   * Same as {@link #readCoverageDetails(int)} but supported by all kinds of reports.
+   */
+  @CheckForNull
+  public InputStream openCoverageDetails(int testFileRef) {
+    return openIfExists(FileStructure.Domain.COVERAGE_DETAILS.entryFor(testFileRef));
+  }
+
+  @CheckForNull
+  public InputStream openAnalysisLog() {
+    return openIfExists(FileStructure.ANALYSIS_LOG_ENTRY);
+  }
+
+  public CloseableIterator<ScannerReport.ContextProperty> readContextProperties() {
+    return readStream(FileStructure.CONTEXT_PROPERTIES_ENTRY, ScannerReport.ContextProperty.parser());
+  }
+
+  private <MSG extends Message> CloseableIterator<MSG> readStream(String entry, Parser<MSG> parser) {
+    if (container.hasEntry(entry)) {
+      return Protobuf.readStream(container.openEntry(entry), parser);
     }
+    return emptyCloseableIterator();
+  }
 
+  @CheckForNull
+  private InputStream openIfExists(String entry) {
+    if (container.hasEntry(entry)) {
+      return container.openEntry(entry);
+    }
     return null;
   }
 
-  public CloseableIterator<ScannerReport.ContextProperty> readContextProperties() {
-    File file = fileStructure.contextProperties();
-    if (!fileExists(file)) {
-      return emptyCloseableIterator();
+  @CheckForNull
+  private File fileIfExists(String entry) {
+    File file = new File(getFileStructure().root(), entry);
+    if (container.hasEntry(entry)) {
+      return file;
     }
-    return Protobuf.readStream(file, ScannerReport.ContextProperty.parser());
+    return null;
   }
 
-  private static boolean fileExists(File file) {
-    return file.exists() && file.isFile();
+  private String describe(String entry) {
+    if (fileStructure != null) {
+      return new File(fileStructure.root(), entry).toString();
+    }
+    return entry;
   }
 
   public FileStructure getFileStructure() {
+    if (fileStructure == null) {
+      throw new IllegalStateException("Report is not laid out as a directory");
+    }
     return fileStructure;
   }
 }
@@ -20,21 +20,56 @@
 package org.sonar.scanner.protocol.output;
 
 import java.io.BufferedOutputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.sonar.core.util.ContextException;
 import org.sonar.core.util.Protobuf;
 
-public class ScannerReportWriter {
+public class ScannerReportWriter implements Closeable {
+
+  /**
+   * Maximum number of issue files kept open by default. Issues are usually raised file after file,
+   * so a small pool is enough to avoid opening a file for each issue.
+   */
+  public static final int DEFAULT_MAX_OPEN_ISSUE_STREAMS = 32;
 
   private final FileStructure fileStructure;
+  private final int maxOpenIssueStreams;
+  // open issue files by component ref, in access order so that the least recently used is closed first
+  private final LinkedHashMap<Integer, OutputStream> issueStreams;
 
   public ScannerReportWriter(File dir) {
+    this(dir, DEFAULT_MAX_OPEN_ISSUE_STREAMS);
+  }
+
+  /**
+   * @param maxOpenIssueStreams maximum number of issue files kept open by {@link #appendComponentIssue(int, ScannerReport.Issue)}.
+   *                            Zero means that the file is opened and closed for each issue.
+   */
+  public ScannerReportWriter(File dir, int maxOpenIssueStreams) {
     if (!dir.exists() && !dir.mkdirs()) {
       throw new IllegalStateException("Unable to create directory: " + dir);
     }
+    if (maxOpenIssueStreams < 0) {
+      throw new IllegalArgumentException("Maximum number of open issue streams must be positive or zero: " + maxOpenIssueStreams);
+    }
     this.fileStructure = new FileStructure(dir);
+    this.maxOpenIssueStreams = maxOpenIssueStreams;
+    this.issueStreams = new LinkedHashMap<Integer, OutputStream>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, OutputStream> eldest) {
+        if (size() > ScannerReportWriter.this.maxOpenIssueStreams) {
+          closeIssueStream(eldest.getKey(), eldest.getValue());
+          return true;
+        }
+        return false;
+      }
+    };
   }
 
   public FileStructure getFileStructure() {
@@ -67,16 +102,79 @@ public class ScannerReportWriter {
 
   public File writeComponentIssues(int componentRef, Iterable<ScannerReport.Issue> issues) {
     File file = fileStructure.fileFor(FileStructure.Domain.ISSUES, componentRef);
+    synchronized (issueStreams) {
+      OutputStream out = issueStreams.remove(componentRef);
+      if (out != null) {
+        closeIssueStream(componentRef, out);
+      }
+    }
     Protobuf.writeStream(issues, file, false);
     return file;
   }
 
+  /**
+   * Appends an issue to the issues of the component. The file is kept open and buffered for the next
+   * issues of the same component, so the issues are guaranteed to be on disk only after {@link #flush()}
+   * or {@link #close()}.
+   */
   public void appendComponentIssue(int componentRef, ScannerReport.Issue issue) {
-    File file = fileStructure.fileFor(FileStructure.Domain.ISSUES, componentRef);
-    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file, true))) {
-      issue.writeDelimitedTo(out);
-    } catch (Exception e) {
-      throw ContextException.of("Unable to write issue", e).addContext("file", file);
+    if (maxOpenIssueStreams == 0) {
+      File file = fileStructure.fileFor(FileStructure.Domain.ISSUES, componentRef);
+      try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file, true))) {
+        issue.writeDelimitedTo(out);
+      } catch (Exception e) {
+        throw ContextException.of("Unable to write issue", e).addContext("file", file);
+      }
+      return;
+    }
+    synchronized (issueStreams) {
+      try {
+        OutputStream out = issueStreams.get(componentRef);
+        if (out == null) {
+          out = new BufferedOutputStream(new FileOutputStream(fileStructure.fileFor(FileStructure.Domain.ISSUES, componentRef), true));
+          issueStreams.put(componentRef, out);
+        }
+        issue.writeDelimitedTo(out);
+      } catch (Exception e) {
+        throw ContextException.of("Unable to write issue", e).addContext("file", fileStructure.fileFor(FileStructure.Domain.ISSUES, componentRef));
+      }
+    }
+  }
+
+  /**
+   * Writes to disk the issues buffered by {@link #appendComponentIssue(int, ScannerReport.Issue)}. Files are kept open.
+   */
+  public void flush() {
+    synchronized (issueStreams) {
+      for (Map.Entry<Integer, OutputStream> entry : issueStreams.entrySet()) {
+        try {
+          entry.getValue().flush();
+        } catch (IOException e) {
+          throw ContextException.of("Unable to write issues", e).addContext("file", fileStructure.fileFor(FileStructure.Domain.ISSUES, entry.getKey()));
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes to disk and closes the files opened by {@link #appendComponentIssue(int, ScannerReport.Issue)}.
+   * The writer can still be used afterwards.
+   */
+  @Override
+  public void close() {
+    synchronized (issueStreams) {
+      for (Map.Entry<Integer, OutputStream> entry : issueStreams.entrySet()) {
+        closeIssueStream(entry.getKey(), entry.getValue());
+      }
+      issueStreams.clear();
+    }
+  }
+
+  private void closeIssueStream(int componentRef, OutputStream out) {
+    try {
+      out.close();
+    } catch (IOException e) {
+      throw ContextException.of("Unable to write issues", e).addContext("file", fileStructure.fileFor(FileStructure.Domain.ISSUES, componentRef));
     }
   }
 
@@ -144,4 +242,14 @@ public class ScannerReportWriter {
     return fileStructure.fileFor(FileStructure.Domain.SOURCE, componentRef);
   }
 
+  /**
+   * Packs all the files written so far in a single {@link IndexedReportArchive}, which can
+   * be read back with {@link IndexedReportArchiveReader}.
+   */
+  public File writeIndexedArchive(File archive) {
+    close();
+    IndexedReportArchiveWriter.write(fileStructure.root(), archive);
+    return archive;
+  }
+
 }
@@ -0,0 +1,79 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static java.lang.String.format;
+
+/**
+ * Reads the entries of a zipped report directory without extracting it. Entries are located
+ * through the central directory of the zip file and are decompressed only when opened.
+ */
+public class ZipReportContainer implements ReportContainer {
+
+  /**
+   * Name of the file holding the zipped report when it's stored in a directory
+   */
+  public static final String FILENAME = "report.zip";
+
+  private final ZipFile zipFile;
+
+  private ZipReportContainer(ZipFile zipFile) {
+    this.zipFile = zipFile;
+  }
+
+  public static ZipReportContainer open(File zip) {
+    try {
+      return new ZipReportContainer(new ZipFile(zip));
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to open zipped report " + zip, e);
+    }
+  }
+
+  @Override
+  public boolean hasEntry(String name) {
+    ZipEntry entry = zipFile.getEntry(name);
+    return entry != null && !entry.isDirectory();
+  }
+
+  @Override
+  public InputStream openEntry(String name) {
+    ZipEntry entry = zipFile.getEntry(name);
+    if (entry == null || entry.isDirectory()) {
+      throw new IllegalStateException(format("Entry %s does not exist in zipped report %s", name, zipFile.getName()));
+    }
+    try {
+      return new BufferedInputStream(zipFile.getInputStream(entry));
+    } catch (IOException e) {
+      throw new IllegalStateException(format("Fail to read entry %s of zipped report %s", name, zipFile.getName()), e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    zipFile.close();
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.core.util.CloseableIterator;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IndexedReportArchiveReaderTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Test
+  public void read_entries_in_random_order() throws Exception {
+    File dir = temp.newFolder();
+    ScannerReportWriter writer = new ScannerReportWriter(dir);
+    writer.writeMetadata(ScannerReport.Metadata.newBuilder().setProjectKey("PROJECT").build());
+    writer.writeComponent(ScannerReport.Component.newBuilder().setRef(1).build());
+    writer.writeComponent(ScannerReport.Component.newBuilder().setRef(2).build());
+    writer.writeComponentIssues(2, asList(ScannerReport.Issue.newBuilder().setMsg("foo").build(), ScannerReport.Issue.newBuilder().setMsg("bar").build()));
+    FileUtils.write(writer.getSourceFile(2), "line1\nline2", StandardCharsets.UTF_8);
+    File archive = writer.writeIndexedArchive(temp.newFile());
+
+    try (IndexedReportArchiveReader container = IndexedReportArchiveReader.open(archive)) {
+      ScannerReportReader reader = new ScannerReportReader(container);
+
+      assertThat(reader.readComponent(2).getRef()).isEqualTo(2);
+      try (InputStream source = reader.openFileSource(2)) {
+        assertThat(IOUtils.toString(source, StandardCharsets.UTF_8)).isEqualTo("line1\nline2");
+      }
+      try (CloseableIterator<ScannerReport.Issue> issues = reader.readComponentIssues(2)) {
+        assertThat(issues.next().getMsg()).isEqualTo("foo");
+        assertThat(issues.next().getMsg()).isEqualTo("bar");
+        assertThat(issues.hasNext()).isFalse();
+      }
+      assertThat(reader.readMetadata().getProjectKey()).isEqualTo("PROJECT");
+      assertThat(reader.readComponent(1).getRef()).isEqualTo(1);
+      assertThat(reader.readComponentIssues(1).hasNext()).isFalse();
+      assertThat(reader.openFileSource(1)).isNull();
+      assertThat(reader.readChangesets(1)).isNull();
+    }
+  }
+
+  @Test
+  public void read_empty_entries() throws Exception {
+    File dir = temp.newFolder();
+    FileUtils.touch(new File(dir, FileStructure.ANALYSIS_LOG_ENTRY));
+    File archive = new ScannerReportWriter(dir).writeIndexedArchive(temp.newFile());
+
+    try (IndexedReportArchiveReader container = IndexedReportArchiveReader.open(archive);
+      InputStream input = container.openEntry(FileStructure.ANALYSIS_LOG_ENTRY)) {
+      assertThat(input.read()).isEqualTo(-1);
+    }
+  }
+
+  @Test
+  public void fail_to_open_missing_entry() throws Exception {
+    File archive = new ScannerReportWriter(temp.newFolder()).writeIndexedArchive(temp.newFile());
+
+    try (IndexedReportArchiveReader container = IndexedReportArchiveReader.open(archive)) {
+      assertThat(container.hasEntry(FileStructure.METADATA_ENTRY)).isFalse();
+
+      expectedException.expect(IllegalStateException.class);
+      expectedException.expectMessage("Entry metadata.pb does not exist in report archive");
+      container.openEntry(FileStructure.METADATA_ENTRY);
+    }
+  }
+
+  @Test
+  public void fail_to_open_file_which_is_not_an_archive() throws Exception {
+    File file = temp.newFile();
+    FileUtils.write(file, "this is not an archive but some text longer than the header", StandardCharsets.UTF_8);
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Fail to open report archive");
+    IndexedReportArchiveReader.open(file);
+  }
+
+  @Test
+  public void detect_archive_from_header() throws Exception {
+    File archive = new ScannerReportWriter(temp.newFolder()).writeIndexedArchive(temp.newFile());
+
+    try (InputStream input = new BufferedInputStream(new FileInputStream(archive))) {
+      assertThat(IndexedReportArchive.isIndexedArchive(input)).isTrue();
+      // stream is reset
+      assertThat(input.read()).isEqualTo('S');
+    }
+    assertThat(IndexedReportArchive.isIndexedArchive(new ByteArrayInputStream("PK".getBytes(StandardCharsets.UTF_8)))).isFalse();
+    assertThat(IndexedReportArchive.isIndexedArchive(new ByteArrayInputStream(new byte[] {'P', 'K', 3, 4, 0}))).isFalse();
+  }
+}
@@ -116,6 +116,76 @@ public class ScannerReportWriterTest {
     }
   }
 
+  @Test
+  public void append_issues_are_written_on_flush() {
+    ScannerReport.Issue issue = ScannerReport.Issue.newBuilder().setMsg("the message").build();
+    File file = underTest.getFileStructure().fileFor(FileStructure.Domain.ISSUES, 1);
+
+    underTest.appendComponentIssue(1, issue);
+    underTest.appendComponentIssue(1, issue);
+    assertThat(underTest.hasComponentData(FileStructure.Domain.ISSUES, 1)).isTrue();
+
+    underTest.flush();
+    assertThat(countIssues(file)).isEqualTo(2);
+
+    underTest.appendComponentIssue(1, issue);
+    underTest.close();
+    assertThat(countIssues(file)).isEqualTo(3);
+
+    // writer can still be used after being closed
+    underTest.appendComponentIssue(1, issue);
+    underTest.close();
+    assertThat(countIssues(file)).isEqualTo(4);
+  }
+
+  @Test
+  public void close_least_recently_used_issue_files_when_too_many_are_open() {
+    underTest = new ScannerReportWriter(dir, 2);
+    ScannerReport.Issue issue = ScannerReport.Issue.newBuilder().setMsg("the message").build();
+
+    underTest.appendComponentIssue(1, issue);
+    underTest.appendComponentIssue(2, issue);
+    underTest.appendComponentIssue(1, issue);
+    // component 2 is evicted, so its file is complete
+    underTest.appendComponentIssue(3, issue);
+    assertThat(countIssues(underTest.getFileStructure().fileFor(FileStructure.Domain.ISSUES, 2))).isEqualTo(1);
+
+    underTest.appendComponentIssue(2, issue);
+    underTest.close();
+    assertThat(countIssues(underTest.getFileStructure().fileFor(FileStructure.Domain.ISSUES, 1))).isEqualTo(2);
+    assertThat(countIssues(underTest.getFileStructure().fileFor(FileStructure.Domain.ISSUES, 2))).isEqualTo(2);
+    assertThat(countIssues(underTest.getFileStructure().fileFor(FileStructure.Domain.ISSUES, 3))).isEqualTo(1);
+  }
+
+  @Test
+  public void append_issues_without_pool() {
+    underTest = new ScannerReportWriter(dir, 0);
+    ScannerReport.Issue issue = ScannerReport.Issue.newBuilder().setMsg("the message").build();
+
+    underTest.appendComponentIssue(1, issue);
+    underTest.appendComponentIssue(1, issue);
+
+    assertThat(countIssues(underTest.getFileStructure().fileFor(FileStructure.Domain.ISSUES, 1))).isEqualTo(2);
+  }
+
+  @Test
+  public void write_issues_replaces_appended_issues() {
+    ScannerReport.Issue issue = ScannerReport.Issue.newBuilder().setMsg("the message").build();
+    underTest.appendComponentIssue(1, issue);
+    underTest.appendComponentIssue(1, issue);
+
+    underTest.writeComponentIssues(1, asList(issue));
+    underTest.close();
+
+    assertThat(countIssues(underTest.getFileStructure().fileFor(FileStructure.Domain.ISSUES, 1))).isEqualTo(1);
+  }
+
+  private static int countIssues(File file) {
+    try (CloseableIterator<ScannerReport.Issue> read = Protobuf.readStream(file, ScannerReport.Issue.parser())) {
+      return Iterators.size(read);
+    }
+  }
+
   @Test
   public void write_measures() {
     assertThat(underTest.hasComponentData(FileStructure.Domain.MEASURES, 1)).isFalse();
@@ -0,0 +1,81 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.protocol.output;
+
+import java.io.File;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.utils.ZipUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ZipReportContainerTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Test
+  public void read_entries_without_extracting_zip() throws Exception {
+    File dir = temp.newFolder();
+    ScannerReportWriter writer = new ScannerReportWriter(dir);
+    writer.writeMetadata(ScannerReport.Metadata.newBuilder().setProjectKey("PROJECT").build());
+    writer.writeComponent(ScannerReport.Component.newBuilder().setRef(1).build());
+    File zip = temp.newFile();
+    ZipUtils.zipDir(dir, zip);
+    FileUtils.deleteDirectory(dir);
+
+    try (ZipReportContainer container = ZipReportContainer.open(zip)) {
+      ScannerReportReader reader = new ScannerReportReader(container);
+
+      assertThat(reader.readComponent(1).getRef()).isEqualTo(1);
+      assertThat(reader.readMetadata().getProjectKey()).isEqualTo("PROJECT");
+      assertThat(reader.readComponentIssues(1).hasNext()).isFalse();
+      assertThat(reader.openTests(1)).isNull();
+    }
+  }
+
+  @Test
+  public void fail_to_open_missing_entry() throws Exception {
+    File zip = temp.newFile();
+    ZipUtils.zipDir(temp.newFolder(), zip);
+
+    try (ZipReportContainer container = ZipReportContainer.open(zip)) {
+      expectedException.expect(IllegalStateException.class);
+      expectedException.expectMessage("Entry metadata.pb does not exist in zipped report");
+      container.openEntry("metadata.pb");
+    }
+  }
+
+  @Test
+  public void fail_if_not_a_zip() throws Exception {
+    File file = temp.newFile();
+    FileUtils.write(file, "not a zip");
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Fail to open zipped report");
+    ZipReportContainer.open(file);
+  }
+}
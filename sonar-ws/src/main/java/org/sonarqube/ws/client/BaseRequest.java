@@ -22,6 +22,7 @@ package org.sonarqube.ws.client;
 import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.ListMultimap;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -46,6 +47,8 @@ abstract class BaseRequest<SELF extends BaseRequest> implements WsRequest {
 
   private final DefaultParameters parameters = new DefaultParameters();
 
+  private final Map<String, String> headers = new LinkedHashMap<>();
+
   BaseRequest(String path) {
     this.path = path;
   }
@@ -114,6 +117,26 @@ abstract class BaseRequest<SELF extends BaseRequest> implements WsRequest {
     return (SELF) this;
   }
 
+  /**
+   * Sets a HTTP header of the request. Null value removes the header.
+   *
+   * @since 6.4
+   */
+  public SELF setHeader(String name, @Nullable String value) {
+    checkArgument(!isNullOrEmpty(name), "a header name cannot be null");
+    if (value == null) {
+      headers.remove(name);
+    } else {
+      headers.put(name, value);
+    }
+    return (SELF) this;
+  }
+
+  @Override
+  public Map<String, String> getHeaders() {
+    return Collections.unmodifiableMap(headers);
+  }
+
   @Override
   public Map<String, String> getParams() {
     return parameters.keyValues.keySet().stream()
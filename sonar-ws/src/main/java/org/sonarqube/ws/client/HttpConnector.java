@@ -165,6 +165,7 @@ public class HttpConnector implements WsConnector {
     if (credentials != null) {
       okHttpRequestBuilder.header("Authorization", credentials);
     }
+    getRequest.getHeaders().forEach(okHttpRequestBuilder::header);
     return okHttpRequestBuilder;
   }
 
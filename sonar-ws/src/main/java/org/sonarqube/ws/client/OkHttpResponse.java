@@ -25,6 +25,7 @@ import okhttp3.ResponseBody;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.util.Optional;
 
 class OkHttpResponse extends BaseResponse {
 
@@ -49,6 +50,11 @@ class OkHttpResponse extends BaseResponse {
     return okResponse.header("Content-Type");
   }
 
+  @Override
+  public Optional<String> header(String name) {
+    return Optional.ofNullable(okResponse.header(name));
+  }
+
   /**
    * Get stream of bytes
    */
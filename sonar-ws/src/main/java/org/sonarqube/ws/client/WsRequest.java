@@ -43,6 +43,14 @@ public interface WsRequest {
 
   Parameters getParameters();
 
+  /**
+   * HTTP headers to be sent in addition to the standard ones, for example
+   * {@code If-None-Match} for conditional requests.
+   *
+   * @since 6.4
+   */
+  Map<String, String> getHeaders();
+
   enum Method {
     GET, POST
   }